@@ -0,0 +1,96 @@
+package com.mycompany.delivery.api.bench;
+
+import com.google.gson.Gson;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.util.ApiResponse;
+import com.mycompany.delivery.api.util.JsonAdapters;
+import com.mycompany.delivery.api.util.JsonStreaming;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Respuesta JSON de una lista grande de mensajes de chat: el camino anterior
+ * ({@code toJson} a un {@code String} y luego {@code getBytes}) frente a
+ * {@link JsonStreaming#escribir}, que codifica directamente sobre el destino.
+ * El destino solo cuenta los bytes, asi que se mide la serializacion y no la red.
+ *
+ * <p>Lo interesante es la asignacion por operacion: ejecutar con
+ * {@code -prof gc} y mirar {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonStreamingBenchmark {
+
+    private static final Gson GSON = JsonAdapters.crearGson();
+
+    @Param({ "100", "5000" })
+    public int mensajes;
+
+    private ApiResponse<List<ChatMensaje>> respuesta;
+    private final Sumidero destino = new Sumidero();
+
+    @Setup
+    public void preparar() {
+        List<ChatMensaje> lista = new ArrayList<>(mensajes);
+        long ahora = System.currentTimeMillis();
+        for (int i = 0; i < mensajes; i++) {
+            lista.add(new ChatMensaje(
+                    (long) i << 14,
+                    42L << 14,
+                    10 + i % 2,
+                    i % 5 == 0 ? null : 11 - i % 2,
+                    "Hola, ya estoy llegando al punto de entrega. ¿Me esperás en la puerta? " + i,
+                    new Timestamp(ahora - i * 5_000L),
+                    "Usuario " + (10 + i % 2),
+                    i % 7 == 0));
+        }
+        respuesta = ApiResponse.success("Mensajes obtenidos", lista);
+    }
+
+    @Benchmark
+    public void toJsonYGetBytes() throws IOException {
+        destino.write(GSON.toJson(respuesta, respuesta.getClass()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void escribirEnStreaming() throws IOException {
+        JsonStreaming.escribir(GSON, respuesta, respuesta.getClass(), destino);
+    }
+
+    // Cuenta los bytes y lee uno de cada escritura para que el JIT no pueda
+    // descartar el array.
+    private static final class Sumidero extends OutputStream {
+        long total;
+
+        @Override
+        public void write(int b) {
+            total += b & 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            total += len + (len > 0 ? b[off] : 0);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mycompany.delivery.api.bench;
+
+import com.mycompany.delivery.api.services.PasswordHasher;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de BCrypt por factor de trabajo (hash de registro y verificacion de
+ * login) y sobrecoste del pool acotado de {@link PasswordHasher} frente a la
+ * llamada directa. Sirve para elegir LOG_ROUNDS y BCRYPT_THREADS: con
+ * {@code -t N} se ve el rendimiento cuando N logins llegan a la vez.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    private static final String CONTRASENA = "repartidor-turno-manana";
+
+    @Param({ "6", "8", "10", "12" })
+    public int logRounds;
+
+    private String hash;
+    private String hashPorDefecto;
+
+    @Setup
+    public void preparar() {
+        hash = BCrypt.hashpw(CONTRASENA, BCrypt.gensalt(logRounds));
+        hashPorDefecto = PasswordHasher.hash(CONTRASENA);
+    }
+
+    @Benchmark
+    public String hashDirecto() {
+        return BCrypt.hashpw(CONTRASENA, BCrypt.gensalt(logRounds));
+    }
+
+    @Benchmark
+    public boolean verificarDirecto() {
+        return BCrypt.checkpw(CONTRASENA, hash);
+    }
+
+    // Usa el factor de PasswordHasher, independiente de logRounds.
+    @Benchmark
+    public boolean verificarEnPool() {
+        return PasswordHasher.verificar(CONTRASENA, hashPorDefecto);
+    }
+}
@@ -0,0 +1,161 @@
+package com.mycompany.delivery.api.bench;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.model.Pedido;
+import com.mycompany.delivery.api.repository.SqlCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de CPU por fila de los mapeadores de {@link SqlCatalog} (lectura por
+ * posicion) frente al estilo anterior de los repositorios (lectura por nombre
+ * de columna, {@code getObject} para los nulos y un {@code HashMap} por
+ * mensaje de chat).
+ *
+ * <p>Las filas salen de PostgreSQL con la forma de {@code pedidos} y de
+ * {@code chat_mensajes}, pero generadas con {@code generate_series}, asi que no
+ * dependen de los datos. Se leen una vez con un cursor desplazable (pgjdbc lo
+ * guarda en memoria) y cada invocacion recorre el mismo {@link ResultSet}: se
+ * mide el mapeo, no la red. Conexion: DB_URL, DB_USER, DB_PASSWORD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private static final String PEDIDOS = """
+            SELECT g AS id_pedido,
+                   g % 500 + 1 AS id_cliente,
+                   CASE WHEN g % 3 = 0 THEN NULL ELSE g % 40 + 1 END AS id_delivery,
+                   g % 700 + 1 AS id_ubicacion,
+                   (ARRAY['pendiente','en_camino','entregado'])[g % 3 + 1]::varchar AS estado,
+                   (g % 9000) / 100.0 + 5 AS total,
+                   'Av. Amazonas N' || g || ' y Colon' AS direccion_entrega,
+                   'efectivo'::varchar AS metodo_pago,
+                   now() - g * interval '1 minute' AS created_at,
+                   now() - g * interval '30 second' AS updated_at
+            FROM generate_series(1, ?) g
+            """;
+
+    private static final String MENSAJES = """
+            SELECT g::bigint * 16384 AS id_mensaje,
+                   (g / 20)::bigint * 16384 AS id_conversacion,
+                   g % 2 + 10 AS id_remitente,
+                   CASE WHEN g % 5 = 0 THEN NULL ELSE g % 2 + 11 END AS id_destinatario,
+                   'Hola, ya estoy llegando al punto de entrega ' || g AS mensaje,
+                   now() - g * interval '5 second' AS created_at,
+                   'Usuario ' || (g % 2 + 10) AS remitente_nombre,
+                   (g % 7 = 0) AS es_bot
+            FROM generate_series(1, ?) g
+            """;
+
+    @Param({ "200" })
+    public int filas;
+
+    private Connection conn;
+    private ResultSet pedidos;
+    private ResultSet mensajes;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        conn = Database.abrirConexionDirecta();
+        pedidos = desplazable(PEDIDOS);
+        mensajes = desplazable(MENSAJES);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public void pedidosPorPosicion(Blackhole bh) throws SQLException {
+        pedidos.beforeFirst();
+        while (pedidos.next()) {
+            bh.consume(SqlCatalog.PEDIDO.map(pedidos));
+        }
+    }
+
+    @Benchmark
+    public void pedidosPorNombre(Blackhole bh) throws SQLException {
+        pedidos.beforeFirst();
+        while (pedidos.next()) {
+            bh.consume(pedidoPorNombre(pedidos));
+        }
+    }
+
+    @Benchmark
+    public void mensajesPorPosicion(Blackhole bh) throws SQLException {
+        mensajes.beforeFirst();
+        while (mensajes.next()) {
+            bh.consume(SqlCatalog.MENSAJE_CHAT.map(mensajes));
+        }
+    }
+
+    @Benchmark
+    public void mensajesPorNombre(Blackhole bh) throws SQLException {
+        mensajes.beforeFirst();
+        while (mensajes.next()) {
+            bh.consume(mensajePorNombre(mensajes));
+        }
+    }
+
+    private ResultSet desplazable(String sql) throws SQLException {
+        var ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        ps.setInt(1, filas);
+        return ps.executeQuery();
+    }
+
+    // Copia del mapeador que tenia PedidoRepository antes del catalogo.
+    private static Pedido pedidoPorNombre(ResultSet rs) throws SQLException {
+        Pedido p = new Pedido();
+        p.setIdPedido(rs.getInt("id_pedido"));
+        p.setIdCliente(rs.getInt("id_cliente"));
+        p.setIdDelivery(rs.getObject("id_delivery") != null ? rs.getInt("id_delivery") : null);
+        p.setIdUbicacion(rs.getInt("id_ubicacion"));
+        p.setEstado(rs.getString("estado"));
+        p.setTotal(rs.getDouble("total"));
+        p.setDireccionEntrega(rs.getString("direccion_entrega"));
+        p.setMetodoPago(rs.getString("metodo_pago"));
+        p.setFechaPedido(rs.getTimestamp("created_at"));
+        p.setFechaEntrega(rs.getTimestamp("updated_at"));
+        return p;
+    }
+
+    // Copia de la fila que armaba ChatRepository.listarMensajes.
+    private static Map<String, Object> mensajePorNombre(ResultSet rs) throws SQLException {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id_mensaje", rs.getLong("id_mensaje"));
+        row.put("id_conversacion", rs.getLong("id_conversacion"));
+        row.put("id_remitente", rs.getInt("id_remitente"));
+        row.put("id_destinatario", (Integer) rs.getObject("id_destinatario"));
+        row.put("mensaje", rs.getString("mensaje"));
+        row.put("created_at", rs.getTimestamp("created_at"));
+        row.put("remitente_nombre", rs.getString("remitente_nombre"));
+        row.put("es_bot", rs.getBoolean("es_bot"));
+        return row;
+    }
+}
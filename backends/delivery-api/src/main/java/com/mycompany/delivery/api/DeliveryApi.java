@@ -2,7 +2,13 @@ package com.mycompany.delivery.api;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.mycompany.delivery.api.config.AdmissionController;
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.ReplicaRouter;
+import com.mycompany.delivery.api.config.PartitionManager;
+import com.mycompany.delivery.api.config.SchemaMigrator;
+import com.mycompany.delivery.api.config.StartupState;
+import com.mycompany.delivery.api.config.UnitOfWork;
 import com.mycompany.delivery.api.controller.*;
 import com.mycompany.delivery.api.model.*;
 import com.mycompany.delivery.api.payloads.Payloads;
@@ -14,19 +20,49 @@ import com.mycompany.delivery.api.repository.PedidoRepository;
 import com.mycompany.delivery.api.repository.RespuestaSoporteRepository;
 import com.mycompany.delivery.api.repository.SoporteRepository;
 import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.services.ActividadUsuarios;
+import com.mycompany.delivery.api.services.AnaliticaVentas;
+import com.mycompany.delivery.api.services.ArchivadorPedidos;
+import com.mycompany.delivery.api.services.ChatMessageCache;
 import com.mycompany.delivery.api.services.GeminiService;
+import com.mycompany.delivery.api.services.MasVendidos;
+import com.mycompany.delivery.api.services.RecomendacionRanking;
+import com.mycompany.delivery.api.services.ReferenceData;
+import com.mycompany.delivery.api.services.ResourceVersions;
+import com.mycompany.delivery.api.services.ResponseCache;
+import com.mycompany.delivery.api.services.SoporteInbox;
 import com.mycompany.delivery.api.util.ApiResponse;
+import com.mycompany.delivery.api.util.CuerpoPrecomprimido;
+import com.mycompany.delivery.api.util.HttpCompression;
+import com.mycompany.delivery.api.util.IpCliente;
+import com.mycompany.delivery.api.util.JsonAdapters;
+import com.mycompany.delivery.api.util.JsonStreaming;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import io.javalin.Javalin;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.Header;
 import io.javalin.json.JsonMapper;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static com.mycompany.delivery.api.payloads.Payloads.*;
 import com.mycompany.delivery.api.payloads.Payloads.UbicacionesRequest;
@@ -38,7 +74,7 @@ import static com.mycompany.delivery.api.util.UbicacionValidator.*;
  */
 public class DeliveryApi {
 
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = JsonAdapters.crearGson();
     private static final UsuarioController USUARIO_CONTROLLER = new UsuarioController();
     private static final ProductoController PRODUCTO_CONTROLLER = new ProductoController();
     private static final PedidoController PEDIDO_CONTROLLER = new PedidoController();
@@ -53,16 +89,49 @@ public class DeliveryApi {
     private static final PedidoRepository PEDIDO_REPOSITORY = new PedidoRepository();
     private static final ChatBotResponder CHATBOT_RESPONDER = new ChatBotResponder(GEMINI_SERVICE, PEDIDO_REPOSITORY, CHAT_REPOSITORY);
     private static final NegocioRepository NEGOCIO_REPOSITORY = new NegocioRepository();
+    private static final SoporteInbox SOPORTE_INBOX = SoporteInbox.getInstance();
+    private static final ArchivadorPedidos ARCHIVADOR = ArchivadorPedidos.getInstance();
+    private static final AnaliticaVentas ANALITICA = AnaliticaVentas.getInstance();
+    private static final MasVendidos MAS_VENDIDOS = MasVendidos.getInstance();
+    private static final ActividadUsuarios ACTIVIDAD = ActividadUsuarios.getInstance();
+    private static final ChatMessageCache CHAT_CACHE = ChatMessageCache.getInstance();
+    private static final ResourceVersions VERSIONES = ResourceVersions.getInstance();
+    private static final ResponseCache RESPONSE_CACHE = ResponseCache.getInstance();
+    private static final String ATRIBUTO_ETAG = "etag";
+    private static final String ATRIBUTO_CLAVE_CACHE = "clave-cache";
+    private static final String ATRIBUTO_ADMISION = "admision";
 
     public static void main(String[] args) {
+        long inicio = System.nanoTime();
         Dotenv dotenv = Dotenv.load();
+        // Pool, migraciones y caches se calientan en paralelo mientras Javalin abre el puerto.
+        calentar();
         Javalin app = Javalin.create(config -> {
+            config.http.customCompression(HttpCompression.estrategia());
             config.jsonMapper(new JsonMapper() {
                 @Override
                 public @NotNull String toJsonString(@NotNull Object obj, @NotNull Type type) {
                     return GSON.toJson(obj, type);
                 }
 
+                @Override
+                public @NotNull InputStream toJsonStream(@NotNull Object obj, @NotNull Type type) {
+                    try {
+                        return JsonStreaming.comoStream(GSON, obj, type);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void writeToOutputStream(@NotNull Stream<?> stream, @NotNull OutputStream outputStream) {
+                    try {
+                        JsonStreaming.escribirArray(GSON, stream, outputStream);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
                 @Override
                 public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) throws JsonSyntaxException {
                     return GSON.fromJson(json, targetType);
@@ -81,7 +150,44 @@ public class DeliveryApi {
             } catch (Exception e) {
                 // Ignore missing static resources silently
             }
-        }).start(7070);
+        });
+
+        // Admision por prioridad: bajo saturacion se descarta primero lo aplazable.
+        app.before(ctx -> {
+            var prioridad = AdmissionController.clasificar(ctx.method().name(), ctx.path());
+            if (prioridad != null) {
+                AdmissionController.admitir(prioridad);
+                ctx.attribute(ATRIBUTO_ADMISION, prioridad);
+            }
+        });
+        app.after(ctx -> {
+            AdmissionController.Prioridad prioridad = ctx.attribute(ATRIBUTO_ADMISION);
+            if (prioridad != null) {
+                AdmissionController.liberar(prioridad);
+            }
+        });
+
+        // Lecturas tolerantes a retraso van a la replica (si DB_REPLICA_URL esta definido).
+        app.before(ctx -> ReplicaRouter.iniciarPeticion(ctx.method().name(), ctx.path(), usuarioDe(ctx)));
+        app.after(ctx -> ReplicaRouter.finalizarPeticion());
+
+        // Liveness: el proceso responde. Readiness: pool y esquema listos.
+        app.get("/health", ctx -> handleResponse(ctx, ApiResponse.success(200, "OK", null)));
+        app.get("/ready", ctx -> {
+            if (StartupState.isListo()) {
+                handleResponse(ctx, ApiResponse.success(200, "Lista", StartupState.resumen()));
+            } else {
+                handleResponse(ctx, ApiResponse.error(503, "Calentando", StartupState.resumen()));
+            }
+        });
+
+        // Errores controlados: se responde con el mismo formato ApiResponse que los exitos.
+        app.exception(ApiException.class, (e, ctx) -> {
+            if (e.getRetryAfter() != null) {
+                ctx.header("Retry-After", String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+            }
+            handleResponse(ctx, ApiResponse.error(e.getStatus(), e.getMessage(), e.getDetails()));
+        });
 
         app.get("/negocios/{id}/stats", ctx -> {
             long negocioId = Long.parseLong(ctx.pathParam("id"));
@@ -92,17 +198,22 @@ public class DeliveryApi {
         // =============== AUTHENTICATION ===============
         app.post("/auth/login", ctx -> {
             var body = ctx.bodyAsClass(Payloads.LoginRequest.class);
-            handleResponse(ctx, USUARIO_CONTROLLER.login(body.getCorreo(), body.getContrasena()));
+            handleResponse(ctx, USUARIO_CONTROLLER.login(body.getCorreo(), body.getContrasena(), IpCliente.de(ctx)));
         });
 
         // Registrar el resto de rutas de la API (chat, soporte, tracking, usuarios, etc.)
         registerRoutes(app);
+
+        // El puerto se abre con todo registrado: ninguna peticion llega antes
+        // que los filtros de admision y de replica ni recibe un 404 de arranque.
+        app.start(7070);
+        StartupState.registrar("javalin", (System.nanoTime() - inicio) / 1_000_000L);
     }
         private static void registerRoutes(Javalin app) {
         // --- AUTH ---
         app.post("/login", ctx -> {
             var body = ctx.bodyAsClass(LoginRequest.class);
-            handleResponse(ctx, USUARIO_CONTROLLER.login(body.getCorreo(), body.getContrasena()));
+            handleResponse(ctx, USUARIO_CONTROLLER.login(body.getCorreo(), body.getContrasena(), IpCliente.de(ctx)));
         });
         app.post("/registro", ctx -> {
             var b = ctx.bodyAsClass(Payloads.RegistroRequest.class);
@@ -147,6 +258,9 @@ public class DeliveryApi {
 
         // --- PRODUCTOS ---
         app.get("/productos", ctx -> {
+            if (respuestaCacheada(ctx, ResourceVersions.PRODUCTOS)) {
+                return;
+            }
             var q = ctx.queryParam("query");
             var cat = ctx.queryParam("categoria");
             var resp = (q != null || cat != null) ? PRODUCTO_CONTROLLER.buscarProductos(q, cat)
@@ -155,6 +269,9 @@ public class DeliveryApi {
         });
         app.get("/productos/{id}", ctx -> {
             var id = parseId(ctx.pathParam("id"));
+            if (respuestaCacheada(ctx, ResourceVersions.PRODUCTOS)) {
+                return;
+            }
             handleResponse(ctx, PRODUCTO_CONTROLLER.obtenerProducto(id));
         });
         app.get("/admin/productos", ctx -> {
@@ -176,6 +293,9 @@ public class DeliveryApi {
 
         // --- CATEGORIAS ---
         app.get("/categorias", ctx -> {
+            if (respuestaCacheada(ctx, ResourceVersions.CATEGORIAS)) {
+                return;
+            }
             handleResponse(ctx, PRODUCTO_CONTROLLER.obtenerCategorias());
         });
 
@@ -186,11 +306,11 @@ public class DeliveryApi {
             @SuppressWarnings("unchecked")
             java.util.List<com.mycompany.delivery.api.model.Usuario> lista = (java.util.List<com.mycompany.delivery.api.model.Usuario>) all
                     .getData();
-            var negocios = new java.util.ArrayList<java.util.Map<String, Object>>();
+            var negocios = new java.util.ArrayList<UsuarioVista>();
             if (lista != null) {
                 for (var u : lista) {
                     if ("negocio".equalsIgnoreCase(u.getRol())) {
-                        negocios.add(u.toMap());
+                        negocios.add(UsuarioVista.de(u));
                     }
                 }
             }
@@ -240,12 +360,35 @@ public class DeliveryApi {
             var prov = ((Usuario) negocio).getNombre();
             var p = ctx.bodyAsClass(Producto.class);
             var repo = new com.mycompany.delivery.api.repository.ProductoRepository();
-            var creado = repo.crearProductoParaProveedor(p, prov);
+            var creado = UnitOfWork.transaccion(() -> {
+                var nuevo = repo.crearProductoParaProveedor(p, prov);
+                if (nuevo.isPresent()) {
+                    VERSIONES.productoModificado();
+                }
+                return nuevo;
+            });
             if (creado.isEmpty())
                 throw new ApiException(500, "No se pudo crear el producto");
             handleResponse(ctx, ApiResponse.success(201, "Producto creado para negocio", creado.get()));
         });
 
+        // Importacion masiva (CSV con cabecera o JSON segun Content-Type).
+        app.post("/admin/negocios/{id}/productos/importar", ctx -> {
+            var id = parseId(ctx.pathParam("id"));
+            var usuario = USUARIO_CONTROLLER.obtenerPorId(id).getData();
+            if (usuario == null || !"negocio".equalsIgnoreCase(((Usuario) usuario).getRol())) {
+                throw new ApiException(404, "Negocio no encontrado");
+            }
+            var negocio = NEGOCIO_REPOSITORY.findByUsuario(id)
+                    .orElseThrow(() -> new ApiException(404, "Negocio no encontrado"));
+            InputStream cuerpo = ctx.bodyInputStream();
+            if ("gzip".equalsIgnoreCase(ctx.header(Header.CONTENT_ENCODING))) {
+                cuerpo = new GZIPInputStream(cuerpo);
+            }
+            boolean json = ctx.contentType() != null && ctx.contentType().contains("json");
+            handleResponse(ctx, PRODUCTO_CONTROLLER.importarProductos(negocio.getIdNegocio(), cuerpo, json));
+        });
+
         // --- PEDIDOS ---
         app.post("/pedidos", ctx -> {
             var body = ctx.bodyAsClass(PedidoPayload.class);
@@ -335,16 +478,16 @@ public class DeliveryApi {
         // --- MENSAJES (CHAT) ---
         app.post("/chat", ctx -> {
             var body = ctx.bodyAsClass(Mensaje.class);
-            var result = CHAT_REPOSITORY.guardarMensaje(body);
-            if (result.containsKey("error")) {
-                handleResponse(ctx, ApiResponse.error(500, "Error al guardar mensaje", result.get("error")));
-            } else {
-                handleResponse(ctx, ApiResponse.success(201, "Mensaje guardado", result));
+            try {
+                handleResponse(ctx, ApiResponse.success(201, "Mensaje guardado", CHAT_REPOSITORY.guardarMensaje(body)));
+            } catch (SQLException e) {
+                System.err.println("Error al guardar mensaje: " + e.getMessage());
+                handleResponse(ctx, ApiResponse.error(500, "Error al guardar mensaje", e.getMessage()));
             }
         });
         app.get("/chat/{idPedido}", ctx -> {
             var idPedido = parseId(ctx.pathParam("idPedido"));
-            var mensajes = CHAT_REPOSITORY.obtenerChatPorPedido(idPedido);
+            var mensajes = CHAT_CACHE.listarPorPedido(idPedido, parseAfterId(ctx));
             handleResponse(ctx, ApiResponse.success(200, "Mensajes del chat", mensajes));
         });
 
@@ -368,13 +511,22 @@ public class DeliveryApi {
                     RECOMENDACION_CONTROLLER.guardarRecomendacion(idProducto, idUsuario, puntuacion, comentario));
         });
         app.get("/recomendaciones", ctx -> {
-            handleResponse(ctx, RECOMENDACION_CONTROLLER.listarRecomendacionesDestacadas());
+            if (respuestaCacheada(ctx, ResourceVersions.RECOMENDACIONES)) {
+                return;
+            }
+            handleJson(ctx, 200, RECOMENDACION_CONTROLLER.listarRecomendacionesDestacadasJson());
         });
         app.get("/recomendaciones/destacadas", ctx -> {
-            handleResponse(ctx, RECOMENDACION_CONTROLLER.listarRecomendacionesDestacadas());
+            if (respuestaCacheada(ctx, ResourceVersions.RECOMENDACIONES)) {
+                return;
+            }
+            handleJson(ctx, 200, RECOMENDACION_CONTROLLER.listarRecomendacionesDestacadasJson());
         });
         app.get("/productos/{id}/recomendaciones", ctx -> {
             var idProducto = parseId(ctx.pathParam("id"));
+            if (respuestaCacheada(ctx, ResourceVersions.RECOMENDACIONES)) {
+                return;
+            }
             handleResponse(ctx, RECOMENDACION_CONTROLLER.obtenerResumenYLista(idProducto));
         });
         app.get("/recomendaciones/usuario/{id}", ctx -> {
@@ -416,6 +568,16 @@ public class DeliveryApi {
             handleResponse(ctx, ApiResponse.success("UbicaciÃ³n del repartidor actualizada"));
         });
 
+        // Puntos acumulados por el repartidor sin cobertura; el cuerpo se lee en
+        // streaming y puede llegar comprimido con gzip.
+        app.post("/tracking/batch", ctx -> {
+            InputStream cuerpo = ctx.bodyInputStream();
+            if ("gzip".equalsIgnoreCase(ctx.header(Header.CONTENT_ENCODING))) {
+                cuerpo = new GZIPInputStream(cuerpo);
+            }
+            handleResponse(ctx, UBICACION_CONTROLLER.registrarLoteTracking(cuerpo));
+        });
+
         // --- NUEVO ENDPOINT OPTIMIZADO ---
         app.post("/tracking/repartidores/ubicaciones", ctx -> {
             var body = ctx.bodyAsClass(UbicacionesRequest.class);
@@ -438,6 +600,84 @@ public class DeliveryApi {
             handleResponse(ctx,
                     ApiResponse.success(200, "EstadÃ­sticas admin", DASHBOARD_DAO.obtenerEstadisticasAdmin()));
         });
+        app.get("/admin/db/pools", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Pools de conexiones", Database.metricas())));
+        app.get("/admin/admision", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Control de admision", AdmissionController.metricas())));
+        app.get("/admin/particiones", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Particiones", PartitionManager.metricas())));
+        app.get("/admin/archivo", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Archivo de pedidos", ARCHIVADOR.metricas())));
+        app.post("/admin/archivo/ejecutar", ctx -> {
+            int archivados = ARCHIVADOR.archivarPendientes();
+            if (archivados < 0) {
+                throw new ApiException(409, "Otro nodo esta archivando pedidos");
+            }
+            handleResponse(ctx, ApiResponse.success(200, "Pasada de archivo completada",
+                    Map.of("archivados", archivados)));
+        });
+        app.get("/admin/analytics", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Analitica de ventas", ANALITICA.metricas())));
+        app.get("/admin/analytics/ventas", ctx -> {
+            LocalDateTime hasta = parseFecha(ctx.queryParam("hasta"), LocalDateTime.now());
+            LocalDateTime desde = parseFecha(ctx.queryParam("desde"), hasta.minusDays(7));
+            handleResponse(ctx, ApiResponse.success(200, "Ventas por periodo",
+                    ANALITICA.serie(desde, hasta, ctx.queryParam("granularidad"),
+                            parseNullableInt(ctx.queryParam("negocio")),
+                            parseNullableInt(ctx.queryParam("repartidor")),
+                            ctx.queryParam("estado"))));
+        });
+        app.get("/admin/analytics/desglose", ctx -> {
+            LocalDateTime hasta = parseFecha(ctx.queryParam("hasta"), LocalDateTime.now());
+            LocalDateTime desde = parseFecha(ctx.queryParam("desde"), hasta.minusDays(30));
+            Integer limite = parseNullableInt(ctx.queryParam("limite"));
+            handleResponse(ctx, ApiResponse.success(200, "Ventas por negocio o repartidor",
+                    ANALITICA.desglose(desde, hasta, ctx.queryParam("por"), ctx.queryParam("estado"),
+                            limite != null ? limite : 20)));
+        });
+        app.post("/admin/analytics/recargar", ctx -> {
+            ANALITICA.recargar();
+            handleResponse(ctx, ApiResponse.success(200, "Analitica recargada", ANALITICA.metricas()));
+        });
+        app.get("/admin/analytics/top-productos", ctx -> {
+            Integer k = parseNullableInt(ctx.queryParam("k"));
+            handleResponse(ctx, ApiResponse.success(200, "Productos mas vendidos",
+                    MAS_VENDIDOS.top(k != null ? k : 10, parseNullableInt(ctx.queryParam("negocio")),
+                            parseNullableInt(ctx.queryParam("dias")))));
+        });
+        app.get("/admin/analytics/top-productos/estado", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Ranking de mas vendidos", MAS_VENDIDOS.metricas())));
+        app.post("/admin/analytics/top-productos/reconciliar", ctx -> {
+            MAS_VENDIDOS.reconciliar();
+            handleResponse(ctx, ApiResponse.success(200, "Ranking reconciliado", MAS_VENDIDOS.metricas()));
+        });
+        app.get("/admin/analytics/actividad", ctx -> {
+            LocalDateTime hasta = parseFecha(ctx.queryParam("hasta"), LocalDateTime.now());
+            LocalDateTime desde = parseFecha(ctx.queryParam("desde"), hasta.minusHours(24));
+            handleResponse(ctx, ApiResponse.success(200, "Usuarios activos",
+                    ACTIVIDAD.serie(desde, hasta, ctx.queryParam("granularidad"),
+                            parseNullableInt(ctx.queryParam("negocio")))));
+        });
+        app.get("/admin/analytics/actividad/negocios", ctx -> {
+            LocalDateTime hasta = parseFecha(ctx.queryParam("hasta"), LocalDateTime.now());
+            LocalDateTime desde = parseFecha(ctx.queryParam("desde"), hasta.minusDays(7));
+            Integer limite = parseNullableInt(ctx.queryParam("limite"));
+            handleResponse(ctx, ApiResponse.success(200, "Clientes distintos por negocio",
+                    ACTIVIDAD.porNegocio(desde, hasta, ctx.queryParam("granularidad"),
+                            limite != null ? limite : 20)));
+        });
+        app.get("/admin/analytics/actividad/estado", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Metricas de actividad", ACTIVIDAD.metricas())));
+        app.post("/admin/analytics/actividad/reconstruir", ctx -> {
+            Integer dias = parseNullableInt(ctx.queryParam("dias"));
+            handleResponse(ctx, ApiResponse.success(200, "Metricas de actividad reconstruidas",
+                    ACTIVIDAD.reconstruir(dias != null ? dias : 1)));
+        });
+        app.get("/admin/compresion", ctx -> {
+            Map<String, Object> datos = new LinkedHashMap<>(HttpCompression.metricas());
+            datos.put("cache_respuestas", RESPONSE_CACHE.metricas());
+            handleResponse(ctx, ApiResponse.success(200, "Compresion de respuestas", datos));
+        });
         app.get("/delivery/stats/{id}", ctx -> {
             var id = parseId(ctx.pathParam("id"));
             handleResponse(ctx,
@@ -460,6 +700,7 @@ public class DeliveryApi {
 
             try {
                 long idConv = SOPORTE_REPO.ensureSoporteConversacion(idUsuario, rol);
+                SOPORTE_INBOX.encolar(idConv, idUsuario, SoporteRepository.calcularPrioridadInicial(rol));
                 handleResponse(ctx, ApiResponse.success(201, "Conversacion de soporte iniciada",
                         Map.of("id_conversacion", idConv)));
             } catch (SQLException e) {
@@ -481,17 +722,23 @@ public class DeliveryApi {
             }
 
             try {
-                SOPORTE_REPO.insertMensajeUsuario(req.idConversacion, req.idRemitente, mensaje);
-
-                Optional<Map<String, Object>> convInfo = SOPORTE_REPO.getInfoConversacion(req.idConversacion);
-                String rol = convInfo.map(info -> Objects.toString(info.get("rol"), "cliente")).orElse("cliente");
-                boolean esDelivery = "delivery".equalsIgnoreCase(rol);
-                boolean esCliente = "cliente".equalsIgnoreCase(rol) || "negocio".equalsIgnoreCase(rol);
-
-                Optional<String> auto = SOPORTE_REPO.buscarAutoRespuesta(mensaje, esCliente, esDelivery);
+                // Mensaje del usuario y auto-respuesta en una sola conexion y transaccion.
+                Optional<String> auto = UnitOfWork.transaccion(() -> {
+                    SOPORTE_REPO.insertMensajeUsuario(req.idConversacion, req.idRemitente, mensaje);
+
+                    Optional<Map<String, Object>> convInfo = SOPORTE_REPO.getInfoConversacion(req.idConversacion);
+                    String rol = convInfo.map(info -> Objects.toString(info.get("rol"), "cliente")).orElse("cliente");
+                    boolean esDelivery = "delivery".equalsIgnoreCase(rol);
+                    boolean esCliente = "cliente".equalsIgnoreCase(rol) || "negocio".equalsIgnoreCase(rol);
+
+                    Optional<String> respuesta = SOPORTE_REPO.buscarAutoRespuesta(mensaje, esCliente, esDelivery);
+                    if (respuesta.isPresent()) {
+                        int botId = ReferenceData.getInstance().botSoporteId();
+                        SOPORTE_REPO.insertMensajeSoporte(req.idConversacion, botId, respuesta.get());
+                    }
+                    return respuesta;
+                });
                 if (auto.isPresent()) {
-                    int botId = SOPORTE_REPO.ensureBotSoporte();
-                    SOPORTE_REPO.insertMensajeSoporte(req.idConversacion, botId, auto.get());
                     handleResponse(ctx, ApiResponse.success(201, "Auto-respuesta enviada",
                             Map.of("id_conversacion", req.idConversacion, "respuesta", auto.get(), "auto", true)));
                 } else {
@@ -541,8 +788,12 @@ public class DeliveryApi {
             }
 
             try {
-                SOPORTE_REPO.asignarHumano(idConversacion, idSoporte);
-                SOPORTE_REPO.insertMensajeSoporte(idConversacion, idSoporte, mensaje);
+                UnitOfWork.transaccion(() -> {
+                    SOPORTE_REPO.asignarHumano(idConversacion, idSoporte);
+                    SOPORTE_REPO.insertMensajeSoporte(idConversacion, idSoporte, mensaje);
+                    return null;
+                });
+                SOPORTE_INBOX.asignada(idConversacion, idSoporte);
                 handleResponse(ctx,
                         ApiResponse.success(201, "Respuesta enviada", Map.of("id_conversacion", idConversacion)));
             } catch (SQLException e) {
@@ -560,6 +811,7 @@ public class DeliveryApi {
             }
             try {
                 SOPORTE_REPO.asignarHumano(req.idConversacion, req.idAgente);
+                SOPORTE_INBOX.asignada(req.idConversacion, req.idAgente);
                 handleResponse(ctx, ApiResponse.success(200, "Conversacion asignada",
                         Map.of("id_conversacion", req.idConversacion, "id_agente", req.idAgente)));
             } catch (SQLException e) {
@@ -574,6 +826,7 @@ public class DeliveryApi {
             }
             try {
                 SOPORTE_REPO.cerrarConversacion(req.idConversacion);
+                SOPORTE_INBOX.cerrada(req.idConversacion);
                 handleResponse(ctx, ApiResponse.success(200, "Conversacion cerrada",
                         Map.of("id_conversacion", req.idConversacion)));
             } catch (SQLException e) {
@@ -581,6 +834,21 @@ public class DeliveryApi {
             }
         });
 
+        // Bandeja del agente (long-poll): responde en cuanto la bandeja le
+        // asigna conversaciones o, sin trabajo, al cabo de ?espera segundos.
+        app.get("/soporte/agentes/{idAgente}/inbox", ctx -> {
+            int idAgente = parseId(ctx.pathParam("idAgente"));
+            if (!SOPORTE_INBOX.esAgente(idAgente)) {
+                throw new ApiException(403, "El usuario no es agente de soporte");
+            }
+            long espera = ctx.queryParamAsClass("espera", Long.class).getOrDefault(25L) * 1000L;
+            ctx.future(() -> SOPORTE_INBOX.esperarTrabajo(idAgente, espera)
+                    .thenAccept(asignadas -> handleResponse(ctx,
+                            ApiResponse.success(200, "Bandeja de soporte", asignadas))));
+        });
+        app.get("/admin/soporte/inbox", ctx -> handleResponse(ctx,
+                ApiResponse.success(200, "Bandeja de soporte", SOPORTE_INBOX.metricas())));
+
         // --- ADMIN SOPORTE: RESPUESTAS PREDEFINIDAS ---
         app.post("/admin/soporte/respuestas", ctx -> {
             Payloads.SoporteRespuestaPayload payload = ctx.bodyAsClass(Payloads.SoporteRespuestaPayload.class);
@@ -697,7 +965,7 @@ public class DeliveryApi {
 
         app.get("/chat/conversaciones/{id}/mensajes", ctx -> {
             var idConversacion = parseLong(ctx.pathParam("id"));
-            var mensajes = CHAT_REPOSITORY.listarMensajes(idConversacion);
+            var mensajes = CHAT_CACHE.listar(idConversacion, parseAfterId(ctx));
             handleResponse(ctx, ApiResponse.success(200, "Historial de mensajes", mensajes));
         });
 
@@ -707,21 +975,24 @@ public class DeliveryApi {
             // 1. Obtener el ID de la conversaciÃƒÂ³n. Prioriza el ID enviado por el cliente.
             // Si el cliente no envÃƒÂ­a un idConversacion (es nulo o 0), se busca o crea una
             // nueva.
-            long idConversacion = (req.idConversacion != null && req.idConversacion > 0) ? req.idConversacion
-                    : CHAT_REPOSITORY.ensureBotConversationForUser(req.idRemitente);
-
-            // 2. Guardar el mensaje del usuario
-            CHAT_REPOSITORY.insertMensaje(idConversacion, req.idRemitente, null, req.mensaje);
+            // 2. Guardar el mensaje del usuario. Conversacion y mensaje comparten
+            // conexion y transaccion; Gemini se llama despues, fuera de ella.
+            long idConversacion = UnitOfWork.transaccion(() -> {
+                long id = (req.idConversacion != null && req.idConversacion > 0) ? req.idConversacion
+                        : CHAT_REPOSITORY.ensureBotConversationForUser(req.idRemitente);
+                CHAT_REPOSITORY.insertMensaje(id, req.idRemitente, null, req.mensaje);
+                return id;
+            });
 
             // 3. Obtener el historial de la conversaciÃƒÂ³n para el contexto de la IA
-            List<Map<String, Object>> history = CHAT_REPOSITORY.listarMensajes(idConversacion);
+            List<ChatMensaje> history = CHAT_CACHE.listar(idConversacion, null);
 
             // 4. Generar la respuesta del bot
             String botReply = CHATBOT_RESPONDER.generateReply(req.mensaje, history, req.idRemitente);
 
             // 5. Guardar la respuesta del bot usando el usuario del bot
             try {
-                int botUserId = CHAT_REPOSITORY.ensureBotUser();
+                int botUserId = ReferenceData.getInstance().botChatId();
                 CHAT_REPOSITORY.insertMensaje(idConversacion, botUserId, req.idRemitente, botReply);
             } catch (SQLException e) {
                 throw new ApiException(500, "No se pudo registrar la respuesta del bot", e);
@@ -738,9 +1009,169 @@ public class DeliveryApi {
 
     // --- HELPERS ---
 
+    /**
+     * Calentamiento en segundo plano. Primero el pool y las migraciones (de
+     * ellos depende /ready); luego, en paralelo, los datos de referencia y el
+     * ranking de recomendaciones. Con {@code -Dappcds.training=true} el proceso
+     * termina al acabar, para que la JVM vuelque el archivo AppCDS.
+     */
+    private static void calentar() {
+        ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<Void> esquema = CompletableFuture
+                .runAsync(() -> faseArranque("pool", () -> {
+                    Database.ping();
+                    return null;
+                }), executor)
+                .thenRun(() -> faseArranque("migraciones", SchemaMigrator::migrar));
+        // Las caches son opcionales: si fallan se cargan en la primera peticion.
+        CompletableFuture<?> referencia = esquema
+                .thenRunAsync(() -> faseArranque("datos_referencia", () -> {
+                    ReferenceData.getInstance().cargar();
+                    return null;
+                }), executor)
+                .exceptionally(DeliveryApi::avisoCalentamiento);
+        esquema.thenRun(SOPORTE_INBOX::iniciar);
+        esquema.thenRun(PartitionManager::iniciar);
+        esquema.thenRun(ARCHIVADOR::iniciar);
+        esquema.thenRun(ANALITICA::iniciar);
+        esquema.thenRun(MAS_VENDIDOS::iniciar);
+        esquema.thenRun(ACTIVIDAD::iniciar);
+        CompletableFuture<?> ranking = esquema
+                .thenRunAsync(() -> faseArranque("ranking_recomendaciones",
+                        () -> RecomendacionRanking.getInstance().destacadasJson()), executor)
+                .exceptionally(DeliveryApi::avisoCalentamiento);
+
+        esquema.whenComplete((v, e) -> {
+            if (e != null) {
+                String causa = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                System.err.println("No se pudo preparar la base de datos: " + causa);
+                StartupState.marcarError(causa);
+            } else {
+                StartupState.marcarListo();
+            }
+        });
+        CompletableFuture.allOf(referencia, ranking).whenComplete((v, e) -> {
+            executor.shutdown();
+            if (Boolean.getBoolean("appcds.training")) {
+                System.out.println("Entrenamiento AppCDS completado, saliendo.");
+                System.exit(0);
+            }
+        });
+    }
+
+    private static void faseArranque(String nombre, java.util.concurrent.Callable<?> tarea) {
+        try {
+            StartupState.fase(nombre, tarea);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Void avisoCalentamiento(Throwable e) {
+        Throwable causa = e.getCause() != null ? e.getCause() : e;
+        System.err.println("Calentamiento incompleto: " + causa.getMessage());
+        return null;
+    }
+
+    // El JSON se escribe directamente en la respuesta, sin pasar por un String.
     private static void handleResponse(Context ctx, ApiResponse<?> response) {
         ctx.status(response.getStatus());
-        ctx.json(response);
+        ctx.contentType("application/json");
+        try {
+            String clave = claveCacheable(ctx, response.getStatus());
+            if (clave != null) {
+                // Recurso versionado: se guarda serializado y precomprimido.
+                byte[] json = JsonStreaming.aBytes(GSON, response, response.getClass());
+                enviarYGuardar(ctx, clave, CuerpoPrecomprimido.de(json, ctx));
+                return;
+            }
+            try (OutputStream out = HttpCompression.abrir(ctx)) {
+                JsonStreaming.escribir(GSON, response, response.getClass(), out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * GET condicional: si el cliente ya tiene la version actual del recurso
+     * ({@code If-None-Match}) responde 304, y si esa version ya se sirvio a
+     * otro cliente responde 200 con el cuerpo guardado en {@link ResponseCache};
+     * en ambos casos sin consultar la base de datos ni serializar nada. Si no,
+     * deja la clave en el contexto para que {@link #handleResponse} envie el
+     * ETag y guarde el cuerpo solo si la respuesta es 200.
+     *
+     * @return {@code true} si ya se respondio.
+     */
+    private static boolean respuestaCacheada(Context ctx, String recurso) {
+        String etag = VERSIONES.etag(recurso);
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            // Comparacion debil (RFC 9110): se ignora el prefijo W/.
+            for (String candidato : ifNoneMatch.split(",")) {
+                String valor = candidato.trim();
+                if (valor.startsWith("W/")) {
+                    valor = valor.substring(2);
+                }
+                if (valor.equals("*") || valor.equals(etag)) {
+                    cabecerasCache(ctx, etag);
+                    ctx.status(304);
+                    return true;
+                }
+            }
+        }
+        String clave = ResponseCache.clave(etag, ctx.path(), ctx.queryString());
+        CuerpoPrecomprimido cuerpo = RESPONSE_CACHE.obtener(clave);
+        if (cuerpo != null) {
+            ctx.status(200);
+            ctx.contentType("application/json");
+            cabecerasCache(ctx, etag);
+            HttpCompression.enviar(ctx, cuerpo);
+            return true;
+        }
+        ctx.attribute(ATRIBUTO_ETAG, etag);
+        ctx.attribute(ATRIBUTO_CLAVE_CACHE, clave);
+        return false;
+    }
+
+    private static void cabecerasCache(Context ctx, String etag) {
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", ResourceVersions.CACHE_CONTROL);
+    }
+
+    // Clave de cache si la respuesta es un 200 de un recurso versionado.
+    private static String claveCacheable(Context ctx, int status) {
+        String etag = ctx.attribute(ATRIBUTO_ETAG);
+        if (etag == null || status != 200) {
+            return null;
+        }
+        cabecerasCache(ctx, etag);
+        return ctx.attribute(ATRIBUTO_CLAVE_CACHE);
+    }
+
+    private static void enviarYGuardar(Context ctx, String clave, CuerpoPrecomprimido cuerpo) {
+        RESPONSE_CACHE.guardar(clave, cuerpo);
+        HttpCompression.enviar(ctx, cuerpo);
+    }
+
+    // Para respuestas que ya vienen serializadas (p. ej. rankings precalculados).
+    private static void handleJson(Context ctx, int status, String json) {
+        ctx.status(status);
+        ctx.contentType("application/json");
+        String clave = claveCacheable(ctx, status);
+        if (clave != null) {
+            enviarYGuardar(ctx, clave, CuerpoPrecomprimido.de(json, ctx));
+            return;
+        }
+        try (OutputStream out = HttpCompression.abrir(ctx)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private static Ubicacion toUbicacion(Payloads.UbicacionRequest r) {
@@ -774,6 +1205,31 @@ public class DeliveryApi {
         }
     }
 
+    // Fecha de los filtros de analitica: 2026-10-01 (inicio del dia) o 2026-10-01T14:00.
+    private static LocalDateTime parseFecha(String raw, LocalDateTime porDefecto) {
+        if (raw == null || raw.isBlank()) {
+            return porDefecto;
+        }
+        String texto = raw.trim();
+        try {
+            return texto.length() == 10 ? LocalDate.parse(texto).atStartOfDay() : LocalDateTime.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Fecha invalida: '" + texto + "' (usa AAAA-MM-DD o AAAA-MM-DDTHH:MM)");
+        }
+    }
+
+    // Identidad para la lectura-de-lo-escrito: cabecera X-User-Id o, si falta, la IP.
+    private static String usuarioDe(Context ctx) {
+        String usuario = ctx.header("X-User-Id");
+        return usuario != null && !usuario.isBlank() ? usuario.trim() : IpCliente.de(ctx);
+    }
+
+    // Cursor opcional ?afterId= para pedir solo los mensajes nuevos.
+    private static Long parseAfterId(Context ctx) {
+        String raw = ctx.queryParam("afterId");
+        return raw == null || raw.isBlank() ? null : parseLong(raw.trim());
+    }
+
     private static Integer parseNullableInt(Object value) {
         if (value == null) {
             return null;
@@ -0,0 +1,298 @@
+package com.mycompany.delivery.api.config;
+
+import com.mycompany.delivery.api.util.ApiException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Control de admision por prioridad. Cada ruta cae en un nivel
+ * ({@link Prioridad}); como mucho {@code ADMISSION_MAX_CONCURRENCY} (32)
+ * peticiones se atienden a la vez y las demas esperan en cola, primero las
+ * de mayor prioridad. Las no criticas no pueden ocupar las ultimas
+ * {@code ADMISSION_CRITICAL_RESERVE} (8) plazas: un pico de {@code /admin} o
+ * {@code /geocodificar} no deja sin hueco a los pings de los repartidores.
+ *
+ * <p>Al estilo CoDel, lo que se vigila es el tiempo en cola: si durante todo
+ * un {@code ADMISSION_INTERVAL_MS} (500) ninguna peticion no critica espera menos de
+ * {@code ADMISSION_TARGET_MS} (50), se empieza a rechazar la prioridad baja
+ * con 503 y {@code Retry-After}. Si la cola sigue sin bajar cuatro
+ * intervalos mas, tambien la normal. Las criticas nunca se descartan, solo
+ * caducan si esperan mas de {@code ADMISSION_CRITICAL_MAX_WAIT_MS} (5000); el
+ * resto a los {@code ADMISSION_MAX_WAIT_MS} (1000).
+ *
+ * <p>{@code /health}, {@code /ready}, {@code /admin/admision} y el long-poll de
+ * la bandeja de soporte no pasan por aqui.
+ * Para probarlo en local: {@code tools/load_harness.sh}.
+ */
+public final class AdmissionController {
+
+    public enum Prioridad {
+        CRITICA, NORMAL, BAJA
+    }
+
+    private static final int LIMITE = Math.max(1, getEnvInt("ADMISSION_MAX_CONCURRENCY", 32));
+    private static final int RESERVA_CRITICA =
+            Math.min(LIMITE - 1, Math.max(0, getEnvInt("ADMISSION_CRITICAL_RESERVE", 8)));
+    private static final long OBJETIVO_NS = TimeUnit.MILLISECONDS.toNanos(getEnvInt("ADMISSION_TARGET_MS", 50));
+    private static final long INTERVALO_NS = TimeUnit.MILLISECONDS.toNanos(getEnvInt("ADMISSION_INTERVAL_MS", 500));
+    private static final long ESPERA_MAX_NS = TimeUnit.MILLISECONDS.toNanos(getEnvInt("ADMISSION_MAX_WAIT_MS", 1000));
+    private static final long ESPERA_MAX_CRITICA_NS =
+            TimeUnit.MILLISECONDS.toNanos(getEnvInt("ADMISSION_CRITICAL_MAX_WAIT_MS", 5000));
+    // Cola acotada para lo no critico (entre normal y baja); debe quedar muy
+    // por debajo de los hilos de Jetty para que la cola sea esta y no la suya.
+    private static final int COLA_MAX = LIMITE * 2;
+
+    private static final List<Pattern> EXENTAS = List.of(
+            Pattern.compile("^/health$"),
+            Pattern.compile("^/ready$"),
+            Pattern.compile("^/admin/admision$"),
+            // Long-poll: ocupa la peticion ~25 s sin consumir hilo ni CPU.
+            Pattern.compile("^/soporte/agentes/\\d+/inbox$"));
+
+    // Escrituras que no pueden esperar: ubicacion del repartidor, pedidos y login.
+    private static final List<Pattern> CRITICAS = List.of(
+            Pattern.compile("^PUT /ubicaciones/repartidor/\\d+$"),
+            Pattern.compile("^POST /tracking/repartidores/ubicaciones$"),
+            Pattern.compile("^POST /pedidos$"),
+            Pattern.compile("^PUT /pedidos/\\d+/(estado|asignar)$"),
+            Pattern.compile("^POST /(auth/)?login$"));
+
+    // Informes, geocodificacion y bot: caros y aplazables.
+    private static final List<Pattern> BAJAS = List.of(
+            Pattern.compile("^[A-Z]+ /admin/.*$"),
+            Pattern.compile("^POST /geocodificar$"),
+            Pattern.compile("^GET /negocios/\\d+/stats$"),
+            Pattern.compile("^GET /delivery/stats/\\d+$"),
+            Pattern.compile("^POST /chat/bot/mensajes$"));
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Condition[] TURNO = new Condition[Prioridad.values().length];
+    private static final int[] ESPERANDO = new int[Prioridad.values().length];
+    private static final int[] EN_CURSO = new int[Prioridad.values().length];
+    private static final long[] ADMITIDAS = new long[Prioridad.values().length];
+    private static final long[] DESCARTADAS = new long[Prioridad.values().length];
+    private static final long[] CADUCADAS = new long[Prioridad.values().length];
+    private static final long[] ESPERA_TOTAL_NS = new long[Prioridad.values().length];
+    private static final long[] ESPERA_MAX_VISTA_NS = new long[Prioridad.values().length];
+
+    private static int enCurso;
+    // Estado CoDel (nanoTime; 0 = sin marca).
+    private static long sobreObjetivoDesde;
+    private static long descartandoDesde;
+    private static long ultimaMuestra;
+
+    static {
+        for (Prioridad p : Prioridad.values()) {
+            TURNO[p.ordinal()] = LOCK.newCondition();
+        }
+    }
+
+    private AdmissionController() {
+    }
+
+    /**
+     * Nivel de la ruta, o {@code null} si no pasa por el control.
+     */
+    public static Prioridad clasificar(String metodo, String ruta) {
+        for (Pattern p : EXENTAS) {
+            if (p.matcher(ruta).matches()) {
+                return null;
+            }
+        }
+        String clave = metodo + " " + ruta;
+        for (Pattern p : CRITICAS) {
+            if (p.matcher(clave).matches()) {
+                return Prioridad.CRITICA;
+            }
+        }
+        for (Pattern p : BAJAS) {
+            if (p.matcher(clave).matches()) {
+                return Prioridad.BAJA;
+            }
+        }
+        return Prioridad.NORMAL;
+    }
+
+    /**
+     * Espera turno para la peticion. Cada admision debe cerrarse con
+     * {@link #liberar(Prioridad)}.
+     *
+     * @throws ApiException 503 con {@code Retry-After} si se descarta o caduca.
+     */
+    public static void admitir(Prioridad prioridad) {
+        int i = prioridad.ordinal();
+        long llegada = System.nanoTime();
+        LOCK.lock();
+        try {
+            if (prioridad != Prioridad.CRITICA && (descartando(prioridad, llegada) || colaNoCriticaLlena())) {
+                DESCARTADAS[i]++;
+                throw rechazo(prioridad);
+            }
+            long limite = llegada + (prioridad == Prioridad.CRITICA ? ESPERA_MAX_CRITICA_NS : ESPERA_MAX_NS);
+            ESPERANDO[i]++;
+            try {
+                while (!hayHueco(prioridad)) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        CADUCADAS[i]++;
+                        throw rechazo(prioridad);
+                    }
+                    TURNO[i].awaitNanos(restante);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CADUCADAS[i]++;
+                throw rechazo(prioridad);
+            } finally {
+                ESPERANDO[i]--;
+                if (ESPERANDO[i] == 0) {
+                    despertar(); // Puede que un nivel inferior esperase solo por esta cola.
+                }
+            }
+            enCurso++;
+            EN_CURSO[i]++;
+            ADMITIDAS[i]++;
+            long ahora = System.nanoTime();
+            long espera = ahora - llegada;
+            ESPERA_TOTAL_NS[i] += espera;
+            ESPERA_MAX_VISTA_NS[i] = Math.max(ESPERA_MAX_VISTA_NS[i], espera);
+            if (prioridad != Prioridad.CRITICA) {
+                registrarEspera(espera, ahora);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static void liberar(Prioridad prioridad) {
+        LOCK.lock();
+        try {
+            enCurso--;
+            EN_CURSO[prioridad.ordinal()]--;
+            despertar();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    // Se despierta solo al nivel mas prioritario que tenga cola.
+    private static void despertar() {
+        for (Prioridad p : Prioridad.values()) {
+            if (ESPERANDO[p.ordinal()] > 0) {
+                TURNO[p.ordinal()].signalAll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Estado por nivel (en curso, en cola, admitidas, descartadas, caducadas y
+     * espera media/maxima) y si se esta descartando.
+     */
+    public static Map<String, Object> metricas() {
+        LOCK.lock();
+        try {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("limite", LIMITE);
+            out.put("reserva_critica", RESERVA_CRITICA);
+            out.put("objetivo_ms", TimeUnit.NANOSECONDS.toMillis(OBJETIVO_NS));
+            out.put("en_curso", enCurso);
+            long ahora = System.nanoTime();
+            out.put("descartando", descartando(Prioridad.BAJA, ahora));
+            out.put("descartando_normal", descartando(Prioridad.NORMAL, ahora));
+            Map<String, Object> niveles = new LinkedHashMap<>();
+            for (Prioridad p : Prioridad.values()) {
+                int i = p.ordinal();
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("en_curso", EN_CURSO[i]);
+                m.put("esperando", ESPERANDO[i]);
+                m.put("admitidas", ADMITIDAS[i]);
+                m.put("descartadas", DESCARTADAS[i]);
+                m.put("caducadas", CADUCADAS[i]);
+                m.put("espera_media_ms", ADMITIDAS[i] > 0
+                        ? Math.round(ESPERA_TOTAL_NS[i] / (double) ADMITIDAS[i] / 10_000.0) / 100.0 : 0.0);
+                m.put("espera_max_ms", Math.round(ESPERA_MAX_VISTA_NS[i] / 10_000.0) / 100.0);
+                niveles.put(p.name().toLowerCase(), m);
+            }
+            out.put("niveles", niveles);
+            return out;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static boolean colaNoCriticaLlena() {
+        return ESPERANDO[Prioridad.NORMAL.ordinal()] + ESPERANDO[Prioridad.BAJA.ordinal()] >= COLA_MAX;
+    }
+
+    private static boolean hayHueco(Prioridad prioridad) {
+        int limite = prioridad == Prioridad.CRITICA ? LIMITE : LIMITE - RESERVA_CRITICA;
+        if (enCurso >= limite) {
+            return false;
+        }
+        for (int i = 0; i < prioridad.ordinal(); i++) {
+            if (ESPERANDO[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Solo cuentan las esperas no criticas: las criticas tienen plazas
+    // reservadas y casi nunca esperan, asi que ocultarian la cola.
+    // Cualquier espera por debajo del objetivo sale del modo descarte.
+    private static void registrarEspera(long espera, long ahora) {
+        ultimaMuestra = ahora;
+        if (espera < OBJETIVO_NS) {
+            sobreObjetivoDesde = 0;
+            descartandoDesde = 0;
+        } else if (sobreObjetivoDesde == 0) {
+            sobreObjetivoDesde = ahora;
+        } else if (descartandoDesde == 0 && ahora - sobreObjetivoDesde >= INTERVALO_NS) {
+            descartandoDesde = ahora;
+            System.err.println("⚠️ Cola de peticiones por encima de " + TimeUnit.NANOSECONDS.toMillis(OBJETIVO_NS)
+                    + " ms: se descarta la prioridad baja");
+        }
+    }
+
+    private static boolean descartando(Prioridad prioridad, long ahora) {
+        if (descartandoDesde == 0) {
+            return false;
+        }
+        // Sin muestras recientes no hay cola: se vuelve a admitir para medir.
+        if (ahora - ultimaMuestra >= INTERVALO_NS) {
+            sobreObjetivoDesde = 0;
+            descartandoDesde = 0;
+            return false;
+        }
+        return switch (prioridad) {
+            case BAJA -> true;
+            case NORMAL -> ahora - descartandoDesde >= 4 * INTERVALO_NS;
+            case CRITICA -> false;
+        };
+    }
+
+    private static ApiException rechazo(Prioridad prioridad) {
+        Duration reintento = Duration.ofSeconds(prioridad == Prioridad.BAJA ? 5 : 1);
+        return new ApiException(503, "Servicio saturado, reintente en unos segundos", reintento);
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
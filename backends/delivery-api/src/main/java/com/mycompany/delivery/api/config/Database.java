@@ -2,42 +2,69 @@ package com.mycompany.delivery.api.config;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Gestiona el pool HikariCP reutilizado por toda la API.
+ * Gestiona los pools HikariCP de la API, uno por tipo de carga ({@link DbPool}).
  * Centralizar aquí la reconexión evita fugas de conexiones y mejora la estabilidad.
  */
 public final class Database {
 
     private static final Object LOCK = new Object();
-    private static HikariDataSource dataSource;
+    // Cada pool se crea en su primera peticion de conexion (o en el
+    // calentamiento), no al cargar la clase, para no bloquear la apertura del puerto.
+    private static final Map<DbPool, HikariDataSource> POOLS = new ConcurrentHashMap<>();
+    private static final Map<DbPool, AtomicLong> ESPERAS_AGOTADAS = new EnumMap<>(DbPool.class);
 
     static {
-        initialiseDataSource();
+        for (DbPool pool : DbPool.values()) {
+            ESPERAS_AGOTADAS.put(pool, new AtomicLong());
+        }
     }
 
     private Database() {
     }
 
-    private static void initialiseDataSource() {
+    private static HikariDataSource initialiseDataSource(DbPool pool) {
         HikariConfig config = new HikariConfig();
-        // Permitimos sobreescribir la configuración vía variables de entorno para despliegues seguros.
-        config.setJdbcUrl(getEnv("DB_URL", "jdbc:postgresql://ep-quiet-thunder-ady30ys2-pooler.c-2.us-east-1.aws.neon.tech:5432/neondb?sslmode=require"));
-        config.setUsername(getEnv("DB_USER", "neondb_owner"));
-        config.setPassword(getEnv("DB_PASSWORD", "npg_2YaqWcHBVzO6"));
-        config.addDataSourceProperty("maximumPoolSize", getEnv("DB_POOL_SIZE", "10"));
+        config.setPoolName(pool.nombre());
+        config.setJdbcUrl(url());
+        config.setUsername(usuario());
+        config.setPassword(contrasena());
+        config.setMaximumPoolSize(pool.tamano());
+        config.setMinimumIdle(pool.minimoInactivas());
+        config.setConnectionTimeout(pool.connectionTimeoutMs());
+        config.setConnectionInitSql("SET statement_timeout = " + pool.statementTimeoutMs());
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
 
-        if (dataSource != null) {
-            dataSource.close();
-        }
+        HikariDataSource dataSource = new HikariDataSource(config);
+        System.out.println("✅ Pool de conexiones '" + pool.nombre() + "' inicializado (max "
+                + pool.tamano() + ", statement_timeout " + pool.statementTimeoutMs() + " ms).");
+        return dataSource;
+    }
+
+    // Permitimos sobreescribir la configuración vía variables de entorno para despliegues seguros.
+    private static String url() {
+        return getEnv("DB_URL", "jdbc:postgresql://ep-quiet-thunder-ady30ys2-pooler.c-2.us-east-1.aws.neon.tech:5432/neondb?sslmode=require");
+    }
 
-        dataSource = new HikariDataSource(config);
-        System.out.println("✅ Pool de conexiones inicializado/reiniciado correctamente.");
+    private static String usuario() {
+        return getEnv("DB_USER", "neondb_owner");
+    }
+
+    private static String contrasena() {
+        return getEnv("DB_PASSWORD", "npg_2YaqWcHBVzO6");
     }
 
     private static String getEnv(String key, String fallback) {
@@ -45,34 +72,120 @@ public final class Database {
         return value == null || value.isBlank() ? fallback : value;
     }
 
-    private static void ensureDataSource() {
+    private static HikariDataSource ensureDataSource(DbPool pool) {
+        HikariDataSource actual = POOLS.get(pool);
+        if (actual != null && !actual.isClosed()) {
+            return actual;
+        }
         synchronized (LOCK) {
-            if (dataSource == null || dataSource.isClosed()) {
+            actual = POOLS.get(pool);
+            if (actual == null || actual.isClosed()) {
                 // Intentamos reconstruir el pool si se cerró o falló.
-                initialiseDataSource();
+                actual = initialiseDataSource(pool);
+                POOLS.put(pool, actual);
             }
+            return actual;
         }
     }
 
     /**
-     * Obtiene una conexión válida del pool.
+     * Obtiene una conexión válida del pool transaccional. Dentro de una
+     * {@link UnitOfWork} devuelve la conexión compartida de la unidad.
      */
     public static Connection getConnection() throws SQLException {
-        ensureDataSource();
-        return dataSource.getConnection();
+        return getConnection(DbPool.TRANSACCIONAL);
+    }
+
+    /**
+     * Obtiene una conexión del pool indicado (o la compartida de la
+     * {@link UnitOfWork} activa, o la réplica si la ruta es de solo lectura).
+     */
+    public static Connection getConnection(DbPool pool) throws SQLException {
+        Connection compartida = UnitOfWork.conexionActual(pool);
+        if (compartida != null) {
+            return compartida;
+        }
+        if (ReplicaRouter.lecturaEnHilo()) {
+            Connection lectura = ReplicaRouter.conexionLectura();
+            if (lectura != null) {
+                return lectura;
+            }
+        }
+        return abrirConexion(pool);
+    }
+
+    /**
+     * Conexión para consultas de solo lectura que toleran unos segundos de
+     * retraso (informes, dashboards). Usa la réplica si está disponible.
+     */
+    public static Connection getReadConnection(DbPool pool) throws SQLException {
+        if (!UnitOfWork.activa()) {
+            Connection lectura = ReplicaRouter.conexionLectura();
+            if (lectura != null) {
+                return lectura;
+            }
+        }
+        return getConnection(pool);
+    }
+
+    /**
+     * Conexión nueva fuera de los pools, sin el statement_timeout que aplican
+     * (para migraciones y otras operaciones largas). Quien la pide la cierra.
+     */
+    public static Connection abrirConexionDirecta() throws SQLException {
+        return DriverManager.getConnection(url(), usuario(), contrasena());
+    }
+
+    static Connection abrirConexion(DbPool pool) throws SQLException {
+        try {
+            return ensureDataSource(pool).getConnection();
+        } catch (SQLTransientConnectionException e) {
+            ESPERAS_AGOTADAS.get(pool).incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Estado de cada pool (conexiones activas, inactivas, hilos esperando y
+     * esperas agotadas) para el endpoint de métricas.
+     */
+    public static Map<String, Object> metricas() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (DbPool pool : DbPool.values()) {
+            HikariDataSource ds = POOLS.get(pool);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("max", pool.tamano());
+            m.put("statement_timeout_ms", pool.statementTimeoutMs());
+            m.put("esperas_agotadas", ESPERAS_AGOTADAS.get(pool).get());
+            HikariPoolMXBean mx = ds != null && !ds.isClosed() ? ds.getHikariPoolMXBean() : null;
+            if (mx != null) {
+                m.put("activas", mx.getActiveConnections());
+                m.put("inactivas", mx.getIdleConnections());
+                m.put("total", mx.getTotalConnections());
+                m.put("hilos_esperando", mx.getThreadsAwaitingConnection());
+            } else {
+                m.put("iniciado", false);
+            }
+            out.put(pool.nombre(), m);
+        }
+        return out;
     }
 
     /**
      * Verifica el estado de la conexión para detectar fallos tempranamente.
+     * Inicializa los pools transaccional y de tracking (los críticos); el
+     * resto se crea con su primer uso.
      */
     public static void ping() {
-        try (Connection connection = getConnection()) {
-            if (!connection.isValid(5)) {
-                throw new SQLException("Conexión devuelta por el pool no es válida");
+        for (DbPool pool : new DbPool[] { DbPool.TRANSACCIONAL, DbPool.TRACKING }) {
+            try (Connection connection = abrirConexion(pool)) {
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Conexión devuelta por el pool no es válida");
+                }
+            } catch (SQLException e) {
+                System.err.println("❌ Fallo al verificar la base de datos: " + e.getMessage());
+                throw new RuntimeException("No se pudo establecer conexión estable con PostgreSQL", e);
             }
-        } catch (SQLException e) {
-            System.err.println("❌ Fallo al verificar la base de datos: " + e.getMessage());
-            throw new RuntimeException("No se pudo establecer conexión estable con PostgreSQL", e);
         }
     }
 }
@@ -0,0 +1,74 @@
+package com.mycompany.delivery.api.config;
+
+/**
+ * Pools de conexiones separados por tipo de carga (bulkheads). Cada uno tiene
+ * su tamano, statement_timeout y tiempo maximo de espera por una conexion, de
+ * modo que una consulta analitica lenta no pueda dejar sin conexiones a los
+ * pings de ubicacion de los repartidores.
+ *
+ * <p>Variables: {@code DB_POOL_<NOMBRE>_SIZE}, {@code _MIN_IDLE},
+ * {@code _STATEMENT_TIMEOUT_MS} y {@code _CONNECTION_TIMEOUT_MS}. El pool
+ * transaccional mantiene {@code DB_POOL_SIZE} como alias de su tamano.
+ */
+public enum DbPool {
+
+    /** Pings de ubicacion y lecturas de tracking: muchas, cortas y urgentes. */
+    TRACKING(4, 1, 2_000, 1_000),
+    /** Pedidos, usuarios, productos: el pool por defecto. */
+    TRANSACCIONAL(10, 10, 10_000, 5_000),
+    /** Chat y soporte. */
+    CHAT(4, 1, 5_000, 3_000),
+    /** Dashboards y estadisticas: pocas conexiones, consultas largas. */
+    ANALITICA(2, 0, 30_000, 10_000);
+
+    private final int tamano;
+    private final int minimoInactivas;
+    private final long statementTimeoutMs;
+    private final long connectionTimeoutMs;
+
+    DbPool(int tamano, int minimoInactivas, long statementTimeoutMs, long connectionTimeoutMs) {
+        this.tamano = tamano;
+        this.minimoInactivas = minimoInactivas;
+        this.statementTimeoutMs = statementTimeoutMs;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public String nombre() {
+        return name().toLowerCase();
+    }
+
+    int tamano() {
+        int porDefecto = this == TRANSACCIONAL ? getEnvInt("DB_POOL_SIZE", tamano) : tamano;
+        return Math.max(1, getEnvInt(prefijo() + "SIZE", porDefecto));
+    }
+
+    int minimoInactivas() {
+        int porDefecto = this == TRANSACCIONAL ? tamano() : minimoInactivas;
+        return Math.min(tamano(), Math.max(0, getEnvInt(prefijo() + "MIN_IDLE", porDefecto)));
+    }
+
+    long statementTimeoutMs() {
+        return getEnvInt(prefijo() + "STATEMENT_TIMEOUT_MS", (int) statementTimeoutMs);
+    }
+
+    long connectionTimeoutMs() {
+        // Hikari no acepta menos de 250 ms.
+        return Math.max(250, getEnvInt(prefijo() + "CONNECTION_TIMEOUT_MS", (int) connectionTimeoutMs));
+    }
+
+    private String prefijo() {
+        return "DB_POOL_" + name() + "_";
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.mycompany.delivery.api.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mantenimiento de las tablas particionadas por mes (migracion V5):
+ * {@code tracking_ruta} por {@code registrado_en} y {@code chat_mensajes} por
+ * {@code created_at}.
+ *
+ * <ul>
+ * <li>Crea con antelacion las particiones de los proximos
+ * {@code PARTITION_MONTHS_AHEAD} meses ({@code <tabla>_pAAAAMM}), para que las
+ * inserciones nunca caigan en la particion por defecto.</li>
+ * <li>Retira las particiones cuyo rango termina antes del mes actual menos la
+ * retencion de la tabla ({@code TRACKING_RETENTION_MONTHS},
+ * {@code CHAT_RETENTION_MONTHS}; 0 la desactiva): se desadjuntan y se mueven
+ * al esquema {@code archivo} o se borran, segun
+ * {@code PARTITION_RETENTION_MODE=archive|drop}. Retirar un mes entero es un
+ * cambio de catalogo, sin DELETE ni vacuum sobre la tabla viva.</li>
+ * </ul>
+ *
+ * Corre al arrancar, despues de las migraciones, y luego cada
+ * {@code PARTITION_MAINTENANCE_MINUTES}. Un advisory lock evita que varios
+ * nodos lo hagan a la vez. Se desactiva con {@code DB_PARTITIONS=false}.
+ */
+public final class PartitionManager {
+
+    private static final boolean HABILITADO = !"false".equalsIgnoreCase(System.getenv("DB_PARTITIONS"));
+    private static final int MESES_ADELANTE = (int) getEnvLong("PARTITION_MONTHS_AHEAD", 3);
+    private static final boolean BORRAR = "drop".equalsIgnoreCase(getEnv("PARTITION_RETENTION_MODE", "archive"));
+    private static final String ESQUEMA_ARCHIVO = getEnv("PARTITION_ARCHIVE_SCHEMA", "archivo");
+    private static final long INTERVALO_MIN = getEnvLong("PARTITION_MAINTENANCE_MINUTES", 360);
+    private static final String LOCK_TIMEOUT = "5s";
+
+    private static final List<Tabla> TABLAS = List.of(
+            new Tabla("tracking_ruta", "registrado_en", (int) getEnvLong("TRACKING_RETENTION_MONTHS", 6)),
+            new Tabla("chat_mensajes", "created_at", (int) getEnvLong("CHAT_RETENTION_MONTHS", 24)));
+
+    // Clave fija para pg_try_advisory_lock, distinta de la de SchemaMigrator.
+    private static final long LOCK_KEY = 0x7061727469636e73L;
+    private static final DateTimeFormatter SUFIJO = DateTimeFormatter.ofPattern("yyyyMM", Locale.ROOT);
+    private static final Pattern RANGO = Pattern.compile("FOR VALUES FROM \\((.+)\\) TO \\((.+)\\)");
+
+    private static ScheduledExecutorService hilo;
+    private static volatile long ultimaEjecucion;
+    private static volatile long ultimaDuracionMs;
+    private static volatile String ultimoError;
+    private static volatile int creadas;
+    private static volatile int retiradas;
+
+    private PartitionManager() {
+    }
+
+    public static synchronized void iniciar() {
+        if (!HABILITADO || hilo != null) {
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "particiones");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(PartitionManager::mantener, 0, INTERVALO_MIN, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Una pasada de mantenimiento sobre todas las tablas. Los fallos se
+     * registran y se reintentan en la siguiente pasada.
+     */
+    public static synchronized void mantener() {
+        long inicio = System.nanoTime();
+        try (Connection conn = Database.getConnection()) {
+            if (!bloquear(conn, "pg_try_advisory_lock")) {
+                return; // Otro nodo esta en ello.
+            }
+            try {
+                LocalDate mesActual = mesActual(conn);
+                List<String> errores = new ArrayList<>();
+                for (Tabla tabla : TABLAS) {
+                    if (!esParticionada(conn, tabla.nombre())) {
+                        continue;
+                    }
+                    crearFuturas(conn, tabla, mesActual, errores);
+                    retirarAntiguas(conn, tabla, mesActual, errores);
+                }
+                ultimoError = errores.isEmpty() ? null : String.join("; ", errores);
+            } finally {
+                bloquear(conn, "pg_advisory_unlock");
+            }
+        } catch (SQLException | RuntimeException e) {
+            ultimoError = e.getMessage();
+            System.err.println("Mantenimiento de particiones fallido: " + e.getMessage());
+        } finally {
+            ultimaEjecucion = System.currentTimeMillis();
+            ultimaDuracionMs = (System.nanoTime() - inicio) / 1_000_000L;
+        }
+    }
+
+    private static void crearFuturas(Connection conn, Tabla tabla, LocalDate mesActual, List<String> errores)
+            throws SQLException {
+        List<Particion> existentes = particiones(conn, tabla.nombre());
+        for (int i = 0; i <= MESES_ADELANTE; i++) {
+            LocalDate desde = mesActual.plusMonths(i);
+            LocalDate hasta = desde.plusMonths(1);
+            if (existentes.stream().anyMatch(p -> p.solapa(desde, hasta))) {
+                continue;
+            }
+            String nombre = tabla.nombre() + "_p" + desde.format(SUFIJO);
+            String ddl = "CREATE TABLE IF NOT EXISTS " + nombre + " PARTITION OF " + tabla.nombre()
+                    + " FOR VALUES FROM ('" + desde + "') TO ('" + hasta + "')";
+            if (ejecutar(conn, errores, nombre, ddl)) {
+                creadas++;
+                System.out.println("Particion creada: " + nombre);
+            }
+        }
+    }
+
+    private static void retirarAntiguas(Connection conn, Tabla tabla, LocalDate mesActual, List<String> errores)
+            throws SQLException {
+        if (tabla.retencionMeses() <= 0) {
+            return;
+        }
+        LocalDate corte = mesActual.minusMonths(tabla.retencionMeses());
+        for (Particion p : particiones(conn, tabla.nombre())) {
+            if (p.hasta() == null || p.hasta().isAfter(corte)) {
+                continue;
+            }
+            String detach = "ALTER TABLE " + tabla.nombre() + " DETACH PARTITION " + p.nombre();
+            String destino = BORRAR
+                    ? "DROP TABLE " + p.nombre()
+                    : "CREATE SCHEMA IF NOT EXISTS " + ESQUEMA_ARCHIVO + "; ALTER TABLE " + p.nombre()
+                            + " SET SCHEMA " + ESQUEMA_ARCHIVO;
+            if (ejecutar(conn, errores, p.nombre(), detach + "; " + destino)) {
+                retiradas++;
+                System.out.println("Particion retirada (" + (BORRAR ? "borrada" : "archivada en " + ESQUEMA_ARCHIVO)
+                        + "): " + p.nombre());
+            }
+        }
+    }
+
+    // Cada cambio va en su propia transaccion con lock_timeout: si la tabla
+    // esta ocupada se desiste y se reintenta en la siguiente pasada en lugar
+    // de encolar las escrituras de la aplicacion detras del DDL.
+    private static boolean ejecutar(Connection conn, List<String> errores, String particion, String ddl)
+            throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+            st.execute(ddl);
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            conn.rollback();
+            errores.add(particion + ": " + e.getMessage());
+            System.err.println("No se pudo mantener la particion " + particion + ": " + e.getMessage());
+            return false;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Estado de las particiones de cada tabla y de la ultima pasada.
+     */
+    public static Map<String, Object> metricas() throws SQLException {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", HABILITADO);
+        datos.put("meses_adelante", MESES_ADELANTE);
+        datos.put("modo_retencion", BORRAR ? "drop" : "archive");
+        datos.put("ultima_ejecucion", ultimaEjecucion);
+        datos.put("ultima_duracion_ms", ultimaDuracionMs);
+        datos.put("ultimo_error", ultimoError);
+        datos.put("creadas", creadas);
+        datos.put("retiradas", retiradas);
+        List<Map<String, Object>> tablas = new ArrayList<>();
+        try (Connection conn = Database.getConnection()) {
+            for (Tabla tabla : TABLAS) {
+                Map<String, Object> t = new LinkedHashMap<>();
+                t.put("tabla", tabla.nombre());
+                t.put("columna", tabla.columna());
+                t.put("retencion_meses", tabla.retencionMeses());
+                t.put("particionada", esParticionada(conn, tabla.nombre()));
+                List<Map<String, Object>> lista = new ArrayList<>();
+                for (Particion p : particiones(conn, tabla.nombre())) {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("nombre", p.nombre());
+                    m.put("desde", p.defecto() ? "DEFAULT" : p.desde() == null ? "MINVALUE" : p.desde().toString());
+                    m.put("hasta", p.defecto() ? "DEFAULT" : p.hasta() == null ? "MAXVALUE" : p.hasta().toString());
+                    m.put("filas_estimadas", Math.max(0, p.filasEstimadas()));
+                    m.put("bytes", p.bytes());
+                    lista.add(m);
+                }
+                t.put("particiones", lista);
+                tablas.add(t);
+            }
+        }
+        datos.put("tablas", tablas);
+        return datos;
+    }
+
+    private static List<Particion> particiones(Connection conn, String tabla) throws SQLException {
+        String sql = """
+                SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS rango,
+                       c.reltuples::bigint AS filas, pg_total_relation_size(c.oid) AS bytes
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(?)
+                ORDER BY c.relname
+                """;
+        List<Particion> lista = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tabla);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String rango = rs.getString("rango");
+                    Matcher m = RANGO.matcher(rango);
+                    boolean defecto = !m.matches();
+                    lista.add(new Particion(rs.getString("relname"), defecto,
+                            defecto ? null : limite(m.group(1)), defecto ? null : limite(m.group(2)),
+                            rs.getLong("filas"), rs.getLong("bytes")));
+                }
+            }
+        }
+        return lista;
+    }
+
+    // 'AAAA-MM-DD 00:00:00' -> fecha; MINVALUE/MAXVALUE -> null.
+    private static LocalDate limite(String valor) {
+        String v = valor.trim();
+        if (!v.startsWith("'")) {
+            return null;
+        }
+        return LocalDate.parse(v.substring(1, 11));
+    }
+
+    private static boolean esParticionada(Connection conn, String tabla) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))")) {
+            ps.setString(1, tabla);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    // Mes en curso segun el reloj de la base, el mismo que usa NOW() al insertar.
+    private static LocalDate mesActual(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT date_trunc('month', now())::date");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getDate(1).toLocalDate();
+        }
+    }
+
+    private static boolean bloquear(Connection conn, String funcion) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT " + funcion + "(?)")) {
+            ps.setLong(1, LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private record Tabla(String nombre, String columna, int retencionMeses) {
+    }
+
+    /**
+     * Rango [desde, hasta) de una particion; {@code null} es MINVALUE/MAXVALUE.
+     */
+    private record Particion(String nombre, boolean defecto, LocalDate desde, LocalDate hasta,
+            long filasEstimadas, long bytes) {
+
+        boolean solapa(LocalDate inicio, LocalDate fin) {
+            return !defecto && (desde == null || desde.isBefore(fin)) && (hasta == null || hasta.isAfter(inicio));
+        }
+    }
+
+    private static String getEnv(String key, String fallback) {
+        String value = System.getenv(key);
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.mycompany.delivery.api.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Enrutado de lecturas a una replica de PostgreSQL ({@code DB_REPLICA_URL}).
+ * Sin esa variable todo sigue yendo al primario.
+ *
+ * <ul>
+ * <li>Las rutas GET de solo lectura marcan el hilo de la peticion para que
+ * {@link Database#getConnection()} entregue una conexion de la replica.</li>
+ * <li>Tras una escritura, el mismo usuario ({@code X-User-Id} o IP) lee del
+ * primario durante {@code DB_REPLICA_STICKY_MS} para ver sus propios cambios.</li>
+ * <li>Un monitor mide el retraso de la replica cada pocos segundos; si supera
+ * {@code DB_REPLICA_MAX_LAG_MS} o falla, las lecturas vuelven al primario.</li>
+ * </ul>
+ *
+ * Las rutas cuya respuesta se guarda en {@code ResponseCache} con un ETag, o
+ * que recargan caches compartidas (ranking de recomendaciones, datos de
+ * referencia), no van a la replica: una lectura atrasada quedaria guardada
+ * bajo la version que la escritura acaba de publicar. Esas recargas usan
+ * {@link #enPrimario} aunque las dispare otra ruta.
+ *
+ * Para probarlo en local basta con dos instancias de PostgreSQL (la segunda en
+ * streaming o replicacion logica) y {@code DB_REPLICA_URL} apuntando a ella.
+ */
+public final class ReplicaRouter {
+
+    private static final String REPLICA_URL = System.getenv("DB_REPLICA_URL");
+    private static final long STICKY_MS = getEnvLong("DB_REPLICA_STICKY_MS", 5_000);
+    private static final long MAX_LAG_MS = getEnvLong("DB_REPLICA_MAX_LAG_MS", 2_000);
+    private static final long INTERVALO_MONITOR_MS = getEnvLong("DB_REPLICA_CHECK_MS", 2_000);
+
+    // GET que toleran datos con unos segundos de retraso y no llenan caches.
+    private static final List<Pattern> RUTAS_LECTURA = List.of(
+            Pattern.compile("^/pedidos/cliente/\\d+$"),
+            Pattern.compile("^/negocios/\\d+/stats$"),
+            Pattern.compile("^/delivery/stats/\\d+$"),
+            Pattern.compile("^/admin/productos$"));
+
+    private static final ThreadLocal<Boolean> LECTURA = new ThreadLocal<>();
+    private static final Map<String, Long> ULTIMA_ESCRITURA = new ConcurrentHashMap<>();
+    private static final Object LOCK = new Object();
+
+    private static volatile HikariDataSource replica;
+    private static volatile boolean sana;
+    private static volatile long retrasoMs = -1;
+    private static ScheduledExecutorService monitor;
+
+    private ReplicaRouter() {
+    }
+
+    public static boolean habilitada() {
+        return REPLICA_URL != null && !REPLICA_URL.isBlank();
+    }
+
+    public static boolean esRutaLectura(String metodo, String ruta) {
+        if (!"GET".equals(metodo)) {
+            return false;
+        }
+        for (Pattern p : RUTAS_LECTURA) {
+            if (p.matcher(ruta).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inicio de peticion: decide si el hilo lee de la replica.
+     */
+    public static void iniciarPeticion(String metodo, String ruta, String usuario) {
+        if (!habilitada()) {
+            return;
+        }
+        if (esRutaLectura(metodo, ruta)) {
+            Long escritura = usuario != null ? ULTIMA_ESCRITURA.get(usuario) : null;
+            boolean reciente = escritura != null && System.currentTimeMillis() - escritura < STICKY_MS;
+            LECTURA.set(!reciente);
+        } else if (!"GET".equals(metodo) && !"HEAD".equals(metodo) && !"OPTIONS".equals(metodo) && usuario != null) {
+            long ahora = System.currentTimeMillis();
+            ULTIMA_ESCRITURA.put(usuario, ahora);
+            if (ULTIMA_ESCRITURA.size() > 10_000) {
+                ULTIMA_ESCRITURA.values().removeIf(t -> ahora - t >= STICKY_MS);
+            }
+        }
+    }
+
+    public static void finalizarPeticion() {
+        LECTURA.remove();
+    }
+
+    /**
+     * Ejecuta el trabajo contra el primario aunque la peticion en curso lea de
+     * la replica (recargas de caches compartidas o escrituras ocasionales).
+     */
+    public static <T> T enPrimario(UnitOfWork.SqlWork<T> trabajo) throws SQLException {
+        Boolean anterior = LECTURA.get();
+        if (anterior == null) {
+            return trabajo.run();
+        }
+        LECTURA.set(Boolean.FALSE);
+        try {
+            return trabajo.run();
+        } finally {
+            LECTURA.set(anterior);
+        }
+    }
+
+    static boolean lecturaEnHilo() {
+        return Boolean.TRUE.equals(LECTURA.get());
+    }
+
+    /**
+     * Conexion de la replica si esta habilitada y al dia; si no, {@code null}
+     * para que el llamador use el primario.
+     */
+    static Connection conexionLectura() {
+        if (!habilitada()) {
+            return null;
+        }
+        asegurarPool();
+        if (!sana) {
+            return null;
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            System.err.println("Replica no disponible, se usa el primario: " + e.getMessage());
+            sana = false;
+            return null;
+        }
+    }
+
+    public static Map<String, Object> estado() {
+        return Map.of(
+                "habilitada", habilitada(),
+                "sana", sana,
+                "retraso_ms", retrasoMs);
+    }
+
+    private static void asegurarPool() {
+        if (replica != null) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (replica != null) {
+                return;
+            }
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica");
+            config.setJdbcUrl(REPLICA_URL);
+            config.setUsername(getEnv("DB_REPLICA_USER", getEnv("DB_USER", "neondb_owner")));
+            config.setPassword(getEnv("DB_REPLICA_PASSWORD", getEnv("DB_PASSWORD", "")));
+            config.setReadOnly(true);
+            config.setMaximumPoolSize((int) getEnvLong("DB_REPLICA_POOL_SIZE", 10));
+            // No bloquear el arranque si la replica aun no responde.
+            config.setInitializationFailTimeout(-1);
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            replica = new HikariDataSource(config);
+
+            monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replica-monitor");
+                t.setDaemon(true);
+                return t;
+            });
+            monitor.scheduleWithFixedDelay(ReplicaRouter::medirRetraso, 0, INTERVALO_MONITOR_MS,
+                    TimeUnit.MILLISECONDS);
+            System.out.println("Pool de replica inicializado");
+        }
+    }
+
+    // Si la replica ya reprodujo todo lo recibido el retraso es 0 (aunque el
+    // primario lleve rato sin escribir); si no, tiempo desde la ultima
+    // transaccion reproducida.
+    private static void medirRetraso() {
+        String sql = """
+                SELECT COALESCE(
+                         CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                              ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000
+                         END, 0)::bigint AS retraso_ms
+                """;
+        try (Connection conn = replica.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            long retraso = rs.next() ? rs.getLong("retraso_ms") : 0L;
+            boolean estaba = sana;
+            retrasoMs = retraso;
+            sana = retraso <= MAX_LAG_MS;
+            if (estaba != sana) {
+                System.out.println(sana
+                        ? "Replica al dia, se reanudan las lecturas en ella"
+                        : "Replica con " + retraso + " ms de retraso, lecturas al primario");
+            }
+        } catch (SQLException e) {
+            if (sana) {
+                System.err.println("Replica no responde, lecturas al primario: " + e.getMessage());
+            }
+            sana = false;
+            retrasoMs = -1;
+        }
+    }
+
+    private static String getEnv(String key, String fallback) {
+        String value = System.getenv(key);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.mycompany.delivery.api.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migraciones de esquema versionadas. Los scripts viven en
+ * {@code src/main/resources/db/migration} con el formato
+ * {@code V<version>__<descripcion>.sql}; cada uno se aplica una sola vez en su
+ * propia transaccion y queda registrado en {@code schema_version} junto con su
+ * checksum. Un advisory lock de PostgreSQL evita que varios nodos migren a la
+ * vez. Se desactiva con {@code DB_MIGRATE=false}.
+ *
+ * <p>Las migraciones usan una conexion propia, fuera de los pools y sin
+ * {@code statement_timeout}: esperar el lock mientras otro nodo migra o crear
+ * un indice sobre una tabla grande tarda mas que el limite de cualquier pool.
+ *
+ * <p>Un script que usa {@code CONCURRENTLY} no puede ir en una transaccion: se
+ * ejecuta sentencia a sentencia en autocommit (separadas por {@code ;}, asi
+ * que no debe haber {@code ;} dentro de literales ni cuerpos de funcion) y se
+ * registra al terminar. Si falla a medias se reintenta entero en el siguiente
+ * arranque, por lo que cada sentencia debe poder repetirse
+ * ({@code IF NOT EXISTS}). Si un {@code CREATE INDEX CONCURRENTLY} fallo a medias
+ * deja un indice invalido; antes de reintentar se borra para que el
+ * {@code IF NOT EXISTS} no lo de por bueno.
+ */
+public final class SchemaMigrator {
+
+    private static final String RUTA = "/db/migration/";
+
+    // Orden de aplicacion. Se listan explicitamente porque el classpath de un
+    // jar no se puede recorrer de forma fiable.
+    private static final List<String> SCRIPTS = List.of(
+            "V1__chat.sql",
+            "V2__indices_pedidos_tracking.sql",
+            "V3__indices_soporte.sql",
+            "V4__soporte_abiertas.sql",
+            "V5__particiones_tracking_chat.sql",
+            "V6__pedidos_archivados.sql",
+            "V7__indice_detalle_pedido.sql",
+            "V8__indice_pedidos_fecha.sql",
+            "V9__metricas_hll.sql",
+            "V10__versiones_recurso.sql");
+
+    private static final Pattern CONCURRENTE = Pattern.compile("\\bCONCURRENTLY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREAR_INDICE_CONCURRENTE = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+
+    // Clave arbitraria pero fija para pg_advisory_lock.
+    private static final long LOCK_KEY = 0x64656c6976657279L;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Aplica las migraciones pendientes.
+     *
+     * @return numero de scripts aplicados en esta ejecucion.
+     */
+    public static int migrar() throws SQLException {
+        if ("false".equalsIgnoreCase(System.getenv("DB_MIGRATE"))) {
+            System.out.println("Migraciones desactivadas (DB_MIGRATE=false)");
+            return 0;
+        }
+        Map<Integer, Script> scripts = cargarScripts();
+
+        try (Connection conn = Database.abrirConexionDirecta()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("SET statement_timeout = 0");
+            }
+            // Camino rapido: si todo esta aplicado no se toma el lock.
+            if (pendientes(conn, scripts) == 0) {
+                return 0;
+            }
+
+            try (PreparedStatement lock = conn.prepareStatement("SELECT pg_advisory_lock(?)")) {
+                lock.setLong(1, LOCK_KEY);
+                lock.execute();
+            }
+            try {
+                crearTablaVersiones(conn);
+                Map<Integer, String> aplicadas = leerAplicadas(conn);
+                int aplicadasAhora = 0;
+                for (Script script : scripts.values()) {
+                    if (aplicadas.containsKey(script.version())) {
+                        verificarChecksum(script, aplicadas.get(script.version()));
+                        continue;
+                    }
+                    aplicar(conn, script);
+                    aplicadasAhora++;
+                }
+                return aplicadasAhora;
+            } finally {
+                try (PreparedStatement unlock = conn.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, LOCK_KEY);
+                    unlock.execute();
+                }
+            }
+        }
+    }
+
+    private static int pendientes(Connection conn, Map<Integer, Script> scripts) throws SQLException {
+        if (!existeTablaVersiones(conn)) {
+            return scripts.size();
+        }
+        Map<Integer, String> aplicadas = leerAplicadas(conn);
+        int pendientes = 0;
+        for (Script script : scripts.values()) {
+            String checksum = aplicadas.get(script.version());
+            if (checksum == null) {
+                pendientes++;
+            } else {
+                verificarChecksum(script, checksum);
+            }
+        }
+        return pendientes;
+    }
+
+    private static void aplicar(Connection conn, Script script) throws SQLException {
+        if (CONCURRENTE.matcher(sinComentarios(script.sql())).find()) {
+            aplicarSinTransaccion(conn, script);
+            return;
+        }
+        long inicio = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute(script.sql());
+            }
+            registrar(conn, script, inicio);
+            conn.commit();
+            System.out.println("Migracion aplicada: " + script.nombre());
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Fallo la migracion " + script.nombre() + ": " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void aplicarSinTransaccion(Connection conn, Script script) throws SQLException {
+        long inicio = System.nanoTime();
+        conn.setAutoCommit(true);
+        try (Statement st = conn.createStatement()) {
+            for (String sentencia : sinComentarios(script.sql()).split(";")) {
+                if (sentencia.isBlank()) {
+                    continue;
+                }
+                Matcher indice = CREAR_INDICE_CONCURRENTE.matcher(sentencia);
+                if (indice.find()) {
+                    borrarIndiceInvalido(conn, indice.group(1));
+                }
+                st.execute(sentencia);
+            }
+            registrar(conn, script, inicio);
+            System.out.println("Migracion aplicada (sin transaccion): " + script.nombre());
+        } catch (SQLException e) {
+            throw new SQLException("Fallo la migracion " + script.nombre() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String sinComentarios(String sql) {
+        return sql.replaceAll("(?m)--.*$", "");
+    }
+
+    private static void borrarIndiceInvalido(Connection conn, String nombre) throws SQLException {
+        String sql = """
+                SELECT 1 FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE c.relname = ? AND c.relnamespace = current_schema()::regnamespace AND NOT i.indisvalid
+                """;
+        boolean invalido;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, nombre.toLowerCase(Locale.ROOT));
+            try (ResultSet rs = ps.executeQuery()) {
+                invalido = rs.next();
+            }
+        }
+        if (invalido) {
+            System.out.println("Borrando indice invalido de un intento anterior: " + nombre);
+            try (Statement st = conn.createStatement()) {
+                st.execute("DROP INDEX CONCURRENTLY IF EXISTS " + nombre);
+            }
+        }
+    }
+
+    private static void registrar(Connection conn, Script script, long inicio) throws SQLException {
+        String insert = """
+                INSERT INTO schema_version (version, descripcion, script, checksum, aplicado_en, duracion_ms)
+                VALUES (?, ?, ?, ?, NOW(), ?)
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
+            ps.setInt(1, script.version());
+            ps.setString(2, script.descripcion());
+            ps.setString(3, script.nombre());
+            ps.setString(4, script.checksum());
+            ps.setLong(5, (System.nanoTime() - inicio) / 1_000_000L);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void verificarChecksum(Script script, String registrado) throws SQLException {
+        if (!script.checksum().equals(registrado)) {
+            throw new SQLException("La migracion " + script.nombre()
+                    + " ya aplicada fue modificada (checksum distinto). Crea un script nuevo en su lugar.");
+        }
+    }
+
+    private static boolean existeTablaVersiones(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT to_regclass('schema_version') IS NOT NULL");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static void crearTablaVersiones(Connection conn) throws SQLException {
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INT PRIMARY KEY,
+                    descripcion VARCHAR(200) NOT NULL,
+                    script VARCHAR(200) NOT NULL,
+                    checksum CHAR(64) NOT NULL,
+                    aplicado_en TIMESTAMP NOT NULL DEFAULT NOW(),
+                    duracion_ms BIGINT NOT NULL DEFAULT 0
+                )
+                """;
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate(ddl);
+        }
+    }
+
+    private static Map<Integer, String> leerAplicadas(Connection conn) throws SQLException {
+        Map<Integer, String> aplicadas = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version, checksum FROM schema_version");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt("version"), rs.getString("checksum").trim());
+            }
+        }
+        return aplicadas;
+    }
+
+    private static Map<Integer, Script> cargarScripts() {
+        Map<Integer, Script> scripts = new LinkedHashMap<>();
+        for (String nombre : SCRIPTS) {
+            int separador = nombre.indexOf("__");
+            if (!nombre.startsWith("V") || separador < 0 || !nombre.endsWith(".sql")) {
+                throw new IllegalStateException("Nombre de migracion invalido: " + nombre);
+            }
+            int version = Integer.parseInt(nombre.substring(1, separador));
+            String descripcion = nombre.substring(separador + 2, nombre.length() - 4).replace('_', ' ');
+            String sql = leerRecurso(RUTA + nombre);
+            if (scripts.put(version, new Script(version, descripcion, nombre, sql, checksum(sql))) != null) {
+                throw new IllegalStateException("Version de migracion duplicada: " + version);
+            }
+        }
+        return scripts;
+    }
+
+    private static String leerRecurso(String ruta) {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(ruta)) {
+            if (in == null) {
+                throw new IllegalStateException("No se encontro el script de migracion " + ruta);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer " + ruta, e);
+        }
+    }
+
+    // Se normalizan los fines de linea para que un checkout en Windows no
+    // cambie el checksum de un script ya aplicado.
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Script(int version, String descripcion, String nombre, String sql, String checksum) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.mycompany.delivery.api.config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Estado del arranque: tiempos por fase y bandera de "listo" para el
+ * balanceador/autoscaler. El puerto se abre antes de calentar el pool y las
+ * caches; {@code /ready} solo responde 200 cuando el calentamiento termino.
+ */
+public final class StartupState {
+
+    private static final Map<String, Long> FASES = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static final long INICIO_JVM = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private static volatile boolean listo;
+    private static volatile String error;
+
+    private StartupState() {
+    }
+
+    /**
+     * Ejecuta una fase midiendo su duracion. Las excepciones se propagan.
+     */
+    public static <T> T fase(String nombre, Callable<T> tarea) throws Exception {
+        long inicio = System.nanoTime();
+        try {
+            return tarea.call();
+        } finally {
+            registrar(nombre, (System.nanoTime() - inicio) / 1_000_000L);
+        }
+    }
+
+    public static void registrar(String nombre, long ms) {
+        FASES.put(nombre, ms);
+        System.out.println("Arranque: " + nombre + " en " + ms + " ms");
+    }
+
+    public static void marcarListo() {
+        listo = true;
+        long total = System.currentTimeMillis() - INICIO_JVM;
+        FASES.put("total_desde_jvm", total);
+        System.out.println("API lista para recibir trafico (" + total + " ms desde el inicio de la JVM)");
+    }
+
+    public static void marcarError(String mensaje) {
+        error = mensaje;
+    }
+
+    public static boolean isListo() {
+        return listo;
+    }
+
+    public static Map<String, Object> resumen() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("listo", listo);
+        if (error != null) {
+            out.put("error", error);
+        }
+        synchronized (FASES) {
+            out.put("fases_ms", new LinkedHashMap<>(FASES));
+        }
+        out.put("replica", ReplicaRouter.estado());
+        return out;
+    }
+}
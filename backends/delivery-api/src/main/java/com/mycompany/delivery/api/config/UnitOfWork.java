@@ -0,0 +1,198 @@
+package com.mycompany.delivery.api.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidad de trabajo ligada al hilo de la peticion. Mientras hay una activa,
+ * {@link Database#getConnection()} devuelve siempre la misma conexion (pedida
+ * al pool la primera vez que hace falta), envuelta para que el
+ * {@code try-with-resources} de cada repositorio no la cierre. Si la unidad
+ * es transaccional, todo se confirma o se deshace junto al final; los
+ * {@code commit/rollback/setAutoCommit} internos de los repositorios se ignoran.
+ *
+ * <p>Ejemplo:
+ * <pre>{@code
+ * var historial = UnitOfWork.transaccion(() -> {
+ *     repo.insertMensaje(...);
+ *     return repo.listarMensajes(...);
+ * });
+ * }</pre>
+ *
+ * No se deben hacer llamadas lentas (p. ej. a Gemini) dentro de una unidad:
+ * retienen la conexion.
+ */
+public final class UnitOfWork {
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    private static final ThreadLocal<UnitOfWork> ACTUAL = new ThreadLocal<>();
+
+    private final boolean transaccional;
+    private final List<Runnable> alConfirmar = new ArrayList<>();
+    private Connection conexion;
+    private Connection proxy;
+
+    private UnitOfWork(boolean transaccional) {
+        this.transaccional = transaccional;
+    }
+
+    /**
+     * Ejecuta el trabajo compartiendo una conexion, sin transaccion.
+     */
+    public static <T> T ejecutar(SqlWork<T> trabajo) throws SQLException {
+        return correr(false, trabajo);
+    }
+
+    /**
+     * Ejecuta el trabajo en una sola transaccion.
+     */
+    public static <T> T transaccion(SqlWork<T> trabajo) throws SQLException {
+        return correr(true, trabajo);
+    }
+
+    /**
+     * Ejecuta la accion cuando la unidad actual se confirme (o de inmediato si
+     * no hay ninguna). Sirve para actualizar caches solo con datos confirmados.
+     */
+    public static void alConfirmar(Runnable accion) {
+        UnitOfWork uow = ACTUAL.get();
+        if (uow == null) {
+            accion.run();
+        } else {
+            uow.alConfirmar.add(accion);
+        }
+    }
+
+    /**
+     * Conexion de la unidad activa; la primera llamada decide de que pool sale.
+     */
+    static Connection conexionActual(DbPool pool) throws SQLException {
+        UnitOfWork uow = ACTUAL.get();
+        return uow == null ? null : uow.conexion(pool);
+    }
+
+    static boolean activa() {
+        return ACTUAL.get() != null;
+    }
+
+    private static <T> T correr(boolean transaccional, SqlWork<T> trabajo) throws SQLException {
+        UnitOfWork externa = ACTUAL.get();
+        if (externa != null) {
+            // Unidades anidadas se unen a la externa.
+            return trabajo.run();
+        }
+        UnitOfWork uow = new UnitOfWork(transaccional);
+        ACTUAL.set(uow);
+        boolean ok = false;
+        try {
+            T resultado = trabajo.run();
+            uow.confirmar();
+            ok = true;
+            return resultado;
+        } catch (SQLException | RuntimeException e) {
+            uow.deshacer(e);
+            throw e;
+        } finally {
+            ACTUAL.remove();
+            uow.cerrar();
+            if (ok) {
+                for (Runnable accion : uow.alConfirmar) {
+                    try {
+                        accion.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Accion posterior al commit fallo: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private Connection conexion(DbPool pool) throws SQLException {
+        if (proxy == null) {
+            conexion = Database.abrirConexion(pool);
+            if (transaccional) {
+                conexion.setAutoCommit(false);
+            }
+            proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Compartida(conexion, transaccional));
+        }
+        return proxy;
+    }
+
+    private void confirmar() throws SQLException {
+        if (conexion != null && transaccional) {
+            conexion.commit();
+        }
+    }
+
+    private void deshacer(Exception causa) {
+        if (conexion != null && transaccional) {
+            try {
+                conexion.rollback();
+            } catch (SQLException e) {
+                causa.addSuppressed(e);
+            }
+        }
+    }
+
+    private void cerrar() {
+        if (conexion == null) {
+            return;
+        }
+        try {
+            if (transaccional) {
+                conexion.setAutoCommit(true);
+            }
+        } catch (SQLException ignored) {
+        }
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            System.err.println("No se pudo devolver la conexion al pool: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Conexion compartida: close() no hace nada y, si hay transaccion, tampoco
+     * el control transaccional de los repositorios.
+     */
+    private record Compartida(Connection real, boolean transaccional) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    return null;
+                case "isClosed":
+                    return real.isClosed();
+                case "commit", "rollback", "setAutoCommit":
+                    if (transaccional) {
+                        return null;
+                    }
+                    break;
+                case "getAutoCommit":
+                    if (transaccional) {
+                        return true; // Los repositorios restauran lo que leen; que no lo cambien.
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
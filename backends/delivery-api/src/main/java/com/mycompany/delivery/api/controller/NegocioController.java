@@ -1,9 +1,12 @@
 package com.mycompany.delivery.api.controller;
 
+import com.mycompany.delivery.api.config.UnitOfWork;
 import com.mycompany.delivery.api.model.Negocio;
 import com.mycompany.delivery.api.model.Usuario;
 import com.mycompany.delivery.api.repository.NegocioRepository;
 import com.mycompany.delivery.api.repository.UsuarioRepository;
+import com.mycompany.delivery.api.services.ReferenceData;
+import com.mycompany.delivery.api.services.ResourceVersions;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
 
@@ -59,11 +62,17 @@ public class NegocioController {
                 negocio.setTelefono(payload.getTelefono());
                 negocio.setLogoUrl(payload.getLogoUrl());
                 negocio.setActivo(true);
-                negocioRepo.update(negocio);
+                UnitOfWork.transaccion(() -> {
+                    negocioRepo.update(negocio);
+                    ResourceVersions.getInstance().incrementar(ResourceVersions.RECOMENDACIONES);
+                    return null;
+                });
+                ReferenceData.getInstance().invalidar();
                 return ApiResponse.success(200, "Negocio actualizado correctamente", negocio);
             } else {
                 payload.setIdUsuario(idUsuario);
                 Negocio creado = negocioRepo.create(payload);
+                ReferenceData.getInstance().invalidar();
                 return ApiResponse.success(201, "Negocio registrado correctamente", creado);
             }
         } catch (SQLException e) {
@@ -115,7 +124,12 @@ public class NegocioController {
             existente.setTelefono(payload.getTelefono());
             existente.setLogoUrl(payload.getLogoUrl());
             existente.setActivo(payload.isActivo());
-            negocioRepo.update(existente);
+            UnitOfWork.transaccion(() -> {
+                negocioRepo.update(existente);
+                ResourceVersions.getInstance().incrementar(ResourceVersions.RECOMENDACIONES);
+                return null;
+            });
+            ReferenceData.getInstance().invalidar();
             return ApiResponse.success(200, "Negocio actualizado", existente);
         } catch (SQLException e) {
             throw new ApiException(500, "Error al actualizar negocio", e);
@@ -13,6 +13,10 @@ import java.util.Map;
 import com.mycompany.delivery.api.config.Database;
 import com.mycompany.delivery.api.model.DetallePedido;
 import com.mycompany.delivery.api.model.Pedido;
+import com.mycompany.delivery.api.model.PedidoVista;
+import com.mycompany.delivery.api.repository.SqlCatalog;
+import com.mycompany.delivery.api.services.ActividadUsuarios;
+import com.mycompany.delivery.api.services.MasVendidos;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
 
@@ -105,6 +109,8 @@ public class PedidoController {
             // 3️⃣ Confirmar transacción
             // ==========================
             conn.commit();
+            MasVendidos.getInstance().registrarPedido(idPedidoGenerado, detalles);
+            ActividadUsuarios.getInstance().registrarPedido(pedido.getIdCliente(), detalles);
 
             // ==========================
             // 4️⃣ Devolver respuesta
@@ -124,14 +130,14 @@ public class PedidoController {
     // LISTAR TODOS LOS PEDIDOS
     // ===============================
     public ApiResponse<List<Pedido>> getPedidos() {
-        String sql = "SELECT * FROM pedidos ORDER BY created_at DESC";
+        String sql = SqlCatalog.PEDIDOS_TODOS;
         try (var conn = Database.getConnection();
              var stmt = conn.prepareStatement(sql);
              var rs = stmt.executeQuery()) {
 
             var pedidos = new ArrayList<Pedido>();
             while (rs.next()) {
-                pedidos.add(mapRowToPedido(rs));
+                pedidos.add(SqlCatalog.PEDIDO.map(rs));
             }
             return ApiResponse.success(200, "Pedidos obtenidos correctamente", pedidos);
 
@@ -144,14 +150,14 @@ public class PedidoController {
     // LISTAR POR CLIENTE
     // ===============================
     public ApiResponse<List<Pedido>> getPedidosPorCliente(int idCliente) {
-        String sql = "SELECT * FROM pedidos WHERE id_cliente = ? ORDER BY created_at DESC";
+        String sql = SqlCatalog.PEDIDOS_POR_CLIENTE;
         try (var conn = Database.getConnection();
              var stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idCliente);
             try (var rs = stmt.executeQuery()) {
                 var pedidos = new ArrayList<Pedido>();
                 while (rs.next()) {
-                    pedidos.add(mapRowToPedido(rs));
+                    pedidos.add(SqlCatalog.PEDIDO.map(rs));
                 }
                 return ApiResponse.success(200, "Pedidos por cliente obtenidos", pedidos);
             }
@@ -165,14 +171,14 @@ public class PedidoController {
     // LISTAR POR ESTADO
     // ===============================
     public ApiResponse<List<Pedido>> getPedidosPorEstado(String estado) {
-        String sql = "SELECT * FROM pedidos WHERE estado = ?";
+        String sql = SqlCatalog.PEDIDOS_POR_ESTADO;
         try (var conn = Database.getConnection();
              var stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, estado);
             try (var rs = stmt.executeQuery()) {
                 var pedidos = new ArrayList<Pedido>();
                 while (rs.next()) {
-                    pedidos.add(mapRowToPedido(rs));
+                    pedidos.add(SqlCatalog.PEDIDO.map(rs));
                 }
                 return ApiResponse.success(200, "Pedidos por estado obtenidos", pedidos);
             }
@@ -243,61 +249,32 @@ public class PedidoController {
         }
     }
 
-    public ApiResponse<Map<String, Object>> obtenerPedidoConDetalle(int idPedido) {
+    public ApiResponse<PedidoVista> obtenerPedidoConDetalle(int idPedido) {
         if (idPedido <= 0) {
             throw new ApiException(400, "Identificador de pedido invalido");
         }
 
-        String pedidoSql = """
-            SELECT id_pedido, id_cliente, id_delivery, id_ubicacion, created_at, updated_at,
-                   estado, total, direccion_entrega, metodo_pago, notas, coordenadas_entrega
-            FROM pedidos
-            WHERE id_pedido = ?
-            """;
-
-        String detallesSql = """
-            SELECT dp.id_detalle, dp.id_producto, dp.cantidad, dp.precio_unitario, dp.subtotal,
-                   pr.nombre AS nombre_producto, pr.imagen_url
-            FROM detalle_pedidos dp
-            JOIN productos pr ON pr.id_producto = dp.id_producto
-            WHERE dp.id_pedido = ?
-            ORDER BY dp.id_detalle
-            """;
-
         try (var conn = Database.getConnection();
-             var pedidoStmt = conn.prepareStatement(pedidoSql);
-             var detalleStmt = conn.prepareStatement(detallesSql)) {
+             var pedidoStmt = conn.prepareStatement(SqlCatalog.PEDIDO_DETALLE_POR_ID);
+             var detalleStmt = conn.prepareStatement(SqlCatalog.DETALLES_DE_PEDIDO)) {
 
             pedidoStmt.setInt(1, idPedido);
-            Map<String, Object> pedidoMap;
+            PedidoVista.Cabecera cabecera;
             try (var rs = pedidoStmt.executeQuery()) {
                 if (rs.next()) {
-                    pedidoMap = mapPedido(rs);
+                    cabecera = SqlCatalog.PEDIDO_DETALLE.map(rs);
                 } else {
                     throw new ApiException(404, "Pedido no encontrado con ID: " + idPedido);
                 }
             }
 
             detalleStmt.setInt(1, idPedido);
-            List<Map<String, Object>> detalles = new ArrayList<>();
+            List<PedidoVista.Linea> detalles;
             try (ResultSet rs = detalleStmt.executeQuery()) {
-                while (rs.next()) {
-                    var det = new HashMap<String, Object>();
-                    det.put("id_detalle", rs.getInt("id_detalle"));
-                    det.put("id_producto", rs.getInt("id_producto"));
-                    det.put("cantidad", rs.getInt("cantidad"));
-                    det.put("precio_unitario", rs.getDouble("precio_unitario"));
-                    det.put("subtotal", rs.getDouble("subtotal"));
-                    det.put("nombre_producto", rs.getString("nombre_producto"));
-                    det.put("imagen_url", rs.getString("imagen_url"));
-                    detalles.add(det);
-                }
+                detalles = SqlCatalog.DETALLE_PEDIDO.todos(rs);
             }
 
-            var out = new HashMap<String, Object>();
-            out.put("pedido", pedidoMap);
-            out.put("detalles", detalles);
-            return ApiResponse.success(200, "Pedido obtenido", out);
+            return ApiResponse.success(200, "Pedido obtenido", new PedidoVista(cabecera, detalles));
         } catch (SQLException e) {
             throw new ApiException(500, "Error al obtener el pedido", e);
         }
@@ -311,48 +288,31 @@ public class PedidoController {
         }
     }
 
-    private Map<String, Object> mapPedido(ResultSet rs) throws SQLException {
-        var map = new HashMap<String, Object>();
-        map.put("id_pedido", rs.getInt("id_pedido"));
-        map.put("id_cliente", rs.getInt("id_cliente"));
-        map.put("id_delivery", (Integer) rs.getObject("id_delivery"));
-        map.put("id_ubicacion", (Integer) rs.getObject("id_ubicacion"));
-        map.put("created_at", rs.getTimestamp("created_at"));
-        map.put("updated_at", rs.getTimestamp("updated_at"));
-        map.put("estado", rs.getString("estado"));
-        map.put("total", rs.getDouble("total"));
-        map.put("direccion_entrega", rs.getString("direccion_entrega"));
-        map.put("metodo_pago", rs.getString("metodo_pago"));
-        map.put("notas", rs.getString("notas"));
-        map.put("coordenadas_entrega", rs.getString("coordenadas_entrega"));
-        return map;
-    }
-
     // ===============================
     // MÉTODOS INTERNOS SIN ApiResponse
     // ===============================
     private List<Pedido> listarPedidosDisponiblesRaw() throws SQLException {
-        String sql = "SELECT id_pedido, id_cliente, id_delivery, id_ubicacion, created_at, updated_at, estado, total, direccion_entrega, metodo_pago, notas, coordenadas_entrega FROM pedidos WHERE estado = 'pendiente'";
+        String sql = SqlCatalog.PEDIDOS_DISPONIBLES;
         try (var conn = Database.getConnection();
              var stmt = conn.prepareStatement(sql);
              var rs = stmt.executeQuery()) {
             var pedidos = new ArrayList<Pedido>();
             while (rs.next()) {
-                pedidos.add(mapRowToPedido(rs));
+                pedidos.add(SqlCatalog.PEDIDO.map(rs));
             }
             return pedidos;
         }
     }
 
     private List<Pedido> listarPedidosPorDeliveryRaw(int idDelivery) throws SQLException {
-        String sql = "SELECT * FROM pedidos WHERE id_delivery = ? ORDER BY created_at DESC";
+        String sql = SqlCatalog.PEDIDOS_POR_DELIVERY;
         try (var conn = Database.getConnection();
              var stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idDelivery);
             try (var rs = stmt.executeQuery()) {
                 var pedidos = new ArrayList<Pedido>();
                 while (rs.next()) {
-                    pedidos.add(mapRowToPedido(rs));
+                    pedidos.add(SqlCatalog.PEDIDO.map(rs));
                 }
                 return pedidos;
             }
@@ -388,19 +348,4 @@ public class PedidoController {
             return stats;
         }
     }
-
-    private Pedido mapRowToPedido(ResultSet rs) throws SQLException {
-        var p = new Pedido();
-        p.setIdPedido(rs.getInt("id_pedido"));
-        p.setIdCliente(rs.getInt("id_cliente"));
-        p.setIdDelivery((Integer) rs.getObject("id_delivery"));
-        p.setIdUbicacion(rs.getInt("id_ubicacion"));
-        p.setEstado(rs.getString("estado"));
-        p.setTotal(rs.getDouble("total"));
-        p.setDireccionEntrega(rs.getString("direccion_entrega"));
-        p.setMetodoPago(rs.getString("metodo_pago"));
-        p.setFechaPedido(rs.getTimestamp("created_at"));
-        p.setFechaEntrega(rs.getTimestamp("updated_at"));
-        return p;
-    }
 }
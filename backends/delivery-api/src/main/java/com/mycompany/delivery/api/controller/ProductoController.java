@@ -1,11 +1,16 @@
 package com.mycompany.delivery.api.controller;
 
+import com.mycompany.delivery.api.config.UnitOfWork;
 import com.mycompany.delivery.api.model.Producto;
 import com.mycompany.delivery.api.repository.ProductoRepository;
+import com.mycompany.delivery.api.services.ProductoImportService;
+import com.mycompany.delivery.api.services.ResourceVersions;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.Optional;
 
@@ -16,6 +21,7 @@ import java.util.Optional;
 public class ProductoController {
 
     private final ProductoRepository repo = new ProductoRepository();
+    private final ProductoImportService importService = new ProductoImportService();
 
     public ApiResponse<List<Producto>> getAllProductos() {
         try {
@@ -56,7 +62,13 @@ public class ProductoController {
     public ApiResponse<Producto> createProducto(Producto producto) {
         validarProducto(producto);
         try {
-            Optional<Producto> creado = repo.crearProducto(producto);
+            Optional<Producto> creado = UnitOfWork.transaccion(() -> {
+                Optional<Producto> nuevo = repo.crearProducto(producto);
+                if (nuevo.isPresent()) {
+                    ResourceVersions.getInstance().productoModificado();
+                }
+                return nuevo;
+            });
             if (creado.isEmpty()) {
                 throw new ApiException(500, "No se pudo crear el producto");
             }
@@ -76,7 +88,13 @@ public class ProductoController {
         validarProducto(producto);
 
         try {
-            boolean actualizado = repo.actualizarProducto(producto);
+            boolean actualizado = UnitOfWork.transaccion(() -> {
+                boolean cambiado = repo.actualizarProducto(producto);
+                if (cambiado) {
+                    ResourceVersions.getInstance().productoModificado();
+                }
+                return cambiado;
+            });
             if (!actualizado) {
                 throw new ApiException(404, "Producto no encontrado");
             }
@@ -93,7 +111,13 @@ public class ProductoController {
             throw new ApiException(400, "Identificador de producto invÃ¡lido");
         }
         try {
-            boolean eliminado = repo.eliminarProducto(idProducto);
+            boolean eliminado = UnitOfWork.transaccion(() -> {
+                boolean baja = repo.eliminarProducto(idProducto);
+                if (baja) {
+                    ResourceVersions.getInstance().productoModificado();
+                }
+                return baja;
+            });
             if (!eliminado) {
                 throw new ApiException(404, "Producto no encontrado para eliminar");
             }
@@ -105,6 +129,17 @@ public class ProductoController {
         }
     }
 
+    /**
+     * Alta/actualizacion masiva de productos de un negocio desde CSV o JSON.
+     */
+    public ApiResponse<Map<String, Object>> importarProductos(int idNegocio, InputStream cuerpo, boolean json) {
+        if (idNegocio <= 0) {
+            throw new ApiException(400, "Identificador de negocio invalido");
+        }
+        return ApiResponse.success(200, "Importacion de productos completada",
+                importService.importar(idNegocio, cuerpo, json));
+    }
+
     private void validarProducto(Producto producto) {
         if (producto == null) {
             throw new ApiException(400, "El cuerpo de la solicitud es obligatorio");
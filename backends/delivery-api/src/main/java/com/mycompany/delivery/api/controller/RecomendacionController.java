@@ -1,8 +1,11 @@
 package com.mycompany.delivery.api.controller;
 
+import com.mycompany.delivery.api.config.UnitOfWork;
 import com.mycompany.delivery.api.repository.ProductoRepository;
 import com.mycompany.delivery.api.repository.RecomendacionRepository;
 import com.mycompany.delivery.api.repository.UsuarioRepository;
+import com.mycompany.delivery.api.services.RecomendacionRanking;
+import com.mycompany.delivery.api.services.ResourceVersions;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
 import org.postgresql.util.PSQLException;
@@ -17,6 +20,7 @@ public class RecomendacionController {
     private final RecomendacionRepository recomendacionRepository = new RecomendacionRepository();
     private final ProductoRepository productoRepository = new ProductoRepository();
     private final UsuarioRepository usuarioRepository = new UsuarioRepository();
+    private final RecomendacionRanking ranking = RecomendacionRanking.getInstance();
 
     public ApiResponse<Void> guardarRecomendacion(int idProducto, int idUsuario, int puntuacion, String comentario) {
         if (idProducto <= 0 || idUsuario <= 0 || puntuacion < 1 || puntuacion > 5) {
@@ -29,8 +33,19 @@ public class RecomendacionController {
             if (usuarioRepository.obtenerPorId(idUsuario).isEmpty()) {
                 throw new ApiException(404, "Usuario no encontrado");
             }
-            boolean ok = recomendacionRepository.guardar(idProducto, idUsuario, puntuacion, comentario);
-            if (!ok) {
+            long generacion = ranking.generacion();
+            var guardado = UnitOfWork.transaccion(() -> {
+                var resultado = recomendacionRepository.guardar(idProducto, idUsuario, puntuacion, comentario);
+                if (resultado.isPresent()) {
+                    var g = resultado.get();
+                    // El ranking se ajusta antes de que se publique la nueva version.
+                    UnitOfWork.alConfirmar(() -> ranking.registrar(idProducto, idUsuario, puntuacion, comentario,
+                            g, generacion));
+                    ResourceVersions.getInstance().incrementarAplicado(ResourceVersions.RECOMENDACIONES);
+                }
+                return resultado;
+            });
+            if (guardado.isEmpty()) {
                 throw new ApiException(500, "No se pudo guardar la recomendacion");
             }
             return ApiResponse.created("Recomendacion registrada");
@@ -50,7 +65,7 @@ public class RecomendacionController {
             throw new ApiException(400, "Producto invalido");
         }
         try {
-            Map<String, Object> resumen = recomendacionRepository.resumen(idProducto);
+            Map<String, Object> resumen = ranking.resumen(idProducto);
             List<Map<String, Object>> lista = recomendacionRepository.listarPorProducto(idProducto);
             Map<String, Object> out = new HashMap<>();
             out.put("resumen", resumen);
@@ -63,13 +78,25 @@ public class RecomendacionController {
 
     public ApiResponse<List<Map<String, Object>>> listarRecomendacionesDestacadas() {
         try {
-            List<Map<String, Object>> recomendaciones = recomendacionRepository.listarDestacadas();
+            List<Map<String, Object>> recomendaciones = ranking.destacadas();
             return ApiResponse.success(200, "Recomendaciones destacadas obtenidas", recomendaciones);
         } catch (SQLException e) {
             throw new ApiException(500, "Error al listar recomendaciones", e);
         }
     }
 
+    /**
+     * Igual que {@link #listarRecomendacionesDestacadas()} pero devuelve la
+     * respuesta ya serializada que mantiene el ranking en memoria.
+     */
+    public String listarRecomendacionesDestacadasJson() {
+        try {
+            return ranking.destacadasJson();
+        } catch (SQLException e) {
+            throw new ApiException(500, "Error al listar recomendaciones", e);
+        }
+    }
+
     private String mapForeignKeyMessage(PSQLException ex) {
         String detail = ex.getServerErrorMessage() != null ? ex.getServerErrorMessage().getDetail() : null;
         if (detail != null) {
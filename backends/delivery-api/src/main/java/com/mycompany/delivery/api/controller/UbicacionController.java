@@ -3,13 +3,13 @@ package com.mycompany.delivery.api.controller;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import com.mycompany.delivery.api.model.TrackingEvento;
 import com.mycompany.delivery.api.model.Ubicacion;
 import com.mycompany.delivery.api.services.UbicacionService;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
+import com.mycompany.delivery.api.util.LoteTrackingReader;
 
 public class UbicacionController {
 
@@ -20,10 +20,10 @@ public class UbicacionController {
     // ===============================
     // CREAR O ACTUALIZAR UBICACIÓN
     // ===============================
-    public ApiResponse<Map<String, Object>> guardarUbicacion(Ubicacion ubicacion) {
+    public ApiResponse<Ubicacion> guardarUbicacion(Ubicacion ubicacion) {
         var saved = service.guardarUbicacion(ubicacion)
                 .orElseThrow(() -> new ApiException(500, "No se pudo guardar la ubicación"));
-        return ApiResponse.success(201, "Ubicación guardada correctamente", saved.toMap());
+        return ApiResponse.success(201, "Ubicación guardada correctamente", saved);
     }
 
     // ===============================
@@ -58,6 +58,14 @@ public class UbicacionController {
         }
     }
 
+    // ===============================
+    // LOTE DE UBICACIONES (repartidor sin conexión)
+    // ===============================
+    public ApiResponse<Map<String, Object>> registrarLoteTracking(java.io.InputStream cuerpo) {
+        var lote = LoteTrackingReader.leer(cuerpo, UbicacionService.MAX_PUNTOS_LOTE);
+        return ApiResponse.success(200, "Lote de ubicaciones registrado", service.registrarLoteTracking(lote));
+    }
+
     // ===============================
     // OBTENER UBICACIONES POR USUARIO
     // ===============================
@@ -117,10 +125,9 @@ public class UbicacionController {
         }
     }
 
-    public ApiResponse<List<Map<String, Object>>> obtenerRutaTracking(int idPedido) {
+    public ApiResponse<List<TrackingEvento>> obtenerRutaTracking(int idPedido) {
         try {
-            var eventos = service.obtenerRutaPedido(idPedido);
-            var payload = eventos.stream().map(TrackingEvento::toMap).collect(Collectors.toList());
+            var payload = service.obtenerRutaPedido(idPedido);
             if (payload.isEmpty()) {
                 throw new ApiException(404, "No hay puntos de ruta registrados para este pedido.");
             }
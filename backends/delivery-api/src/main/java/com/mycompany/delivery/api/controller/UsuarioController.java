@@ -5,7 +5,9 @@ import java.util.List;
 import java.util.Optional;
 
 import com.mycompany.delivery.api.model.Usuario;
+import com.mycompany.delivery.api.model.UsuarioVista;
 import com.mycompany.delivery.api.repository.UsuarioRepository;
+import com.mycompany.delivery.api.services.LoginThrottle;
 import com.mycompany.delivery.api.util.ApiException;
 import com.mycompany.delivery.api.util.ApiResponse;
 
@@ -16,6 +18,7 @@ import com.mycompany.delivery.api.util.ApiResponse;
 public class UsuarioController {
 
     private final UsuarioRepository repo = new UsuarioRepository();
+    private final LoginThrottle loginThrottle = new LoginThrottle();
 
         /**
          * Valida el token JWT y devuelve el usuario autenticado.
@@ -52,20 +55,29 @@ public class UsuarioController {
     // ===========================
     // LOGIN
     // ===========================
-    public ApiResponse<java.util.Map<String, Object>> login(String correo, String contrasena) {
+    public ApiResponse<UsuarioVista> login(String correo, String contrasena) {
+        return login(correo, contrasena, null);
+    }
+
+    /**
+     * Login con control de intentos fallidos por cuenta y por IP del cliente.
+     */
+    public ApiResponse<UsuarioVista> login(String correo, String contrasena, String ip) {
         if (correo == null || correo.isBlank() || contrasena == null || contrasena.isBlank()) {
             throw new ApiException(400, "Correo y contraseña son obligatorios");
         }
+        loginThrottle.verificar(correo, ip);
         try {
             Optional<Usuario> usuarioOpt = repo.autenticar(correo, contrasena);
             if (usuarioOpt.isEmpty()) {
+                loginThrottle.registrarFallo(correo, ip);
                 throw new ApiException(401, "Usuario o contraseña incorrectos");
             }
+            loginThrottle.registrarExito(correo);
             Usuario usuario = usuarioOpt.get();
-            // El token es el idUsuario. Se anade al mapa del usuario.
-            java.util.Map<String, Object> userMap = usuario.toMap();
-            userMap.put("token", String.valueOf(usuario.getIdUsuario())); // Simulacion JWT
-            return ApiResponse.success(200, "Inicio de sesion exitoso", userMap);
+            // El token es el idUsuario (simulacion JWT).
+            var vista = UsuarioVista.de(usuario, String.valueOf(usuario.getIdUsuario()));
+            return ApiResponse.success(200, "Inicio de sesion exitoso", vista);
         } catch (SQLException e) {
             throw new ApiException(500, "Error al autenticar usuario", e);
         }
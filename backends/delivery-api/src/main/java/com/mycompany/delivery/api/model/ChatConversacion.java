@@ -0,0 +1,17 @@
+package com.mycompany.delivery.api.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Conversacion de chat (pedido, soporte o bot) en los listados por usuario.
+ */
+public record ChatConversacion(
+        long idConversacion,
+        Integer idPedido,
+        Integer idCliente,
+        Integer idDelivery,
+        Integer idAdminSoporte,
+        boolean esChatbot,
+        Timestamp createdAt,
+        Boolean activa) {
+}
@@ -0,0 +1,18 @@
+package com.mycompany.delivery.api.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Mensaje de chat tal como se devuelve al cliente. Se serializa con
+ * {@code JsonAdapters} usando las claves snake_case de siempre.
+ */
+public record ChatMensaje(
+        long idMensaje,
+        long idConversacion,
+        int idRemitente,
+        Integer idDestinatario,
+        String mensaje,
+        Timestamp createdAt,
+        String remitenteNombre,
+        boolean esBot) {
+}
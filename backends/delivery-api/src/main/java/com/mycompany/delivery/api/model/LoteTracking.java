@@ -0,0 +1,82 @@
+package com.mycompany.delivery.api.model;
+
+import java.util.Arrays;
+
+/**
+ * Puntos de ruta que un repartidor acumulo sin conexion y envia de una vez a
+ * {@code POST /tracking/batch}. Se guardan en arreglos primitivos paralelos
+ * (sin un objeto por punto) porque se pasan tal cual como arreglos SQL.
+ */
+public final class LoteTracking {
+
+    private Integer idRepartidor;
+    private double[] latitudes = new double[64];
+    private double[] longitudes = new double[64];
+    private long[] instantes = new long[64];
+    private int tamano;
+
+    public Integer getIdRepartidor() {
+        return idRepartidor;
+    }
+
+    public void setIdRepartidor(Integer idRepartidor) {
+        this.idRepartidor = idRepartidor;
+    }
+
+    /**
+     * @param instante epoch en milisegundos del momento en que se tomo el punto.
+     */
+    public void agregar(double latitud, double longitud, long instante) {
+        if (tamano == latitudes.length) {
+            int nueva = tamano * 2;
+            latitudes = Arrays.copyOf(latitudes, nueva);
+            longitudes = Arrays.copyOf(longitudes, nueva);
+            instantes = Arrays.copyOf(instantes, nueva);
+        }
+        latitudes[tamano] = latitud;
+        longitudes[tamano] = longitud;
+        instantes[tamano] = instante;
+        tamano++;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public double latitud(int i) {
+        return latitudes[i];
+    }
+
+    public double longitud(int i) {
+        return longitudes[i];
+    }
+
+    public long instante(int i) {
+        return instantes[i];
+    }
+
+    public double[] latitudes() {
+        return Arrays.copyOf(latitudes, tamano);
+    }
+
+    public double[] longitudes() {
+        return Arrays.copyOf(longitudes, tamano);
+    }
+
+    public long[] instantes() {
+        return Arrays.copyOf(instantes, tamano);
+    }
+
+    /**
+     * Indice del punto mas reciente, o -1 si el lote esta vacio.
+     */
+    public int masReciente() {
+        int idx = -1;
+        for (int i = 0; i < tamano; i++) {
+            if (idx < 0 || instantes[i] >= instantes[idx]) {
+                idx = i;
+            }
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,22 @@
+package com.mycompany.delivery.api.model;
+
+import java.util.List;
+
+/**
+ * Ruta y chat de un pedido cerrado tal como se guardan en el archivo frio. La
+ * ruta va en arreglos paralelos (instantes en microsegundos epoch, la precision
+ * de {@code TIMESTAMP}) en orden cronologico; los mensajes, en orden de id.
+ * {@code idConversacion} es nulo si el pedido no tuvo chat.
+ */
+public record PedidoArchivado(
+        int idPedido,
+        Long idConversacion,
+        double[] latitudes,
+        double[] longitudes,
+        long[] instantes,
+        List<ChatMensaje> mensajes) {
+
+    public int puntos() {
+        return instantes.length;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mycompany.delivery.api.model;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Pedido con sus lineas para la pantalla de detalle. Se serializa como
+ * {@code {"pedido": {...}, "detalles": [...]}}.
+ */
+public record PedidoVista(Cabecera pedido, List<Linea> detalles) {
+
+    public record Cabecera(
+            int idPedido,
+            int idCliente,
+            Integer idDelivery,
+            Integer idUbicacion,
+            Timestamp createdAt,
+            Timestamp updatedAt,
+            String estado,
+            double total,
+            String direccionEntrega,
+            String metodoPago,
+            String notas,
+            String coordenadasEntrega) {
+    }
+
+    public record Linea(
+            int idDetalle,
+            int idProducto,
+            int cantidad,
+            double precioUnitario,
+            double subtotal,
+            String nombreProducto,
+            String imagenUrl) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.mycompany.delivery.api.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Fila ya validada de una importacion masiva de productos. Los campos
+ * {@code null} conservan el valor actual cuando el producto ya existe.
+ *
+ * @param fila numero de fila en el archivo original, para reportar errores.
+ */
+public record ProductoImportado(
+        int fila,
+        String nombre,
+        String descripcion,
+        BigDecimal precio,
+        String imagenUrl,
+        Boolean disponible,
+        int idCategoria) {
+}
@@ -0,0 +1,17 @@
+package com.mycompany.delivery.api.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Conversacion de soporte en el listado del usuario. Las fechas se envian en ISO-8601.
+ */
+public record SoporteConversacion(
+        long idConversacion,
+        String estado,
+        Long idAgenteSoporte,
+        String canal,
+        int prioridad,
+        boolean permiteIa,
+        Timestamp createdAt,
+        Timestamp updatedAt) {
+}
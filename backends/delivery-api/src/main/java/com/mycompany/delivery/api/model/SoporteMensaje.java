@@ -0,0 +1,16 @@
+package com.mycompany.delivery.api.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Mensaje de una conversacion de soporte. {@code createdAt} se envia en ISO-8601.
+ */
+public record SoporteMensaje(
+        long id,
+        long idConversacion,
+        Long idRemitente,
+        boolean esAgente,
+        String tipo,
+        String mensaje,
+        Timestamp createdAt) {
+}
@@ -2,8 +2,6 @@ package com.mycompany.delivery.api.model;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.util.HashMap;
-import java.util.Map;
 
 public class TrackingEvento {
 
@@ -62,21 +60,6 @@ public class TrackingEvento {
         this.fechaEvento = fechaEvento;
     }
 
-    public Map<String, Object> toMap() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id_pedido", idPedido);
-        map.put("orden", orden);
-        map.put("latitud", latitud);
-        map.put("longitud", longitud);
-        if (descripcion != null && !descripcion.isBlank()) {
-            map.put("descripcion", descripcion);
-        }
-        if (fechaEvento != null) {
-            map.put("fecha_evento", fechaEvento.toString());
-        }
-        return map;
-    }
-
     public void setFechaEvento(java.sql.Timestamp timestamp) {
         if (timestamp != null) {
             this.fechaEvento = timestamp.toInstant().atOffset(ZoneOffset.UTC);
@@ -1,7 +1,5 @@
 package com.mycompany.delivery.api.model;
 
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Modelo que representa a un usuario dentro del sistema Delivery.
@@ -120,18 +118,4 @@ public class Usuario {
                 ", activo=" + activo +
                 '}';
     }
-
-        /**
-         * Devuelve los datos del usuario como un Map.
-         */
-        public Map<String, Object> toMap() {
-            Map<String, Object> map = new HashMap<>();
-            map.put("idUsuario", idUsuario);
-            map.put("nombre", nombre);
-            map.put("correo", correo);
-            map.put("telefono", telefono);
-            map.put("rol", rol);
-            map.put("activo", activo);
-            return map;
-        }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.mycompany.delivery.api.model;
+
+/**
+ * Datos publicos de un usuario (sin contrasena). {@code token} solo se
+ * incluye en la respuesta de login.
+ */
+public record UsuarioVista(
+        int idUsuario,
+        String nombre,
+        String correo,
+        String telefono,
+        String rol,
+        boolean activo,
+        String token) {
+
+    public static UsuarioVista de(Usuario u) {
+        return de(u, null);
+    }
+
+    public static UsuarioVista de(Usuario u, String token) {
+        return new UsuarioVista(u.getIdUsuario(), u.getNombre(), u.getCorreo(), u.getTelefono(), u.getRol(),
+                u.isActivo(), token);
+    }
+}
@@ -0,0 +1,209 @@
+package com.mycompany.delivery.api.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+
+/**
+ * Persistencia de los sketches de usuarios activos ({@code metricas_hll}) y
+ * lecturas para reconstruirlos desde las tablas de origen.
+ */
+public class ActividadRepository {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    /**
+     * Fila de {@code metricas_hll}: el sketch serializado de una metrica en un
+     * intervalo ({@code granularidad} "hora" o "dia") escrito por un nodo.
+     */
+    public record FilaHll(String metrica, int idNegocio, String granularidad, LocalDateTime inicio,
+            String nodo, int precision, byte[] registros, LocalDateTime actualizado) {
+    }
+
+    /**
+     * Recibe cada usuario activo en una hora (y su negocio, 0 si no aplica).
+     */
+    public interface Visitante {
+        void aceptar(LocalDateTime hora, int idUsuario, int idNegocio);
+    }
+
+    // ===============================
+    // SKETCHES
+    // ===============================
+
+    /**
+     * Guarda los sketches de este nodo en una transaccion; cada fila
+     * reemplaza a la anterior del mismo nodo e intervalo.
+     */
+    public void guardar(List<FilaHll> filas) throws SQLException {
+        String sql = """
+                INSERT INTO metricas_hll
+                    (metrica, id_negocio, granularidad, inicio, nodo, precision, registros, actualizado_en)
+                VALUES (?, ?, ?, ?, ?, ?, ?, NOW())
+                ON CONFLICT (metrica, id_negocio, granularidad, inicio, nodo)
+                DO UPDATE SET precision = EXCLUDED.precision, registros = EXCLUDED.registros,
+                              actualizado_en = NOW()
+                """;
+        try (Connection conn = Database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (FilaHll f : filas) {
+                    ps.setString(1, f.metrica());
+                    ps.setInt(2, f.idNegocio());
+                    ps.setString(3, f.granularidad());
+                    ps.setObject(4, f.inicio());
+                    ps.setString(5, f.nodo());
+                    ps.setInt(6, f.precision());
+                    ps.setBytes(7, f.registros());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Sketches actualizados desde {@code actualizadoDesde} (todos si es nulo)
+     * que no sean de {@code nodoExcluido} (ninguno excluido si es nulo) y
+     * caigan dentro de la retencion.
+     */
+    public List<FilaHll> leer(LocalDateTime actualizadoDesde, String nodoExcluido,
+            LocalDateTime horaMinima, LocalDateTime diaMinimo) throws SQLException {
+        String sql = """
+                SELECT metrica, id_negocio, granularidad, inicio, nodo, precision, registros, actualizado_en
+                FROM metricas_hll
+                WHERE actualizado_en >= COALESCE(?, '-infinity'::timestamp)
+                  AND nodo IS DISTINCT FROM ?
+                  AND inicio >= CASE granularidad WHEN 'hora' THEN ? ELSE ? END
+                """;
+        List<FilaHll> filas = new ArrayList<>();
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, actualizadoDesde);
+            ps.setString(2, nodoExcluido);
+            ps.setObject(3, horaMinima);
+            ps.setObject(4, diaMinimo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    filas.add(new FilaHll(rs.getString(1), rs.getInt(2), rs.getString(3),
+                            rs.getObject(4, LocalDateTime.class), rs.getString(5), rs.getInt(6),
+                            rs.getBytes(7), rs.getObject(8, LocalDateTime.class)));
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Borra los sketches de todos los nodos que ya salieron de la retencion.
+     */
+    public int purgar(LocalDateTime horaMinima, LocalDateTime diaMinimo) throws SQLException {
+        String sql = """
+                DELETE FROM metricas_hll
+                WHERE inicio < CASE granularidad WHEN 'hora' THEN ? ELSE ? END
+                """;
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, horaMinima);
+            ps.setObject(2, diaMinimo);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Negocio de cada producto indicado.
+     */
+    public Map<Integer, Integer> negociosDeProductos(List<Integer> ids) throws SQLException {
+        Map<Integer, Integer> out = new HashMap<>();
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT id_producto, id_negocio FROM productos WHERE id_producto = ANY(?::int4[])")) {
+            ps.setObject(1, ids.stream().mapToInt(Integer::intValue).toArray());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+        return out;
+    }
+
+    // ===============================
+    // RECONSTRUCCION
+    // ===============================
+
+    /**
+     * Clientes que pidieron en cada hora desde {@code desde}, una vez por
+     * negocio de los productos del pedido (0 si el pedido no tiene detalle).
+     */
+    public void recorrerPedidos(LocalDateTime desde, Visitante visitante) throws SQLException {
+        recorrer("""
+                SELECT DISTINCT date_trunc('hour', p.created_at), p.id_cliente, COALESCE(pr.id_negocio, 0)
+                FROM pedidos p
+                LEFT JOIN detalle_pedidos d ON d.id_pedido = p.id_pedido
+                LEFT JOIN productos pr ON pr.id_producto = d.id_producto
+                WHERE p.created_at >= ? AND p.id_cliente IS NOT NULL
+                """, desde, visitante);
+    }
+
+    /**
+     * Repartidores con puntos de ruta en cada hora desde {@code desde}. Solo
+     * quedan los pings hechos con un pedido activo: los demas no se guardan en
+     * {@code tracking_ruta}.
+     */
+    public void recorrerRepartidores(LocalDateTime desde, Visitante visitante) throws SQLException {
+        recorrer("""
+                SELECT DISTINCT date_trunc('hour', t.registrado_en), p.id_delivery, 0
+                FROM tracking_ruta t
+                JOIN pedidos p ON p.id_pedido = t.id_pedido
+                WHERE t.registrado_en >= ? AND p.id_delivery IS NOT NULL
+                """, desde, visitante);
+    }
+
+    /**
+     * Remitentes de mensajes de chat en cada hora desde {@code desde}.
+     */
+    public void recorrerRemitentes(LocalDateTime desde, Visitante visitante) throws SQLException {
+        recorrer("""
+                SELECT DISTINCT date_trunc('hour', created_at), id_remitente, 0
+                FROM chat_mensajes
+                WHERE created_at >= ?
+                """, desde, visitante);
+    }
+
+    // Lectura por cursor: las horas de varios dias pueden ser muchas filas.
+    private void recorrer(String sql, LocalDateTime desde, Visitante visitante) throws SQLException {
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA)) {
+            boolean autoCommit = conn.getAutoCommit();
+            // pgjdbc solo respeta el fetch size dentro de una transaccion.
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setObject(1, desde);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        visitante.aceptar(rs.getObject(1, LocalDateTime.class), rs.getInt(2), rs.getInt(3));
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mycompany.delivery.api.repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.util.ColumnasPedidos;
+
+/**
+ * Lecturas de {@code pedidos} para la analitica de ventas en memoria
+ * ({@link ColumnasPedidos}). El negocio de un pedido se deduce de sus productos
+ * (el menor {@code id_negocio} si mezcla varios), porque {@code pedidos} no lo
+ * guarda.
+ */
+public class AnaliticaRepository {
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final int CAPACIDAD_MAXIMA_INICIAL = 4_000_000;
+
+    private static final String PEDIDOS_POR_RANGO = """
+            SELECT p.id_pedido, p.created_at, p.total, p.estado, p.id_delivery, n.id_negocio
+            FROM pedidos p
+            LEFT JOIN (
+                SELECT d.id_pedido, MIN(pr.id_negocio) AS id_negocio
+                FROM detalle_pedidos d
+                JOIN productos pr ON pr.id_producto = d.id_producto
+                WHERE d.id_pedido BETWEEN ? AND ?
+                GROUP BY d.id_pedido
+            ) n ON n.id_pedido = p.id_pedido
+            WHERE p.id_pedido BETWEEN ? AND ?
+            ORDER BY p.id_pedido
+            """;
+
+    /**
+     * Estado, total y repartidor actuales de un pedido ya cargado.
+     */
+    public record Cambio(int idPedido, String estado, long centavos, int idDelivery) {
+    }
+
+    /**
+     * Menor y mayor {@code id_pedido}; {@code null} si no hay pedidos.
+     */
+    public int[] rangoIds() throws SQLException {
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+             PreparedStatement ps = conn.prepareStatement("SELECT MIN(id_pedido), MAX(id_pedido) FROM pedidos");
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return null;
+            }
+            return new int[] { rs.getInt(1), rs.getInt(2) };
+        }
+    }
+
+    /**
+     * Pedidos con id en {@code [desde, hasta]} en orden de id, leidos por
+     * cursor para no traer el tramo entero a la vez.
+     */
+    public ColumnasPedidos cargar(int desde, int hasta) throws SQLException {
+        // Los ids son casi continuos: el tramo da una buena capacidad inicial.
+        return cargar(desde, hasta, (int) Math.min(CAPACIDAD_MAXIMA_INICIAL, Math.max(0L, (long) hasta - desde + 1)));
+    }
+
+    public ColumnasPedidos cargar(int desde, int hasta, int capacidad) throws SQLException {
+        ColumnasPedidos columnas = new ColumnasPedidos(capacidad);
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA)) {
+            boolean autoCommit = conn.getAutoCommit();
+            // pgjdbc solo respeta el fetch size dentro de una transaccion.
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(PEDIDOS_POR_RANGO)) {
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setInt(1, desde);
+                ps.setInt(2, hasta);
+                ps.setInt(3, desde);
+                ps.setInt(4, hasta);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp creado = rs.getTimestamp(2);
+                        columnas.agregar(rs.getInt(1),
+                                creado != null ? segundos(creado) : 0L,
+                                centavos(rs.getBigDecimal(3)),
+                                ColumnasPedidos.codigoEstado(rs.getString(4)),
+                                rs.getInt(6),
+                                rs.getInt(5));
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return columnas;
+    }
+
+    /**
+     * Estado actual de los pedidos indicados; los que ya no existen no vuelven.
+     */
+    public List<Cambio> estadoActual(int[] ids) throws SQLException {
+        String sql = "SELECT id_pedido, estado, total, id_delivery FROM pedidos WHERE id_pedido = ANY(?::int4[])";
+        List<Cambio> cambios = new ArrayList<>(ids.length);
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, ids);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    cambios.add(new Cambio(rs.getInt(1), rs.getString(2), centavos(rs.getBigDecimal(3)), rs.getInt(4)));
+                }
+            }
+        }
+        return cambios;
+    }
+
+    // TIMESTAMP sin zona leido como hora local y guardado como si fuera UTC.
+    private static long segundos(Timestamp ts) {
+        return ts.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long centavos(BigDecimal total) {
+        return total == null ? 0L : total.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+}
@@ -0,0 +1,351 @@
+package com.mycompany.delivery.api.repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.PedidoArchivado;
+import com.mycompany.delivery.api.services.ReferenceData;
+import com.mycompany.delivery.api.util.SegmentoArchivo;
+import com.mycompany.delivery.api.util.SegmentoArchivo.Entrada;
+
+/**
+ * Archivo frio de pedidos cerrados: la ruta y el chat se guardan en segmentos
+ * comprimidos bajo {@code ARCHIVE_DIR} (ver {@link SegmentoArchivo}) y la tabla
+ * {@code pedidos_archivados} indica en que segmento y posicion esta cada uno.
+ * Con varias instancias, {@code ARCHIVE_DIR} debe ser un volumen compartido.
+ * Solo se acepta una ruta absoluta: una relativa dependeria del directorio
+ * desde el que se arranca el proceso.
+ */
+public class ArchivoRepository {
+
+    /** {@code null} si {@code ARCHIVE_DIR} no esta definido o no es absoluto. */
+    public static final Path DIRECTORIO = resolverDirectorio();
+
+    /**
+     * Fila de {@code pedidos_archivados}.
+     */
+    public record IndiceArchivo(int idPedido, Long idConversacion, String segmento, long desplazamiento,
+            int longitud, int crc32) {
+    }
+
+    /**
+     * Contenido a archivar de un pedido y los ultimos ids leidos: al borrar solo
+     * se quitan filas hasta esos ids, asi un mensaje que llegue entre la lectura
+     * y el borrado se queda en la tabla.
+     */
+    public record PorArchivar(PedidoArchivado contenido, long ultimoTracking, long ultimoMensaje) {
+    }
+
+    public record Candidato(int idPedido, Timestamp actualizado) {
+    }
+
+    // ===============================
+    // SELECCION Y CARGA
+    // ===============================
+
+    /**
+     * Pedidos entregados o cancelados hace mas de {@code diasGracia} dias y
+     * aun sin archivar, del mas antiguo al mas reciente a partir de
+     * {@code desde} (inclusivo, porque varios pueden compartir fecha; nulo
+     * para empezar desde el principio).
+     */
+    public List<Candidato> pedidosPorArchivar(int diasGracia, Timestamp desde, int limite) throws SQLException {
+        String sql = """
+                SELECT p.id_pedido, p.updated_at
+                FROM pedidos p
+                WHERE p.estado IN ('entregado', 'cancelado')
+                  AND p.updated_at < NOW() - make_interval(days => ?)
+                  AND p.updated_at >= COALESCE(?, '-infinity'::timestamp)
+                  AND NOT EXISTS (SELECT 1 FROM pedidos_archivados a WHERE a.id_pedido = p.id_pedido)
+                ORDER BY p.updated_at
+                LIMIT ?
+                """;
+        List<Candidato> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, diasGracia);
+            ps.setTimestamp(2, desde);
+            ps.setInt(3, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(new Candidato(rs.getInt(1), rs.getTimestamp(2)));
+                }
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Lee de las tablas vivas la ruta y el chat de cada pedido.
+     */
+    public List<PorArchivar> cargar(int[] idsPedido) throws SQLException {
+        Map<Integer, Ruta> rutas = new HashMap<>();
+        String sqlRuta = """
+                SELECT id_pedido, id_tracking, latitud, longitud, registrado_en
+                FROM tracking_ruta
+                WHERE id_pedido = ANY(?)
+                ORDER BY id_pedido, registrado_en, id_tracking
+                """;
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement ps = conn.prepareStatement(sqlRuta)) {
+            ps.setObject(1, idsPedido);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp registrado = rs.getTimestamp(5);
+                    rutas.computeIfAbsent(rs.getInt(1), k -> new Ruta()).agregar(rs.getLong(2), rs.getDouble(3),
+                            rs.getDouble(4), registrado != null ? SegmentoArchivo.micros(registrado) : 0L);
+                }
+            }
+        }
+
+        Map<Integer, Long> conversaciones = new HashMap<>();
+        Map<Long, List<ChatMensaje>> mensajes = new HashMap<>();
+        String sqlConversaciones = """
+                SELECT id_pedido, MIN(id_conversacion)
+                FROM chat_conversaciones
+                WHERE id_pedido = ANY(?)
+                GROUP BY id_pedido
+                """;
+        String sqlMensajes = """
+                SELECT m.id_mensaje, m.id_conversacion, m.id_remitente, m.id_destinatario, m.mensaje,
+                       m.created_at, u.nombre AS remitente_nombre, (m.id_remitente = ?) AS es_bot
+                FROM chat_mensajes m
+                LEFT JOIN usuarios u ON u.id_usuario = m.id_remitente
+                WHERE m.id_conversacion = ANY(?)
+                ORDER BY m.id_conversacion, m.id_mensaje
+                """;
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
+            try (PreparedStatement ps = conn.prepareStatement(sqlConversaciones)) {
+                ps.setObject(1, idsPedido);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        conversaciones.put(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            }
+            if (!conversaciones.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sqlMensajes)) {
+                    ps.setInt(1, ReferenceData.getInstance().botChatId());
+                    ps.setObject(2, conversaciones.values().stream().mapToLong(Long::longValue).toArray());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ChatMensaje m = SqlCatalog.MENSAJE_CHAT.map(rs);
+                            mensajes.computeIfAbsent(m.idConversacion(), k -> new ArrayList<>()).add(m);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<PorArchivar> lista = new ArrayList<>(idsPedido.length);
+        for (int id : idsPedido) {
+            Ruta ruta = rutas.getOrDefault(id, new Ruta());
+            Long idConversacion = conversaciones.get(id);
+            List<ChatMensaje> chat = idConversacion != null ? mensajes.getOrDefault(idConversacion, List.of()) : List.of();
+            PedidoArchivado contenido = new PedidoArchivado(id, idConversacion,
+                    Arrays.copyOf(ruta.latitudes, ruta.n), Arrays.copyOf(ruta.longitudes, ruta.n),
+                    Arrays.copyOf(ruta.instantes, ruta.n), chat);
+            lista.add(new PorArchivar(contenido, ruta.ultimoId, chat.isEmpty() ? 0 : chat.get(chat.size() - 1).idMensaje()));
+        }
+        return lista;
+    }
+
+    // ===============================
+    // CONFIRMACION
+    // ===============================
+
+    /**
+     * Registra el segmento escrito en el indice y borra de las tablas vivas las
+     * filas archivadas. Debe ejecutarse en una transaccion.
+     *
+     * @return filas borradas: {tracking_ruta, chat_mensajes}.
+     */
+    public long[] confirmar(String segmento, List<Entrada> entradas, List<PorArchivar> pedidos) throws SQLException {
+        int n = pedidos.size();
+        int[] ids = new int[n];
+        long[] conversaciones = new long[n];
+        long[] desplazamientos = new long[n];
+        int[] longitudes = new int[n];
+        long[] crcs = new long[n];
+        int[] puntos = new int[n];
+        int[] numMensajes = new int[n];
+        long[] ultimosTracking = new long[n];
+        long[] ultimosMensaje = new long[n];
+        for (int i = 0; i < n; i++) {
+            PedidoArchivado p = pedidos.get(i).contenido();
+            Entrada e = entradas.get(i);
+            ids[i] = p.idPedido();
+            conversaciones[i] = p.idConversacion() != null ? p.idConversacion() : -1;
+            desplazamientos[i] = e.desplazamiento();
+            longitudes[i] = e.longitud();
+            crcs[i] = e.crc32();
+            puntos[i] = p.puntos();
+            numMensajes[i] = p.mensajes().size();
+            ultimosTracking[i] = pedidos.get(i).ultimoTracking();
+            ultimosMensaje[i] = pedidos.get(i).ultimoMensaje();
+        }
+
+        String sqlIndice = """
+                INSERT INTO pedidos_archivados
+                    (id_pedido, id_conversacion, segmento, desplazamiento, longitud, crc32, puntos, mensajes)
+                SELECT a.id_pedido, NULLIF(a.id_conversacion, -1), ?, a.desplazamiento, a.longitud, a.crc32,
+                       a.puntos, a.mensajes
+                FROM unnest(?::int[], ?::int8[], ?::int8[], ?::int[], ?::int8[], ?::int[], ?::int[])
+                     AS a(id_pedido, id_conversacion, desplazamiento, longitud, crc32, puntos, mensajes)
+                """;
+        String sqlRuta = """
+                DELETE FROM tracking_ruta t
+                USING unnest(?::int[], ?::int8[]) AS a(id_pedido, ultimo)
+                WHERE t.id_pedido = a.id_pedido AND t.id_tracking <= a.ultimo
+                """;
+        String sqlChat = """
+                DELETE FROM chat_mensajes m
+                USING unnest(?::int8[], ?::int8[]) AS a(id_conversacion, ultimo)
+                WHERE m.id_conversacion = a.id_conversacion AND m.id_mensaje <= a.ultimo
+                """;
+        try (Connection conn = Database.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(sqlIndice)) {
+                ps.setString(1, segmento);
+                ps.setObject(2, ids);
+                ps.setObject(3, conversaciones);
+                ps.setObject(4, desplazamientos);
+                ps.setObject(5, longitudes);
+                ps.setObject(6, crcs);
+                ps.setObject(7, puntos);
+                ps.setObject(8, numMensajes);
+                ps.executeUpdate();
+            }
+            long borradasRuta;
+            try (PreparedStatement ps = conn.prepareStatement(sqlRuta)) {
+                ps.setObject(1, ids);
+                ps.setObject(2, ultimosTracking);
+                borradasRuta = ps.executeUpdate();
+            }
+            long borradosChat;
+            try (PreparedStatement ps = conn.prepareStatement(sqlChat)) {
+                ps.setObject(1, conversaciones);
+                ps.setObject(2, ultimosMensaje);
+                borradosChat = ps.executeUpdate();
+            }
+            return new long[] {borradasRuta, borradosChat};
+        }
+    }
+
+    // ===============================
+    // CONSULTA DEL ARCHIVO
+    // ===============================
+    public Optional<IndiceArchivo> porPedido(int idPedido) throws SQLException {
+        return buscar("id_pedido = ?", idPedido);
+    }
+
+    public Optional<IndiceArchivo> porConversacion(long idConversacion) throws SQLException {
+        return buscar("id_conversacion = ?", idConversacion);
+    }
+
+    private Optional<IndiceArchivo> buscar(String condicion, long valor) throws SQLException {
+        String sql = "SELECT id_pedido, id_conversacion, segmento, desplazamiento, longitud, crc32"
+                + " FROM pedidos_archivados WHERE " + condicion + " LIMIT 1";
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long conv = rs.getLong(2);
+                    return Optional.of(new IndiceArchivo(rs.getInt(1), rs.wasNull() ? null : conv, rs.getString(3),
+                            rs.getLong(4), rs.getInt(5), (int) rs.getLong(6)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Lee del segmento el contenido archivado de un pedido.
+     */
+    public PedidoArchivado leer(IndiceArchivo indice) throws SQLException {
+        if (DIRECTORIO == null) {
+            throw new SQLException("El pedido " + indice.idPedido()
+                    + " esta archivado pero ARCHIVE_DIR no esta configurado");
+        }
+        try {
+            return SegmentoArchivo.leer(DIRECTORIO.resolve(indice.segmento()), indice.desplazamiento(),
+                    indice.longitud(), indice.crc32());
+        } catch (IOException e) {
+            throw new SQLException("No se pudo leer el archivo del pedido " + indice.idPedido() + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Estadisticas del indice: pedidos, puntos, mensajes y bytes archivados.
+     */
+    public Map<String, Object> resumen() throws SQLException {
+        String sql = """
+                SELECT COUNT(*), COALESCE(SUM(puntos), 0), COALESCE(SUM(mensajes), 0),
+                       COALESCE(SUM(longitud), 0), COUNT(DISTINCT segmento)
+                FROM pedidos_archivados
+                """;
+        Map<String, Object> datos = new LinkedHashMap<>();
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            datos.put("pedidos", rs.getLong(1));
+            datos.put("puntos", rs.getLong(2));
+            datos.put("mensajes", rs.getLong(3));
+            datos.put("bytes_comprimidos", rs.getLong(4));
+            datos.put("segmentos", rs.getLong(5));
+        }
+        return datos;
+    }
+
+    private static final class Ruta {
+        double[] latitudes = new double[16];
+        double[] longitudes = new double[16];
+        long[] instantes = new long[16];
+        int n;
+        long ultimoId;
+
+        void agregar(long id, double latitud, double longitud, long instante) {
+            if (n == instantes.length) {
+                latitudes = Arrays.copyOf(latitudes, n * 2);
+                longitudes = Arrays.copyOf(longitudes, n * 2);
+                instantes = Arrays.copyOf(instantes, n * 2);
+            }
+            latitudes[n] = latitud;
+            longitudes[n] = longitud;
+            instantes[n] = instante;
+            n++;
+            ultimoId = Math.max(ultimoId, id);
+        }
+    }
+
+    private static Path resolverDirectorio() {
+        String valor = getEnv("ARCHIVE_DIR", null);
+        if (valor == null) {
+            return null;
+        }
+        Path ruta = Path.of(valor);
+        if (!ruta.isAbsolute()) {
+            System.err.println("ARCHIVE_DIR debe ser una ruta absoluta, se ignora: " + valor);
+            return null;
+        }
+        return ruta;
+    }
+
+    private static String getEnv(String key, String fallback) {
+        String value = System.getenv(key);
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+}
@@ -4,12 +4,22 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.config.UnitOfWork;
+import com.mycompany.delivery.api.model.ChatConversacion;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.services.ActividadUsuarios;
+import com.mycompany.delivery.api.services.ChatMessageCache;
+import com.mycompany.delivery.api.services.ReferenceData;
+import com.mycompany.delivery.api.util.SnowflakeIdGenerator;
 import java.util.Optional;
 
 /**
@@ -18,44 +28,27 @@ import java.util.Optional;
  */
 public class ChatRepository {
 
-    public ChatRepository() {
-        try {
-            ensureSchema();
-        } catch (SQLException e) {
-            throw new IllegalStateException("No se pudo inicializar el esquema de chat", e);
-        }
-    }
+    private final ArchivoRepository archivo = new ArchivoRepository();
 
     // Método público para guardar un mensaje desde el API
-    public Map<String, Object> guardarMensaje(com.mycompany.delivery.api.model.Mensaje mensaje) {
+    public ChatMensaje guardarMensaje(com.mycompany.delivery.api.model.Mensaje mensaje) throws SQLException {
         long idConversacion = mensaje.getIdPedido(); // Se asume que idConversacion = idPedido
         int idPedido = mensaje.getIdPedido();
         int idCliente = mensaje.getIdRemitente(); // Asumimos que el remitente es el cliente
 
-        try {
-            // Asegura que la conversación exista antes de insertar el mensaje.
+        // Asegura que la conversación exista antes de insertar el mensaje (misma transacción).
+        return UnitOfWork.transaccion(() -> {
             ensureConversation(idConversacion, idCliente, null, null, idPedido, false);
             return insertMensaje(idConversacion, mensaje.getIdRemitente(), null, mensaje.getMensaje());
-        } catch (SQLException e) {
-            System.err.println("Error al guardar mensaje: " + e.getMessage());
-            return Map.of("error", e.getMessage());
-        }
+        });
     }
 
     // Método público para obtener el chat por pedido
-    public java.util.List<java.util.Map<String, Object>> obtenerChatPorPedido(int idPedido) {
+    public java.util.List<ChatMensaje> obtenerChatPorPedido(int idPedido) {
         try {
-            // Buscar la conversación por idPedido
-            String sql = "SELECT id_conversacion FROM chat_conversaciones WHERE id_pedido = ? LIMIT 1";
-            try (java.sql.Connection c = com.mycompany.delivery.api.config.Database.getConnection();
-                    java.sql.PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, idPedido);
-                try (java.sql.ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        long idConversacion = rs.getLong("id_conversacion");
-                        return listarMensajes(idConversacion);
-                    }
-                }
+            Optional<Long> idConversacion = buscarConversacionPorPedido(idPedido);
+            if (idConversacion.isPresent()) {
+                return listarMensajes(idConversacion.get());
             }
         } catch (Exception e) {
             return java.util.List.of();
@@ -63,6 +56,19 @@ public class ChatRepository {
         return java.util.List.of();
     }
 
+    public Optional<Long> buscarConversacionPorPedido(int idPedido) throws SQLException {
+        String sql = "SELECT id_conversacion FROM chat_conversaciones WHERE id_pedido = ? LIMIT 1";
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, idPedido);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(rs.getLong("id_conversacion"));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
     private static final String BOT_EMAIL = "chatbot@system.local";
     private static final String BOT_NAME = "Asistente Virtual";
 
@@ -90,7 +96,7 @@ public class ChatRepository {
                     es_chatbot = COALESCE(chat_conversaciones.es_chatbot, EXCLUDED.es_chatbot),
                     activa = COALESCE(EXCLUDED.activa, chat_conversaciones.activa)
                 """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             ps.setObject(2, idPedido);
             ps.setObject(3, idCliente);
@@ -109,78 +115,136 @@ public class ChatRepository {
      * @param idDestinatario El ID del usuario que recibe el mensaje (puede ser
      *                       nulo).
      * @param mensaje        El contenido del mensaje.
-     * @return Un mapa que representa el mensaje insertado, o un mapa vacío si
-     *         falla.
+     * @return El mensaje insertado.
      * @throws SQLException Si ocurre un error en la base de datos.
      */
-    public Map<String, Object> insertMensaje(long idConversacion, //
+    public ChatMensaje insertMensaje(long idConversacion, //
             int idRemitente, Integer idDestinatario, String mensaje) throws SQLException {
         String sql = """
                 INSERT INTO chat_mensajes (id_conversacion, id_remitente, id_destinatario, mensaje, created_at)
                 VALUES (?, ?, ?, ?, NOW())
-                RETURNING id_mensaje, created_at
+                RETURNING id_mensaje, created_at,
+                          (SELECT nombre FROM usuarios WHERE id_usuario = chat_mensajes.id_remitente) AS remitente_nombre
                 """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             ps.setInt(2, idRemitente);
             ps.setObject(3, idDestinatario);
             ps.setString(4, mensaje);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("id_mensaje", rs.getLong("id_mensaje"));
-                    map.put("id_conversacion", idConversacion);
-                    map.put("id_remitente", idRemitente);
-                    map.put("id_destinatario", idDestinatario);
-                    map.put("mensaje", mensaje);
-                    map.put("created_at", rs.getTimestamp("created_at"));
-                    return map;
+                    ChatMensaje nuevo = new ChatMensaje(rs.getLong(1), idConversacion, idRemitente, idDestinatario,
+                            mensaje, rs.getTimestamp(2), rs.getString(3),
+                            idRemitente == ReferenceData.getInstance().botChatId());
+                    // Se agrega al buffer de mensajes recientes si la conversacion esta en memoria.
+                    UnitOfWork.alConfirmar(() -> ChatMessageCache.getInstance().registrar(idConversacion, nuevo));
+                    if (!nuevo.esBot()) {
+                        UnitOfWork.alConfirmar(() -> ActividadUsuarios.getInstance().registrarMensaje(idRemitente));
+                    }
+                    return nuevo;
                 }
             }
         }
-        return Map.of();
+        throw new SQLException("No se pudo insertar el mensaje");
     }
 
     /**
      * Lista todos los mensajes de una conversación específica, ordenados por fecha.
      *
      * @param idConversacion El ID de la conversación.
-     * @return Una lista de mapas, donde cada mapa es un mensaje.
+     * @return Los mensajes de la conversación.
      * @throws SQLException Si ocurre un error en la base de datos.
      */
-    public List<Map<String, Object>> listarMensajes(long idConversacion) throws SQLException {
-        String sql = """
-                SELECT m.id_mensaje,
-                       m.id_conversacion,
-                       m.id_remitente,
-                       m.id_destinatario,
-                       m.mensaje,
-                       m.created_at,
-                       u.nombre AS remitente_nombre,
-                       (LOWER(u.correo) = LOWER(?)) AS es_bot
-                FROM chat_mensajes m
-                LEFT JOIN usuarios u ON u.id_usuario = m.id_remitente
-                WHERE m.id_conversacion = ?
-                ORDER BY m.created_at ASC, m.id_mensaje ASC
-                """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, BOT_EMAIL);
+    public List<ChatMensaje> listarMensajes(long idConversacion) throws SQLException {
+        return listarMensajes(idConversacion, null);
+    }
+
+    /**
+     * Lista los mensajes de una conversación posteriores a {@code afterId} (todos
+     * si es nulo), ordenados por id. Si la conversación pertenece a un pedido
+     * archivado, los mensajes archivados van delante de los que sigan en la
+     * tabla; el archivo solo se consulta al pedir el historial completo o
+     * cuando la tabla no devuelve nada, y en ese caso se recuerda si la
+     * conversacion esta archivada (ver {@link #archivoDe}).
+     */
+    public List<ChatMensaje> listarMensajes(long idConversacion, Long afterId) throws SQLException {
+        String sql = SqlCatalog.MENSAJES_CHAT
+                + (afterId != null ? "  AND m.id_mensaje > ?\n" : "")
+                + SqlCatalog.MENSAJES_CHAT_ORDEN;
+        List<ChatMensaje> vivos;
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, ReferenceData.getInstance().botChatId());
             ps.setLong(2, idConversacion);
+            ps.setLong(3, idConversacion);
+            if (afterId != null) {
+                ps.setLong(4, afterId);
+            }
             try (ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> list = new ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    row.put("id_mensaje", rs.getLong("id_mensaje"));
-                    row.put("id_conversacion", rs.getLong("id_conversacion"));
-                    row.put("id_remitente", rs.getInt("id_remitente"));
-                    row.put("id_destinatario", (Integer) rs.getObject("id_destinatario"));
-                    row.put("mensaje", rs.getString("mensaje"));
-                    row.put("created_at", rs.getTimestamp("created_at"));
-                    row.put("remitente_nombre", rs.getString("remitente_nombre"));
-                    row.put("es_bot", rs.getBoolean("es_bot"));
-                    list.add(row);
+                vivos = SqlCatalog.MENSAJE_CHAT.todos(rs);
+            }
+        }
+        if (afterId != null && !vivos.isEmpty()) {
+            return vivos;
+        }
+        Optional<ArchivoRepository.IndiceArchivo> archivado = archivoDe(idConversacion, afterId != null);
+        if (archivado.isEmpty()) {
+            return vivos;
+        }
+        List<ChatMensaje> todos = new ArrayList<>();
+        long desde = afterId != null ? afterId : Long.MIN_VALUE;
+        for (ChatMensaje m : archivo.leer(archivado.get()).mensajes()) {
+            if (m.idMensaje() > desde) {
+                todos.add(m);
+            }
+        }
+        todos.addAll(vivos);
+        return todos;
+    }
+
+    // Indice del archivo por conversacion (Optional.empty(): no archivada). Un
+    // pedido archivado no vuelve a la tabla, asi que la entrada positiva no
+    // caduca; la negativa vale ARCHIVO_NEGATIVO_MS y solo la usan los sondeos
+    // con afterId. El historial completo siempre comprueba, para no perder los
+    // mensajes que se acaban de archivar.
+    private static final long ARCHIVO_NEGATIVO_MS = getEnvLong("CHAT_ARCHIVO_CACHE_SECONDS", 60) * 1000L;
+    private static final int ARCHIVO_MAX_ENTRADAS = (int) Math.max(1, getEnvLong("CHAT_ARCHIVO_CACHE_MAX", 10_000));
+
+    private record EstadoArchivo(Optional<ArchivoRepository.IndiceArchivo> indice, long comprobadoEn) {
+    }
+
+    private static final Map<Long, EstadoArchivo> ARCHIVO_POR_CONVERSACION = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, EstadoArchivo> mayor) {
+                    return size() > ARCHIVO_MAX_ENTRADAS;
                 }
-                return list;
+            });
+
+    private Optional<ArchivoRepository.IndiceArchivo> archivoDe(long idConversacion, boolean sondeo)
+            throws SQLException {
+        EstadoArchivo estado = ARCHIVO_POR_CONVERSACION.get(idConversacion);
+        if (estado != null && (estado.indice().isPresent()
+                || (sondeo && System.currentTimeMillis() - estado.comprobadoEn() < ARCHIVO_NEGATIVO_MS))) {
+            return estado.indice();
+        }
+        Optional<ArchivoRepository.IndiceArchivo> indice = archivo.porConversacion(idConversacion);
+        ARCHIVO_POR_CONVERSACION.put(idConversacion, new EstadoArchivo(indice, System.currentTimeMillis()));
+        return indice;
+    }
+
+    /**
+     * Mensajes de la conversación creados desde {@code desde}, ordenados por id.
+     * Solo consulta la tabla: sirve para releer una ventana reciente.
+     */
+    public List<ChatMensaje> listarMensajesDesde(long idConversacion, Timestamp desde) throws SQLException {
+        String sql = SqlCatalog.MENSAJES_CHAT + "  AND m.created_at >= ?\n" + SqlCatalog.MENSAJES_CHAT_ORDEN;
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, ReferenceData.getInstance().botChatId());
+            ps.setLong(2, idConversacion);
+            ps.setLong(3, idConversacion);
+            ps.setTimestamp(4, desde);
+            try (ResultSet rs = ps.executeQuery()) {
+                return SqlCatalog.MENSAJE_CHAT.todos(rs);
             }
         }
     }
@@ -189,35 +253,17 @@ public class ChatRepository {
      * Lista todas las conversaciones en las que participa un usuario.
      *
      * @param idUsuario El ID del usuario.
-     * @return Una lista de mapas, donde cada mapa representa una conversación.
+     * @return Las conversaciones del usuario.
      * @throws SQLException Si ocurre un error en la base de datos.
      */
-    public List<Map<String, Object>> listarConversacionesPorUsuario(int idUsuario) throws SQLException {
-        String sql = """
-                SELECT id_conversacion, id_pedido, id_cliente, id_delivery, id_admin_soporte, es_chatbot, created_at, activa
-                FROM chat_conversaciones
-                WHERE id_cliente = ? OR id_delivery = ? OR id_admin_soporte = ?
-                ORDER BY created_at DESC
-                """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+    public List<ChatConversacion> listarConversacionesPorUsuario(int idUsuario) throws SQLException {
+        try (Connection c = Database.getConnection(DbPool.CHAT);
+             PreparedStatement ps = c.prepareStatement(SqlCatalog.CONVERSACIONES_DE_USUARIO)) {
             ps.setInt(1, idUsuario);
             ps.setInt(2, idUsuario);
             ps.setInt(3, idUsuario);
             try (ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> list = new ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    row.put("id_conversacion", rs.getLong("id_conversacion"));
-                    row.put("id_pedido", (Integer) rs.getObject("id_pedido"));
-                    row.put("id_cliente", (Integer) rs.getObject("id_cliente"));
-                    row.put("id_delivery", (Integer) rs.getObject("id_delivery"));
-                    row.put("id_admin_soporte", (Integer) rs.getObject("id_admin_soporte"));
-                    row.put("es_chatbot", rs.getBoolean("es_chatbot"));
-                    row.put("created_at", rs.getTimestamp("created_at"));
-                    row.put("activa", rs.getObject("activa"));
-                    list.add(row);
-                }
-                return list;
+                return SqlCatalog.CONVERSACION.todos(rs);
             }
         }
     }
@@ -232,7 +278,7 @@ public class ChatRepository {
      */
     public boolean conversationExists(long idConversacion) throws SQLException {
         String sql = "SELECT 1 FROM chat_conversaciones WHERE id_conversacion = ?";
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next();
@@ -256,7 +302,7 @@ public class ChatRepository {
                 ORDER BY created_at DESC
                 LIMIT 1
                 """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, idUsuario);
             ps.setInt(2, idUsuario);
             ps.setInt(3, idUsuario);
@@ -266,7 +312,7 @@ public class ChatRepository {
                 }
             }
         }
-        long newId = System.currentTimeMillis();
+        long newId = nuevoIdConversacion();
         ensureConversation(newId, idUsuario, null, null, null, false);
         return newId;
     }
@@ -291,7 +337,7 @@ public class ChatRepository {
                 ORDER BY created_at DESC
                 LIMIT 1
                 """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, idUsuario);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -300,11 +346,33 @@ public class ChatRepository {
             }
         }
         // Si no existe, crea una nueva conversación específica para el bot
-        long newId = System.currentTimeMillis();
+        long newId = nuevoIdConversacion();
         ensureConversation(newId, idUsuario, null, null, null, true); // Crea una conversación marcada como chatbot
         return newId;
     }
 
+    // Si el reloj retrocedio antes de un reinicio, el generador no recuerda lo
+    // que ya emitio: la primera vez se adelanta hasta el mayor id guardado.
+    private static volatile boolean idsAsegurados;
+
+    private static long nuevoIdConversacion() throws SQLException {
+        if (!idsAsegurados) {
+            synchronized (ChatRepository.class) {
+                if (!idsAsegurados) {
+                    try (Connection c = Database.getConnection(DbPool.CHAT);
+                         PreparedStatement ps = c.prepareStatement("SELECT MAX(id_conversacion) FROM chat_conversaciones");
+                         ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            SnowflakeIdGenerator.avanzarHasta(rs.getLong(1));
+                        }
+                    }
+                    idsAsegurados = true;
+                }
+            }
+        }
+        return SnowflakeIdGenerator.nextId();
+    }
+
     /**
      * Asegura que el usuario del "Asistente Virtual" (chatbot) exista en la base de
      * datos. Si no existe, lo crea con el rol de 'soporte'.
@@ -314,7 +382,7 @@ public class ChatRepository {
      */
     public int ensureBotUser() throws SQLException {
         String select = "SELECT id_usuario FROM usuarios WHERE correo = ?";
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(select)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(select)) {
             ps.setString(1, BOT_EMAIL);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -328,14 +396,14 @@ public class ChatRepository {
                 VALUES (?, ?, ?, 'soporte', '0000000000')
                 ON CONFLICT (correo) DO NOTHING
                 """;
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(insert)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(insert)) {
             ps.setString(1, BOT_NAME);
             ps.setString(2, BOT_EMAIL);
             ps.setString(3, "chatbot123");
             ps.executeUpdate();
         }
 
-        try (Connection c = Database.getConnection(); PreparedStatement ps = c.prepareStatement(select)) {
+        try (Connection c = Database.getConnection(DbPool.CHAT); PreparedStatement ps = c.prepareStatement(select)) {
             ps.setString(1, BOT_EMAIL);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -348,7 +416,7 @@ public class ChatRepository {
 
     public Optional<String> buscarRespuestaPredefinida(String mensaje, String scope) throws SQLException {
         String sql = "SELECT respuesta FROM fn_chatbot_match_predef(?, ?, ?, 'es')";
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, mensaje);
             ps.setString(2, scope);
@@ -362,60 +430,15 @@ public class ChatRepository {
         return Optional.empty();
     }
 
-    private void ensureSchema() throws SQLException {
-        final String createConversaciones = """
-                CREATE TABLE IF NOT EXISTS chat_conversaciones (
-                    id_conversacion BIGINT PRIMARY KEY,
-                    id_pedido INT REFERENCES pedidos(id_pedido) ON DELETE SET NULL,
-                    id_cliente INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
-                    id_delivery INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
-                    id_admin_soporte INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
-                    canal VARCHAR(50),
-                    es_chatbot BOOLEAN NOT NULL DEFAULT FALSE,
-                    activa BOOLEAN NOT NULL DEFAULT TRUE,
-                    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
-                    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
-                )
-                """;
-
-        final String createMensajes = """
-                CREATE TABLE IF NOT EXISTS chat_mensajes (
-                    id_mensaje SERIAL PRIMARY KEY,
-                    id_conversacion BIGINT NOT NULL REFERENCES chat_conversaciones(id_conversacion) ON DELETE CASCADE,
-                    id_remitente INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
-                    id_destinatario INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
-                    tipo VARCHAR(20) NOT NULL DEFAULT 'texto',
-                    mensaje TEXT NOT NULL,
-                    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
-                    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
-                )
-                """;
-
-        final String idxCliente = """
-                CREATE INDEX IF NOT EXISTS idx_chatconv_cliente
-                    ON chat_conversaciones(id_cliente)
-                """;
-        final String idxDelivery = """
-                CREATE INDEX IF NOT EXISTS idx_chatconv_delivery
-                    ON chat_conversaciones(id_delivery)
-                """;
-        final String idxPedido = """
-                CREATE INDEX IF NOT EXISTS idx_chatconv_pedido
-                    ON chat_conversaciones(id_pedido)
-                """;
-        final String idxMensajes = """
-                CREATE INDEX IF NOT EXISTS idx_chatmsg_conv
-                    ON chat_mensajes(id_conversacion, created_at)
-                """;
-
-        try (Connection connection = Database.getConnection();
-                java.sql.Statement statement = connection.createStatement()) {
-            statement.executeUpdate(createConversaciones);
-            statement.executeUpdate(createMensajes);
-            statement.executeUpdate(idxCliente);
-            statement.executeUpdate(idxDelivery);
-            statement.executeUpdate(idxPedido);
-            statement.executeUpdate(idxMensajes);
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
         }
     }
 }
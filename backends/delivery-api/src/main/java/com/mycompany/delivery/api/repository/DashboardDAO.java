@@ -6,22 +6,44 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.services.MasVendidos;
 import com.mycompany.delivery.api.util.ApiException;
 
 public class DashboardDAO {
 
+    // Agrupar detalle_pedidos entero solo hace falta mientras el ranking en
+    // memoria (MasVendidos) no esta cargado.
+    private static final String TOP_PRODUCTO_EXACTO = """
+                SELECT p.nombre AS producto_mas_vendido,
+                       COALESCE(SUM(dp.cantidad),0)::int AS producto_mas_vendido_cantidad
+                FROM productos p
+                LEFT JOIN detalle_pedidos dp ON p.id_producto = dp.id_producto
+                GROUP BY p.id_producto, p.nombre
+                ORDER BY producto_mas_vendido_cantidad DESC
+                LIMIT 1
+            """;
+    private static final String SIN_TOP_PRODUCTO =
+            "SELECT NULL::text AS producto_mas_vendido, 0 AS producto_mas_vendido_cantidad";
+
     public Map<String, Object> obtenerEstadisticasAdmin() {
-        // Intento función consolidada
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM fn_admin_dashboard()");
-             ResultSet rs = stmt.executeQuery()) {
+        Optional<Map.Entry<String, Long>> masVendido = MasVendidos.getInstance().masVendido();
 
-            if (rs.next()) return mapStats(rs);
-        } catch (SQLException ignored) {}
+        // La función consolidada también agrupa detalle_pedidos para el producto
+        // más vendido: solo se usa mientras MasVendidos no está cargado.
+        if (masVendido.isEmpty()) {
+            try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+                 PreparedStatement stmt = conn.prepareStatement("SELECT * FROM fn_admin_dashboard()");
+                 ResultSet rs = stmt.executeQuery()) {
+
+                if (rs.next()) return mapStats(rs);
+            } catch (SQLException ignored) {}
+        }
 
-        // Fallback inline (con CASTs)
+        // Inline (con CASTs): solo contadores si el ranking en memoria ya responde
         final String inlineSql = """
             WITH ventas AS (
                 SELECT COALESCE(SUM(total) FILTER (WHERE created_at::date = CURRENT_DATE), 0) AS ventas_hoy,
@@ -34,15 +56,7 @@ public class DashboardDAO {
             ), usuarios AS (
                 SELECT COUNT(*) FILTER (WHERE created_at::date = CURRENT_DATE)::int AS nuevos_clientes
                 FROM usuarios
-            ), top_producto AS (
-                SELECT p.nombre AS producto_mas_vendido,
-                       COALESCE(SUM(dp.cantidad),0)::int AS producto_mas_vendido_cantidad
-                FROM productos p
-                LEFT JOIN detalle_pedidos dp ON p.id_producto = dp.id_producto
-                GROUP BY p.id_producto, p.nombre
-                ORDER BY producto_mas_vendido_cantidad DESC
-                LIMIT 1
-            )
+            ), top_producto AS (%s)
             SELECT v.ventas_hoy, v.ventas_totales,
                    pe.pedidos_pendientes, pe.pedidos_entregados,
                    u.nuevos_clientes,
@@ -50,12 +64,12 @@ public class DashboardDAO {
                    COALESCE(tp.producto_mas_vendido_cantidad,0) AS producto_mas_vendido_cantidad
             FROM ventas v, pedidos pe, usuarios u
             LEFT JOIN top_producto tp ON TRUE
-        """;
+        """.formatted(masVendido.isPresent() ? SIN_TOP_PRODUCTO : TOP_PRODUCTO_EXACTO);
 
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
              PreparedStatement stmt = conn.prepareStatement(inlineSql);
              ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) return mapStats(rs);
+            if (rs.next()) return conMasVendido(mapStats(rs), masVendido);
         } catch (SQLException e) {
             throw new ApiException(500, "Error al consultar estadísticas del dashboard", e);
         }
@@ -80,7 +94,7 @@ public class DashboardDAO {
             FROM pedidos
             WHERE id_delivery = ?
         """;
-        try (Connection c = Database.getConnection();
+        try (Connection c = Database.getReadConnection(DbPool.ANALITICA);
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, idDelivery);
             try (ResultSet rs = ps.executeQuery()) {
@@ -101,6 +115,15 @@ public class DashboardDAO {
         }
     }
 
+    private static Map<String, Object> conMasVendido(Map<String, Object> stats,
+            Optional<Map.Entry<String, Long>> masVendido) {
+        masVendido.ifPresent(m -> {
+            stats.put("producto_mas_vendido", m.getKey());
+            stats.put("producto_mas_vendido_cantidad", m.getValue().intValue());
+        });
+        return stats;
+    }
+
     private Map<String, Object> mapStats(ResultSet rs) throws SQLException {
         Map<String, Object> stats = new HashMap<>();
         stats.put("ventas_hoy", rs.getBigDecimal("ventas_hoy"));
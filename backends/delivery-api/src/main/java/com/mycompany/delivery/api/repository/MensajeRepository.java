@@ -1,6 +1,7 @@
 package com.mycompany.delivery.api.repository;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
 import com.mycompany.delivery.api.model.Mensaje;
 
 import java.sql.*;
@@ -19,7 +20,7 @@ public class MensajeRepository {
     public boolean insertarMensaje(Mensaje mensaje) throws SQLException {
         String sql = "INSERT INTO mensajes (id_pedido, id_remitente, mensaje, fecha_envio) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
 
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, mensaje.getIdPedido());
             stmt.setInt(2, mensaje.getIdRemitente());
@@ -32,32 +33,19 @@ public class MensajeRepository {
     // OBTENER MENSAJES POR PEDIDO
     // ===========================
     public List<Mensaje> obtenerMensajesPorPedido(int idPedido) throws SQLException {
-        String sql = "SELECT * FROM mensajes WHERE id_pedido = ? ORDER BY fecha_envio ASC";
+        String sql = SqlCatalog.MENSAJES_DE_PEDIDO;
         List<Mensaje> mensajes = new ArrayList<>();
 
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idPedido);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    mensajes.add(mapRowToMensaje(rs));
+                    mensajes.add(SqlCatalog.MENSAJE.map(rs));
                 }
             }
         }
         return mensajes;
     }
-
-    // ===========================
-    // MAPEO RESULTSET → MODELO
-    // ===========================
-    private Mensaje mapRowToMensaje(ResultSet rs) throws SQLException {
-        Mensaje m = new Mensaje();
-        m.setIdMensaje(rs.getInt("id_mensaje"));
-        m.setIdPedido(rs.getInt("id_pedido"));
-        m.setIdRemitente(rs.getInt("id_remitente"));
-        m.setMensaje(rs.getString("mensaje"));
-        m.setFechaEnvio(rs.getTimestamp("fecha_envio"));
-        return m;
-    }
 }
@@ -1,6 +1,7 @@
 package com.mycompany.delivery.api.repository;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
 import com.mycompany.delivery.api.model.Negocio;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
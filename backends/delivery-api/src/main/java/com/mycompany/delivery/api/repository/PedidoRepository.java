@@ -79,7 +79,7 @@ public class PedidoRepository {
     }
 
     public List<Pedido> listarPedidos() throws SQLException {
-        String sql = "SELECT * FROM pedidos ORDER BY fecha_pedido DESC";
+        String sql = SqlCatalog.PEDIDOS_TODOS;
         List<Pedido> pedidos = new ArrayList<>();
 
         try (Connection conn = Database.getConnection();
@@ -87,21 +87,21 @@ public class PedidoRepository {
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                pedidos.add(mapRowToPedido(rs));
+                pedidos.add(SqlCatalog.PEDIDO.map(rs));
             }
         }
         return pedidos;
     }
 
     public Optional<Pedido> obtenerPorId(int idPedido) throws SQLException {
-        String sql = "SELECT * FROM pedidos WHERE id_pedido = ?";
+        String sql = SqlCatalog.PEDIDO_POR_ID;
 
         try (Connection conn = Database.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idPedido);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapRowToPedido(rs));
+                    return Optional.of(SqlCatalog.PEDIDO.map(rs));
                 }
             }
         }
@@ -109,7 +109,7 @@ public class PedidoRepository {
     }
 
     public List<Pedido> listarPorCliente(int idCliente) throws SQLException {
-        String sql = "SELECT * FROM pedidos WHERE id_cliente = ? ORDER BY fecha_pedido DESC";
+        String sql = SqlCatalog.PEDIDOS_POR_CLIENTE;
         List<Pedido> pedidos = new ArrayList<>();
 
         try (Connection conn = Database.getConnection();
@@ -117,7 +117,7 @@ public class PedidoRepository {
             stmt.setInt(1, idCliente);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    pedidos.add(mapRowToPedido(rs));
+                    pedidos.add(SqlCatalog.PEDIDO.map(rs));
                 }
             }
         }
@@ -125,7 +125,7 @@ public class PedidoRepository {
     }
 
     public List<Pedido> listarPorEstado(String estado) throws SQLException {
-        String sql = "SELECT * FROM pedidos WHERE estado = ? ORDER BY fecha_pedido ASC";
+        String sql = SqlCatalog.PEDIDOS_POR_ESTADO;
         List<Pedido> pedidos = new ArrayList<>();
 
         try (Connection conn = Database.getConnection();
@@ -133,7 +133,7 @@ public class PedidoRepository {
             stmt.setString(1, estado);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    pedidos.add(mapRowToPedido(rs));
+                    pedidos.add(SqlCatalog.PEDIDO.map(rs));
                 }
             }
         }
@@ -141,13 +141,12 @@ public class PedidoRepository {
     }
 
     public boolean actualizarEstado(int idPedido, String nuevoEstado) throws SQLException {
-        String sql = "UPDATE pedidos SET estado = ?, fecha_entrega = CASE WHEN ? = 'entregado' THEN CURRENT_TIMESTAMP ELSE fecha_entrega END WHERE id_pedido = ?";
+        String sql = SqlCatalog.PEDIDO_ACTUALIZAR_ESTADO;
 
         try (Connection conn = Database.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, nuevoEstado);
-            stmt.setString(2, nuevoEstado);
-            stmt.setInt(3, idPedido);
+            stmt.setInt(2, idPedido);
             return stmt.executeUpdate() > 0;
         }
     }
@@ -166,38 +165,15 @@ public class PedidoRepository {
     
 
     public Optional<Pedido> obtenerPedidoMasRecientePorCliente(int idCliente) throws SQLException {
-        String sql = """
-                SELECT * FROM pedidos
-                WHERE id_cliente = ?
-                  AND estado NOT IN ('entregado', 'cancelado')
-                ORDER BY fecha_pedido DESC
-                LIMIT 1
-                """;
+        String sql = SqlCatalog.PEDIDO_ACTIVO_DE_CLIENTE;
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idCliente);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapRowToPedido(rs));
+                    return Optional.of(SqlCatalog.PEDIDO.map(rs));
                 }
             }
         }
         return Optional.empty();
     }
-
-  
-
-    private Pedido mapRowToPedido(ResultSet rs) throws SQLException {
-        Pedido p = new Pedido();
-        p.setIdPedido(rs.getInt("id_pedido"));
-        p.setIdCliente(rs.getInt("id_cliente"));
-        p.setIdDelivery(rs.getObject("id_delivery") != null ? rs.getInt("id_delivery") : null);
-        p.setIdUbicacion(rs.getInt("id_ubicacion"));
-        p.setEstado(rs.getString("estado"));
-        p.setTotal(rs.getDouble("total"));
-        p.setDireccionEntrega(rs.getString("direccion_entrega"));
-        p.setMetodoPago(rs.getString("metodo_pago"));
-        p.setFechaPedido(rs.getTimestamp("fecha_pedido"));
-        p.setFechaEntrega(rs.getTimestamp("fecha_entrega"));
-        return p;
-    }
-}
\ No newline at end of file
+}
@@ -2,11 +2,20 @@ package com.mycompany.delivery.api.repository;
 
 import com.mycompany.delivery.api.config.Database;
 import com.mycompany.delivery.api.model.Producto;
+import com.mycompany.delivery.api.model.ProductoImportado;
+import com.mycompany.delivery.api.repository.ReferenciaRepository.Categoria;
+import com.mycompany.delivery.api.services.ReferenceData;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -17,6 +26,39 @@ import java.util.Optional;
  */
 public class ProductoRepository {
 
+    /** Resultado del merge de una importacion masiva. */
+    public record ResultadoImportacion(int creados, int actualizados) {
+    }
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    // Los productos se identifican por negocio y nombre (sin distinguir
+    // mayusculas); la tabla no tiene clave unica para ON CONFLICT, por eso el
+    // upsert es un UPDATE mas un INSERT de los que faltan en la misma sentencia.
+    private static final String MERGE_IMPORTACION = """
+            WITH actualizados AS (
+                UPDATE productos p
+                SET id_categoria = i.id_categoria,
+                    descripcion = COALESCE(i.descripcion, p.descripcion),
+                    precio = i.precio,
+                    imagen_url = COALESCE(i.imagen_url, p.imagen_url),
+                    disponible = COALESCE(i.disponible, p.disponible)
+                FROM importacion_productos i
+                WHERE p.id_negocio = ? AND LOWER(p.nombre) = LOWER(i.nombre)
+                RETURNING p.id_producto
+            ), creados AS (
+                INSERT INTO productos (id_negocio, id_categoria, nombre, descripcion, precio, imagen_url, disponible)
+                SELECT ?, i.id_categoria, i.nombre, COALESCE(i.descripcion, ''), i.precio, i.imagen_url,
+                       COALESCE(i.disponible, TRUE)
+                FROM importacion_productos i
+                WHERE NOT EXISTS (SELECT 1 FROM productos p
+                                  WHERE p.id_negocio = ? AND LOWER(p.nombre) = LOWER(i.nombre))
+                ORDER BY i.fila
+                RETURNING id_producto
+            )
+            SELECT (SELECT count(*) FROM creados), (SELECT count(*) FROM actualizados)
+            """;
+
     private static final String SELECT_BASE = """
             SELECT  p.id_producto,
                     p.nombre,
@@ -68,9 +110,9 @@ public class ProductoRepository {
     }
 
     public Optional<Producto> crearProducto(Producto producto) throws SQLException {
+        int idCategoria = resolveCategoriaId(producto);
+        int idNegocio = resolveNegocioId(producto, idCategoria);
         try (Connection conn = Database.getConnection()) {
-            int idCategoria = resolveCategoriaId(conn, producto);
-            int idNegocio = resolveNegocioId(conn, producto, idCategoria);
 
             String sql = """
                     INSERT INTO productos (id_negocio, id_categoria, nombre, descripcion, precio, imagen_url, disponible)
@@ -115,6 +157,91 @@ public class ProductoRepository {
         return crearProducto(producto);
     }
 
+    /**
+     * Carga las filas en una tabla temporal con {@code COPY} y las fusiona con
+     * los productos del negocio en una sola sentencia. Debe llamarse dentro de
+     * una transaccion ({@code UnitOfWork.transaccion}): la tabla temporal se
+     * borra al confirmar y el bloqueo consultivo serializa importaciones
+     * simultaneas del mismo negocio.
+     */
+    public ResultadoImportacion importarProductos(int idNegocio, List<ProductoImportado> filas) throws SQLException {
+        try (Connection conn = Database.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("""
+                        CREATE TEMP TABLE importacion_productos (
+                            fila INT, nombre TEXT, descripcion TEXT, precio NUMERIC, imagen_url TEXT,
+                            disponible BOOLEAN, id_categoria INT
+                        ) ON COMMIT DROP
+                        """);
+            }
+            copiarFilas(conn, filas);
+
+            String bloqueo = "SELECT pg_advisory_xact_lock(hashtext('importacion_productos'), ?)";
+            try (PreparedStatement lock = conn.prepareStatement(bloqueo)) {
+                lock.setInt(1, idNegocio);
+                lock.execute();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(MERGE_IMPORTACION)) {
+                stmt.setInt(1, idNegocio);
+                stmt.setInt(2, idNegocio);
+                stmt.setInt(3, idNegocio);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    return new ResultadoImportacion(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+    }
+
+    private void copiarFilas(Connection conn, List<ProductoImportado> filas) throws SQLException {
+        CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY importacion_productos FROM STDIN WITH (FORMAT csv)");
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(COPY_BUFFER_BYTES + 1024);
+            StringBuilder linea = new StringBuilder(256);
+            for (ProductoImportado f : filas) {
+                linea.setLength(0);
+                linea.append(f.fila()).append(',');
+                csv(linea, f.nombre()).append(',');
+                csv(linea, f.descripcion()).append(',');
+                linea.append(f.precio().toPlainString()).append(',');
+                csv(linea, f.imagenUrl()).append(',');
+                linea.append(f.disponible() == null ? "" : f.disponible().toString()).append(',');
+                linea.append(f.idCategoria()).append('\n');
+                byte[] bytes = linea.toString().getBytes(StandardCharsets.UTF_8);
+                buffer.write(bytes, 0, bytes.length);
+                if (buffer.size() >= COPY_BUFFER_BYTES) {
+                    copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                    buffer.reset();
+                }
+            }
+            if (buffer.size() > 0) {
+                copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            }
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    // En COPY csv un campo vacio sin comillas es NULL y "" es texto vacio.
+    private static StringBuilder csv(StringBuilder sb, String valor) {
+        if (valor == null) {
+            return sb;
+        }
+        sb.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
     public List<Producto> listarPorNegocio(int idNegocio) throws SQLException {
         String sql = SELECT_BASE + " WHERE p.id_negocio = ? ORDER BY p.nombre ASC";
         try (Connection conn = Database.getConnection();
@@ -135,9 +262,9 @@ public class ProductoRepository {
     }
 
     public boolean actualizarProducto(Producto producto) throws SQLException {
+        int idCategoria = resolveCategoriaId(producto);
+        int idNegocio = resolveNegocioId(producto, idCategoria);
         try (Connection conn = Database.getConnection()) {
-            int idCategoria = resolveCategoriaId(conn, producto);
-            int idNegocio = resolveNegocioId(conn, producto, idCategoria);
 
             String sql = """
                     UPDATE productos
@@ -209,9 +336,11 @@ public class ProductoRepository {
         return p;
     }
 
-    private int resolveCategoriaId(Connection conn, Producto producto) throws SQLException {
+    // Categorias resueltas desde el registro en memoria (ReferenceData).
+    private int resolveCategoriaId(Producto producto) throws SQLException {
+        ReferenceData ref = ReferenceData.getInstance();
         if (producto.getIdCategoria() > 0) {
-            if (categoriaExiste(conn, producto.getIdCategoria())) {
+            if (ref.categoria(producto.getIdCategoria()).isPresent()) {
                 return producto.getIdCategoria();
             }
             throw new SQLException("La categoria especificada no existe: " + producto.getIdCategoria());
@@ -220,47 +349,27 @@ public class ProductoRepository {
         if (nombreCategoria == null || nombreCategoria.isBlank()) {
             throw new SQLException("Categoria obligatoria para registrar el producto");
         }
-        String sql = "SELECT id_categoria FROM categorias WHERE LOWER(nombre) = LOWER(?) LIMIT 1";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, nombreCategoria.trim());
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int id = rs.getInt("id_categoria");
-                    producto.setIdCategoria(id);
-                    return id;
-                }
-            }
+        Optional<Categoria> categoria = ref.categoriaPorNombre(nombreCategoria);
+        if (categoria.isPresent()) {
+            int id = categoria.get().idCategoria();
+            producto.setIdCategoria(id);
+            return id;
         }
         throw new SQLException("Categoria no encontrada: " + nombreCategoria);
     }
 
-    private boolean categoriaExiste(Connection conn, int idCategoria) throws SQLException {
-        String sql = "SELECT 1 FROM categorias WHERE id_categoria = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, idCategoria);
-            try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next();
-            }
-        }
-    }
-
-    private int resolveNegocioId(Connection conn, Producto producto, int idCategoria) throws SQLException {
+    private int resolveNegocioId(Producto producto, int idCategoria) throws SQLException {
         if (producto.getIdNegocio() != null && producto.getIdNegocio() > 0) {
             return producto.getIdNegocio();
         }
-        String sql = "SELECT id_negocio FROM categorias WHERE id_categoria = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, idCategoria);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int idNegocio = rs.getInt("id_negocio");
-                    if (rs.wasNull()) {
-                        throw new SQLException("La categoria no tiene un negocio asociado");
-                    }
-                    producto.setIdNegocio(idNegocio);
-                    return idNegocio;
-                }
+        Optional<Categoria> categoria = ReferenceData.getInstance().categoria(idCategoria);
+        if (categoria.isPresent()) {
+            Integer idNegocio = categoria.get().idNegocio();
+            if (idNegocio == null) {
+                throw new SQLException("La categoria no tiene un negocio asociado");
             }
+            producto.setIdNegocio(idNegocio);
+            return idNegocio;
         }
         throw new SQLException("No fue posible determinar el negocio para la categoria " + idCategoria);
     }
@@ -1,75 +1,65 @@
 package com.mycompany.delivery.api.repository;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import com.mycompany.delivery.api.config.Database;
 
 public class RecomendacionRepository {
 
-    private static final String SQL_INSERT = "INSERT INTO recomendaciones (id_producto, id_usuario, puntuacion, comentario) VALUES (?, ?, ?, ?)";
-    private static final String SQL_UPDATE = "UPDATE recomendaciones SET puntuacion = ?, comentario = ? WHERE id_producto = ? AND id_usuario = ?";
+    // Una sola sentencia: dentro de una transaccion un INSERT fallido por la
+    // clave unica abortaria todo lo que venga despues. La CTE lee la puntuacion
+    // previa para ajustar los agregados en memoria sin recalcular AVG/COUNT;
+    // xmax = 0 distingue la insercion de la actualizacion.
+    private static final String SQL_GUARDAR = """
+            WITH previa AS (
+                SELECT puntuacion FROM recomendaciones WHERE id_producto = ? AND id_usuario = ?
+            )
+            INSERT INTO recomendaciones (id_producto, id_usuario, puntuacion, comentario)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (id_producto, id_usuario) DO UPDATE
+            SET puntuacion = EXCLUDED.puntuacion, comentario = EXCLUDED.comentario
+            RETURNING (xmax = 0) AS insertado, (SELECT puntuacion FROM previa) AS anterior, created_at
+            """;
 
-    public boolean guardar(int idProducto, int idUsuario, int puntuacion, String comentario) throws SQLException {
-        try (Connection c = Database.getConnection()) {
-            try {
-                // Intenta insertar primero
-                int inserted = insertarRecomendacion(c, idProducto, idUsuario, puntuacion, comentario);
-                return inserted > 0;
-            } catch (SQLException ex) {
-                // Si falla por clave duplicada (UNIQUE constraint), intenta actualizar
-                if ("23505".equals(ex.getSQLState())) {
-                    int updated = actualizarRecomendacion(c, idProducto, idUsuario, puntuacion, comentario);
-                    return updated > 0;
-                }
-                // Si es otro error, lo relanza
-                throw ex;
-            }
-        }
+    /**
+     * Resultado de un guardado: si fue insercion, la puntuacion que se reemplazo
+     * (solo en actualizaciones) y la fecha de creacion de la fila.
+     */
+    public record Guardado(boolean insertado, Integer puntuacionAnterior, Timestamp creadoEn) {
     }
 
-    private int insertarRecomendacion(Connection c, int idProducto, int idUsuario, int puntuacion, String comentario) throws SQLException {
-        try (PreparedStatement ps = c.prepareStatement(SQL_INSERT)) {
+    /**
+     * Inserta la resena o reemplaza la del mismo usuario. Si otra peticion la
+     * inserto a la vez, la CTE no la ve y {@code puntuacionAnterior} llega nula
+     * en una actualizacion: quien use el resultado debe recalcular.
+     */
+    public Optional<Guardado> guardar(int idProducto, int idUsuario, int puntuacion, String comentario) throws SQLException {
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement(SQL_GUARDAR)) {
             ps.setInt(1, idProducto);
             ps.setInt(2, idUsuario);
-            ps.setInt(3, puntuacion);
-            ps.setString(4, comentario);
-            return ps.executeUpdate();
-        }
-    }
-
-    private int actualizarRecomendacion(Connection c, int idProducto, int idUsuario, int puntuacion, String comentario) throws SQLException {
-        try (PreparedStatement ps = c.prepareStatement(SQL_UPDATE)) {
-            ps.setInt(1, puntuacion);
-            ps.setString(2, comentario);
             ps.setInt(3, idProducto);
             ps.setInt(4, idUsuario);
-            return ps.executeUpdate();
-        }
-    }
-
-    public Map<String, Object> resumen(int idProducto) throws SQLException {
-        String sql = "SELECT ROUND(AVG(puntuacion)::numeric, 1) AS rating, COUNT(*)::int AS total FROM recomendaciones WHERE id_producto = ?";
-        try (Connection c = Database.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, idProducto);
+            ps.setInt(5, puntuacion);
+            ps.setString(6, comentario);
             try (ResultSet rs = ps.executeQuery()) {
-                Map<String, Object> out = new HashMap<>();
-                out.put("rating", 0.0);
-                out.put("total", 0);
                 if (rs.next()) {
-                    out.put("rating", rs.getDouble("rating"));
-                    out.put("total", rs.getInt("total"));
+                    int anterior = rs.getInt(2);
+                    return Optional.of(new Guardado(rs.getBoolean(1), rs.wasNull() ? null : anterior, rs.getTimestamp(3)));
                 }
-                return out;
             }
         }
+        return Optional.empty();
     }
 
     public List<Map<String, Object>> listarPorProducto(int idProducto) throws SQLException {
@@ -94,8 +84,16 @@ public class RecomendacionRepository {
         }
     }
 
-    public List<Map<String, Object>> listarDestacadas() throws SQLException {
-        String sql = """
+    /**
+     * Fila de agregados por producto: suma y conteo de puntuaciones, ultima resena
+     * y datos del producto necesarios para el ranking de destacadas.
+     */
+    public record AgregadoProducto(int idProducto, String producto, String descripcion, BigDecimal precio,
+            String imagenUrl, String negocio, long suma, int total, Timestamp ultimaResena,
+            String comentarioReciente, Integer comentarioUsuario, Timestamp comentarioFecha) {
+    }
+
+    private static final String SQL_AGREGADOS = """
             SELECT
                 p.id_producto,
                 p.nombre AS producto,
@@ -103,52 +101,84 @@ public class RecomendacionRepository {
                 p.precio,
                 p.imagen_url,
                 n.nombre_comercial AS negocio,
-                ROUND(AVG(r.puntuacion)::numeric, 1) AS rating_promedio,
-                COUNT(r.id_recomendacion)::int AS total_reviews,
+                SUM(r.puntuacion)::bigint AS suma,
+                COUNT(r.id_recomendacion)::int AS total,
                 MAX(r.created_at) AS ultima_resena,
-                (
-                    SELECT r2.comentario
-                    FROM recomendaciones r2
-                    WHERE r2.id_producto = p.id_producto
-                      AND r2.comentario IS NOT NULL
-                      AND TRIM(r2.comentario) <> ''
-                    ORDER BY r2.created_at DESC
-                    LIMIT 1
-                ) AS comentario_reciente
+                c.comentario AS comentario_reciente,
+                c.id_usuario AS comentario_usuario,
+                c.created_at AS comentario_fecha
             FROM recomendaciones r
             JOIN productos p ON p.id_producto = r.id_producto
             LEFT JOIN negocios n ON n.id_negocio = p.id_negocio
+            LEFT JOIN LATERAL (
+                SELECT r2.comentario, r2.id_usuario, r2.created_at
+                FROM recomendaciones r2
+                WHERE r2.id_producto = p.id_producto
+                  AND r2.comentario IS NOT NULL
+                  AND TRIM(r2.comentario) <> ''
+                ORDER BY r2.created_at DESC
+                LIMIT 1
+            ) c ON TRUE
+            %s
             GROUP BY
                 p.id_producto,
                 p.nombre,
                 p.descripcion,
                 p.precio,
                 p.imagen_url,
-                n.nombre_comercial
-            ORDER BY rating_promedio DESC, total_reviews DESC, ultima_resena DESC
-            LIMIT 10
+                n.nombre_comercial,
+                c.comentario,
+                c.id_usuario,
+                c.created_at
             """;
 
+    /**
+     * Carga los agregados de todos los productos con resenas. Se ejecuta una vez
+     * al calentar el ranking (y al invalidarlo), no por cada peticion.
+     */
+    public List<AgregadoProducto> cargarAgregados() throws SQLException {
         try (Connection c = Database.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
+             PreparedStatement ps = c.prepareStatement(SQL_AGREGADOS.formatted(""));
              ResultSet rs = ps.executeQuery()) {
-
-            List<Map<String, Object>> list = new ArrayList<>();
+            List<AgregadoProducto> list = new ArrayList<>();
             while (rs.next()) {
-                Map<String, Object> m = new HashMap<>();
-                m.put("id_producto", rs.getInt("id_producto"));
-                m.put("producto", rs.getString("producto"));
-                m.put("descripcion", rs.getString("descripcion"));
-                m.put("precio", rs.getBigDecimal("precio"));
-                m.put("imagen_url", rs.getString("imagen_url"));
-                m.put("negocio", rs.getString("negocio"));
-                m.put("rating_promedio", rs.getDouble("rating_promedio"));
-                m.put("total_reviews", rs.getInt("total_reviews"));
-                m.put("ultima_resena", rs.getTimestamp("ultima_resena"));
-                m.put("comentario_reciente", rs.getString("comentario_reciente"));
-                list.add(m);
+                list.add(mapAgregado(rs));
             }
             return list;
         }
     }
+
+    /**
+     * Recalcula los agregados de un solo producto; se usa cuando el ajuste
+     * incremental no basta (primera resena o cambio del comentario mas reciente).
+     */
+    public Optional<AgregadoProducto> cargarAgregado(int idProducto) throws SQLException {
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement(SQL_AGREGADOS.formatted("WHERE r.id_producto = ?"))) {
+            ps.setInt(1, idProducto);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapAgregado(rs));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private AgregadoProducto mapAgregado(ResultSet rs) throws SQLException {
+        Integer comentarioUsuario = (Integer) rs.getObject("comentario_usuario");
+        return new AgregadoProducto(
+                rs.getInt("id_producto"),
+                rs.getString("producto"),
+                rs.getString("descripcion"),
+                rs.getBigDecimal("precio"),
+                rs.getString("imagen_url"),
+                rs.getString("negocio"),
+                rs.getLong("suma"),
+                rs.getInt("total"),
+                rs.getTimestamp("ultima_resena"),
+                rs.getString("comentario_reciente"),
+                comentarioUsuario,
+                rs.getTimestamp("comentario_fecha"));
+    }
 }
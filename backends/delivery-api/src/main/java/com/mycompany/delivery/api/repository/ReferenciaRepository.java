@@ -0,0 +1,57 @@
+package com.mycompany.delivery.api.repository;
+
+import com.mycompany.delivery.api.config.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lecturas de los catalogos pequenos y casi estaticos (roles y categorias).
+ * Solo se usa para poblar {@link com.mycompany.delivery.api.services.ReferenceData}.
+ */
+public class ReferenciaRepository {
+
+    public record Categoria(int idCategoria, String nombre, Integer idNegocio) {
+    }
+
+    /**
+     * @return id_rol indexado por nombre del rol.
+     */
+    public Map<String, Integer> cargarRoles() throws SQLException {
+        String sql = "SELECT id_rol, nombre FROM roles";
+        Map<String, Integer> roles = new HashMap<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String nombre = rs.getString("nombre");
+                if (nombre != null) {
+                    roles.put(nombre, rs.getInt("id_rol"));
+                }
+            }
+        }
+        return roles;
+    }
+
+    public List<Categoria> cargarCategorias() throws SQLException {
+        String sql = "SELECT id_categoria, nombre, id_negocio FROM categorias";
+        List<Categoria> categorias = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                categorias.add(new Categoria(
+                        rs.getInt("id_categoria"),
+                        rs.getString("nombre"),
+                        (Integer) rs.getObject("id_negocio")));
+            }
+        }
+        return categorias;
+    }
+}
@@ -1,6 +1,7 @@
 package com.mycompany.delivery.api.repository;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
 import com.mycompany.delivery.api.payloads.Payloads.SoporteRespuestaPayload;
 
 import java.sql.Array;
@@ -26,7 +27,7 @@ public final class RespuestaSoporteRepository {
         if (payload == null) {
             throw new IllegalArgumentException("Payload no puede ser nulo");
         }
-        try (Connection conn = Database.getConnection()) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
             Integer categoriaId = ensureCategoria(conn, payload.categoria);
             String sql = """
                     INSERT INTO chatbot_respuestas_predef
@@ -88,7 +89,7 @@ public final class RespuestaSoporteRepository {
         sql.append("ORDER BY p.prioridad, p.updated_at DESC");
 
         List<Map<String, Object>> list = new ArrayList<>();
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
                 PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             if (filtraCategoria) {
                 ps.setString(1, categoria);
@@ -135,7 +136,7 @@ public final class RespuestaSoporteRepository {
                 ORDER BY p.prioridad ASC, p.updated_at DESC
                 LIMIT 1
                 """;
-        try (Connection conn = Database.getConnection();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, categoria);
             try (ResultSet rs = ps.executeQuery()) {
@@ -155,7 +156,7 @@ public final class RespuestaSoporteRepository {
         }
         String sql = "SELECT id_predef, respuesta, prioridad FROM fn_chatbot_match_predef(?, ?, 'soporte', 'es') ORDER BY prioridad LIMIT 1";
         List<String> scopes = List.of("cliente", "mixto", "delivery");
-        try (Connection conn = Database.getConnection()) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
             for (String scope : scopes) {
                 try (PreparedStatement ps = conn.prepareStatement(sql)) {
                     ps.setString(1, texto);
@@ -183,7 +184,7 @@ public final class RespuestaSoporteRepository {
         if (payload == null) {
             return;
         }
-        try (Connection conn = Database.getConnection()) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
             Integer categoriaId = payload.categoria != null && !payload.categoria.isBlank()
                     ? ensureCategoria(conn, payload.categoria)
                     : null;
@@ -232,7 +233,7 @@ public final class RespuestaSoporteRepository {
                 SET activo = FALSE, updated_at = NOW()
                 WHERE id_predef = ?
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
@@ -0,0 +1,29 @@
+package com.mycompany.delivery.api.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Convierte la fila actual de un {@link ResultSet} en un objeto. Los mapeadores
+ * de {@link SqlCatalog} leen por posicion, nunca por nombre de columna.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+
+    default List<T> todos(ResultSet rs) throws SQLException {
+        List<T> out = new ArrayList<>();
+        while (rs.next()) {
+            out.add(map(rs));
+        }
+        return out;
+    }
+
+    default Optional<T> primero(ResultSet rs) throws SQLException {
+        return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+    }
+}
@@ -1,6 +1,9 @@
 package com.mycompany.delivery.api.repository;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.model.SoporteConversacion;
+import com.mycompany.delivery.api.model.SoporteMensaje;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -32,7 +35,7 @@ public final class SoporteRepository {
      * @return identificador de la conversación de soporte.
      */
     public long ensureSoporteConversacion(int idUsuario, String rol) throws SQLException {
-        try (Connection conn = Database.getConnection()) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
             Long existente = buscarConversacionActiva(conn, idUsuario);
             if (existente != null) {
                 return existente;
@@ -76,7 +79,10 @@ public final class SoporteRepository {
         return null;
     }
 
-    private int calcularPrioridadInicial(String rol) {
+    /**
+     * Prioridad con la que nace una conversacion; menor es mas urgente.
+     */
+    public static int calcularPrioridadInicial(String rol) {
         if ("delivery".equalsIgnoreCase(rol)) {
             return 2; // un poco más alta
         }
@@ -88,7 +94,7 @@ public final class SoporteRepository {
                 INSERT INTO soporte_mensajes (id_soporte_conv, id_remitente, es_agente, tipo, mensaje, created_at)
                 VALUES (?, ?, FALSE, 'texto', ?, NOW())
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             ps.setInt(2, idRemitente);
             ps.setString(3, mensaje);
@@ -101,7 +107,7 @@ public final class SoporteRepository {
                 INSERT INTO soporte_mensajes (id_soporte_conv, id_remitente, es_agente, tipo, mensaje, created_at)
                 VALUES (?, ?, TRUE, 'texto', ?, NOW())
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             ps.setInt(2, idSoporte);
             ps.setString(3, mensaje);
@@ -125,7 +131,7 @@ public final class SoporteRepository {
                 LEFT JOIN roles r ON u.id_rol = r.id_rol
                 WHERE sc.id_soporte_conv = ?
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -164,7 +170,7 @@ public final class SoporteRepository {
 
         String sql = "SELECT respuesta FROM fn_chatbot_match_predef(?, ?, 'soporte', 'es') ORDER BY prioridad LIMIT 1";
 
-        try (Connection conn = Database.getConnection()) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT)) {
             for (String scope : scopes) {
                 try (PreparedStatement ps = conn.prepareStatement(sql)) {
                     ps.setString(1, normalizado);
@@ -183,75 +189,24 @@ public final class SoporteRepository {
         return Optional.empty();
     }
 
-    public List<Map<String, Object>> listarMensajes(long idConversacion) throws SQLException {
-        String sql = """
-                SELECT id_sop_msj,
-                       id_soporte_conv,
-                       id_remitente,
-                       es_agente,
-                       tipo,
-                       mensaje,
-                       created_at
-                FROM soporte_mensajes
-                WHERE id_soporte_conv = ?
-                ORDER BY created_at ASC
-                """;
-        List<Map<String, Object>> mensajes = new ArrayList<>();
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    public List<SoporteMensaje> listarMensajes(long idConversacion) throws SQLException {
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
+             PreparedStatement ps = conn.prepareStatement(SqlCatalog.MENSAJES_SOPORTE)) {
             ps.setLong(1, idConversacion);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("id", rs.getLong("id_sop_msj"));
-                    map.put("id_conversacion", rs.getLong("id_soporte_conv"));
-                    map.put("id_remitente", rs.getObject("id_remitente"));
-                    map.put("es_agente", rs.getBoolean("es_agente"));
-                    map.put("tipo", rs.getString("tipo"));
-                    map.put("mensaje", rs.getString("mensaje"));
-                    Timestamp created = rs.getTimestamp("created_at");
-                    map.put("created_at", created != null ? created.toInstant().toString() : null);
-                    mensajes.add(map);
-                }
+                return SqlCatalog.MENSAJE_SOPORTE.todos(rs);
             }
         }
-        return mensajes;
     }
 
-    public List<Map<String, Object>> listarConversacionesPorUsuario(int idUsuario) throws SQLException {
-        String sql = """
-                SELECT id_soporte_conv,
-                       estado,
-                       id_agente_soporte,
-                       canal,
-                       prioridad,
-                       permite_ia,
-                       created_at,
-                       updated_at
-                FROM soporte_conversaciones
-                WHERE id_usuario = ?
-                ORDER BY updated_at DESC
-                """;
-        List<Map<String, Object>> lista = new ArrayList<>();
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    public List<SoporteConversacion> listarConversacionesPorUsuario(int idUsuario) throws SQLException {
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
+             PreparedStatement ps = conn.prepareStatement(SqlCatalog.CONVERSACIONES_SOPORTE_DE_USUARIO)) {
             ps.setInt(1, idUsuario);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("id_conversacion", rs.getLong("id_soporte_conv"));
-                    map.put("estado", rs.getString("estado"));
-                    map.put("id_agente_soporte", rs.getObject("id_agente_soporte"));
-                    map.put("canal", rs.getString("canal"));
-                    map.put("prioridad", rs.getInt("prioridad"));
-                    map.put("permite_ia", rs.getBoolean("permite_ia"));
-                    Timestamp created = rs.getTimestamp("created_at");
-                    Timestamp updated = rs.getTimestamp("updated_at");
-                    map.put("created_at", created != null ? created.toInstant().toString() : null);
-                    map.put("updated_at", updated != null ? updated.toInstant().toString() : null);
-                    lista.add(map);
-                }
+                return SqlCatalog.CONVERSACION_SOPORTE.todos(rs);
             }
         }
-        return lista;
     }
 
     public void asignarHumano(long idConversacion, int idAgente) throws SQLException {
@@ -260,20 +215,87 @@ public final class SoporteRepository {
                 SET id_agente_soporte = ?, estado = 'asignada', updated_at = NOW()
                 WHERE id_soporte_conv = ?
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, idAgente);
             ps.setLong(2, idConversacion);
             ps.executeUpdate();
         }
     }
 
+    /**
+     * Como {@link #asignarHumano} pero solo si la conversacion sigue abierta y
+     * sin agente; la usa la bandeja de soporte para no pisar una asignacion
+     * manual ni reabrir una conversacion cerrada entre tanto.
+     *
+     * @return {@code true} si quedo asignada al agente.
+     */
+    public boolean asignarHumanoSiPendiente(long idConversacion, int idAgente) throws SQLException {
+        String sql = """
+                UPDATE soporte_conversaciones
+                SET id_agente_soporte = ?, estado = 'asignada', updated_at = NOW()
+                WHERE id_soporte_conv = ? AND estado <> 'cerrada' AND id_agente_soporte IS NULL
+                """;
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, idAgente);
+            ps.setLong(2, idConversacion);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Devuelve a la cola una conversacion que la bandeja asigno a un agente que
+     * no llego a recogerla, siempre que siga siendo suya y no este cerrada.
+     */
+    public boolean liberarAsignacion(long idConversacion, int idAgente) throws SQLException {
+        String sql = """
+                UPDATE soporte_conversaciones
+                SET id_agente_soporte = NULL, estado = 'abierta', updated_at = NOW()
+                WHERE id_soporte_conv = ? AND id_agente_soporte = ? AND estado = 'asignada'
+                """;
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, idConversacion);
+            ps.setInt(2, idAgente);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /** Conversacion no cerrada, tal como la ve la reconciliacion de la bandeja. */
+    public record ConversacionAbierta(long idConversacion, int idUsuario, int prioridad, Integer idAgente,
+            long creadaEnMs) {
+    }
+
+    public List<ConversacionAbierta> listarAbiertas() throws SQLException {
+        String sql = """
+                SELECT id_soporte_conv, id_usuario, prioridad, id_agente_soporte, created_at
+                FROM soporte_conversaciones
+                WHERE estado <> 'cerrada'
+                """;
+        List<ConversacionAbierta> abiertas = new ArrayList<>();
+        try (Connection conn = Database.getConnection(DbPool.CHAT);
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Number prioridad = (Number) rs.getObject("prioridad");
+                Number agente = (Number) rs.getObject("id_agente_soporte");
+                Timestamp creada = rs.getTimestamp("created_at");
+                abiertas.add(new ConversacionAbierta(
+                        rs.getLong("id_soporte_conv"),
+                        rs.getInt("id_usuario"),
+                        prioridad != null ? prioridad.intValue() : calcularPrioridadInicial("cliente"),
+                        agente != null ? agente.intValue() : null,
+                        creada != null ? creada.getTime() : System.currentTimeMillis()));
+            }
+        }
+        return abiertas;
+    }
+
     public void cerrarConversacion(long idConversacion) throws SQLException {
         String sql = """
                 UPDATE soporte_conversaciones
                 SET estado = 'cerrada', updated_at = NOW()
                 WHERE id_soporte_conv = ?
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, idConversacion);
             ps.executeUpdate();
         }
@@ -281,7 +303,7 @@ public final class SoporteRepository {
 
     public int ensureBotSoporte() throws SQLException {
         final String select = "SELECT id_usuario FROM usuarios WHERE LOWER(correo) = LOWER(?)";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(select)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(select)) {
             ps.setString(1, BOT_EMAIL);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -296,13 +318,13 @@ public final class SoporteRepository {
                        (SELECT id_rol FROM roles WHERE LOWER(nombre_rol) = 'soporte' LIMIT 1))
                 ON CONFLICT (correo) DO NOTHING
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(insert)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(insert)) {
             ps.setString(1, BOT_NOMBRE);
             ps.setString(2, BOT_EMAIL);
             ps.executeUpdate();
         }
 
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(select)) {
+        try (Connection conn = Database.getConnection(DbPool.CHAT); PreparedStatement ps = conn.prepareStatement(select)) {
             ps.setString(1, BOT_EMAIL);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
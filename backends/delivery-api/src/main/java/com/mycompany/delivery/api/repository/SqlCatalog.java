@@ -0,0 +1,258 @@
+package com.mycompany.delivery.api.repository;
+
+import com.mycompany.delivery.api.model.ChatConversacion;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.Mensaje;
+import com.mycompany.delivery.api.model.Pedido;
+import com.mycompany.delivery.api.model.PedidoVista;
+import com.mycompany.delivery.api.model.SoporteConversacion;
+import com.mycompany.delivery.api.model.SoporteMensaje;
+import com.mycompany.delivery.api.model.Ubicacion;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Catalogo de las consultas de lectura mas usadas, cada una junto a su
+ * mapeador. La lista de columnas y el mapeador viven uno al lado del otro: el
+ * mapeador lee por posicion ({@code rs.getInt(1)}), sin buscar la columna por
+ * nombre en cada fila, y ninguna consulta usa {@code SELECT *}.
+ *
+ * <p>Si se agrega o reordena una columna hay que tocar las dos cosas juntas.
+ * Las filas se devuelven como records inmutables; su JSON lo escribe
+ * {@code JsonAdapters}.
+ */
+public final class SqlCatalog {
+
+    private SqlCatalog() {
+    }
+
+    // ===============================
+    // PEDIDOS
+    // ===============================
+    static final String PEDIDO_COLUMNAS = """
+            id_pedido, id_cliente, id_delivery, id_ubicacion, estado, total,
+            direccion_entrega, metodo_pago, created_at, updated_at""";
+
+    public static final RowMapper<Pedido> PEDIDO = rs -> new Pedido(
+            rs.getInt(1),
+            rs.getInt(2),
+            intONulo(rs, 3),
+            rs.getInt(4),
+            rs.getString(5),
+            rs.getDouble(6),
+            rs.getString(7),
+            rs.getString(8),
+            rs.getTimestamp(9),
+            rs.getTimestamp(10));
+
+    public static final String PEDIDOS_TODOS =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos ORDER BY created_at DESC";
+    public static final String PEDIDO_POR_ID =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos WHERE id_pedido = ?";
+    public static final String PEDIDOS_POR_CLIENTE =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos WHERE id_cliente = ? ORDER BY created_at DESC";
+    public static final String PEDIDOS_POR_ESTADO =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos WHERE estado = ? ORDER BY created_at ASC";
+    public static final String PEDIDOS_POR_DELIVERY =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos WHERE id_delivery = ? ORDER BY created_at DESC";
+    public static final String PEDIDOS_DISPONIBLES =
+            "SELECT " + PEDIDO_COLUMNAS + " FROM pedidos WHERE estado = 'pendiente'";
+    public static final String PEDIDO_ACTIVO_DE_CLIENTE = "SELECT " + PEDIDO_COLUMNAS
+            + " FROM pedidos WHERE id_cliente = ? AND estado NOT IN ('entregado', 'cancelado')"
+            + " ORDER BY created_at DESC LIMIT 1";
+
+    // updated_at es la columna que PEDIDO lee como fecha de entrega.
+    public static final String PEDIDO_ACTUALIZAR_ESTADO =
+            "UPDATE pedidos SET estado = ?, updated_at = CURRENT_TIMESTAMP WHERE id_pedido = ?";
+
+    // Vista completa del pedido para la pantalla de detalle.
+    public static final String PEDIDO_DETALLE_POR_ID = """
+            SELECT id_pedido, id_cliente, id_delivery, id_ubicacion, created_at, updated_at,
+                   estado, total, direccion_entrega, metodo_pago, notas, coordenadas_entrega
+            FROM pedidos
+            WHERE id_pedido = ?
+            """;
+
+    public static final RowMapper<PedidoVista.Cabecera> PEDIDO_DETALLE = rs -> new PedidoVista.Cabecera(
+            rs.getInt(1),
+            rs.getInt(2),
+            intONulo(rs, 3),
+            intONulo(rs, 4),
+            rs.getTimestamp(5),
+            rs.getTimestamp(6),
+            rs.getString(7),
+            rs.getDouble(8),
+            rs.getString(9),
+            rs.getString(10),
+            rs.getString(11),
+            rs.getString(12));
+
+    public static final String DETALLES_DE_PEDIDO = """
+            SELECT dp.id_detalle, dp.id_producto, dp.cantidad, dp.precio_unitario, dp.subtotal,
+                   pr.nombre AS nombre_producto, pr.imagen_url
+            FROM detalle_pedidos dp
+            JOIN productos pr ON pr.id_producto = dp.id_producto
+            WHERE dp.id_pedido = ?
+            ORDER BY dp.id_detalle
+            """;
+
+    public static final RowMapper<PedidoVista.Linea> DETALLE_PEDIDO = rs -> new PedidoVista.Linea(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getInt(3),
+            rs.getDouble(4),
+            rs.getDouble(5),
+            rs.getString(6),
+            rs.getString(7));
+
+    // ===============================
+    // CHAT
+    // ===============================
+    // El primer parametro es el id del bot (para es_bot); el segundo y el tercero,
+    // la conversacion. chat_mensajes esta particionada por mes: acotar por el mes
+    // en que se abrio la conversacion descarta las particiones anteriores.
+    public static final String MENSAJES_CHAT = """
+            SELECT m.id_mensaje,
+                   m.id_conversacion,
+                   m.id_remitente,
+                   m.id_destinatario,
+                   m.mensaje,
+                   m.created_at,
+                   u.nombre AS remitente_nombre,
+                   (m.id_remitente = ?) AS es_bot
+            FROM chat_mensajes m
+            LEFT JOIN usuarios u ON u.id_usuario = m.id_remitente
+            WHERE m.id_conversacion = ?
+              AND m.created_at >= (SELECT date_trunc('month', c.created_at)
+                                   FROM chat_conversaciones c WHERE c.id_conversacion = ?)
+            """;
+    public static final String MENSAJES_CHAT_ORDEN = "ORDER BY m.id_mensaje ASC";
+
+    public static final RowMapper<ChatMensaje> MENSAJE_CHAT = rs -> new ChatMensaje(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getInt(3),
+            intONulo(rs, 4),
+            rs.getString(5),
+            rs.getTimestamp(6),
+            rs.getString(7),
+            rs.getBoolean(8));
+
+    public static final String CONVERSACIONES_DE_USUARIO = """
+            SELECT id_conversacion, id_pedido, id_cliente, id_delivery, id_admin_soporte, es_chatbot, created_at, activa
+            FROM chat_conversaciones
+            WHERE id_cliente = ? OR id_delivery = ? OR id_admin_soporte = ?
+            ORDER BY created_at DESC
+            """;
+
+    public static final RowMapper<ChatConversacion> CONVERSACION = rs -> new ChatConversacion(
+            rs.getLong(1),
+            intONulo(rs, 2),
+            intONulo(rs, 3),
+            intONulo(rs, 4),
+            intONulo(rs, 5),
+            rs.getBoolean(6),
+            rs.getTimestamp(7),
+            boolONulo(rs, 8));
+
+    // ===============================
+    // SOPORTE
+    // ===============================
+    public static final String MENSAJES_SOPORTE = """
+            SELECT id_sop_msj,
+                   id_soporte_conv,
+                   id_remitente,
+                   es_agente,
+                   tipo,
+                   mensaje,
+                   created_at
+            FROM soporte_mensajes
+            WHERE id_soporte_conv = ?
+            ORDER BY created_at ASC
+            """;
+
+    public static final RowMapper<SoporteMensaje> MENSAJE_SOPORTE = rs -> new SoporteMensaje(
+            rs.getLong(1),
+            rs.getLong(2),
+            longONulo(rs, 3),
+            rs.getBoolean(4),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getTimestamp(7));
+
+    public static final String CONVERSACIONES_SOPORTE_DE_USUARIO = """
+            SELECT id_soporte_conv,
+                   estado,
+                   id_agente_soporte,
+                   canal,
+                   prioridad,
+                   permite_ia,
+                   created_at,
+                   updated_at
+            FROM soporte_conversaciones
+            WHERE id_usuario = ?
+            ORDER BY updated_at DESC
+            """;
+
+    public static final RowMapper<SoporteConversacion> CONVERSACION_SOPORTE = rs -> new SoporteConversacion(
+            rs.getLong(1),
+            rs.getString(2),
+            longONulo(rs, 3),
+            rs.getString(4),
+            rs.getInt(5),
+            rs.getBoolean(6),
+            rs.getTimestamp(7),
+            rs.getTimestamp(8));
+
+    // Mensajes antiguos asociados directamente al pedido (tabla mensajes).
+    public static final String MENSAJES_DE_PEDIDO = """
+            SELECT id_mensaje, id_pedido, id_remitente, mensaje, fecha_envio
+            FROM mensajes
+            WHERE id_pedido = ?
+            ORDER BY fecha_envio ASC
+            """;
+
+    public static final RowMapper<Mensaje> MENSAJE = rs -> new Mensaje(
+            rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getTimestamp(5));
+
+    // ===============================
+    // UBICACIONES
+    // ===============================
+    static final String UBICACION_COLUMNAS =
+            "id_ubicacion, id_usuario, latitud, longitud, descripcion, direccion, activa, created_at";
+
+    public static final String UBICACIONES_DE_USUARIO = "SELECT " + UBICACION_COLUMNAS
+            + " FROM ubicaciones WHERE id_usuario = ? AND (descripcion IS NULL OR descripcion != 'LIVE_TRACKING')";
+    public static final String UBICACIONES_ACTIVAS = "SELECT " + UBICACION_COLUMNAS
+            + " FROM ubicaciones WHERE activa = TRUE AND (descripcion IS NULL OR descripcion != 'LIVE_TRACKING')";
+
+    public static final RowMapper<Ubicacion> UBICACION = rs -> {
+        Ubicacion u = new Ubicacion();
+        u.setIdUbicacion(rs.getInt(1));
+        u.setIdUsuario(rs.getInt(2));
+        u.setLatitud(rs.getDouble(3));
+        u.setLongitud(rs.getDouble(4));
+        u.setDescripcion(rs.getString(5));
+        u.setDireccion(rs.getString(6));
+        u.setActiva(rs.getBoolean(7));
+        u.setFechaRegistro(rs.getTimestamp(8));
+        return u;
+    };
+
+    // Entero que admite NULL, sin pasar por getObject y su conversion por tipo.
+    private static Integer intONulo(ResultSet rs, int columna) throws SQLException {
+        int valor = rs.getInt(columna);
+        return rs.wasNull() ? null : valor;
+    }
+
+    private static Long longONulo(ResultSet rs, int columna) throws SQLException {
+        long valor = rs.getLong(columna);
+        return rs.wasNull() ? null : valor;
+    }
+
+    private static Boolean boolONulo(ResultSet rs, int columna) throws SQLException {
+        boolean valor = rs.getBoolean(columna);
+        return rs.wasNull() ? null : valor;
+    }
+}
@@ -0,0 +1,132 @@
+package com.mycompany.delivery.api.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+
+/**
+ * Cuentas exactas de unidades vendidas por producto, para reconciliar los
+ * resumenes de mas vendidos en memoria. Todas las lecturas de una
+ * reconciliacion salen de la misma instantanea (REPEATABLE READ) del primario,
+ * junto con los ids de los pedidos recientes que ve: una replica atrasada
+ * perderia pedidos confirmados justo antes de empezar.
+ */
+public class TopProductosRepository {
+
+    public record Producto(String nombre, int idNegocio) {
+    }
+
+    /**
+     * Resultado de una reconciliacion: unidades por producto en total, por
+     * negocio y por dia (de {@code desde} en adelante), los productos, y los
+     * pedidos creados desde {@code recientesDesde} que ya estan contados.
+     */
+    public record Exactos(Set<Integer> pedidosRecientes,
+            Map<Integer, Long> total,
+            Map<Integer, Map<Integer, Long>> porNegocio,
+            Map<LocalDate, Map<Integer, Long>> porDia,
+            Map<Integer, Producto> productos) {
+    }
+
+    public Exactos contar(LocalDate desde, Timestamp recientesDesde) throws SQLException {
+        try (Connection conn = Database.getConnection(DbPool.ANALITICA)) {
+            boolean autoCommit = conn.getAutoCommit();
+            int aislamiento = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                Set<Integer> recientes = new HashSet<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id_pedido FROM pedidos WHERE created_at >= ?")) {
+                    ps.setTimestamp(1, recientesDesde);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            recientes.add(rs.getInt(1));
+                        }
+                    }
+                }
+
+                Map<Integer, Producto> productos = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id_producto, nombre, id_negocio FROM productos");
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        productos.put(rs.getInt(1), new Producto(rs.getString(2), rs.getInt(3)));
+                    }
+                }
+
+                // Mismo criterio que el top_producto del dashboard: todas las lineas de detalle.
+                Map<Integer, Long> total = new HashMap<>();
+                Map<Integer, Map<Integer, Long>> porNegocio = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        SELECT d.id_producto, SUM(d.cantidad)
+                        FROM detalle_pedidos d
+                        GROUP BY d.id_producto
+                        """);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int producto = rs.getInt(1);
+                        long unidades = rs.getLong(2);
+                        total.put(producto, unidades);
+                        Producto p = productos.get(producto);
+                        porNegocio.computeIfAbsent(p != null ? p.idNegocio() : 0, k -> new HashMap<>())
+                                .put(producto, unidades);
+                    }
+                }
+
+                Map<LocalDate, Map<Integer, Long>> porDia = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        SELECT p.created_at::date, d.id_producto, SUM(d.cantidad)
+                        FROM pedidos p
+                        JOIN detalle_pedidos d ON d.id_pedido = p.id_pedido
+                        WHERE p.created_at >= ?
+                        GROUP BY 1, 2
+                        """)) {
+                    ps.setObject(1, desde);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            porDia.computeIfAbsent(rs.getObject(1, LocalDate.class), k -> new HashMap<>())
+                                    .put(rs.getInt(2), rs.getLong(3));
+                        }
+                    }
+                }
+                return new Exactos(recientes, total, porNegocio, porDia, productos);
+            } finally {
+                // Solo lectura: la transaccion se cierra con rollback.
+                conn.rollback();
+                conn.setTransactionIsolation(aislamiento);
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Negocio y nombre de productos que aun no estan en memoria (creados
+     * despues de la ultima reconciliacion).
+     */
+    public Map<Integer, Producto> productos(List<Integer> ids) throws SQLException {
+        Map<Integer, Producto> out = new HashMap<>();
+        try (Connection conn = Database.getReadConnection(DbPool.ANALITICA);
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT id_producto, nombre, id_negocio FROM productos WHERE id_producto = ANY(?::int4[])")) {
+            ps.setObject(1, ids.stream().mapToInt(Integer::intValue).toArray());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.put(rs.getInt(1), new Producto(rs.getString(2), rs.getInt(3)));
+                }
+            }
+        }
+        return out;
+    }
+}
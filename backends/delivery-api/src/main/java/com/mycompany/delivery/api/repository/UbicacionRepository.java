@@ -10,11 +10,16 @@ import java.util.Map;
 import java.util.Optional;
 
 import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.DbPool;
+import com.mycompany.delivery.api.model.PedidoArchivado;
 import com.mycompany.delivery.api.model.TrackingEvento;
 import com.mycompany.delivery.api.model.Ubicacion;
+import com.mycompany.delivery.api.util.SegmentoArchivo;
 
 public class UbicacionRepository {
 
+    private final ArchivoRepository archivo = new ArchivoRepository();
+
     // ===============================
     // GUARDAR O ACTUALIZAR UBICACIÓN
     // ===============================
@@ -22,8 +27,8 @@ public class UbicacionRepository {
         String sql = """
                     INSERT INTO ubicaciones (id_usuario, latitud, longitud, descripcion, direccion, activa)
                     VALUES (?, ?, ?, ?, ?, ?)
-                    RETURNING *;
-                """;
+                    RETURNING
+                """ + SqlCatalog.UBICACION_COLUMNAS;
 
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
@@ -36,7 +41,7 @@ public class UbicacionRepository {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapRow(rs));
+                    return Optional.of(SqlCatalog.UBICACION.map(rs));
                 }
             }
         }
@@ -48,10 +53,10 @@ public class UbicacionRepository {
     // ===============================
     public boolean actualizarUbicacionLive(int idUsuario, double latitud, double longitud) throws SQLException {
         String sql = """
-                    UPDATE ubicaciones SET latitud = ?, longitud = ?
+                    UPDATE ubicaciones SET latitud = ?, longitud = ?, updated_at = NOW()
                     WHERE id_usuario = ? AND descripcion = 'LIVE_TRACKING'
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setDouble(1, latitud);
             stmt.setDouble(2, longitud);
             stmt.setInt(3, idUsuario);
@@ -65,7 +70,7 @@ public class UbicacionRepository {
                 INSERT INTO ubicaciones (id_usuario, latitud, longitud, descripcion, activa)
                 VALUES (?, ?, ?, 'LIVE_TRACKING', TRUE)
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idUsuario);
             stmt.setDouble(2, latitud);
             stmt.setDouble(3, longitud);
@@ -81,7 +86,7 @@ public class UbicacionRepository {
                     WHERE p.id_delivery = ?
                       AND p.estado NOT IN ('entregado', 'cancelado')
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setDouble(1, latitud);
             stmt.setDouble(2, longitud);
             stmt.setInt(3, idDelivery);
@@ -89,6 +94,73 @@ public class UbicacionRepository {
         }
     }
 
+    /**
+     * Inserta todos los puntos de un lote en {@code tracking_ruta} con una sola
+     * sentencia: los arreglos se expanden con {@code unnest} y se cruzan con los
+     * pedidos activos del repartidor, igual que {@link #registrarEventoTracking}.
+     *
+     * @return filas insertadas (puntos por pedido activo).
+     */
+    public int registrarRutaLote(int idDelivery, double[] latitudes, double[] longitudes, long[] instantes)
+            throws SQLException {
+        String sql = """
+                    INSERT INTO tracking_ruta (id_pedido, latitud, longitud, registrado_en)
+                    SELECT p.id_pedido, t.latitud, t.longitud, to_timestamp(t.instante / 1000.0)
+                    FROM unnest(?::float8[], ?::float8[], ?::int8[]) AS t(latitud, longitud, instante)
+                    CROSS JOIN pedidos p
+                    WHERE p.id_delivery = ?
+                      AND p.estado NOT IN ('entregado', 'cancelado')
+                """;
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, latitudes);
+            stmt.setObject(2, longitudes);
+            stmt.setObject(3, instantes);
+            stmt.setInt(4, idDelivery);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Mueve la ubicacion en vivo al punto dado (o la crea) en un solo viaje,
+     * salvo que ya refleje un punto posterior: un lote atrasado no debe pisar
+     * un ping en vivo mas reciente.
+     *
+     * @return {@code true} si la ubicacion en vivo quedo en este punto.
+     */
+    public boolean moverUbicacionLiveSiMasReciente(int idUsuario, double latitud, double longitud, long instante)
+            throws SQLException {
+        String sql = """
+                WITH actualizada AS (
+                    UPDATE ubicaciones SET latitud = ?, longitud = ?, updated_at = to_timestamp(? / 1000.0)
+                    WHERE id_usuario = ? AND descripcion = 'LIVE_TRACKING'
+                      AND (updated_at IS NULL OR updated_at <= to_timestamp(? / 1000.0))
+                    RETURNING 1
+                ), insertada AS (
+                    INSERT INTO ubicaciones (id_usuario, latitud, longitud, descripcion, activa, updated_at)
+                    SELECT ?, ?, ?, 'LIVE_TRACKING', TRUE, to_timestamp(? / 1000.0)
+                    WHERE NOT EXISTS (SELECT 1 FROM ubicaciones
+                                      WHERE id_usuario = ? AND descripcion = 'LIVE_TRACKING')
+                    RETURNING 1
+                )
+                SELECT (SELECT count(*) FROM actualizada) + (SELECT count(*) FROM insertada)
+                """;
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDouble(1, latitud);
+            stmt.setDouble(2, longitud);
+            stmt.setLong(3, instante);
+            stmt.setInt(4, idUsuario);
+            stmt.setLong(5, instante);
+            stmt.setInt(6, idUsuario);
+            stmt.setDouble(7, latitud);
+            stmt.setDouble(8, longitud);
+            stmt.setLong(9, instante);
+            stmt.setInt(10, idUsuario);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getLong(1) > 0;
+            }
+        }
+    }
+
     public Optional<Map<String, Double>> obtenerUbicacionTracking(int idPedido) throws SQLException {
         String sql = """
                 SELECT u.latitud, u.longitud FROM ubicaciones u
@@ -96,7 +168,7 @@ public class UbicacionRepository {
                 WHERE p.id_pedido = ? AND u.descripcion = 'LIVE_TRACKING'
                 ORDER BY u.updated_at DESC LIMIT 1
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement st = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement st = conn.prepareStatement(sql)) {
             st.setInt(1, idPedido);
             try (ResultSet rs = st.executeQuery()) {
                 if (rs.next()) {
@@ -108,16 +180,25 @@ public class UbicacionRepository {
         return Optional.empty();
     }
 
+    /**
+     * Ruta de un pedido en orden cronologico. {@code tracking_ruta} esta
+     * particionada por mes: el limite inferior (creacion del pedido menos el
+     * desfase maximo de un lote offline) deja que PostgreSQL descarte en
+     * ejecucion las particiones anteriores al pedido. Si la tabla no tiene
+     * puntos y el pedido ya se archivo, la ruta sale del archivo frio.
+     */
     public List<TrackingEvento> obtenerRutaPedido(int idPedido) throws SQLException {
         List<TrackingEvento> lista = new ArrayList<>();
         String sql = """
                     SELECT id_tracking, id_pedido, latitud, longitud, registrado_en
                     FROM tracking_ruta
                     WHERE id_pedido = ?
+                      AND registrado_en >= (SELECT created_at - INTERVAL '1 day' FROM pedidos WHERE id_pedido = ?)
                     ORDER BY registrado_en ASC
                 """;
-        try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idPedido);
+            stmt.setInt(2, idPedido);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     TrackingEvento evento = new TrackingEvento();
@@ -129,6 +210,20 @@ public class UbicacionRepository {
                 }
             }
         }
+        if (lista.isEmpty()) {
+            Optional<ArchivoRepository.IndiceArchivo> archivado = archivo.porPedido(idPedido);
+            if (archivado.isPresent()) {
+                PedidoArchivado ruta = archivo.leer(archivado.get());
+                for (int i = 0; i < ruta.puntos(); i++) {
+                    TrackingEvento evento = new TrackingEvento();
+                    evento.setIdPedido(idPedido);
+                    evento.setLatitud(ruta.latitudes()[i]);
+                    evento.setLongitud(ruta.longitudes()[i]);
+                    evento.setFechaEvento(SegmentoArchivo.timestamp(ruta.instantes()[i]));
+                    lista.add(evento);
+                }
+            }
+        }
         return lista;
     }
 
@@ -140,12 +235,12 @@ public class UbicacionRepository {
         // CORRECCIÓN: Se excluyen las ubicaciones de tracking en vivo, que son de uso
         // interno para el repartidor y no deben mostrarse al usuario como una
         // dirección guardada.
-        String sql = "SELECT * FROM ubicaciones WHERE id_usuario = ? AND (descripcion IS NULL OR descripcion != 'LIVE_TRACKING')";
+        String sql = SqlCatalog.UBICACIONES_DE_USUARIO;
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, idUsuario);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    lista.add(mapRow(rs));
+                    lista.add(SqlCatalog.UBICACION.map(rs));
                 }
             }
         }
@@ -159,12 +254,12 @@ public class UbicacionRepository {
         List<Ubicacion> lista = new ArrayList<>();
         // CORRECCIÓN: También se excluyen las ubicaciones de tracking en vivo de
         // este listado general.
-        String sql = "SELECT * FROM ubicaciones WHERE activa = TRUE AND (descripcion IS NULL OR descripcion != 'LIVE_TRACKING')";
+        String sql = SqlCatalog.UBICACIONES_ACTIVAS;
         try (Connection conn = Database.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql);
                 ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                lista.add(mapRow(rs));
+                lista.add(SqlCatalog.UBICACION.map(rs));
             }
         }
         return lista;
@@ -181,25 +276,6 @@ public class UbicacionRepository {
         }
     }
 
-    // ===============================
-    // MAPEO RESULTSET → OBJETO
-    // ===============================
-    private Ubicacion mapRow(ResultSet rs) throws SQLException {
-        Ubicacion u = new Ubicacion();
-        u.setIdUbicacion(rs.getInt("id_ubicacion"));
-        u.setIdUsuario(rs.getInt("id_usuario"));
-        u.setLatitud(rs.getDouble("latitud"));
-        u.setLongitud(rs.getDouble("longitud"));
-        u.setDescripcion(rs.getString("descripcion"));
-        u.setDireccion(rs.getString("direccion"));
-        u.setActiva(rs.getBoolean("activa"));
-        // MEJORA: Se lee la fecha de registro directamente.
-        // La tabla 'ubicaciones' siempre tiene esta columna, por lo que el try-catch
-        // que ignoraba errores no es necesario y podría ocultar problemas.
-        u.setFechaRegistro(rs.getTimestamp("created_at"));
-        return u;
-    }
-
     public List<Map<String, Object>> obtenerUbicacionesDeRepartidores(List<Integer> repartidorIds) throws SQLException {
         // Prepara la consulta SQL. El `ANY(?)` es la forma en que PostgreSQL maneja
         // la cláusula IN con un array de parámetros.
@@ -215,7 +291,7 @@ public class UbicacionRepository {
 
         List<Map<String, Object>> ubicaciones = new ArrayList<>();
 
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getConnection(DbPool.TRACKING); PreparedStatement ps = conn.prepareStatement(sql)) {
 
             // Convierte la lista de Integer a un array SQL.
             Integer[] idsArray = repartidorIds.toArray(new Integer[0]);
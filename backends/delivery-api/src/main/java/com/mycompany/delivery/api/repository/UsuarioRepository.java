@@ -9,10 +9,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-import org.mindrot.jbcrypt.BCrypt;
-
 import com.mycompany.delivery.api.config.Database;
 import com.mycompany.delivery.api.model.Usuario;
+import com.mycompany.delivery.api.services.PasswordHasher;
+import com.mycompany.delivery.api.services.ReferenceData;
 
 /**
  * Repositorio que maneja las operaciones CRUD de los usuarios. Implementa
@@ -30,32 +30,37 @@ public class UsuarioRepository {
                 LEFT JOIN roles r ON r.id_rol = u.id_rol
                 WHERE LOWER(u.correo) = LOWER(?)
                 """;
+        Usuario usuario = null;
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, correo);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Usuario usuario = mapRow(rs);
-                    String hashActual = usuario.getContrasena();
+                    usuario = mapRow(rs);
+                }
+            }
+        }
+        // La verificacion BCrypt se hace ya sin conexion tomada del pool.
+        if (usuario == null) {
+            return Optional.empty();
+        }
+        String hashActual = usuario.getContrasena();
 
-                    if (hashActual == null || contrasenaIngresada == null) {
-                        return Optional.empty();
-                    }
+        if (hashActual == null || contrasenaIngresada == null) {
+            return Optional.empty();
+        }
 
-                    if (hashActual.startsWith("$2")) {
-                        if (BCrypt.checkpw(contrasenaIngresada, hashActual)) {
-                            return Optional.of(usuario);
-                        }
-                    } else {
-                        if (hashActual.equals(contrasenaIngresada)) {
-                            String nuevoHash = BCrypt.hashpw(contrasenaIngresada, BCrypt.gensalt(6));
-                            actualizarContrasenaHash(usuario.getIdUsuario(), nuevoHash);
-                            usuario.setContrasena(nuevoHash);
-                            return Optional.of(usuario);
-                        }
-                    }
-                }
+        if (hashActual.startsWith("$2")) {
+            if (PasswordHasher.verificar(contrasenaIngresada, hashActual)) {
+                return Optional.of(usuario);
+            }
+        } else {
+            if (hashActual.equals(contrasenaIngresada)) {
+                String nuevoHash = PasswordHasher.hash(contrasenaIngresada);
+                actualizarContrasenaHash(usuario.getIdUsuario(), nuevoHash);
+                usuario.setContrasena(nuevoHash);
+                return Optional.of(usuario);
             }
         }
         return Optional.empty();
@@ -90,6 +95,9 @@ public class UsuarioRepository {
                     VALUES (?, ?, ?, ?, ?, TRUE, NOW(), NOW())
                 """;
 
+        // Se calcula el hash antes de tomar una conexion del pool.
+        String hash = PasswordHasher.hash(usuario.getContrasena());
+
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             String nombre = usuario.getNombre() != null ? usuario.getNombre().trim() : null;
@@ -104,11 +112,9 @@ public class UsuarioRepository {
             stmt.setString(1, nombre);
             stmt.setString(2, correoNormalizado);
 
-            String contrasenaPlana = usuario.getContrasena();
-            String hash = BCrypt.hashpw(contrasenaPlana, BCrypt.gensalt(6));
             stmt.setString(3, hash);
             stmt.setString(4, telefono);
-            stmt.setInt(5, resolveRoleId(conn, rol));
+            stmt.setInt(5, resolveRoleId(rol));
             return stmt.executeUpdate() > 0;
         }
     }
@@ -165,23 +171,22 @@ public class UsuarioRepository {
                     WHERE id_usuario = ?
                 """;
 
+        // MEJORA: Logica de hasheo inteligente para la actualizacion.
+        // Si la contrasena que llega no parece un hash, la hasheamos.
+        // Si ya es un hash, la pasamos directamente para evitar el doble hasheo.
+        String contrasena = usuario.getContrasena();
+        if (contrasena != null && !contrasena.isBlank() && !contrasena.startsWith("$2")) {
+            contrasena = PasswordHasher.hash(contrasena);
+        }
+
         try (Connection conn = Database.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, usuario.getNombre());
             stmt.setString(2, usuario.getCorreo());
             stmt.setString(3, usuario.getTelefono());
+            stmt.setString(4, contrasena);
 
-            // MEJORA: Logica de hasheo inteligente para la actualizacion.
-            // Si la contrasena que llega no parece un hash, la hasheamos.
-            // Si ya es un hash, la pasamos directamente para evitar el doble hasheo.
-            String contrasena = usuario.getContrasena();
-            if (contrasena != null && !contrasena.isBlank() && !contrasena.startsWith("$2")) {
-                stmt.setString(4, BCrypt.hashpw(contrasena, BCrypt.gensalt(6)));
-            } else {
-                stmt.setString(4, contrasena);
-            }
-
-            stmt.setInt(5, resolveRoleId(conn, usuario.getRol()));
+            stmt.setInt(5, resolveRoleId(usuario.getRol()));
             stmt.setBoolean(6, usuario.isActivo());
             stmt.setInt(7, usuario.getIdUsuario());
             return stmt.executeUpdate() > 0;
@@ -227,45 +232,23 @@ public class UsuarioRepository {
         return u;
     }
 
-    private int resolveRoleId(Connection conn, String rol) throws SQLException {
+    // Roles resueltos desde el registro en memoria, sin consultas por escritura.
+    private int resolveRoleId(String rol) throws SQLException {
         String roleName = (rol == null || rol.isBlank()) ? "cliente" : rol.trim().toLowerCase();
-        String sql = "SELECT id_rol FROM roles WHERE LOWER(nombre) = LOWER(?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, roleName);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("id_rol");
-                }
-            }
+        ReferenceData ref = ReferenceData.getInstance();
+        Optional<Integer> id = ref.rolId(roleName);
+        if (id.isEmpty()) {
+            // Fallback: intentar obtener id de 'cliente'
+            id = ref.rolId("cliente");
         }
-        // Fallback: intentar obtener id de 'cliente'
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, "cliente");
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("id_rol");
-                }
-            }
-        }
-        throw new SQLException("No se encontro el rol especificado: " + rol);
+        return id.orElseThrow(() -> new SQLException("No se encontro el rol especificado: " + rol));
     }
 
     private String resolveRoleName(int idRol) {
-        String sql = "SELECT nombre FROM roles WHERE id_rol = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, idRol);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("nombre");
-                }
-            }
+        try {
+            return ReferenceData.getInstance().rolNombre(idRol).orElse("cliente");
         } catch (SQLException ignored) {
         }
         return "cliente";
     }
 }
-
-
-
-
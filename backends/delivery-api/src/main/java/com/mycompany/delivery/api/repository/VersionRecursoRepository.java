@@ -0,0 +1,62 @@
+package com.mycompany.delivery.api.repository;
+
+import com.mycompany.delivery.api.config.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla {@code versiones_recurso}: una fila por recurso servido con ETag. Solo
+ * la usa {@link com.mycompany.delivery.api.services.ResourceVersions}.
+ */
+public class VersionRecursoRepository {
+
+    public Map<String, Long> cargar() throws SQLException {
+        String sql = "SELECT recurso, version FROM versiones_recurso";
+        Map<String, Long> versiones = new HashMap<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                versiones.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return versiones;
+    }
+
+    /**
+     * Incrementa la version de los recursos. Dentro de una
+     * {@link com.mycompany.delivery.api.config.UnitOfWork} transaccional va en
+     * la misma transaccion que la escritura; las filas se bloquean siempre en
+     * el mismo orden para que dos escrituras concurrentes no se interbloqueen.
+     *
+     * @return la version nueva de cada recurso.
+     */
+    public Map<String, Long> incrementar(String... recursos) throws SQLException {
+        String[] ordenados = recursos.clone();
+        Arrays.sort(ordenados);
+        String sql = """
+                INSERT INTO versiones_recurso (recurso, version)
+                SELECT r, 2 FROM unnest(?::varchar[]) AS r ORDER BY r
+                ON CONFLICT (recurso) DO UPDATE
+                SET version = versiones_recurso.version + 1, actualizado_en = NOW()
+                RETURNING recurso, version
+                """;
+        Map<String, Long> versiones = new HashMap<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", ordenados));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    versiones.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        }
+        return versiones;
+    }
+}
@@ -0,0 +1,700 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.model.DetallePedido;
+import com.mycompany.delivery.api.repository.ActividadRepository;
+import com.mycompany.delivery.api.repository.ActividadRepository.FilaHll;
+import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.HyperLogLog;
+
+import java.net.InetAddress;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usuarios distintos activos por hora y por dia, contados con sketches
+ * HyperLogLog ({@link HyperLogLog}) en lugar de {@code COUNT(DISTINCT ...)}
+ * sobre {@code pedidos}, {@code tracking_ruta} y {@code chat_mensajes}:
+ * <ul>
+ * <li>{@code clientes}: clientes que crearon un pedido;</li>
+ * <li>{@code clientes_negocio}: lo mismo por negocio de los productos;</li>
+ * <li>{@code repartidores}: repartidores que enviaron su ubicacion;</li>
+ * <li>{@code remitentes_chat}: usuarios que escribieron en un chat (sin el bot);</li>
+ * <li>{@code usuarios_activos}: cualquiera de los anteriores.</li>
+ * </ul>
+ *
+ * El negocio de cada producto sale de la cache de {@link MasVendidos}, que
+ * ya lo resolvio al registrar el mismo pedido; los productos que no conoce se
+ * resuelven en el hilo de fondo, nunca en el de la peticion.
+ *
+ * <p>Cada evento actualiza el sketch de su hora y el de su dia; una ventana de
+ * varias horas o dias es la union de sus sketches. Las horas se guardan
+ * {@code HLL_HOURS} horas y los dias {@code HLL_DAYS} dias.
+ *
+ * <p>Cada {@code HLL_FLUSH_SECONDS} los sketches que cambiaron se guardan en
+ * {@code metricas_hll} bajo el nombre de este nodo ({@code HLL_NODE}, por
+ * defecto el hostname; debe ser unico por instancia) y se unen los que
+ * escribieron los demas nodos. La union es idempotente: releer una fila o
+ * recibir un evento antes de cargar lo guardado no cuenta a nadie dos veces.
+ * Se desactiva con {@code HLL_ENABLED=false}.
+ */
+public final class ActividadUsuarios {
+
+    private static final boolean HABILITADO = !"false".equalsIgnoreCase(System.getenv("HLL_ENABLED"));
+    private static final int PRECISION = Math.min(HyperLogLog.PRECISION_MAXIMA,
+            Math.max(HyperLogLog.PRECISION_MINIMA, getEnvInt("HLL_PRECISION", 14)));
+    private static final int HORAS = Math.max(1, getEnvInt("HLL_HOURS", 72));
+    private static final int DIAS = Math.max(1, getEnvInt("HLL_DAYS", 90));
+    private static final int GUARDAR_SEG = Math.max(1, getEnvInt("HLL_FLUSH_SECONDS", 60));
+    private static final String NODO = resolverNodo();
+
+    // Las filas de otros nodos se releen con este margen hacia atras: una
+    // transaccion puede confirmar despues de otra con actualizado_en mayor.
+    private static final long MARGEN_LECTURA_SEG = 300;
+    private static final long PURGA_MS = 3_600_000L;
+    // Pedidos con productos de negocio desconocido a la espera del hilo de
+    // fondo; por encima de este numero solo cuentan en el total.
+    private static final int MAX_POR_RESOLVER = 10_000;
+
+    private static final ActividadUsuarios INSTANCE = new ActividadUsuarios(new ActividadRepository());
+
+    private enum Metrica {
+        ACTIVOS("usuarios_activos"),
+        CLIENTES("clientes"),
+        REPARTIDORES("repartidores"),
+        CHAT("remitentes_chat"),
+        CLIENTES_NEGOCIO("clientes_negocio");
+
+        private final String nombre;
+
+        Metrica(String nombre) {
+            this.nombre = nombre;
+        }
+
+        static Metrica desde(String nombre) {
+            for (Metrica m : values()) {
+                if (m.nombre.equals(nombre)) {
+                    return m;
+                }
+            }
+            return null;
+        }
+    }
+
+    private enum Granularidad {
+        HORA("hora", ChronoUnit.HOURS),
+        DIA("dia", ChronoUnit.DAYS);
+
+        private final String nombre;
+        private final ChronoUnit unidad;
+
+        Granularidad(String nombre, ChronoUnit unidad) {
+            this.nombre = nombre;
+            this.unidad = unidad;
+        }
+
+        LocalDateTime truncar(LocalDateTime t) {
+            return t.truncatedTo(unidad);
+        }
+
+        // Inicio del intervalo mas antiguo que se conserva.
+        LocalDateTime limite(LocalDateTime ahora) {
+            return this == HORA ? truncar(ahora).minusHours(HORAS - 1L) : truncar(ahora).minusDays(DIAS - 1L);
+        }
+
+        static Granularidad desde(String nombre) {
+            return "hora".equals(nombre) ? HORA : "dia".equals(nombre) ? DIA : null;
+        }
+    }
+
+    private record Clave(Metrica metrica, int negocio, Granularidad granularidad, LocalDateTime inicio) {
+    }
+
+    private record PorResolver(int idCliente, LocalDateTime instante, List<Integer> productos) {
+    }
+
+    private final ActividadRepository repo;
+    private final LongAdder eventos = new LongAdder();
+
+    // Protegidos por this.
+    private final Map<Clave, HyperLogLog> sketches = new HashMap<>();
+    private final Set<Clave> sucios = new HashSet<>();
+    private final Set<Integer> negocios = new TreeSet<>();
+    private final List<PorResolver> porResolver = new ArrayList<>();
+
+    private volatile boolean listo;
+    private volatile LocalDateTime cursorRemoto;
+    private volatile long cargadoEn;
+    private volatile long ultimoGuardado;
+    private volatile long duracionGuardadoMs;
+    private volatile int filasGuardadas;
+    private volatile long ultimaPurga;
+    private volatile String ultimoError;
+    private ScheduledExecutorService hilo;
+
+    private ActividadUsuarios(ActividadRepository repo) {
+        this.repo = repo;
+    }
+
+    public static ActividadUsuarios getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void iniciar() {
+        if (!HABILITADO || hilo != null) {
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "actividad-usuarios");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                resolverNegocios();
+                if (!listo) {
+                    cargar();
+                } else {
+                    sincronizar();
+                }
+                ultimoError = null;
+            } catch (SQLException | RuntimeException e) {
+                ultimoError = e.getMessage();
+                System.err.println("Actividad de usuarios: " + e.getMessage());
+            }
+        }, 0, GUARDAR_SEG, TimeUnit.SECONDS);
+        // Lo contado desde el ultimo guardado se perderia al parar el proceso.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                resolverNegocios();
+                guardar();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Actividad de usuarios: no se pudo guardar al salir: " + e.getMessage());
+            }
+        }, "actividad-usuarios-cierre"));
+    }
+
+    // ===============================
+    // EVENTOS
+    // ===============================
+
+    /**
+     * Cliente de un pedido recien confirmado, en el total y en cada negocio de
+     * sus productos. No consulta la base: los productos que la cache de
+     * {@link MasVendidos} no conoce se dejan al hilo de fondo. Nunca lanza: un
+     * fallo aqui no debe afectar al pedido.
+     */
+    public void registrarPedido(int idCliente, List<DetallePedido> detalles) {
+        if (!HABILITADO || idCliente <= 0) {
+            return;
+        }
+        Set<Integer> delPedido = new HashSet<>();
+        List<Integer> desconocidos = new ArrayList<>();
+        if (detalles != null) {
+            MasVendidos productos = MasVendidos.getInstance();
+            for (DetallePedido d : detalles) {
+                int negocio = productos.negocioDe(d.getIdProducto());
+                if (negocio > 0) {
+                    delPedido.add(negocio);
+                } else if (!desconocidos.contains(d.getIdProducto())) {
+                    desconocidos.add(d.getIdProducto());
+                }
+            }
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        synchronized (this) {
+            agregar(Metrica.CLIENTES, 0, ahora, idCliente);
+            agregar(Metrica.ACTIVOS, 0, ahora, idCliente);
+            for (int negocio : delPedido) {
+                agregar(Metrica.CLIENTES_NEGOCIO, negocio, ahora, idCliente);
+            }
+            if (!desconocidos.isEmpty() && porResolver.size() < MAX_POR_RESOLVER) {
+                porResolver.add(new PorResolver(idCliente, ahora, desconocidos));
+            }
+        }
+    }
+
+    /**
+     * Ping de ubicacion en vivo de un repartidor.
+     */
+    public void registrarUbicacion(int idRepartidor) {
+        registrarUbicaciones(idRepartidor, new long[] { System.currentTimeMillis() });
+    }
+
+    /**
+     * Puntos de un lote offline: el repartidor cuenta en las horas en que los
+     * tomo, no en la que llego el lote.
+     */
+    public void registrarUbicaciones(int idRepartidor, long[] instantesMs) {
+        if (!HABILITADO || idRepartidor <= 0 || instantesMs == null) {
+            return;
+        }
+        Set<LocalDateTime> horas = new HashSet<>();
+        for (long instante : instantesMs) {
+            horas.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(instante), ZoneId.systemDefault())
+                    .truncatedTo(ChronoUnit.HOURS));
+        }
+        synchronized (this) {
+            for (LocalDateTime hora : horas) {
+                agregar(Metrica.REPARTIDORES, 0, hora, idRepartidor);
+                agregar(Metrica.ACTIVOS, 0, hora, idRepartidor);
+            }
+        }
+    }
+
+    /**
+     * Remitente de un mensaje de chat confirmado (quien llama excluye al bot).
+     */
+    public void registrarMensaje(int idRemitente) {
+        if (!HABILITADO || idRemitente <= 0) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        synchronized (this) {
+            agregar(Metrica.CHAT, 0, ahora, idRemitente);
+            agregar(Metrica.ACTIVOS, 0, ahora, idRemitente);
+        }
+    }
+
+    // Llamar con el monitor tomado. Solo se marca para guardar si cambio algun
+    // registro: un usuario que ya conto en la hora no escribe nada.
+    private void agregar(Metrica metrica, int negocio, LocalDateTime instante, int idUsuario) {
+        eventos.increment();
+        LocalDateTime ahora = LocalDateTime.now();
+        for (Granularidad g : Granularidad.values()) {
+            LocalDateTime inicio = g.truncar(instante);
+            if (inicio.isBefore(g.limite(ahora))) {
+                continue;
+            }
+            Clave clave = new Clave(metrica, negocio, g, inicio);
+            if (sketches.computeIfAbsent(clave, k -> new HyperLogLog(PRECISION)).agregar(idUsuario)) {
+                sucios.add(clave);
+            }
+        }
+        if (negocio != 0) {
+            negocios.add(negocio);
+        }
+    }
+
+    /**
+     * Cuenta en su negocio a los clientes de los pedidos cuyos productos no
+     * estaban en la cache al registrarlos. Corre en el hilo de fondo.
+     */
+    private void resolverNegocios() {
+        List<PorResolver> lote;
+        synchronized (this) {
+            if (porResolver.isEmpty()) {
+                return;
+            }
+            lote = new ArrayList<>(porResolver);
+            porResolver.clear();
+        }
+        MasVendidos productos = MasVendidos.getInstance();
+        Map<Integer, Integer> negocioDe = new HashMap<>();
+        Set<Integer> consultar = new HashSet<>();
+        for (PorResolver p : lote) {
+            for (int id : p.productos()) {
+                int negocio = productos.negocioDe(id);
+                if (negocio > 0) {
+                    negocioDe.put(id, negocio);
+                } else {
+                    consultar.add(id);
+                }
+            }
+        }
+        if (!consultar.isEmpty()) {
+            try {
+                negocioDe.putAll(repo.negociosDeProductos(new ArrayList<>(consultar)));
+            } catch (SQLException e) {
+                // Los clientes ya cuentan en el total; solo faltan en su negocio.
+                System.err.println("Actividad de usuarios: no se pudo leer el negocio de los productos: "
+                        + e.getMessage());
+                return;
+            }
+        }
+        synchronized (this) {
+            for (PorResolver p : lote) {
+                Set<Integer> delPedido = new HashSet<>();
+                for (int id : p.productos()) {
+                    Integer negocio = negocioDe.get(id);
+                    if (negocio != null && negocio > 0) {
+                        delPedido.add(negocio);
+                    }
+                }
+                for (int negocio : delPedido) {
+                    agregar(Metrica.CLIENTES_NEGOCIO, negocio, p.instante(), p.idCliente());
+                }
+            }
+        }
+    }
+
+    // ===============================
+    // PERSISTENCIA
+    // ===============================
+
+    /**
+     * Une en memoria todo lo guardado dentro de la retencion, de este nodo y
+     * de los demas. Los eventos llegados antes se conservan.
+     */
+    private void cargar() throws SQLException {
+        LocalDateTime ahora = LocalDateTime.now();
+        unirFilas(repo.leer(null, null, Granularidad.HORA.limite(ahora), Granularidad.DIA.limite(ahora)));
+        cargadoEn = System.currentTimeMillis();
+        listo = true;
+    }
+
+    /**
+     * Guarda lo que cambio, trae lo nuevo de otros nodos y, una vez por hora,
+     * purga lo que salio de la retencion en memoria y en la base.
+     */
+    private void sincronizar() throws SQLException {
+        guardar();
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime horaMinima = Granularidad.HORA.limite(ahora);
+        LocalDateTime diaMinimo = Granularidad.DIA.limite(ahora);
+        unirFilas(repo.leer(cursorRemoto, NODO, horaMinima, diaMinimo));
+        if (System.currentTimeMillis() - ultimaPurga > PURGA_MS) {
+            synchronized (this) {
+                sketches.keySet().removeIf(c -> c.inicio().isBefore(c.granularidad().limite(ahora)));
+                sucios.removeIf(c -> !sketches.containsKey(c));
+            }
+            repo.purgar(horaMinima, diaMinimo);
+            ultimaPurga = System.currentTimeMillis();
+        }
+    }
+
+    private void guardar() throws SQLException {
+        List<FilaHll> filas = new ArrayList<>();
+        List<Clave> claves;
+        synchronized (this) {
+            claves = new ArrayList<>(sucios);
+            for (Clave c : claves) {
+                HyperLogLog h = sketches.get(c);
+                if (h != null) {
+                    filas.add(new FilaHll(c.metrica().nombre, c.negocio(), c.granularidad().nombre, c.inicio(),
+                            NODO, PRECISION, h.serializar(), null));
+                }
+            }
+            sucios.clear();
+        }
+        if (filas.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try {
+            repo.guardar(filas);
+        } catch (SQLException | RuntimeException e) {
+            // Se reintentan en la siguiente pasada con lo que se haya sumado.
+            synchronized (this) {
+                sucios.addAll(claves);
+            }
+            throw e;
+        }
+        filasGuardadas = filas.size();
+        duracionGuardadoMs = (System.nanoTime() - inicio) / 1_000_000L;
+        ultimoGuardado = System.currentTimeMillis();
+    }
+
+    private void unirFilas(List<FilaHll> filas) {
+        LocalDateTime cursor = cursorRemoto;
+        for (FilaHll f : filas) {
+            if (f.actualizado() != null && (cursor == null || f.actualizado().isAfter(cursor))) {
+                cursor = f.actualizado();
+            }
+            Metrica metrica = Metrica.desde(f.metrica());
+            Granularidad g = Granularidad.desde(f.granularidad());
+            if (metrica == null || g == null) {
+                continue;
+            }
+            if (f.precision() != PRECISION) {
+                System.err.println("Actividad de usuarios: se ignora el sketch " + f.metrica() + " " + f.inicio()
+                        + " del nodo " + f.nodo() + " (precision " + f.precision() + ", se usa " + PRECISION + ")");
+                continue;
+            }
+            HyperLogLog h;
+            try {
+                h = HyperLogLog.deserializar(f.registros());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Actividad de usuarios: sketch ilegible " + f.metrica() + " " + f.inicio()
+                        + " del nodo " + f.nodo() + ": " + e.getMessage());
+                continue;
+            }
+            synchronized (this) {
+                // No se marca para guardar: ya esta en la base bajo su nodo.
+                sketches.computeIfAbsent(new Clave(metrica, f.idNegocio(), g, f.inicio()),
+                        k -> new HyperLogLog(PRECISION)).unir(h);
+                if (f.idNegocio() != 0) {
+                    negocios.add(f.idNegocio());
+                }
+            }
+        }
+        if (cursor != null) {
+            // Guardar el maximo visto menos el margen: releer es inocuo.
+            cursorRemoto = cursor.minusSeconds(MARGEN_LECTURA_SEG);
+        }
+    }
+
+    /**
+     * Rellena los sketches de los ultimos {@code dias} dias desde las tablas
+     * de origen, por ejemplo al activar las metricas por primera vez. Como la
+     * union es idempotente, se puede repetir sin contar a nadie dos veces.
+     * Los repartidores solo salen de los puntos guardados en
+     * {@code tracking_ruta}.
+     */
+    public Map<String, Object> reconstruir(int dias) throws SQLException {
+        if (!HABILITADO) {
+            throw new ApiException(503, "Las metricas de actividad estan desactivadas (HLL_ENABLED=false)");
+        }
+        if (dias < 1 || dias > DIAS) {
+            throw new ApiException(400, "dias debe estar entre 1 y " + DIAS);
+        }
+        long inicio = System.nanoTime();
+        LocalDateTime desde = Granularidad.DIA.truncar(LocalDateTime.now()).minusDays(dias - 1L);
+        int bot = ReferenceData.getInstance().botChatId();
+        long[] filas = new long[3];
+        repo.recorrerPedidos(desde, (hora, cliente, negocio) -> {
+            filas[0]++;
+            synchronized (this) {
+                agregar(Metrica.CLIENTES, 0, hora, cliente);
+                agregar(Metrica.ACTIVOS, 0, hora, cliente);
+                if (negocio > 0) {
+                    agregar(Metrica.CLIENTES_NEGOCIO, negocio, hora, cliente);
+                }
+            }
+        });
+        repo.recorrerRepartidores(desde, (hora, repartidor, negocio) -> {
+            filas[1]++;
+            synchronized (this) {
+                agregar(Metrica.REPARTIDORES, 0, hora, repartidor);
+                agregar(Metrica.ACTIVOS, 0, hora, repartidor);
+            }
+        });
+        repo.recorrerRemitentes(desde, (hora, remitente, negocio) -> {
+            filas[2]++;
+            if (remitente != bot) {
+                synchronized (this) {
+                    agregar(Metrica.CHAT, 0, hora, remitente);
+                    agregar(Metrica.ACTIVOS, 0, hora, remitente);
+                }
+            }
+        });
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("desde", desde.toString());
+        out.put("filas_pedidos", filas[0]);
+        out.put("filas_tracking", filas[1]);
+        out.put("filas_chat", filas[2]);
+        out.put("duracion_ms", (System.nanoTime() - inicio) / 1_000_000L);
+        return out;
+    }
+
+    // ===============================
+    // CONSULTAS
+    // ===============================
+
+    /**
+     * Usuarios distintos por hora o por dia en {@code [desde, hasta)} y en
+     * toda la ventana (union de los intervalos, no suma). Con {@code negocio}
+     * solo se da {@code clientes_negocio} de ese negocio.
+     */
+    public Map<String, Object> serie(LocalDateTime desde, LocalDateTime hasta, String granularidad,
+            Integer negocio) {
+        comprobarListo();
+        Granularidad g = granularidad(granularidad, desde, hasta);
+        List<LocalDateTime> intervalos = intervalos(g, desde, hasta);
+        List<Metrica> metricas = negocio != null ? List.of(Metrica.CLIENTES_NEGOCIO)
+                : List.of(Metrica.ACTIVOS, Metrica.CLIENTES, Metrica.REPARTIDORES, Metrica.CHAT);
+        int idNegocio = negocio != null ? negocio : 0;
+
+        long t0 = System.nanoTime();
+        List<Map<String, Object>> puntos = new ArrayList<>(intervalos.size());
+        Map<String, Object> distintos = new LinkedHashMap<>();
+        synchronized (this) {
+            for (LocalDateTime inicio : intervalos) {
+                Map<String, Object> punto = new LinkedHashMap<>();
+                punto.put("inicio", inicio.toString());
+                for (Metrica m : metricas) {
+                    HyperLogLog h = sketches.get(new Clave(m, idNegocio, g, inicio));
+                    punto.put(m.nombre, h != null ? h.estimar() : 0L);
+                }
+                puntos.add(punto);
+            }
+            for (Metrica m : metricas) {
+                distintos.put(m.nombre, union(m, idNegocio, g, intervalos).estimar());
+            }
+        }
+        double us = (System.nanoTime() - t0) / 1e3;
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("granularidad", g.nombre);
+        out.put("desde", intervalos.get(0).toString());
+        out.put("hasta", hasta.toString());
+        if (negocio != null) {
+            out.put("id_negocio", negocio);
+        }
+        out.put("distintos", distintos);
+        out.put("serie", puntos);
+        out.put("error_estandar", errorEstandar());
+        out.put("duracion_us", Math.round(us));
+        return out;
+    }
+
+    /**
+     * Clientes distintos por negocio en {@code [desde, hasta)}, de mas a
+     * menos.
+     */
+    public Map<String, Object> porNegocio(LocalDateTime desde, LocalDateTime hasta, String granularidad,
+            int limite) {
+        comprobarListo();
+        if (limite < 1) {
+            throw new ApiException(400, "limite debe ser positivo");
+        }
+        Granularidad g = granularidad(granularidad, desde, hasta);
+        List<LocalDateTime> intervalos = intervalos(g, desde, hasta);
+
+        long t0 = System.nanoTime();
+        List<long[]> conteos = new ArrayList<>();
+        synchronized (this) {
+            for (int negocio : negocios) {
+                long clientes = union(Metrica.CLIENTES_NEGOCIO, negocio, g, intervalos).estimar();
+                if (clientes > 0) {
+                    conteos.add(new long[] { negocio, clientes });
+                }
+            }
+        }
+        double us = (System.nanoTime() - t0) / 1e3;
+        conteos.sort(Comparator.comparingLong((long[] c) -> c[1]).reversed().thenComparingLong(c -> c[0]));
+
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (long[] c : conteos.subList(0, Math.min(limite, conteos.size()))) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("id_negocio", (int) c[0]);
+            fila.put("clientes", c[1]);
+            filas.add(fila);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("granularidad", g.nombre);
+        out.put("desde", intervalos.get(0).toString());
+        out.put("hasta", hasta.toString());
+        out.put("negocios_con_clientes", conteos.size());
+        out.put("negocios", filas);
+        out.put("error_estandar", errorEstandar());
+        out.put("duracion_us", Math.round(us));
+        return out;
+    }
+
+    public Map<String, Object> metricas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", HABILITADO);
+        datos.put("listo", listo);
+        datos.put("nodo", NODO);
+        datos.put("precision", PRECISION);
+        datos.put("error_estandar", errorEstandar());
+        datos.put("horas", HORAS);
+        datos.put("dias", DIAS);
+        synchronized (this) {
+            datos.put("sketches", sketches.size());
+            datos.put("negocios", negocios.size());
+            datos.put("pendientes_de_guardar", sucios.size());
+            datos.put("pedidos_por_resolver", porResolver.size());
+        }
+        datos.put("eventos", eventos.sum());
+        datos.put("cargado_en", cargadoEn);
+        datos.put("ultimo_guardado", ultimoGuardado);
+        datos.put("filas_ultimo_guardado", filasGuardadas);
+        datos.put("duracion_ultimo_guardado_ms", duracionGuardadoMs);
+        datos.put("ultimo_error", ultimoError);
+        return datos;
+    }
+
+    // Llamar con el monitor tomado.
+    private HyperLogLog union(Metrica metrica, int negocio, Granularidad g, List<LocalDateTime> intervalos) {
+        HyperLogLog total = new HyperLogLog(PRECISION);
+        for (LocalDateTime inicio : intervalos) {
+            HyperLogLog h = sketches.get(new Clave(metrica, negocio, g, inicio));
+            if (h != null) {
+                total.unir(h);
+            }
+        }
+        return total;
+    }
+
+    private void comprobarListo() {
+        if (!listo) {
+            throw new ApiException(503, HABILITADO ? "Las metricas de actividad aun se estan cargando"
+                    : "Las metricas de actividad estan desactivadas (HLL_ENABLED=false)");
+        }
+    }
+
+    // Por defecto, horas hasta dos dias y dias por encima.
+    private static Granularidad granularidad(String valor, LocalDateTime desde, LocalDateTime hasta) {
+        if (valor == null || valor.isBlank()) {
+            return ChronoUnit.HOURS.between(desde, hasta) <= 48 ? Granularidad.HORA : Granularidad.DIA;
+        }
+        Granularidad g = Granularidad.desde(valor.trim().toLowerCase());
+        if (g == null) {
+            throw new ApiException(400, "granularidad debe ser 'hora' o 'dia'");
+        }
+        return g;
+    }
+
+    // Inicios de los intervalos que tocan [desde, hasta), alineados a la hora o al dia.
+    private static List<LocalDateTime> intervalos(Granularidad g, LocalDateTime desde, LocalDateTime hasta) {
+        if (!hasta.isAfter(desde)) {
+            throw new ApiException(400, "'hasta' debe ser posterior a 'desde'");
+        }
+        LocalDateTime inicio = g.truncar(desde);
+        LocalDateTime limite = g.limite(LocalDateTime.now());
+        if (inicio.isBefore(limite)) {
+            throw new ApiException(400, "Solo se conservan " + (g == Granularidad.HORA ? HORAS + " horas" : DIAS + " dias")
+                    + " por " + g.nombre + "; 'desde' no puede ser anterior a " + limite);
+        }
+        List<LocalDateTime> out = new ArrayList<>();
+        for (LocalDateTime t = inicio; t.isBefore(hasta); t = t.plus(1, g.unidad)) {
+            out.add(t);
+        }
+        return out;
+    }
+
+    private static double errorEstandar() {
+        return Math.round(HyperLogLog.errorEstandar(PRECISION) * 10_000) / 10_000.0;
+    }
+
+    private static String resolverNodo() {
+        String valor = System.getenv("HLL_NODE");
+        if (valor != null && !valor.isBlank()) {
+            return valor.trim();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "local";
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
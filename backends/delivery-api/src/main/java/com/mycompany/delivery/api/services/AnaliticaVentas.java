@@ -0,0 +1,383 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.repository.AnaliticaRepository;
+import com.mycompany.delivery.api.repository.AnaliticaRepository.Cambio;
+import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.ColumnasPedidos;
+import com.mycompany.delivery.api.util.ColumnasPedidos.Agregado;
+import com.mycompany.delivery.api.util.ColumnasPedidos.Filtro;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ventas por hora o por dia, numero de pedidos y ticket promedio sobre
+ * cualquier intervalo, filtrando por negocio, repartidor o estado, sin volver a
+ * agregar {@code pedidos} en la base por cada consulta. Los pedidos viven en
+ * memoria en columnas de primitivos ({@link ColumnasPedidos}).
+ *
+ * <ul>
+ * <li>Al arrancar se cargan en {@code ANALYTICS_LOAD_THREADS} tramos de ids en
+ * paralelo (pool {@code ANALITICA}) y se unen en orden.</li>
+ * <li>Cada {@code ANALYTICS_REFRESH_SECONDS} se agregan los pedidos nuevos
+ * (ids mayores que el ultimo cargado, con un margen para transacciones que
+ * confirmaron tarde) y se releen estado, total y repartidor de los pedidos aun
+ * abiertos. {@code updated_at} no sirve de marca: las actualizaciones de
+ * estado no lo tocan.</li>
+ * <li>Cada {@code ANALYTICS_RELOAD_HOURS} se recarga todo, para recoger
+ * correcciones en pedidos cerrados y borrados.</li>
+ * </ul>
+ *
+ * Las ventas excluyen los pedidos cancelados salvo que se filtre por estado.
+ * Se desactiva con {@code ANALYTICS_ENABLED=false}.
+ */
+public final class AnaliticaVentas {
+
+    private static final boolean HABILITADO = !"false".equalsIgnoreCase(System.getenv("ANALYTICS_ENABLED"));
+    private static final int HILOS_CARGA = Math.max(1, getEnvInt("ANALYTICS_LOAD_THREADS", 2));
+    private static final int REFRESCO_SEG = Math.max(1, getEnvInt("ANALYTICS_REFRESH_SECONDS", 15));
+    private static final long RECARGA_MS = Math.max(1, getEnvInt("ANALYTICS_RELOAD_HOURS", 24)) * 3_600_000L;
+
+    // Pedidos abiertos releidos por pasada y tamano de cada consulta ANY(?).
+    private static final int MAX_ABIERTOS = 50_000;
+    private static final int LOTE_ABIERTOS = 5_000;
+    // Ids por debajo del ultimo cargado que se vuelven a mirar por si su
+    // transaccion confirmo despues de la de un id mayor.
+    private static final int MARGEN_IDS = 1_000;
+    private static final int MAX_GRUPOS = 10_000;
+    private static final int IDS_POR_TRAMO = 500_000;
+
+    private static final Set<String> CERRADOS = Set.of("entregado", "cancelado");
+    private static final Set<String> EXCLUIDOS_DE_VENTAS = Set.of("cancelado");
+
+    private static final AnaliticaVentas INSTANCE = new AnaliticaVentas(new AnaliticaRepository());
+
+    private final AnaliticaRepository repo;
+    private volatile ColumnasPedidos columnas;
+    private volatile long cargadoEn;
+    private volatile long duracionCargaMs;
+    private volatile long ultimoRefresco;
+    private volatile long duracionRefrescoMs;
+    private volatile String ultimoError;
+    private ScheduledExecutorService hilo;
+
+    private AnaliticaVentas(AnaliticaRepository repo) {
+        this.repo = repo;
+    }
+
+    public static AnaliticaVentas getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void iniciar() {
+        if (!HABILITADO || hilo != null) {
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "analitica-ventas");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                if (columnas == null || System.currentTimeMillis() - cargadoEn > RECARGA_MS) {
+                    recargar();
+                } else {
+                    refrescar();
+                }
+                ultimoError = null;
+            } catch (SQLException | RuntimeException e) {
+                ultimoError = e.getMessage();
+                System.err.println("Analitica de ventas: " + e.getMessage());
+            }
+        }, 0, REFRESCO_SEG, TimeUnit.SECONDS);
+    }
+
+    // ===============================
+    // CARGA Y REFRESCO
+    // ===============================
+
+    /**
+     * Carga completa en paralelo; las consultas siguen usando las columnas
+     * anteriores hasta que la nueva carga termina.
+     */
+    public synchronized void recargar() throws SQLException {
+        long inicio = System.nanoTime();
+        int[] rango = repo.rangoIds();
+        ColumnasPedidos nuevas;
+        if (rango == null) {
+            nuevas = new ColumnasPedidos(0);
+        } else {
+            // Tramos de a lo sumo IDS_POR_TRAMO ids repartidos entre los hilos:
+            // cada consulta es corta y un tramo lento no retiene toda la carga.
+            long total = (long) rango[1] - rango[0] + 1;
+            int tramos = (int) Math.max(Math.min(HILOS_CARGA, total), (total + IDS_POR_TRAMO - 1) / IDS_POR_TRAMO);
+            long porTramo = (total + tramos - 1) / tramos;
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(HILOS_CARGA, tramos), r -> {
+                Thread t = new Thread(r, "analitica-carga");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<CompletableFuture<ColumnasPedidos>> partes = new ArrayList<>();
+                for (int i = 0; i < tramos; i++) {
+                    int desde = (int) (rango[0] + i * porTramo);
+                    int hasta = (int) Math.min(rango[1], desde + porTramo - 1L);
+                    partes.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return repo.cargar(desde, hasta);
+                        } catch (SQLException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, pool));
+                }
+                List<ColumnasPedidos> cargadas = new ArrayList<>();
+                for (CompletableFuture<ColumnasPedidos> parte : partes) {
+                    cargadas.add(esperar(parte));
+                }
+                nuevas = new ColumnasPedidos(cargadas.stream().mapToInt(ColumnasPedidos::tamano).sum());
+                for (ColumnasPedidos parte : cargadas) {
+                    nuevas.agregarTodo(parte);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        columnas = nuevas;
+        cargadoEn = System.currentTimeMillis();
+        ultimoRefresco = cargadoEn;
+        duracionCargaMs = (System.nanoTime() - inicio) / 1_000_000L;
+        System.out.println("Analitica de ventas: " + nuevas.tamano() + " pedidos cargados en "
+                + duracionCargaMs + " ms (" + HILOS_CARGA + " hilos)");
+    }
+
+    /**
+     * Agrega los pedidos nuevos y actualiza los abiertos.
+     */
+    public synchronized void refrescar() throws SQLException {
+        ColumnasPedidos c = columnas;
+        if (c == null) {
+            recargar();
+            return;
+        }
+        long inicio = System.nanoTime();
+        int desde = Math.max(0, c.maxId() - MARGEN_IDS);
+        Set<Integer> presentes = c.idsRecientes(desde, 4 * MARGEN_IDS);
+        ColumnasPedidos nuevas = repo.cargar(desde + 1, Integer.MAX_VALUE, ColumnasPedidos.BLOQUE);
+        for (int i = 0; i < nuevas.tamano(); i++) {
+            if (!presentes.contains(nuevas.id(i))) {
+                c.agregarFila(nuevas, i);
+            }
+        }
+
+        int[] posiciones = c.posicionesAbiertas(cerrados(), MAX_ABIERTOS);
+        for (int i = 0; i < posiciones.length; i += LOTE_ABIERTOS) {
+            int[] lote = Arrays.copyOfRange(posiciones, i, Math.min(posiciones.length, i + LOTE_ABIERTOS));
+            Map<Integer, Integer> porId = new HashMap<>(lote.length * 2);
+            int[] ids = new int[lote.length];
+            for (int k = 0; k < lote.length; k++) {
+                ids[k] = c.id(lote[k]);
+                porId.put(ids[k], lote[k]);
+            }
+            for (Cambio cambio : repo.estadoActual(ids)) {
+                Integer pos = porId.get(cambio.idPedido());
+                if (pos != null) {
+                    c.actualizar(pos, ColumnasPedidos.codigoEstado(cambio.estado()), cambio.centavos(),
+                            cambio.idDelivery());
+                }
+            }
+        }
+        ultimoRefresco = System.currentTimeMillis();
+        duracionRefrescoMs = (System.nanoTime() - inicio) / 1_000_000L;
+    }
+
+    private static boolean[] cerrados() {
+        boolean[] abiertos = ColumnasPedidos.estadosAceptados(null, CERRADOS);
+        boolean[] cerrados = new boolean[abiertos.length];
+        for (int i = 0; i < abiertos.length; i++) {
+            cerrados[i] = !abiertos[i];
+        }
+        return cerrados;
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) throws SQLException {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sql) {
+                throw sql;
+            }
+            throw e;
+        }
+    }
+
+    // ===============================
+    // CONSULTAS
+    // ===============================
+
+    /**
+     * Serie por hora o por dia en {@code [desde, hasta)}: pedidos, ventas y
+     * ticket promedio de cada intervalo (incluidos los vacios) y el total.
+     */
+    public Map<String, Object> serie(LocalDateTime desde, LocalDateTime hasta, String granularidad,
+            Integer negocio, Integer repartidor, String estado) {
+        ColumnasPedidos c = cargadas();
+        long paso = switch (granularidad == null ? "dia" : granularidad.toLowerCase()) {
+            case "hora" -> 3_600L;
+            case "dia" -> 86_400L;
+            default -> throw new ApiException(400, "granularidad debe ser 'hora' o 'dia'");
+        };
+        // El inicio se alinea a la hora o al dia que lo contiene.
+        long inicio = Math.floorDiv(segundos(desde), paso) * paso;
+        long fin = segundos(hasta);
+        validarIntervalo(inicio, fin);
+        if ((fin - inicio + paso - 1) / paso > MAX_GRUPOS) {
+            throw new ApiException(400, "El intervalo tiene mas de " + MAX_GRUPOS + " grupos; usa granularidad 'dia'");
+        }
+        long t0 = System.nanoTime();
+        Agregado a = c.serie(filtro(inicio, fin, negocio, repartidor, estado), paso);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        List<Map<String, Object>> puntos = new ArrayList<>(a.pedidos().length);
+        long pedidos = 0;
+        long centavos = 0;
+        for (int g = 0; g < a.pedidos().length; g++) {
+            puntos.add(fila("inicio", LocalDateTime.ofEpochSecond(inicio + g * paso, 0, ZoneOffset.UTC).toString(),
+                    a.pedidos()[g], a.centavos()[g]));
+            pedidos += a.pedidos()[g];
+            centavos += a.centavos()[g];
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("granularidad", paso == 3_600L ? "hora" : "dia");
+        out.put("desde", LocalDateTime.ofEpochSecond(inicio, 0, ZoneOffset.UTC).toString());
+        out.put("hasta", hasta.toString());
+        out.put("total", fila(null, null, pedidos, centavos));
+        out.put("serie", puntos);
+        out.put("filas_leidas", a.filasLeidas());
+        out.put("duracion_ms", Math.round(ms * 100) / 100.0);
+        return out;
+    }
+
+    /**
+     * Totales por negocio o por repartidor en {@code [desde, hasta)}, de mayor
+     * a menor venta.
+     */
+    public Map<String, Object> desglose(LocalDateTime desde, LocalDateTime hasta, String por, String estado,
+            int limite) {
+        ColumnasPedidos c = cargadas();
+        boolean porNegocio = switch (por == null ? "negocio" : por.toLowerCase()) {
+            case "negocio" -> true;
+            case "repartidor" -> false;
+            default -> throw new ApiException(400, "por debe ser 'negocio' o 'repartidor'");
+        };
+        long inicio = segundos(desde);
+        long fin = segundos(hasta);
+        validarIntervalo(inicio, fin);
+        long t0 = System.nanoTime();
+        Agregado a = c.porClave(filtro(inicio, fin, 0, 0, estado), porNegocio);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        String clave = porNegocio ? "id_negocio" : "id_repartidor";
+        List<Integer> conPedidos = new ArrayList<>();
+        for (int k = 0; k < a.pedidos().length; k++) {
+            if (a.pedidos()[k] > 0) {
+                conPedidos.add(k);
+            }
+        }
+        conPedidos.sort((x, y) -> Long.compare(a.centavos()[y], a.centavos()[x]));
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (int k : conPedidos.subList(0, Math.min(Math.max(1, limite), conPedidos.size()))) {
+            // El 0 agrupa los pedidos sin negocio o sin repartidor asignado.
+            filas.add(fila(clave, k == 0 ? null : k, a.pedidos()[k], a.centavos()[k]));
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("por", porNegocio ? "negocio" : "repartidor");
+        out.put("desde", desde.toString());
+        out.put("hasta", hasta.toString());
+        out.put("grupos", conPedidos.size());
+        out.put("filas", filas);
+        out.put("filas_leidas", a.filasLeidas());
+        out.put("duracion_ms", Math.round(ms * 100) / 100.0);
+        return out;
+    }
+
+    public Map<String, Object> metricas() {
+        ColumnasPedidos c = columnas;
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", HABILITADO);
+        datos.put("cargado", c != null);
+        datos.put("pedidos", c != null ? c.tamano() : 0);
+        datos.put("bytes", c != null ? c.bytes() : 0);
+        datos.put("hilos_carga", HILOS_CARGA);
+        datos.put("cargado_en", cargadoEn);
+        datos.put("duracion_carga_ms", duracionCargaMs);
+        datos.put("ultimo_refresco", ultimoRefresco);
+        datos.put("duracion_refresco_ms", duracionRefrescoMs);
+        datos.put("ultimo_error", ultimoError);
+        return datos;
+    }
+
+    private ColumnasPedidos cargadas() {
+        ColumnasPedidos c = columnas;
+        if (c == null) {
+            throw new ApiException(503, HABILITADO ? "La analitica de ventas aun se esta cargando"
+                    : "La analitica de ventas esta desactivada (ANALYTICS_ENABLED=false)");
+        }
+        return c;
+    }
+
+    private static Filtro filtro(long desde, long hasta, Integer negocio, Integer repartidor, String estado) {
+        return new Filtro(desde, hasta, ColumnasPedidos.estadosAceptados(estado, EXCLUIDOS_DE_VENTAS),
+                negocio != null ? negocio : 0, repartidor != null ? repartidor : 0);
+    }
+
+    private static void validarIntervalo(long desde, long hasta) {
+        if (hasta <= desde) {
+            throw new ApiException(400, "'hasta' debe ser posterior a 'desde'");
+        }
+    }
+
+    private static Map<String, Object> fila(String clave, Object valor, long pedidos, long centavos) {
+        Map<String, Object> fila = new LinkedHashMap<>();
+        if (clave != null) {
+            fila.put(clave, valor);
+        }
+        fila.put("pedidos", pedidos);
+        fila.put("ventas", BigDecimal.valueOf(centavos, 2));
+        fila.put("ticket_promedio", pedidos == 0 ? BigDecimal.ZERO.setScale(2)
+                : BigDecimal.valueOf(centavos, 2).divide(BigDecimal.valueOf(pedidos), 2, RoundingMode.HALF_UP));
+        return fila;
+    }
+
+    private static long segundos(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.config.Database;
+import com.mycompany.delivery.api.config.UnitOfWork;
+import com.mycompany.delivery.api.model.PedidoArchivado;
+import com.mycompany.delivery.api.repository.ArchivoRepository;
+import com.mycompany.delivery.api.repository.ArchivoRepository.Candidato;
+import com.mycompany.delivery.api.repository.ArchivoRepository.PorArchivar;
+import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.SegmentoArchivo;
+import com.mycompany.delivery.api.util.SegmentoArchivo.Entrada;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Archiva la ruta ({@code tracking_ruta}) y el chat ({@code chat_mensajes}) de
+ * los pedidos entregados o cancelados hace mas de {@code ARCHIVE_GRACE_DAYS}
+ * dias. Por cada lote de hasta {@code ARCHIVE_BATCH_SIZE} pedidos:
+ *
+ * <ol>
+ * <li>lee sus filas de las tablas vivas;</li>
+ * <li>escribe un segmento comprimido con un bloque por pedido
+ * ({@link SegmentoArchivo}) y lo relee desde su indice para comprobarlo;</li>
+ * <li>en una transaccion registra el indice en {@code pedidos_archivados} y
+ * borra las filas archivadas.</li>
+ * </ol>
+ *
+ * Si algo falla antes de confirmar, el segmento se borra y las filas siguen en
+ * las tablas; se reintenta en la siguiente pasada. Las lecturas
+ * ({@code obtenerRutaPedido}, {@code listarMensajes}) recurren al archivo
+ * cuando la tabla viva no tiene el pedido. Corre cada
+ * {@code ARCHIVE_INTERVAL_MINUTES}.
+ *
+ * <p>Como borra filas, esta apagado por defecto: hace falta
+ * {@code ARCHIVE_ENABLED=true} y un {@code ARCHIVE_DIR} absoluto. Cada pasada
+ * comprueba antes de nada que puede escribir en el directorio.
+ */
+public final class ArchivadorPedidos {
+
+    private static final boolean HABILITADO = "true".equalsIgnoreCase(System.getenv("ARCHIVE_ENABLED"));
+    private static final int DIAS_GRACIA = getEnvInt("ARCHIVE_GRACE_DAYS", 7);
+    private static final int TAMANO_LOTE = Math.max(1, getEnvInt("ARCHIVE_BATCH_SIZE", 200));
+    private static final int MAX_LOTES_POR_PASADA = Math.max(1, getEnvInt("ARCHIVE_MAX_BATCHES", 50));
+    private static final long INTERVALO_MIN = getEnvInt("ARCHIVE_INTERVAL_MINUTES", 60);
+
+    // Clave fija para pg_try_advisory_lock: un solo archivador a la vez.
+    private static final long LOCK_KEY = 0x6172636869766f73L;
+    private static final DateTimeFormatter NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final ArchivadorPedidos INSTANCE = new ArchivadorPedidos();
+
+    private final ArchivoRepository repo = new ArchivoRepository();
+    private final LongAdder pedidosArchivados = new LongAdder();
+    private final LongAdder filasRuta = new LongAdder();
+    private final LongAdder filasChat = new LongAdder();
+    private final LongAdder bytesEscritos = new LongAdder();
+    private final LongAdder lotesFallidos = new LongAdder();
+    // Los candidatos se recorren por updated_at; tras la primera pasada solo se
+    // miran los posteriores al ultimo visto, sin volver sobre los ya archivados.
+    private volatile Timestamp marca;
+    private volatile long ultimaEjecucion;
+    private volatile long ultimaDuracionMs;
+    private volatile String ultimoError;
+    private ScheduledExecutorService hilo;
+
+    private ArchivadorPedidos() {
+    }
+
+    public static ArchivadorPedidos getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void iniciar() {
+        if (!HABILITADO || hilo != null) {
+            return;
+        }
+        if (ArchivoRepository.DIRECTORIO == null) {
+            System.err.println("ARCHIVE_ENABLED=true sin un ARCHIVE_DIR absoluto: el archivador no arranca");
+            return;
+        }
+        try {
+            comprobarDirectorio();
+        } catch (IOException e) {
+            System.err.println("No se puede escribir en ARCHIVE_DIR (" + ArchivoRepository.DIRECTORIO
+                    + "), el archivador no arranca: " + e.getMessage());
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archivador-pedidos");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                archivarPendientes();
+            } catch (RuntimeException e) {
+                System.err.println("Archivador de pedidos: " + e.getMessage());
+            }
+        }, 1, INTERVALO_MIN, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Una pasada completa (hasta {@code ARCHIVE_MAX_BATCHES} lotes).
+     *
+     * @return pedidos archivados en esta pasada; -1 si otro nodo esta archivando.
+     */
+    public synchronized int archivarPendientes() {
+        if (!HABILITADO || ArchivoRepository.DIRECTORIO == null) {
+            throw new ApiException(409, "El archivo de pedidos requiere ARCHIVE_ENABLED=true y un ARCHIVE_DIR absoluto");
+        }
+        long inicio = System.nanoTime();
+        int archivados = 0;
+        try (Connection lock = Database.getConnection()) {
+            if (!bloquear(lock, "pg_try_advisory_lock")) {
+                return -1;
+            }
+            try {
+                comprobarDirectorio();
+                for (int i = 0; i < MAX_LOTES_POR_PASADA; i++) {
+                    List<Candidato> candidatos = repo.pedidosPorArchivar(DIAS_GRACIA, marca, TAMANO_LOTE);
+                    if (candidatos.isEmpty()) {
+                        break;
+                    }
+                    archivados += archivarLote(candidatos);
+                    marca = candidatos.get(candidatos.size() - 1).actualizado();
+                    if (candidatos.size() < TAMANO_LOTE) {
+                        break;
+                    }
+                }
+                ultimoError = null;
+            } finally {
+                bloquear(lock, "pg_advisory_unlock");
+            }
+        } catch (SQLException | IOException e) {
+            lotesFallidos.increment();
+            ultimoError = e.getMessage();
+            System.err.println("No se pudo archivar el lote de pedidos: " + e.getMessage());
+        } finally {
+            ultimaEjecucion = System.currentTimeMillis();
+            ultimaDuracionMs = (System.nanoTime() - inicio) / 1_000_000L;
+        }
+        if (archivados > 0) {
+            System.out.println("Archivados " + archivados + " pedidos en " + ultimaDuracionMs + " ms");
+        }
+        return archivados;
+    }
+
+    private int archivarLote(List<Candidato> candidatos) throws SQLException, IOException {
+        int[] ids = candidatos.stream().mapToInt(Candidato::idPedido).toArray();
+        List<PorArchivar> pedidos = repo.cargar(ids);
+
+        String nombre = "pedidos-" + LocalDateTime.now().format(NOMBRE) + "-" + ids[0] + ".seg";
+        Path destino = ArchivoRepository.DIRECTORIO.resolve(nombre);
+        List<Entrada> entradas;
+        try (SegmentoArchivo.Escritor escritor = new SegmentoArchivo.Escritor(destino)) {
+            for (PorArchivar p : pedidos) {
+                escritor.agregar(p.contenido());
+            }
+            entradas = escritor.entradas();
+            escritor.cerrar();
+        }
+
+        boolean confirmado = false;
+        try {
+            verificar(destino, entradas, pedidos);
+            long[] borradas = UnitOfWork.transaccion(() -> repo.confirmar(nombre, entradas, pedidos));
+            confirmado = true;
+            pedidosArchivados.add(pedidos.size());
+            filasRuta.add(borradas[0]);
+            filasChat.add(borradas[1]);
+            bytesEscritos.add(Files.size(destino));
+            return pedidos.size();
+        } finally {
+            if (!confirmado) {
+                Files.deleteIfExists(destino);
+            }
+        }
+    }
+
+    // Crea el directorio si falta y escribe y borra un fichero de prueba: un
+    // volumen de solo lectura o sin montar se detecta antes de tocar la base.
+    private static void comprobarDirectorio() throws IOException {
+        Path directorio = Files.createDirectories(ArchivoRepository.DIRECTORIO);
+        Path prueba = Files.createTempFile(directorio, ".prueba-", ".tmp");
+        Files.delete(prueba);
+    }
+
+    // Antes de borrar nada de la base: el indice del segmento se lee desde su
+    // cola y cada bloque se descomprime y se compara con lo que se escribio.
+    private static void verificar(Path segmento, List<Entrada> entradas, List<PorArchivar> pedidos)
+            throws IOException {
+        List<Entrada> leidas = SegmentoArchivo.indice(segmento);
+        if (!leidas.equals(entradas)) {
+            throw new IOException("El indice de " + segmento.getFileName() + " no coincide con lo escrito");
+        }
+        for (int i = 0; i < entradas.size(); i++) {
+            Entrada e = entradas.get(i);
+            PedidoArchivado esperado = pedidos.get(i).contenido();
+            PedidoArchivado leido = SegmentoArchivo.leer(segmento, e.desplazamiento(), e.longitud(), e.crc32());
+            if (leido.idPedido() != esperado.idPedido() || leido.puntos() != esperado.puntos()
+                    || leido.mensajes().size() != esperado.mensajes().size()) {
+                throw new IOException("Bloque del pedido " + esperado.idPedido() + " ilegible en "
+                        + segmento.getFileName());
+            }
+        }
+    }
+
+    public Map<String, Object> metricas() throws SQLException {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", HABILITADO);
+        datos.put("directorio", ArchivoRepository.DIRECTORIO != null ? ArchivoRepository.DIRECTORIO.toString() : null);
+        datos.put("dias_gracia", DIAS_GRACIA);
+        datos.put("ultima_ejecucion", ultimaEjecucion);
+        datos.put("ultima_duracion_ms", ultimaDuracionMs);
+        datos.put("ultimo_error", ultimoError);
+        datos.put("pedidos_archivados", pedidosArchivados.sum());
+        datos.put("filas_ruta_borradas", filasRuta.sum());
+        datos.put("mensajes_borrados", filasChat.sum());
+        datos.put("bytes_escritos", bytesEscritos.sum());
+        datos.put("lotes_fallidos", lotesFallidos.sum());
+        datos.put("indice", repo.resumen());
+        return datos;
+    }
+
+    private static boolean bloquear(Connection conn, String funcion) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT " + funcion + "(?)")) {
+            ps.setLong(1, LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
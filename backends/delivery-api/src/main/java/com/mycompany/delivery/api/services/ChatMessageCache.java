@@ -0,0 +1,365 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.repository.ChatRepository;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ultimos N mensajes por conversacion activa, en un buffer circular. Se
+ * alimenta desde {@code ChatRepository.insertMensaje} y se consulta con un
+ * cursor {@code afterId}: un sondeo sin mensajes nuevos no toca la base de
+ * datos.
+ *
+ * <p>Con varias replicas, los mensajes insertados en otra instancia llegan al
+ * buffer releyendo, como mucho una vez cada {@code CHAT_CACHE_RESYNC_MS}, los
+ * mensajes creados en los ultimos {@code CHAT_CACHE_RESYNC_WINDOW_SECONDS}
+ * antes del mas reciente conocido; los repetidos se descartan. No basta con
+ * {@code id_mensaje > ultimo}: el id se asigna al insertar y las transacciones
+ * confirman en otro orden, asi que un mensaje con id menor puede aparecer
+ * despues. Las conversaciones se expulsan por inactividad y, si se supera el
+ * presupuesto de memoria, las menos usadas primero, junto con la asociacion
+ * pedido-conversacion memorizada para ellas.
+ */
+public final class ChatMessageCache {
+
+    private static final int CAPACIDAD = Math.max(1, getEnvInt("CHAT_CACHE_MENSAJES", 100));
+    private static final long INACTIVIDAD_MS = getEnvInt("CHAT_CACHE_IDLE_SECONDS", 600) * 1000L;
+    private static final long PRESUPUESTO_BYTES = getEnvInt("CHAT_CACHE_MAX_MB", 32) * 1024L * 1024L;
+    private static final long RESYNC_MS = getEnvInt("CHAT_CACHE_RESYNC_MS", 5000);
+    private static final long VENTANA_RESYNC_MS = getEnvInt("CHAT_CACHE_RESYNC_WINDOW_SECONDS", 30) * 1000L;
+    // Entrada del mapa pedido -> conversacion (claves, valor y nodo del mapa).
+    private static final long BYTES_POR_PEDIDO = 96;
+    private static final long BARRIDO_MS = 10_000L;
+
+    private static final ChatMessageCache INSTANCE = new ChatMessageCache();
+
+    private final ChatRepository repo = new ChatRepository();
+    private final Map<Long, Conversacion> conversaciones = new ConcurrentHashMap<>();
+    // Un pedido queda asociado a su conversacion para siempre: se memoriza
+    // mientras la conversacion este en memoria.
+    private final Map<Integer, Long> conversacionPorPedido = new ConcurrentHashMap<>();
+    private final AtomicLong bytesTotales = new AtomicLong();
+    private final AtomicLong ultimoBarrido = new AtomicLong();
+
+    private ChatMessageCache() {
+    }
+
+    public static ChatMessageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Mensajes de la conversacion con id mayor que {@code afterId} (todos si es
+     * nulo), en orden de id.
+     */
+    public List<ChatMensaje> listar(long idConversacion, Long afterId) throws SQLException {
+        barrerSiToca();
+        Conversacion conv = conversaciones.get(idConversacion);
+        if (conv != null) {
+            Optional<List<ChatMensaje>> enMemoria = conv.consultar(afterId);
+            if (enMemoria.isPresent()) {
+                return enMemoria.get();
+            }
+        }
+        return cargar(idConversacion, afterId);
+    }
+
+    /**
+     * Mensajes de la conversacion asociada al pedido; vacio si no existe.
+     */
+    public List<ChatMensaje> listarPorPedido(int idPedido, Long afterId) throws SQLException {
+        Long idConversacion = conversacionPorPedido.get(idPedido);
+        if (idConversacion == null) {
+            Optional<Long> encontrada = repo.buscarConversacionPorPedido(idPedido);
+            if (encontrada.isEmpty()) {
+                return List.of();
+            }
+            idConversacion = encontrada.get();
+        }
+        List<ChatMensaje> mensajes = listar(idConversacion, afterId);
+        Conversacion conv = conversaciones.get(idConversacion);
+        if (conv != null && conv.asociarPedido(idPedido)) {
+            bytesTotales.addAndGet(BYTES_POR_PEDIDO);
+            conversacionPorPedido.put(idPedido, idConversacion);
+            // Expulsada mientras tanto: invalidar ya no vera este pedido.
+            if (conversaciones.get(idConversacion) != conv) {
+                conversacionPorPedido.remove(idPedido, idConversacion);
+            }
+        }
+        return mensajes;
+    }
+
+    /**
+     * Agrega un mensaje recien insertado. Si la conversacion no esta en memoria no
+     * se hace nada: se cargara completa en la siguiente lectura.
+     */
+    public void registrar(long idConversacion, ChatMensaje mensaje) {
+        Conversacion conv = conversaciones.get(idConversacion);
+        if (conv != null) {
+            bytesTotales.addAndGet(conv.agregar(mensaje));
+            if (bytesTotales.get() > PRESUPUESTO_BYTES) {
+                expulsarPorMemoria();
+            }
+        }
+    }
+
+    public void invalidar(long idConversacion) {
+        Conversacion conv = conversaciones.remove(idConversacion);
+        if (conv != null) {
+            bytesTotales.addAndGet(-conv.bytes());
+            int idPedido = conv.idPedido();
+            if (idPedido != 0) {
+                conversacionPorPedido.remove(idPedido, idConversacion);
+            }
+        }
+    }
+
+    private List<ChatMensaje> cargar(long idConversacion, Long afterId) throws SQLException {
+        Conversacion conv = conversaciones.get(idConversacion);
+        if (conv != null && conv.puedeResincronizar(afterId)) {
+            // Ventana reciente (p. ej. lo escrito en otra replica o confirmado tarde).
+            Timestamp ultima = conv.ultimaFecha();
+            List<ChatMensaje> nuevos = ultima == null
+                    ? repo.listarMensajes(idConversacion, conv.ultimoId())
+                    : repo.listarMensajesDesde(idConversacion, new Timestamp(ultima.getTime() - VENTANA_RESYNC_MS));
+            long delta = 0;
+            for (ChatMensaje m : nuevos) {
+                delta += conv.agregar(m);
+            }
+            bytesTotales.addAndGet(delta);
+            conv.marcarSincronizada();
+            return conv.consultar(afterId).orElseGet(List::of);
+        }
+
+        // Sin buffer utilizable: historial completo desde la base de datos.
+        List<ChatMensaje> todos = repo.listarMensajes(idConversacion);
+        Conversacion nueva = new Conversacion(todos.size() <= CAPACIDAD);
+        long bytes = 0;
+        for (int i = Math.max(0, todos.size() - CAPACIDAD); i < todos.size(); i++) {
+            bytes += nueva.agregar(todos.get(i));
+        }
+        nueva.marcarSincronizada();
+        Conversacion anterior = conversaciones.put(idConversacion, nueva);
+        if (anterior != null && anterior.idPedido() != 0 && nueva.asociarPedido(anterior.idPedido())) {
+            bytes += BYTES_POR_PEDIDO; // La asociacion sigue en el mapa: pasa a la nueva.
+        }
+        bytesTotales.addAndGet(bytes - (anterior != null ? anterior.bytes() : 0));
+        if (bytesTotales.get() > PRESUPUESTO_BYTES) {
+            expulsarPorMemoria();
+        }
+
+        if (afterId == null) {
+            return todos;
+        }
+        List<ChatMensaje> filtrados = new ArrayList<>();
+        for (ChatMensaje m : todos) {
+            if (idDe(m) > afterId) {
+                filtrados.add(m);
+            }
+        }
+        return filtrados;
+    }
+
+    private void barrerSiToca() {
+        long ahora = System.currentTimeMillis();
+        long ultimo = ultimoBarrido.get();
+        if (ahora - ultimo < BARRIDO_MS || !ultimoBarrido.compareAndSet(ultimo, ahora)) {
+            return;
+        }
+        conversaciones.forEach((id, conv) -> {
+            if (ahora - conv.ultimoAcceso() > INACTIVIDAD_MS) {
+                invalidar(id);
+            }
+        });
+    }
+
+    // Expulsa las conversaciones menos usadas hasta bajar al 80% del presupuesto.
+    private synchronized void expulsarPorMemoria() {
+        if (bytesTotales.get() <= PRESUPUESTO_BYTES) {
+            return;
+        }
+        List<Map.Entry<Long, Conversacion>> entradas = new ArrayList<>(conversaciones.entrySet());
+        entradas.sort(Comparator.comparingLong(e -> e.getValue().ultimoAcceso()));
+        long objetivo = PRESUPUESTO_BYTES * 8 / 10;
+        for (Map.Entry<Long, Conversacion> e : entradas) {
+            if (bytesTotales.get() <= objetivo) {
+                break;
+            }
+            invalidar(e.getKey());
+        }
+    }
+
+    private static long idDe(ChatMensaje mensaje) {
+        return mensaje.idMensaje();
+    }
+
+    // Estimacion gruesa: texto en UTF-16 mas el coste fijo del record y sus campos.
+    private static long bytesDe(ChatMensaje mensaje) {
+        long chars = (mensaje.mensaje() != null ? mensaje.mensaje().length() : 0)
+                + (mensaje.remitenteNombre() != null ? mensaje.remitenteNombre().length() : 0);
+        return 2 * chars + 120;
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Buffer circular ordenado por id_mensaje. {@code completa} indica que el
+     * buffer contiene todo el historial (nunca se ha descartado un mensaje).
+     */
+    private static final class Conversacion {
+
+        private final ChatMensaje[] mensajes = new ChatMensaje[CAPACIDAD];
+        private int inicio;
+        private int tamano;
+        private boolean completa;
+        private long bytes;
+        private Timestamp ultimaFecha;
+        private int idPedido;
+        private volatile long ultimoAcceso = System.currentTimeMillis();
+        private volatile long sincronizadaEn;
+
+        Conversacion(boolean completa) {
+            this.completa = completa;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        long ultimoAcceso() {
+            return ultimoAcceso;
+        }
+
+        void marcarSincronizada() {
+            sincronizadaEn = System.currentTimeMillis();
+        }
+
+        synchronized long ultimoId() {
+            return tamano == 0 ? 0L : idDe(en(tamano - 1));
+        }
+
+        // created_at mas reciente visto (no se pierde al rotar el buffer).
+        synchronized Timestamp ultimaFecha() {
+            return ultimaFecha;
+        }
+
+        synchronized int idPedido() {
+            return idPedido;
+        }
+
+        /**
+         * @return true si el pedido queda asociado ahora (no lo estaba).
+         */
+        synchronized boolean asociarPedido(int pedido) {
+            if (idPedido == pedido) {
+                return false;
+            }
+            idPedido = pedido;
+            bytes += BYTES_POR_PEDIDO;
+            return true;
+        }
+
+        /**
+         * @return cambio en bytes estimados (0 si el mensaje ya estaba).
+         */
+        synchronized long agregar(ChatMensaje mensaje) {
+            long id = idDe(mensaje);
+            Timestamp fecha = mensaje.createdAt();
+            if (fecha != null && (ultimaFecha == null || fecha.after(ultimaFecha))) {
+                ultimaFecha = fecha;
+            }
+            // Los ids casi siempre llegan en orden; si no, se busca su posicion.
+            int pos = tamano;
+            while (pos > 0 && idDe(en(pos - 1)) >= id) {
+                if (idDe(en(pos - 1)) == id) {
+                    return 0;
+                }
+                pos--;
+            }
+            long delta = bytesDe(mensaje);
+            if (tamano == CAPACIDAD) {
+                if (pos == 0) {
+                    completa = false;
+                    return 0; // Mas antiguo que todo el buffer lleno.
+                }
+                delta -= bytesDe(en(0));
+                mensajes[inicio] = null;
+                inicio = (inicio + 1) % CAPACIDAD;
+                tamano--;
+                pos--;
+                completa = false;
+            }
+            for (int i = tamano; i > pos; i--) {
+                mensajes[indice(i)] = en(i - 1);
+            }
+            mensajes[indice(pos)] = mensaje;
+            tamano++;
+            bytes += delta;
+            return delta;
+        }
+
+        /**
+         * @return los mensajes posteriores a {@code afterId}, o vacio si el buffer
+         *         no puede responder (historial incompleto, cursor anterior al
+         *         buffer o hace falta resincronizar con la base de datos).
+         */
+        synchronized Optional<List<ChatMensaje>> consultar(Long afterId) {
+            ultimoAcceso = System.currentTimeMillis();
+            if (ultimoAcceso - sincronizadaEn > RESYNC_MS) {
+                return Optional.empty();
+            }
+            if (!cubre(afterId)) {
+                return Optional.empty();
+            }
+            List<ChatMensaje> out = new ArrayList<>();
+            for (int i = 0; i < tamano; i++) {
+                ChatMensaje m = en(i);
+                if (afterId == null || idDe(m) > afterId) {
+                    out.add(m);
+                }
+            }
+            return Optional.of(out);
+        }
+
+        // Una resincronizacion incremental solo sirve si el buffer cubre el cursor.
+        synchronized boolean puedeResincronizar(Long afterId) {
+            return cubre(afterId);
+        }
+
+        private boolean cubre(Long afterId) {
+            if (completa) {
+                return true;
+            }
+            // Sin historial completo solo se responde si el cursor cae dentro del
+            // buffer: todo lo posterior al mensaje mas antiguo guardado esta en el.
+            return afterId != null && tamano > 0 && afterId >= idDe(en(0));
+        }
+
+        private ChatMensaje en(int i) {
+            return mensajes[indice(i)];
+        }
+
+        private int indice(int i) {
+            return (inicio + i) % CAPACIDAD;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.mycompany.delivery.api.model.ChatMensaje;
 
 import java.io.IOException;
 import java.net.URI;
@@ -13,7 +14,6 @@ import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Servicio ligero que consume la API de Gemini (Generative Language) v1
@@ -43,13 +43,12 @@ public final class GeminiService {
      * Genera una respuesta a partir del prompt y la conversacion previa.
      *
      * @param prompt        Mensaje actual del usuario.
-     * @param history       Historial de mensajes (cada elemento debe contener al menos
-     *                      las claves "id_remitente" y "mensaje").
+     * @param history       Historial de mensajes de la conversación.
      * @param currentUserId Identificador del usuario actual (para determinar su rol).
      * @return Texto devuelto por Gemini o un mensaje alternativo si no fue posible.
      */
     public String generateReply(String prompt,
-                                List<Map<String, Object>> history,
+                                List<ChatMensaje> history,
                                 int currentUserId) {
         if (apiKey == null || apiKey.isBlank()) {
             return FALLBACK_MESSAGE;
@@ -96,7 +95,7 @@ public final class GeminiService {
     }
 
     private JsonObject buildPayload(String prompt,
-                                    List<Map<String, Object>> history,
+                                    List<ChatMensaje> history,
                                     int currentUserId) {
         JsonArray contents = new JsonArray();
 
@@ -108,24 +107,15 @@ public final class GeminiService {
         if (history != null && !history.isEmpty()) {
             int start = Math.max(0, history.size() - 12);
             for (int i = start; i < history.size(); i++) {
-                Map<String, Object> message = history.get(i);
+                ChatMensaje message = history.get(i);
                 if (message == null) {
                     continue;
                 }
-                Object textObj = message.get("mensaje");
-                if (textObj == null) {
+                String text = message.mensaje();
+                if (text == null || text.isBlank()) {
                     continue;
                 }
-                String text = textObj.toString();
-                if (text.isBlank()) {
-                    continue;
-                }
-                int senderId = -1;
-                Object senderObj = message.get("id_remitente");
-                if (senderObj instanceof Number number) {
-                    senderId = number.intValue();
-                }
-                String role = (senderId == currentUserId) ? "user" : "model";
+                String role = (message.idRemitente() == currentUserId) ? "user" : "model";
                 contents.add(content(role, text));
             }
         }
@@ -0,0 +1,106 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.util.ApiException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limita los intentos de login fallidos con ventanas fijas en memoria. El
+ * control principal es por cuenta; el limite por IP es un respaldo mas alto
+ * contra quien prueba muchas cuentas desde una misma direccion, y solo cuenta
+ * fallos: detras de un NAT de operador o del balanceador muchos usuarios
+ * legitimos comparten IP y sus logins correctos no deben bloquearse entre si.
+ * La IP es la del cliente resuelta con {@code IpCliente}, no la del proxy.
+ * Se comprueba antes de tocar la base de datos o BCrypt, así una ráfaga de
+ * intentos no consume el pool de hashing.
+ */
+public final class LoginThrottle {
+
+    private static final int MAX_FALLOS_CUENTA = getEnvInt("LOGIN_MAX_FALLOS_CUENTA", 5);
+    private static final long VENTANA_CUENTA_MS = getEnvInt("LOGIN_VENTANA_CUENTA_SECONDS", 300) * 1000L;
+    private static final int MAX_FALLOS_IP = getEnvInt("LOGIN_MAX_FALLOS_IP", 100);
+    private static final long VENTANA_IP_MS = getEnvInt("LOGIN_VENTANA_IP_SECONDS", 60) * 1000L;
+    private static final int LIMPIEZA_UMBRAL = 10_000;
+
+    private final Map<String, Ventana> fallosPorCuenta = new ConcurrentHashMap<>();
+    private final Map<String, Ventana> fallosPorIp = new ConcurrentHashMap<>();
+
+    /**
+     * Verifica que ni la cuenta ni la IP estén bloqueadas.
+     *
+     * @throws ApiException 429 con Retry-After si se superó algún límite.
+     */
+    public void verificar(String correo, String ip) {
+        long ahora = System.currentTimeMillis();
+        Ventana fallos = fallosPorCuenta.get(claveCuenta(correo));
+        if (bloqueada(fallos, ahora, VENTANA_CUENTA_MS, MAX_FALLOS_CUENTA)) {
+            throw bloqueo(fallos, ahora, VENTANA_CUENTA_MS);
+        }
+        if (ip != null) {
+            Ventana v = fallosPorIp.get(ip);
+            if (bloqueada(v, ahora, VENTANA_IP_MS, MAX_FALLOS_IP)) {
+                throw bloqueo(v, ahora, VENTANA_IP_MS);
+            }
+        }
+        limpiar(ahora);
+    }
+
+    public void registrarFallo(String correo, String ip) {
+        long ahora = System.currentTimeMillis();
+        fallosPorCuenta.compute(claveCuenta(correo), (k, actual) -> Ventana.incrementar(actual, ahora, VENTANA_CUENTA_MS));
+        if (ip != null) {
+            fallosPorIp.compute(ip, (k, actual) -> Ventana.incrementar(actual, ahora, VENTANA_IP_MS));
+        }
+    }
+
+    public void registrarExito(String correo) {
+        fallosPorCuenta.remove(claveCuenta(correo));
+    }
+
+    private static String claveCuenta(String correo) {
+        return correo == null ? "" : correo.trim().toLowerCase();
+    }
+
+    private static boolean bloqueada(Ventana v, long ahora, long ventanaMs, int maximo) {
+        return v != null && ahora - v.inicio() < ventanaMs && v.conteo() >= maximo;
+    }
+
+    private static ApiException bloqueo(Ventana v, long ahora, long ventanaMs) {
+        long restanteMs = Math.max(1000L, v.inicio() + ventanaMs - ahora);
+        return new ApiException(429, "Demasiados intentos de inicio de sesión, intenta más tarde",
+                Duration.ofMillis(restanteMs));
+    }
+
+    // Evita que el mapa crezca sin límite con IPs o correos de un solo uso.
+    private void limpiar(long ahora) {
+        if (fallosPorIp.size() > LIMPIEZA_UMBRAL) {
+            fallosPorIp.values().removeIf(v -> ahora - v.inicio() >= VENTANA_IP_MS);
+        }
+        if (fallosPorCuenta.size() > LIMPIEZA_UMBRAL) {
+            fallosPorCuenta.values().removeIf(v -> ahora - v.inicio() >= VENTANA_CUENTA_MS);
+        }
+    }
+
+    private record Ventana(long inicio, int conteo) {
+        static Ventana incrementar(Ventana actual, long ahora, long ventanaMs) {
+            if (actual == null || ahora - actual.inicio >= ventanaMs) {
+                return new Ventana(ahora, 1);
+            }
+            return new Ventana(actual.inicio, actual.conteo + 1);
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
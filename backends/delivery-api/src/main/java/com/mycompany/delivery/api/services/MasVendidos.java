@@ -0,0 +1,342 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.model.DetallePedido;
+import com.mycompany.delivery.api.repository.TopProductosRepository;
+import com.mycompany.delivery.api.repository.TopProductosRepository.Exactos;
+import com.mycompany.delivery.api.repository.TopProductosRepository.Producto;
+import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.SpaceSaving;
+import com.mycompany.delivery.api.util.SpaceSaving.Conteo;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Productos mas vendidos (unidades) en total, por negocio y en ventanas de
+ * los ultimos dias, mantenidos en resumenes Space-Saving ({@link SpaceSaving})
+ * que se actualizan con las lineas de cada pedido creado en este nodo. Asi el
+ * dashboard y {@code /admin/analytics/top-productos} no agrupan
+ * {@code detalle_pedidos} entero en cada llamada.
+ *
+ * <p>Cada respuesta lleva sus cotas: por producto, cuanto puede exceder la
+ * cuenta a la real; por lista, la cuenta maxima de un producto que no aparece.
+ * Cada {@code TOPK_RECONCILE_MINUTES} los resumenes se reconstruyen desde las
+ * cuentas exactas de la base (error 0), lo que tambien recoge los pedidos de
+ * otros nodos. Los pedidos registrados mientras se reconcilia se vuelven a
+ * aplicar salvo que la instantanea ya los contara: la reconciliacion trae los
+ * ids de los pedidos creados desde poco antes de empezar
+ * ({@code MARGEN_RECIENTES_MS}, que cubre transacciones abiertas antes y
+ * confirmadas despues). Un id menor que otro ya visto puede confirmarse mas
+ * tarde, asi que no basta con comparar contra el mayor.
+ */
+public final class MasVendidos {
+
+    private static final boolean HABILITADO = !"false".equalsIgnoreCase(System.getenv("TOPK_ENABLED"));
+    private static final int CAPACIDAD = Math.max(10, getEnvInt("TOPK_CAPACITY", 1000));
+    private static final int CAPACIDAD_NEGOCIO = Math.max(10, getEnvInt("TOPK_BUSINESS_CAPACITY", 100));
+    private static final int DIAS = Math.max(1, getEnvInt("TOPK_DAYS", 30));
+    private static final long RECONCILIAR_MIN = Math.max(1, getEnvInt("TOPK_RECONCILE_MINUTES", 30));
+    private static final long MARGEN_RECIENTES_MS = 10 * 60_000L;
+
+    private static final MasVendidos INSTANCE = new MasVendidos(new TopProductosRepository());
+
+    private record Pendiente(int idPedido, LocalDate dia, List<DetallePedido> detalles) {
+    }
+
+    private final TopProductosRepository repo;
+    private final Map<Integer, Producto> productos = new ConcurrentHashMap<>();
+
+    // Protegidos por this.
+    private SpaceSaving total = new SpaceSaving(CAPACIDAD);
+    private Map<Integer, SpaceSaving> porNegocio = new HashMap<>();
+    private TreeMap<LocalDate, SpaceSaving> porDia = new TreeMap<>();
+    private boolean reconciliando;
+    private final List<Pendiente> pendientes = new ArrayList<>();
+
+    private volatile boolean listo;
+    private volatile long reconciliadoEn;
+    private volatile long duracionMs;
+    private volatile long desvioMaximo;
+    private volatile String ultimoError;
+    private ScheduledExecutorService hilo;
+
+    private MasVendidos(TopProductosRepository repo) {
+        this.repo = repo;
+    }
+
+    public static MasVendidos getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void iniciar() {
+        if (!HABILITADO || hilo != null) {
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mas-vendidos");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                reconciliar();
+            } catch (SQLException | RuntimeException e) {
+                ultimoError = e.getMessage();
+                System.err.println("Reconciliacion de mas vendidos: " + e.getMessage());
+            }
+        }, 0, RECONCILIAR_MIN, TimeUnit.MINUTES);
+    }
+
+    // ===============================
+    // ACTUALIZACION
+    // ===============================
+
+    /**
+     * Suma las lineas de un pedido recien confirmado. Nunca lanza: un fallo
+     * aqui no debe afectar a la creacion del pedido.
+     */
+    public void registrarPedido(int idPedido, List<DetallePedido> detalles) {
+        if (!HABILITADO || detalles == null || detalles.isEmpty()) {
+            return;
+        }
+        try {
+            List<Integer> desconocidos = detalles.stream().map(DetallePedido::getIdProducto)
+                    .filter(id -> !productos.containsKey(id)).distinct().toList();
+            if (!desconocidos.isEmpty()) {
+                productos.putAll(repo.productos(desconocidos));
+            }
+        } catch (SQLException e) {
+            // Sin negocio conocido el producto cuenta en el total y en el dia;
+            // la siguiente reconciliacion lo pone en su negocio.
+            System.err.println("Mas vendidos: no se pudo leer el negocio de los productos: " + e.getMessage());
+        }
+        Pendiente p = new Pendiente(idPedido, LocalDate.now(), List.copyOf(detalles));
+        synchronized (this) {
+            if (reconciliando) {
+                pendientes.add(p);
+            }
+            aplicar(p);
+        }
+    }
+
+    private void aplicar(Pendiente p) {
+        SpaceSaving dia = porDia.computeIfAbsent(p.dia(), d -> new SpaceSaving(CAPACIDAD));
+        for (DetallePedido d : p.detalles()) {
+            long unidades = d.getCantidad();
+            total.agregar(d.getIdProducto(), unidades);
+            dia.agregar(d.getIdProducto(), unidades);
+            Producto producto = productos.get(d.getIdProducto());
+            if (producto != null) {
+                porNegocio.computeIfAbsent(producto.idNegocio(), n -> new SpaceSaving(CAPACIDAD_NEGOCIO))
+                        .agregar(d.getIdProducto(), unidades);
+            }
+        }
+        while (porDia.size() > DIAS) {
+            porDia.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Reconstruye todos los resumenes desde las cuentas exactas de la base.
+     */
+    public void reconciliar() throws SQLException {
+        synchronized (this) {
+            if (reconciliando) {
+                return;
+            }
+            reconciliando = true;
+            pendientes.clear();
+        }
+        long inicio = System.nanoTime();
+        try {
+            LocalDate hoy = LocalDate.now();
+            Timestamp recientesDesde = new Timestamp(System.currentTimeMillis() - MARGEN_RECIENTES_MS);
+            Exactos exactos = repo.contar(hoy.minusDays(DIAS - 1L), recientesDesde);
+
+            SpaceSaving nuevoTotal = SpaceSaving.desdeExactos(CAPACIDAD, exactos.total());
+            Map<Integer, SpaceSaving> nuevosNegocios = new HashMap<>();
+            exactos.porNegocio().forEach((negocio, cuentas) ->
+                    nuevosNegocios.put(negocio, SpaceSaving.desdeExactos(CAPACIDAD_NEGOCIO, cuentas)));
+            TreeMap<LocalDate, SpaceSaving> nuevosDias = new TreeMap<>();
+            exactos.porDia().forEach((dia, cuentas) ->
+                    nuevosDias.put(dia, SpaceSaving.desdeExactos(CAPACIDAD, cuentas)));
+
+            synchronized (this) {
+                // Cuanto se habian separado las estimaciones de las cuentas exactas.
+                long desvio = 0;
+                for (Conteo c : total.top(CAPACIDAD)) {
+                    desvio = Math.max(desvio, Math.abs(c.cuenta() - exactos.total().getOrDefault(c.elemento(), 0L)));
+                }
+                desvioMaximo = desvio;
+                productos.putAll(exactos.productos());
+                total = nuevoTotal;
+                porNegocio = nuevosNegocios;
+                porDia = nuevosDias;
+                for (Pendiente p : pendientes) {
+                    if (!exactos.pedidosRecientes().contains(p.idPedido())) {
+                        aplicar(p);
+                    }
+                }
+                listo = true;
+            }
+            reconciliadoEn = System.currentTimeMillis();
+            duracionMs = (System.nanoTime() - inicio) / 1_000_000L;
+            ultimoError = null;
+        } finally {
+            synchronized (this) {
+                reconciliando = false;
+                pendientes.clear();
+            }
+        }
+    }
+
+    // ===============================
+    // CONSULTAS
+    // ===============================
+
+    /**
+     * Los {@code k} productos mas vendidos: en total, de un negocio, o de los
+     * ultimos {@code dias} dias (opcionalmente de un negocio).
+     */
+    public Map<String, Object> top(int k, Integer negocio, Integer dias) {
+        if (!listo) {
+            throw new ApiException(503, HABILITADO ? "El ranking de mas vendidos aun se esta cargando"
+                    : "El ranking de mas vendidos esta desactivado (TOPK_ENABLED=false)");
+        }
+        if (k < 1 || k > CAPACIDAD_NEGOCIO) {
+            throw new ApiException(400, "k debe estar entre 1 y " + CAPACIDAD_NEGOCIO);
+        }
+        if (dias != null && (dias < 1 || dias > DIAS)) {
+            throw new ApiException(400, "dias debe estar entre 1 y " + DIAS);
+        }
+        SpaceSaving resumen;
+        String ambito;
+        synchronized (this) {
+            if (dias != null) {
+                LocalDate desde = LocalDate.now().minusDays(dias - 1L);
+                resumen = SpaceSaving.fusionar(new ArrayList<>(porDia.tailMap(desde, true).values()), CAPACIDAD);
+                ambito = negocio != null ? "negocio_ultimos_dias" : "ultimos_dias";
+            } else if (negocio != null) {
+                resumen = SpaceSaving.fusionar(
+                        porNegocio.containsKey(negocio) ? List.of(porNegocio.get(negocio)) : List.of(),
+                        CAPACIDAD_NEGOCIO);
+                ambito = "negocio";
+            } else {
+                resumen = SpaceSaving.fusionar(List.of(total), CAPACIDAD);
+                ambito = "total";
+            }
+        }
+        // Con negocio y dias se filtra el resumen diario: las cotas siguen
+        // valiendo porque cada cuenta se acota por producto.
+        boolean filtrar = dias != null && negocio != null;
+        List<Conteo> candidatos = new ArrayList<>();
+        for (Conteo c : resumen.top(resumen.capacidad())) {
+            if (!filtrar || negocioDe(c.elemento()) == negocio) {
+                candidatos.add(c);
+            }
+        }
+        long cota = resumen.minimo();
+        // Un producto es seguro en el top-k si su cuenta minima supera la
+        // estimacion del k+1 (o la cota de los no seguidos).
+        long umbral = Math.max(cota, candidatos.size() > k ? candidatos.get(k).cuenta() : 0L);
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (Conteo c : candidatos.subList(0, Math.min(k, candidatos.size()))) {
+            Producto p = productos.get(c.elemento());
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("id_producto", c.elemento());
+            fila.put("nombre", p != null ? p.nombre() : null);
+            fila.put("id_negocio", p != null && p.idNegocio() != 0 ? p.idNegocio() : null);
+            fila.put("unidades", c.cuenta());
+            fila.put("error_maximo", c.error());
+            fila.put("unidades_minimas", c.garantizado());
+            fila.put("garantizado", c.garantizado() >= umbral);
+            filas.add(fila);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ambito", ambito);
+        if (negocio != null) {
+            out.put("id_negocio", negocio);
+        }
+        if (dias != null) {
+            out.put("dias", dias);
+        }
+        out.put("unidades_totales", resumen.total());
+        out.put("cota_no_listados", cota);
+        out.put("reconciliado_en", reconciliadoEn);
+        out.put("productos", filas);
+        return out;
+    }
+
+    /**
+     * Producto con mas unidades vendidas (para el dashboard), si el ranking
+     * ya esta cargado.
+     */
+    public Optional<Map.Entry<String, Long>> masVendido() {
+        if (!listo) {
+            return Optional.empty();
+        }
+        Conteo primero;
+        synchronized (this) {
+            List<Conteo> top = total.top(1);
+            if (top.isEmpty()) {
+                return Optional.empty();
+            }
+            primero = top.get(0);
+        }
+        Producto p = productos.get(primero.elemento());
+        return Optional.of(Map.entry(p != null ? p.nombre() : "N/D", primero.cuenta()));
+    }
+
+    public Map<String, Object> metricas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", HABILITADO);
+        datos.put("listo", listo);
+        datos.put("capacidad", CAPACIDAD);
+        datos.put("capacidad_negocio", CAPACIDAD_NEGOCIO);
+        datos.put("dias", DIAS);
+        synchronized (this) {
+            datos.put("unidades_totales", total.total());
+            datos.put("negocios", porNegocio.size());
+            datos.put("dias_cargados", porDia.size());
+        }
+        datos.put("reconciliado_en", reconciliadoEn);
+        datos.put("duracion_reconciliacion_ms", duracionMs);
+        datos.put("desvio_maximo_ultima_reconciliacion", desvioMaximo);
+        datos.put("ultimo_error", ultimoError);
+        return datos;
+    }
+
+    /**
+     * Negocio de un producto segun la cache de este nodo, o 0 si no lo
+     * conoce. No consulta la base; {@link ActividadUsuarios} lo usa para no
+     * llevar una cache propia.
+     */
+    int negocioDe(int idProducto) {
+        Producto p = productos.get(idProducto);
+        return p != null ? p.idNegocio() : 0;
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
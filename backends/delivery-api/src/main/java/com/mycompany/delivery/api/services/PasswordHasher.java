@@ -0,0 +1,99 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.util.ApiException;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta BCrypt (hash y verificación) en un pool acotado, separado de los
+ * hilos de Javalin. Si el pool y su cola están llenos la petición se rechaza
+ * al instante con 503 en lugar de acaparar CPU del resto de la API.
+ */
+public final class PasswordHasher {
+
+    private static final int LOG_ROUNDS = 6;
+    private static final int THREADS = getEnvInt("BCRYPT_THREADS",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_SIZE = getEnvInt("BCRYPT_QUEUE_SIZE", 64);
+    private static final long TIMEOUT_MS = getEnvInt("BCRYPT_TIMEOUT_MS", 5000);
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(2);
+
+    private static final ThreadPoolExecutor EXECUTOR = crearExecutor();
+
+    private PasswordHasher() {
+    }
+
+    private static ThreadPoolExecutor crearExecutor() {
+        AtomicInteger seq = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "bcrypt-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static String hash(String contrasena) {
+        return ejecutar(() -> BCrypt.hashpw(contrasena, BCrypt.gensalt(LOG_ROUNDS)));
+    }
+
+    public static boolean verificar(String contrasena, String hash) {
+        return ejecutar(() -> BCrypt.checkpw(contrasena, hash));
+    }
+
+    /**
+     * Trabajos pendientes en la cola; útil para métricas y diagnósticos.
+     */
+    public static int pendientes() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    private static <T> T ejecutar(Callable<T> tarea) {
+        Future<T> future;
+        try {
+            future = EXECUTOR.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            throw new ApiException(503, "Servicio de autenticación saturado, intenta nuevamente", RETRY_AFTER);
+        }
+        try {
+            return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ApiException(503, "Servicio de autenticación saturado, intenta nuevamente", RETRY_AFTER);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ApiException(503, "Operación de autenticación interrumpida", RETRY_AFTER);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Error al procesar la contraseña", cause);
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
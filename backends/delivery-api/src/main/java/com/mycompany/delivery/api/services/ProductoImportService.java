@@ -0,0 +1,208 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.config.UnitOfWork;
+import com.mycompany.delivery.api.model.ProductoImportado;
+import com.mycompany.delivery.api.repository.ProductoRepository;
+import com.mycompany.delivery.api.repository.ProductoRepository.ResultadoImportacion;
+import com.mycompany.delivery.api.repository.ReferenciaRepository.Categoria;
+import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.ProductoImportReader;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Importacion masiva de productos de un negocio desde CSV o JSON. El archivo se
+ * lee en streaming, cada fila se valida aqui (las invalidas se reportan con su
+ * numero de fila y no detienen el resto) y las validas se cargan con
+ * {@code COPY} y se fusionan en una sola sentencia dentro de una transaccion.
+ * Las versiones de catalogo y el ranking se invalidan una sola vez al final.
+ *
+ * <p>Columnas: {@code nombre}, {@code precio}, {@code categoria} (nombre) o
+ * {@code id_categoria}, y opcionales {@code descripcion}, {@code imagen_url},
+ * {@code disponible}. Una columna ausente conserva el valor actual de los
+ * productos existentes. Las categorias se buscan entre las del negocio que
+ * importa y las compartidas; un {@code id_categoria} de otro negocio es un
+ * error de fila.
+ *
+ * <p>Las filas validas se acumulan en memoria hasta terminar de leer: asi no
+ * se retiene una conexion mientras el cliente sube el archivo y un nombre
+ * repetido se resuelve a favor de la ultima fila. Ese buffer esta acotado por
+ * {@code PRODUCT_IMPORT_MAX_ROWS} (10.000 por defecto); un archivo mas grande
+ * se rechaza con 413 y debe partirse.
+ */
+public class ProductoImportService {
+
+    public static final int MAX_FILAS = getEnvInt("PRODUCT_IMPORT_MAX_ROWS", 10_000);
+    private static final int MAX_ERRORES_REPORTADOS = 200;
+    private static final int AJENA = -2;
+
+    private final ProductoRepository repo = new ProductoRepository();
+
+    public Map<String, Object> importar(int idNegocio, InputStream cuerpo, boolean json) {
+        long inicio = System.nanoTime();
+        Map<String, ProductoImportado> porNombre = new LinkedHashMap<>();
+        Map<String, Integer> categorias = new HashMap<>();
+        List<Map<String, Object>> errores = new ArrayList<>();
+        int[] leidas = {0, 0}; // filas, errores
+
+        ProductoImportReader.leer(cuerpo, json, (fila, campos) -> {
+            if (fila > MAX_FILAS) {
+                throw new ApiException(413, "El archivo supera el maximo de " + MAX_FILAS + " filas");
+            }
+            leidas[0] = fila;
+            try {
+                ProductoImportado p = validar(fila, campos, idNegocio, categorias);
+                ProductoImportado anterior = porNombre.remove(p.nombre().toLowerCase(Locale.ROOT));
+                if (anterior != null) {
+                    error(errores, leidas, anterior.fila(), "Nombre repetido; se usa la fila " + fila);
+                }
+                porNombre.put(p.nombre().toLowerCase(Locale.ROOT), p);
+            } catch (IllegalArgumentException e) {
+                error(errores, leidas, fila, e.getMessage());
+            }
+        });
+
+        List<ProductoImportado> validas = new ArrayList<>(porNombre.values());
+        ResultadoImportacion resultado = new ResultadoImportacion(0, 0);
+        if (!validas.isEmpty()) {
+            try {
+                resultado = UnitOfWork.transaccion(() -> {
+                    ResultadoImportacion r = repo.importarProductos(idNegocio, validas);
+                    ResourceVersions.getInstance().productoModificado();
+                    return r;
+                });
+            } catch (SQLException e) {
+                throw new ApiException(500, "Error importando productos", e);
+            }
+        }
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("filas", leidas[0]);
+        resumen.put("importadas", validas.size());
+        resumen.put("creados", resultado.creados());
+        resumen.put("actualizados", resultado.actualizados());
+        resumen.put("con_error", leidas[1]);
+        resumen.put("errores", errores);
+        resumen.put("duracion_ms", (System.nanoTime() - inicio) / 1_000_000);
+        System.out.println("Importacion de productos negocio " + idNegocio + ": " + resumen.get("filas")
+                + " filas, " + resultado.creados() + " creados, " + resultado.actualizados()
+                + " actualizados, " + leidas[1] + " con error");
+        return resumen;
+    }
+
+    private ProductoImportado validar(int fila, Map<String, String> campos, int idNegocio,
+            Map<String, Integer> categorias) {
+        String nombre = texto(campos.get("nombre"));
+        if (nombre == null) {
+            throw new IllegalArgumentException("El nombre es obligatorio");
+        }
+        BigDecimal precio = precio(campos.get("precio"));
+        if (precio == null || precio.signum() <= 0) {
+            throw new IllegalArgumentException("El precio debe ser un valor positivo");
+        }
+        int idCategoria = categoria(campos, idNegocio, categorias);
+        String descripcion = campos.containsKey("descripcion") ? Optional.ofNullable(campos.get("descripcion")).orElse("").trim() : null;
+        return new ProductoImportado(fila, nombre, descripcion, precio, texto(campos.get("imagen_url")),
+                disponible(campos.get("disponible")), idCategoria);
+    }
+
+    // Categorias resueltas contra ReferenceData (en memoria); cada nombre
+    // distinto se busca una sola vez por importacion. Solo valen las del propio
+    // negocio y las compartidas (sin negocio).
+    private int categoria(Map<String, String> campos, int idNegocio, Map<String, Integer> cache) {
+        String id = texto(campos.get("id_categoria"));
+        String nombre = texto(campos.get("categoria"));
+        String clave = id != null ? "#" + id : nombre != null ? nombre.toLowerCase(Locale.ROOT) : null;
+        if (clave == null) {
+            throw new IllegalArgumentException("La categoria es obligatoria");
+        }
+        Integer resuelta = cache.computeIfAbsent(clave, k -> {
+            try {
+                ReferenceData ref = ReferenceData.getInstance();
+                if (id == null) {
+                    return ref.categoriaDeNegocio(nombre, idNegocio).map(Categoria::idCategoria).orElse(-1);
+                }
+                Optional<Categoria> c = ref.categoria(Integer.parseInt(id));
+                if (c.isPresent() && c.get().idNegocio() != null && c.get().idNegocio() != idNegocio) {
+                    return AJENA;
+                }
+                return c.map(Categoria::idCategoria).orElse(-1);
+            } catch (NumberFormatException e) {
+                return -1;
+            } catch (SQLException e) {
+                throw new ApiException(500, "No se pudieron cargar las categorias", e);
+            }
+        });
+        if (resuelta == AJENA) {
+            throw new IllegalArgumentException("La categoria " + id + " pertenece a otro negocio");
+        }
+        if (resuelta < 0) {
+            throw new IllegalArgumentException("Categoria no encontrada: " + (id != null ? id : nombre));
+        }
+        return resuelta;
+    }
+
+    private static BigDecimal precio(String valor) {
+        String v = texto(valor);
+        if (v == null) {
+            return null;
+        }
+        v = v.replace("$", "").replace(" ", "");
+        // Coma decimal (CSV exportado con configuracion regional es-EC).
+        if (v.indexOf(',') >= 0 && v.indexOf('.') < 0) {
+            v = v.replace(',', '.');
+        }
+        try {
+            return new BigDecimal(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Precio invalido: " + valor);
+        }
+    }
+
+    private static Boolean disponible(String valor) {
+        String v = texto(valor);
+        if (v == null) {
+            return null;
+        }
+        return switch (v.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "si", "sí", "s", "x" -> Boolean.TRUE;
+            case "false", "0", "no", "n" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException("Valor de disponible invalido: " + valor);
+        };
+    }
+
+    private static String texto(String valor) {
+        return valor == null || valor.isBlank() ? null : valor.trim();
+    }
+
+    private static void error(List<Map<String, Object>> errores, int[] leidas, int fila, String mensaje) {
+        leidas[1]++;
+        if (errores.size() < MAX_ERRORES_REPORTADOS) {
+            Map<String, Object> e = new LinkedHashMap<>();
+            e.put("fila", fila);
+            e.put("error", mensaje);
+            errores.add(e);
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
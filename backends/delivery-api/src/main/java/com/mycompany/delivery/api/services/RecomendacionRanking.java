@@ -0,0 +1,268 @@
+package com.mycompany.delivery.api.services;
+
+import com.google.gson.Gson;
+import com.mycompany.delivery.api.config.ReplicaRouter;
+import com.mycompany.delivery.api.repository.RecomendacionRepository;
+import com.mycompany.delivery.api.repository.RecomendacionRepository.AgregadoProducto;
+import com.mycompany.delivery.api.util.ApiResponse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agregados de resenas por producto (suma/conteo) y ranking de destacadas en
+ * memoria. Las escrituras ajustan los agregados de forma incremental y
+ * reconstruyen el top-N; las lecturas solo devuelven la ultima instantanea
+ * (incluido el JSON ya serializado), sin tocar la base de datos.
+ */
+public final class RecomendacionRanking {
+
+    private static final int TOP_N = 10;
+    private static final long TTL_MS = getEnvLong("RECOMENDACIONES_TTL_SECONDS", 300) * 1000L;
+    private static final String MENSAJE_DESTACADAS = "Recomendaciones destacadas obtenidas";
+
+    private static final RecomendacionRanking INSTANCE = new RecomendacionRanking(new RecomendacionRepository());
+
+    // Mismo orden que el ORDER BY original: rating, numero de resenas y recencia.
+    private static final Comparator<Agregado> ORDEN_DESTACADAS = Comparator
+            .comparingDouble(Agregado::rating)
+            .thenComparingInt(Agregado::total)
+            .thenComparing(Agregado::ultimaResena, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .reversed();
+
+    private final Gson gson = new Gson();
+    private final RecomendacionRepository repo;
+    private final Map<Integer, Agregado> agregados = new ConcurrentHashMap<>();
+
+    private volatile Destacadas destacadas;
+    private volatile long cargadoEn;
+    // Se incrementa al empezar cada recarga completa (ver registrar).
+    private volatile long generacion;
+    // Una invalidacion durante una recarga la deja sin dar por vigente.
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private RecomendacionRanking(RecomendacionRepository repo) {
+        this.repo = repo;
+    }
+
+    public static RecomendacionRanking getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Resumen (rating redondeado a un decimal y total) de un producto.
+     */
+    public Map<String, Object> resumen(int idProducto) throws SQLException {
+        asegurarCargado();
+        Agregado a = agregados.get(idProducto);
+        Map<String, Object> out = new HashMap<>();
+        out.put("rating", a != null ? a.rating() : 0.0);
+        out.put("total", a != null ? a.total() : 0);
+        return out;
+    }
+
+    public List<Map<String, Object>> destacadas() throws SQLException {
+        asegurarCargado();
+        return destacadas.lista();
+    }
+
+    /**
+     * Respuesta completa de {@code /recomendaciones/destacadas} ya serializada.
+     */
+    public String destacadasJson() throws SQLException {
+        asegurarCargado();
+        return destacadas.json();
+    }
+
+    /**
+     * Generacion actual de los agregados. Se lee antes de escribir una resena
+     * y se pasa a {@link #registrar}.
+     */
+    public long generacion() {
+        return generacion;
+    }
+
+    /**
+     * Ajusta los agregados tras un guardado. Si el ajuste incremental no es
+     * posible (producto aun sin agregados o se vacio el comentario mas reciente)
+     * se recalcula solo ese producto.
+     *
+     * <p>Tambien se recalcula si hubo una recarga completa desde
+     * {@code generacionAntes} (leida antes de escribir): su instantanea pudo
+     * incluir ya la resena y aplicar el incremento la contaria dos veces.
+     */
+    public void registrar(int idProducto, int idUsuario, int puntuacion, String comentario,
+            RecomendacionRepository.Guardado guardado, long generacionAntes) {
+        if (cargadoEn == 0L) {
+            return; // Aun no se ha calentado; la primera lectura cargara todo.
+        }
+        try {
+            synchronized (this) {
+                Agregado actual = generacion == generacionAntes ? agregados.get(idProducto) : null;
+                Agregado nuevo = actual != null ? actual.aplicar(idUsuario, puntuacion, comentario, guardado) : null;
+                if (nuevo == null) {
+                    repo.cargarAgregado(idProducto).map(Agregado::de)
+                            .ifPresentOrElse(a -> agregados.put(idProducto, a), () -> agregados.remove(idProducto));
+                } else {
+                    agregados.put(idProducto, nuevo);
+                }
+                reconstruirDestacadas();
+            }
+        } catch (SQLException e) {
+            System.err.println("No se pudo actualizar el ranking de recomendaciones: " + e.getMessage());
+            invalidar();
+        }
+    }
+
+    /**
+     * Fuerza una recarga completa en la siguiente lectura (p. ej. cuando cambian
+     * los datos de un producto o negocio que aparecen en el ranking).
+     */
+    public void invalidar() {
+        invalidaciones.incrementAndGet();
+        cargadoEn = 0L;
+    }
+
+    private void asegurarCargado() throws SQLException {
+        long cargado = cargadoEn;
+        if (cargado != 0L && System.currentTimeMillis() - cargado < TTL_MS) {
+            return;
+        }
+        synchronized (this) {
+            if (cargadoEn != 0L && System.currentTimeMillis() - cargadoEn < TTL_MS) {
+                return;
+            }
+            generacion++;
+            long marca = invalidaciones.get();
+            Map<Integer, Agregado> nuevos = new HashMap<>();
+            for (AgregadoProducto fila : ReplicaRouter.enPrimario(repo::cargarAgregados)) {
+                nuevos.put(fila.idProducto(), Agregado.de(fila));
+            }
+            agregados.keySet().retainAll(nuevos.keySet());
+            agregados.putAll(nuevos);
+            reconstruirDestacadas();
+            cargadoEn = invalidaciones.get() == marca ? System.currentTimeMillis() : 0L;
+        }
+    }
+
+    // Min-heap acotado a TOP_N: O(P log N) por escritura, nunca en lectura.
+    private void reconstruirDestacadas() {
+        PriorityQueue<Agregado> heap = new PriorityQueue<>(TOP_N + 1, ORDEN_DESTACADAS.reversed());
+        for (Agregado a : agregados.values()) {
+            heap.offer(a);
+            if (heap.size() > TOP_N) {
+                heap.poll();
+            }
+        }
+        List<Agregado> top = new ArrayList<>(heap);
+        top.sort(ORDEN_DESTACADAS);
+
+        List<Map<String, Object>> lista = new ArrayList<>(top.size());
+        for (Agregado a : top) {
+            lista.add(a.toMap());
+        }
+        List<Map<String, Object>> inmutable = Collections.unmodifiableList(lista);
+        String json = gson.toJson(ApiResponse.success(200, MENSAJE_DESTACADAS, inmutable));
+        destacadas = new Destacadas(inmutable, json);
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private record Destacadas(List<Map<String, Object>> lista, String json) {
+    }
+
+    /**
+     * Agregado inmutable de un producto; cada escritura publica una copia nueva.
+     */
+    private record Agregado(AgregadoProducto base, long suma, int total, Timestamp ultimaResena,
+            String comentarioReciente, Integer comentarioUsuario, Timestamp comentarioFecha) {
+
+        static Agregado de(AgregadoProducto fila) {
+            return new Agregado(fila, fila.suma(), fila.total(), fila.ultimaResena(),
+                    fila.comentarioReciente(), fila.comentarioUsuario(), fila.comentarioFecha());
+        }
+
+        double rating() {
+            if (total == 0) {
+                return 0.0;
+            }
+            // Equivalente a ROUND(AVG(puntuacion)::numeric, 1).
+            return BigDecimal.valueOf(suma)
+                    .divide(BigDecimal.valueOf(total), 1, RoundingMode.HALF_UP)
+                    .doubleValue();
+        }
+
+        /**
+         * @return el agregado ajustado, o {@code null} si hace falta recalcular.
+         */
+        Agregado aplicar(int idUsuario, int puntuacion, String comentario, RecomendacionRepository.Guardado g) {
+            boolean conComentario = comentario != null && !comentario.trim().isEmpty();
+            Timestamp creado = g.creadoEn();
+            long nuevaSuma = suma;
+            int nuevoTotal = total;
+            Timestamp nuevaUltima = ultimaResena;
+            if (g.insertado()) {
+                nuevaSuma += puntuacion;
+                nuevoTotal++;
+                if (creado != null && (nuevaUltima == null || creado.after(nuevaUltima))) {
+                    nuevaUltima = creado;
+                }
+            } else if (g.puntuacionAnterior() == null) {
+                return null; // Insercion concurrente: no se sabe que se reemplazo.
+            } else {
+                nuevaSuma += puntuacion - g.puntuacionAnterior();
+            }
+
+            String texto = comentarioReciente;
+            Integer usuario = comentarioUsuario;
+            Timestamp fecha = comentarioFecha;
+            boolean esDueno = comentarioUsuario != null && comentarioUsuario == idUsuario;
+            if (conComentario) {
+                if (esDueno || fecha == null || (creado != null && !creado.before(fecha))) {
+                    texto = comentario;
+                    usuario = idUsuario;
+                    fecha = creado;
+                }
+            } else if (esDueno) {
+                return null; // El comentario mas reciente quedo vacio: hay que buscar el anterior.
+            }
+            return new Agregado(base, nuevaSuma, nuevoTotal, nuevaUltima, texto, usuario, fecha);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id_producto", base.idProducto());
+            m.put("producto", base.producto());
+            m.put("descripcion", base.descripcion());
+            m.put("precio", base.precio());
+            m.put("imagen_url", base.imagenUrl());
+            m.put("negocio", base.negocio());
+            m.put("rating_promedio", rating());
+            m.put("total_reviews", total);
+            m.put("ultima_resena", ultimaResena);
+            m.put("comentario_reciente", comentarioReciente);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.config.ReplicaRouter;
+import com.mycompany.delivery.api.repository.ChatRepository;
+import com.mycompany.delivery.api.repository.ReferenciaRepository;
+import com.mycompany.delivery.api.repository.ReferenciaRepository.Categoria;
+import com.mycompany.delivery.api.repository.SoporteRepository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registro en memoria de datos de referencia: usuarios de sistema (bots),
+ * roles y categorias. Se carga al arrancar en mapas inmutables y se recarga
+ * completo al vencer el TTL, al invalidarse o cuando una busqueda no encuentra
+ * la clave (como mucho una recarga cada {@code MIN_RECARGA_MS}). En el camino
+ * normal las consultas no tocan la base de datos.
+ */
+public final class ReferenceData {
+
+    private static final long TTL_MS = getEnvLong("REFERENCE_DATA_TTL_SECONDS", 600) * 1000L;
+    private static final long MIN_RECARGA_MS = 5_000L;
+
+    private static final ReferenceData INSTANCE = new ReferenceData();
+
+    private final ReferenciaRepository repo = new ReferenciaRepository();
+    private final SoporteRepository soporteRepo = new SoporteRepository();
+    private ChatRepository chatRepo;
+
+    private volatile Snapshot snapshot;
+
+    private ReferenceData() {
+    }
+
+    public static ReferenceData getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Carga (o recarga) todos los datos; pensado para el arranque.
+     */
+    public void cargar() throws SQLException {
+        recargar(0L);
+    }
+
+    /**
+     * Fuerza la recarga en la siguiente consulta. Lo llaman las escrituras de
+     * negocios una vez confirmadas; las de productos no cambian nada de lo que
+     * se guarda aqui.
+     */
+    public void invalidar() {
+        Snapshot actual = snapshot;
+        if (actual != null) {
+            snapshot = actual.vencido();
+        }
+    }
+
+    public int botChatId() throws SQLException {
+        return vigente().botChat();
+    }
+
+    public int botSoporteId() throws SQLException {
+        return vigente().botSoporte();
+    }
+
+    public Optional<Integer> rolId(String nombre) throws SQLException {
+        if (nombre == null || nombre.isBlank()) {
+            return Optional.empty();
+        }
+        String clave = nombre.trim().toLowerCase();
+        Integer id = vigente().rolesPorNombre().get(clave);
+        if (id == null) {
+            id = trasFallo().rolesPorNombre().get(clave);
+        }
+        return Optional.ofNullable(id);
+    }
+
+    public Optional<String> rolNombre(int idRol) throws SQLException {
+        String nombre = vigente().rolesPorId().get(idRol);
+        if (nombre == null) {
+            nombre = trasFallo().rolesPorId().get(idRol);
+        }
+        return Optional.ofNullable(nombre);
+    }
+
+    public Optional<Categoria> categoria(int idCategoria) throws SQLException {
+        Categoria c = vigente().categoriasPorId().get(idCategoria);
+        if (c == null) {
+            c = trasFallo().categoriasPorId().get(idCategoria);
+        }
+        return Optional.ofNullable(c);
+    }
+
+    public Optional<Categoria> categoriaPorNombre(String nombre) throws SQLException {
+        if (nombre == null || nombre.isBlank()) {
+            return Optional.empty();
+        }
+        String clave = nombre.trim().toLowerCase();
+        Categoria c = vigente().categoriasPorNombre().get(clave);
+        if (c == null) {
+            c = trasFallo().categoriasPorNombre().get(clave);
+        }
+        return Optional.ofNullable(c);
+    }
+
+    /**
+     * Categoria por nombre visible para un negocio: primero una propia y, si
+     * no hay, una compartida (sin negocio). Nunca devuelve la de otro negocio.
+     */
+    public Optional<Categoria> categoriaDeNegocio(String nombre, int idNegocio) throws SQLException {
+        if (nombre == null || nombre.isBlank()) {
+            return Optional.empty();
+        }
+        String clave = nombre.trim().toLowerCase();
+        Optional<Categoria> c = vigente().categoriaDeNegocio(clave, idNegocio);
+        if (c.isEmpty()) {
+            c = trasFallo().categoriaDeNegocio(clave, idNegocio);
+        }
+        return c;
+    }
+
+    private Snapshot vigente() throws SQLException {
+        Snapshot s = snapshot;
+        if (s != null && System.currentTimeMillis() - s.cargadoEn() < TTL_MS) {
+            return s;
+        }
+        return recargar(TTL_MS);
+    }
+
+    // Una clave desconocida puede ser un alta reciente: se recarga, pero sin
+    // permitir que una ráfaga de claves inexistentes golpee la base de datos.
+    private Snapshot trasFallo() throws SQLException {
+        return recargar(MIN_RECARGA_MS);
+    }
+
+    private synchronized Snapshot recargar(long antiguedadMinima) throws SQLException {
+        Snapshot s = snapshot;
+        if (s != null && System.currentTimeMillis() - s.cargadoEn() < antiguedadMinima) {
+            return s;
+        }
+        if (chatRepo == null) {
+            chatRepo = new ChatRepository();
+        }
+        // ensureBot* puede insertar: nunca contra la replica.
+        Snapshot nuevo = ReplicaRouter.enPrimario(this::leerTodo);
+        snapshot = nuevo;
+        return nuevo;
+    }
+
+    private Snapshot leerTodo() throws SQLException {
+        Map<String, Integer> rolesPorNombre = new HashMap<>();
+        Map<Integer, String> rolesPorId = new HashMap<>();
+        repo.cargarRoles().forEach((nombre, id) -> {
+            rolesPorNombre.put(nombre.trim().toLowerCase(), id);
+            rolesPorId.put(id, nombre);
+        });
+
+        Map<Integer, Categoria> categoriasPorId = new HashMap<>();
+        Map<String, Categoria> categoriasPorNombre = new HashMap<>();
+        Map<ClaveCategoria, Categoria> categoriasPorNegocio = new HashMap<>();
+        for (Categoria c : repo.cargarCategorias()) {
+            categoriasPorId.put(c.idCategoria(), c);
+            if (c.nombre() != null) {
+                String nombre = c.nombre().trim().toLowerCase();
+                // Igual que el LIMIT 1 original: gana la primera categoria con ese nombre.
+                categoriasPorNombre.putIfAbsent(nombre, c);
+                categoriasPorNegocio.putIfAbsent(new ClaveCategoria(c.idNegocio(), nombre), c);
+            }
+        }
+
+        return new Snapshot(
+                chatRepo.ensureBotUser(),
+                soporteRepo.ensureBotSoporte(),
+                Map.copyOf(rolesPorNombre),
+                Map.copyOf(rolesPorId),
+                Map.copyOf(categoriasPorId),
+                Map.copyOf(categoriasPorNombre),
+                Map.copyOf(categoriasPorNegocio),
+                System.currentTimeMillis());
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // idNegocio null: categoria compartida por todos los negocios.
+    private record ClaveCategoria(Integer idNegocio, String nombre) {
+    }
+
+    private record Snapshot(int botChat, int botSoporte,
+            Map<String, Integer> rolesPorNombre, Map<Integer, String> rolesPorId,
+            Map<Integer, Categoria> categoriasPorId, Map<String, Categoria> categoriasPorNombre,
+            Map<ClaveCategoria, Categoria> categoriasPorNegocio, long cargadoEn) {
+
+        Snapshot vencido() {
+            return new Snapshot(botChat, botSoporte, rolesPorNombre, rolesPorId,
+                    categoriasPorId, categoriasPorNombre, categoriasPorNegocio, 0L);
+        }
+
+        Optional<Categoria> categoriaDeNegocio(String nombre, int idNegocio) {
+            Categoria propia = categoriasPorNegocio.get(new ClaveCategoria(idNegocio, nombre));
+            return Optional.ofNullable(propia != null ? propia : categoriasPorNegocio.get(new ClaveCategoria(null, nombre)));
+        }
+    }
+}
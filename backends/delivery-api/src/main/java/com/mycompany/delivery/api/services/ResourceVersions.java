@@ -0,0 +1,177 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.config.ReplicaRouter;
+import com.mycompany.delivery.api.config.UnitOfWork;
+import com.mycompany.delivery.api.repository.VersionRecursoRepository;
+import com.mycompany.delivery.api.util.ApiException;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Version de los recursos de solo lectura que se sirven con ETag (catalogo,
+ * categorias y recomendaciones). La version vive en la tabla
+ * {@code versiones_recurso} y cada escritura la incrementa en su propia
+ * transaccion, asi que todas las instancias dan el mismo ETag a los mismos
+ * datos y un reinicio no invalida lo que tienen los clientes. Las resenas de
+ * un producto comparten la version de {@link #RECOMENDACIONES}: asi no se
+ * guarda una entrada por cada id que se consulte.
+ *
+ * <p>Las lecturas no van a la base de datos en cada peticion: las versiones se
+ * releen como mucho cada {@code ETAG_REFRESH_MS} (1000 por defecto), que es el
+ * retraso maximo con que otra instancia ve una escritura. La instancia que
+ * escribe conoce la version nueva al confirmar.
+ *
+ * <p>El ETag solo puede cambiar junto con el cuerpo: antes de publicar una
+ * version nueva se descarta lo que este proceso tiene en memoria para ese
+ * recurso (el ranking de recomendaciones y las respuestas de
+ * {@link ResponseCache}), tanto si la escritura es propia como si se ve al
+ * releer.
+ */
+public final class ResourceVersions {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String CATEGORIAS = "categorias";
+    public static final String RECOMENDACIONES = "recomendaciones";
+
+    /**
+     * Los clientes pueden reutilizar la respuesta {@code CATALOGO_MAX_AGE_SECONDS}
+     * (0 por defecto) y despues deben revalidar con el ETag.
+     */
+    public static final String CACHE_CONTROL = "public, max-age="
+            + Math.max(0, getEnvLong("CATALOGO_MAX_AGE_SECONDS", 0)) + ", must-revalidate";
+
+    private static final long REFRESCO_MS = Math.max(0, getEnvLong("ETAG_REFRESH_MS", 1000));
+    private static final ResourceVersions INSTANCE = new ResourceVersions();
+
+    private final VersionRecursoRepository repo = new VersionRecursoRepository();
+    private volatile Snapshot snapshot;
+
+    private ResourceVersions() {
+    }
+
+    public static ResourceVersions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ETag fuerte (entre comillas) de la version actual del recurso. Debe
+     * pedirse antes de leer los datos: si una escritura llega en medio, la
+     * respuesta lleva la version anterior y el cliente vuelve a descargar.
+     */
+    public String etag(String recurso) {
+        return "\"" + recurso + "-" + vigente().versiones().getOrDefault(recurso, 1L) + "\"";
+    }
+
+    /**
+     * Marca los recursos como modificados. Hay que llamarlo dentro de la
+     * {@link UnitOfWork#transaccion} de la escritura: si esta se deshace, la
+     * version tampoco cambia.
+     */
+    public void incrementar(String... recursos) throws SQLException {
+        Map<String, Long> nuevas = repo.incrementar(recursos);
+        UnitOfWork.alConfirmar(() -> confirmar(nuevas, Set.of()));
+    }
+
+    /**
+     * Como {@link #incrementar}, para una escritura cuyo efecto en memoria
+     * aplica quien escribe: su ajuste debe registrarse con
+     * {@link UnitOfWork#alConfirmar} antes de esta llamada, para que corra
+     * antes de que se publique la version. Si entre medias hubo otra escritura
+     * se descarta igualmente.
+     */
+    public void incrementarAplicado(String recurso) throws SQLException {
+        Map<String, Long> nuevas = repo.incrementar(recurso);
+        UnitOfWork.alConfirmar(() -> confirmar(nuevas, Set.of(recurso)));
+    }
+
+    /**
+     * Un producto se creo, cambio o se dio de baja: cambian el catalogo, las
+     * categorias y las recomendaciones que muestran sus datos.
+     */
+    public void productoModificado() throws SQLException {
+        incrementar(PRODUCTOS, CATEGORIAS, RECOMENDACIONES);
+    }
+
+    // Publica las versiones de una escritura propia ya confirmada.
+    private synchronized void confirmar(Map<String, Long> nuevas, Set<String> aplicados) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            nuevas.keySet().forEach(ResourceVersions::descartarDependientes);
+            return;
+        }
+        Map<String, Long> versiones = new HashMap<>(s.versiones());
+        nuevas.forEach((recurso, version) -> {
+            long conocida = versiones.getOrDefault(recurso, 1L);
+            if (version <= conocida) {
+                return; // Ya se vio al releer, y entonces se descarto.
+            }
+            if (version != conocida + 1 || !aplicados.contains(recurso)) {
+                descartarDependientes(recurso);
+            }
+            versiones.put(recurso, version);
+        });
+        snapshot = new Snapshot(Map.copyOf(versiones), s.cargadoEn());
+    }
+
+    private static void descartarDependientes(String recurso) {
+        if (RECOMENDACIONES.equals(recurso)) {
+            RecomendacionRanking.getInstance().invalidar();
+        }
+        ResponseCache.getInstance().descartar(recurso);
+    }
+
+    private Snapshot vigente() {
+        Snapshot s = snapshot;
+        if (s != null && System.currentTimeMillis() - s.cargadoEn() < REFRESCO_MS) {
+            return s;
+        }
+        return recargar();
+    }
+
+    private synchronized Snapshot recargar() {
+        Snapshot s = snapshot;
+        long ahora = System.currentTimeMillis();
+        if (s != null && ahora - s.cargadoEn() < REFRESCO_MS) {
+            return s;
+        }
+        try {
+            Snapshot nuevo = new Snapshot(Map.copyOf(ReplicaRouter.enPrimario(repo::cargar)), ahora);
+            if (s != null) {
+                nuevo.versiones().forEach((recurso, version) -> {
+                    if (version > s.versiones().getOrDefault(recurso, 1L)) {
+                        descartarDependientes(recurso);
+                    }
+                });
+            }
+            snapshot = nuevo;
+            return nuevo;
+        } catch (SQLException e) {
+            if (s == null) {
+                throw new ApiException(503, "No se pudo leer la version del recurso", e);
+            }
+            // Se sigue con las versiones conocidas y se reintenta en el siguiente plazo.
+            System.err.println("No se pudieron releer las versiones de recursos: " + e.getMessage());
+            Snapshot previo = new Snapshot(s.versiones(), ahora);
+            snapshot = previo;
+            return previo;
+        }
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private record Snapshot(Map<String, Long> versiones, long cargadoEn) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.util.CuerpoPrecomprimido;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Respuestas 200 de los recursos versionados ({@link ResourceVersions}) ya
+ * serializadas y precomprimidas. La clave empieza por el ETag, asi que una
+ * entrada nunca se sirve con otra version; cuando la version de un recurso
+ * cambia, {@link ResourceVersions} descarta sus entradas. El total (original
+ * mas comprimidos) se acota a {@code RESPONSE_CACHE_MB} (16 por defecto).
+ */
+public final class ResponseCache {
+
+    private static final long MAX_BYTES = Math.max(0, getEnvLong("RESPONSE_CACHE_MB", 16)) * 1024L * 1024L;
+    private static final ResponseCache INSTANCE = new ResponseCache();
+
+    private final LinkedHashMap<String, CuerpoPrecomprimido> entradas = new LinkedHashMap<>(64, 0.75f, true);
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private long bytes;
+
+    private ResponseCache() {
+    }
+
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Clave de una respuesta: version del recurso mas ruta y query.
+     */
+    public static String clave(String etag, String ruta, String query) {
+        return query == null || query.isEmpty() ? etag + " " + ruta : etag + " " + ruta + "?" + query;
+    }
+
+    public synchronized CuerpoPrecomprimido obtener(String clave) {
+        CuerpoPrecomprimido cuerpo = entradas.get(clave);
+        if (cuerpo != null) {
+            aciertos.increment();
+        } else {
+            fallos.increment();
+        }
+        return cuerpo;
+    }
+
+    public synchronized void guardar(String clave, CuerpoPrecomprimido cuerpo) {
+        long tamano = cuerpo.memoria();
+        if (tamano > MAX_BYTES) {
+            return;
+        }
+        CuerpoPrecomprimido anterior = entradas.put(clave, cuerpo);
+        bytes += tamano - (anterior != null ? anterior.memoria() : 0);
+        Iterator<CuerpoPrecomprimido> it = entradas.values().iterator();
+        while (bytes > MAX_BYTES && it.hasNext()) {
+            bytes -= it.next().memoria();
+            it.remove();
+        }
+    }
+
+    /**
+     * Descarta las entradas de todas las versiones de un recurso.
+     */
+    public synchronized void descartar(String recurso) {
+        String prefijo = "\"" + recurso + "-";
+        Iterator<Map.Entry<String, CuerpoPrecomprimido>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, CuerpoPrecomprimido> e = it.next();
+            if (e.getKey().startsWith(prefijo)) {
+                bytes -= e.getValue().memoria();
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> metricas() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entradas", entradas.size());
+        m.put("bytes", bytes);
+        m.put("max_bytes", MAX_BYTES);
+        m.put("aciertos", aciertos.sum());
+        m.put("fallos", fallos.sum());
+        return m;
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
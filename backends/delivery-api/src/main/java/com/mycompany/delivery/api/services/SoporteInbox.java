@@ -0,0 +1,445 @@
+package com.mycompany.delivery.api.services;
+
+import com.mycompany.delivery.api.model.Usuario;
+import com.mycompany.delivery.api.repository.SoporteRepository;
+import com.mycompany.delivery.api.repository.SoporteRepository.ConversacionAbierta;
+import com.mycompany.delivery.api.repository.UsuarioRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bandeja de entrada de los agentes de soporte. Las conversaciones abiertas sin
+ * agente esperan en una cola en memoria y se reparten al agente conectado con
+ * menos conversaciones ({@code SOPORTE_MAX_CONVERSACIONES_AGENTE}, 5, como
+ * tope) mediante {@link SoporteRepository#asignarHumanoSiPendiente}. El agente
+ * recibe el trabajo por long-poll ({@code GET /soporte/agentes/{id}/inbox}),
+ * asi que la latencia de recogida no depende de recorrer tablas.
+ *
+ * <p>Orden de la cola: {@code creada + prioridad * SOPORTE_PESO_PRIORIDAD_SEGUNDOS}
+ * (300). Un nivel de prioridad vale cinco minutos de espera, de modo que lo
+ * urgente pasa delante pero nada se queda esperando para siempre.
+ *
+ * <p>Todo el estado se modifica en un unico hilo ({@code soporte-inbox}); las
+ * rutas solo encolan eventos. Cada {@code SOPORTE_RECONCILIACION_SEGUNDOS}
+ * (30) se contrasta con {@code soporte_conversaciones} para recoger cambios de
+ * otras instancias o escritos fuera de la API. Un agente que deja de consultar
+ * durante {@code SOPORTE_AGENTE_INACTIVO_SEGUNDOS} (60) deja de recibir
+ * trabajo y lo que no llego a recoger vuelve a la cola.
+ */
+public final class SoporteInbox {
+
+    private static final long PESO_PRIORIDAD_MS = getEnvLong("SOPORTE_PESO_PRIORIDAD_SEGUNDOS", 300) * 1000L;
+    private static final int MAX_POR_AGENTE = (int) Math.max(1, getEnvLong("SOPORTE_MAX_CONVERSACIONES_AGENTE", 5));
+    private static final long AGENTE_INACTIVO_MS = getEnvLong("SOPORTE_AGENTE_INACTIVO_SEGUNDOS", 60) * 1000L;
+    private static final long RECONCILIACION_MS = getEnvLong("SOPORTE_RECONCILIACION_SEGUNDOS", 30) * 1000L;
+    private static final long ROL_VERIFICADO_MS = getEnvLong("SOPORTE_ROL_TTL_SEGUNDOS", 60) * 1000L;
+    private static final long REVISION_AGENTES_MS = 5_000L;
+    /** Tope de un long-poll; por debajo de los timeouts habituales de proxies. */
+    public static final long ESPERA_MAX_MS = 30_000L;
+
+    private record Pendiente(long idConversacion, int idUsuario, int prioridad, long creadaEnMs) {
+        long turno() {
+            return creadaEnMs + prioridad * PESO_PRIORIDAD_MS;
+        }
+    }
+
+    private static final Comparator<Pendiente> ORDEN = Comparator
+            .comparingLong(Pendiente::turno)
+            .thenComparingLong(Pendiente::idConversacion);
+
+    // Despues de ORDEN: el constructor lo usa.
+    private static final SoporteInbox INSTANCE = new SoporteInbox();
+
+    private static final class Agente {
+        final int id;
+        final AtomicInteger carga = new AtomicInteger();
+        volatile long vistoEnMs;
+        long ultimaAsignacionMs;
+        // Protegidos por el propio agente.
+        final List<Map<String, Object>> buzon = new ArrayList<>();
+        CompletableFuture<List<Map<String, Object>>> espera;
+
+        Agente(int id) {
+            this.id = id;
+        }
+
+        synchronized boolean esperando() {
+            return espera != null && !espera.isDone();
+        }
+
+        // El futuro se completa fuera del cerrojo: su continuacion escribe la
+        // respuesta HTTP. Si justo vencio el long-poll, queda para el siguiente.
+        void entregar(Map<String, Object> asignacion) {
+            CompletableFuture<List<Map<String, Object>>> f;
+            List<Map<String, Object>> lote;
+            synchronized (this) {
+                buzon.add(asignacion);
+                if (espera == null || espera.isDone()) {
+                    return;
+                }
+                f = espera;
+                lote = vaciar();
+            }
+            if (!f.complete(lote)) {
+                synchronized (this) {
+                    buzon.addAll(0, lote);
+                }
+            }
+        }
+
+        synchronized List<Map<String, Object>> vaciar() {
+            List<Map<String, Object>> out = new ArrayList<>(buzon);
+            buzon.clear();
+            return out;
+        }
+    }
+
+    private final SoporteRepository repo = new SoporteRepository();
+    private final UsuarioRepository usuarios = new UsuarioRepository();
+    private final ConcurrentSkipListSet<Pendiente> cola = new ConcurrentSkipListSet<>(ORDEN);
+    private final ConcurrentHashMap<Long, Pendiente> enCola = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> asignadas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Agente> agentes = new ConcurrentHashMap<>();
+    // Usuarios con rol de agente comprobado en la base de datos -> hora de la comprobacion.
+    private final ConcurrentHashMap<Integer, Long> rolVerificado = new ConcurrentHashMap<>();
+    private final LongAdder repartidas = new LongAdder();
+    private final LongAdder devueltas = new LongAdder();
+    private final LongAdder esperaTotalMs = new LongAdder();
+    private volatile long ultimaReconciliacionMs;
+
+    private final ScheduledExecutorService hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "soporte-inbox");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private SoporteInbox() {
+    }
+
+    public static SoporteInbox getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Arranca la reconciliacion periodica; la primera carga la cola desde la
+     * base de datos.
+     */
+    public void iniciar() {
+        hilo.scheduleWithFixedDelay(() -> seguro("reconciliacion", this::reconciliar),
+                0, RECONCILIACION_MS, TimeUnit.MILLISECONDS);
+        hilo.scheduleWithFixedDelay(() -> seguro("revision de agentes", this::revisarAgentes),
+                REVISION_AGENTES_MS, REVISION_AGENTES_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ===============================
+    // EVENTOS (desde las rutas)
+    // ===============================
+
+    /**
+     * Conversacion nueva o que vuelve a necesitar un humano. Si ya esta en cola
+     * o asignada no hace nada.
+     */
+    public void encolar(long idConversacion, int idUsuario, int prioridad) {
+        long ahora = System.currentTimeMillis();
+        hilo.execute(() -> seguro("encolar", () -> {
+            if (!asignadas.containsKey(idConversacion) && !enCola.containsKey(idConversacion)) {
+                agregar(new Pendiente(idConversacion, idUsuario, prioridad, ahora));
+            }
+            despachar();
+        }));
+    }
+
+    /**
+     * Asignacion hecha fuera de la bandeja (manual o porque el agente respondio).
+     */
+    public void asignada(long idConversacion, int idAgente) {
+        hilo.execute(() -> seguro("asignada", () -> {
+            quitar(idConversacion);
+            Integer anterior = asignadas.put(idConversacion, idAgente);
+            if (anterior == null || anterior != idAgente) {
+                if (anterior != null) {
+                    agente(anterior).carga.decrementAndGet();
+                }
+                agente(idAgente).carga.incrementAndGet();
+            }
+            if (anterior != null && anterior != idAgente) {
+                despachar();
+            }
+        }));
+    }
+
+    public void cerrada(long idConversacion) {
+        hilo.execute(() -> seguro("cerrada", () -> {
+            quitar(idConversacion);
+            Integer agente = asignadas.remove(idConversacion);
+            if (agente != null) {
+                agente(agente).carga.decrementAndGet();
+                despachar();
+            }
+        }));
+    }
+
+    /**
+     * Long-poll de un agente: se completa en cuanto recibe trabajo o, sin
+     * trabajo, al cabo de {@code esperaMs} con una lista vacia. Mientras
+     * consulta, el agente cuenta como disponible.
+     */
+    public CompletableFuture<List<Map<String, Object>>> esperarTrabajo(int idAgente, long esperaMs) {
+        Agente a = agente(idAgente);
+        a.vistoEnMs = System.currentTimeMillis();
+        CompletableFuture<List<Map<String, Object>>> futuro;
+        CompletableFuture<List<Map<String, Object>>> anterior;
+        synchronized (a) {
+            if (!a.buzon.isEmpty()) {
+                return CompletableFuture.completedFuture(a.vaciar());
+            }
+            anterior = a.espera;
+            futuro = new CompletableFuture<>();
+            a.espera = futuro;
+        }
+        if (anterior != null) {
+            anterior.complete(List.of()); // Un solo long-poll por agente.
+        }
+        hilo.execute(() -> seguro("despachar", this::despachar));
+        // La respuesta se escribe en el pool comun, no en el hilo de la bandeja
+        // ni en el del temporizador.
+        return futuro
+                .completeOnTimeout(List.of(), Math.min(Math.max(esperaMs, 0), ESPERA_MAX_MS), TimeUnit.MILLISECONDS)
+                .thenApplyAsync(lote -> lote);
+    }
+
+    /**
+     * Si el usuario tiene rol {@code soporte} o {@code admin}, leido de su
+     * registro. Que el id aparezca en la bandeja (p. ej. por una asignacion) no
+     * cuenta. Solo se recuerda una comprobacion positiva, durante
+     * {@code SOPORTE_ROL_TTL_SEGUNDOS} (60): quitarle el rol a alguien tarda
+     * como mucho ese plazo en surtir efecto, y un id que no es agente siempre
+     * se vuelve a consultar.
+     */
+    public boolean esAgente(int idAgente) throws SQLException {
+        long ahora = System.currentTimeMillis();
+        Long verificado = rolVerificado.get(idAgente);
+        if (verificado != null && ahora - verificado < ROL_VERIFICADO_MS) {
+            return true;
+        }
+        String rol = usuarios.obtenerPorId(idAgente).map(Usuario::getRol).orElse(null);
+        if ("soporte".equalsIgnoreCase(rol) || "admin".equalsIgnoreCase(rol)) {
+            rolVerificado.put(idAgente, ahora);
+            return true;
+        }
+        rolVerificado.remove(idAgente);
+        return false;
+    }
+
+    // ===============================
+    // REPARTO (hilo soporte-inbox)
+    // ===============================
+
+    private void despachar() {
+        long ahora = System.currentTimeMillis();
+        while (!cola.isEmpty()) {
+            Agente a = menosCargado(ahora);
+            if (a == null) {
+                return;
+            }
+            Pendiente p = cola.pollFirst();
+            if (p == null) {
+                return;
+            }
+            enCola.remove(p.idConversacion());
+            boolean ok;
+            try {
+                ok = repo.asignarHumanoSiPendiente(p.idConversacion(), a.id);
+            } catch (SQLException e) {
+                System.err.println("Bandeja de soporte: no se pudo asignar " + p.idConversacion() + ": " + e.getMessage());
+                agregar(p);
+                return;
+            }
+            if (!ok) {
+                continue; // Cerrada o asignada a mano mientras esperaba; la reconciliacion ajusta cargas.
+            }
+            asignadas.put(p.idConversacion(), a.id);
+            a.carga.incrementAndGet();
+            a.ultimaAsignacionMs = ahora;
+            repartidas.increment();
+            esperaTotalMs.add(ahora - p.creadaEnMs());
+
+            Map<String, Object> asignacion = new LinkedHashMap<>();
+            asignacion.put("id_conversacion", p.idConversacion());
+            asignacion.put("id_usuario", p.idUsuario());
+            asignacion.put("prioridad", p.prioridad());
+            asignacion.put("espera_ms", ahora - p.creadaEnMs());
+            a.entregar(asignacion);
+        }
+    }
+
+    // Disponible: ha consultado hace poco (o esta esperando) y tiene hueco.
+    // Entre iguales, el que lleva mas tiempo sin recibir trabajo.
+    private Agente menosCargado(long ahora) {
+        Agente mejor = null;
+        for (Agente a : agentes.values()) {
+            boolean conectado = a.esperando() || ahora - a.vistoEnMs < AGENTE_INACTIVO_MS;
+            int carga = a.carga.get();
+            if (!conectado || carga >= MAX_POR_AGENTE) {
+                continue;
+            }
+            if (mejor == null || carga < mejor.carga.get()
+                    || (carga == mejor.carga.get() && a.ultimaAsignacionMs < mejor.ultimaAsignacionMs)) {
+                mejor = a;
+            }
+        }
+        return mejor;
+    }
+
+    // Lo asignado a un agente que se desconecto sin recogerlo vuelve a la cola.
+    private void revisarAgentes() throws SQLException {
+        long ahora = System.currentTimeMillis();
+        for (Agente a : agentes.values()) {
+            if (a.esperando() || ahora - a.vistoEnMs < AGENTE_INACTIVO_MS) {
+                continue;
+            }
+            for (Map<String, Object> asignacion : a.vaciar()) {
+                long id = (Long) asignacion.get("id_conversacion");
+                if (repo.liberarAsignacion(id, a.id)) {
+                    asignadas.remove(id);
+                    a.carga.decrementAndGet();
+                    devueltas.increment();
+                    agregar(new Pendiente(id, (Integer) asignacion.get("id_usuario"),
+                            (Integer) asignacion.get("prioridad"),
+                            ahora - (Long) asignacion.get("espera_ms")));
+                }
+            }
+        }
+        despachar();
+    }
+
+    /**
+     * Sustituye cola y cargas por lo que dice la base de datos. Los eventos que
+     * lleguen mientras tanto se aplican despues, en orden, sobre este estado.
+     */
+    private void reconciliar() throws SQLException {
+        List<ConversacionAbierta> abiertas = repo.listarAbiertas();
+        Set<Long> pendientes = new HashSet<>();
+        Map<Long, Integer> asignadasDb = new HashMap<>();
+        Map<Integer, Integer> cargas = new HashMap<>();
+        for (ConversacionAbierta c : abiertas) {
+            if (c.idAgente() == null) {
+                pendientes.add(c.idConversacion());
+                Pendiente actual = enCola.get(c.idConversacion());
+                if (actual == null || actual.creadaEnMs() != c.creadaEnMs() || actual.prioridad() != c.prioridad()) {
+                    quitar(c.idConversacion());
+                    agregar(new Pendiente(c.idConversacion(), c.idUsuario(), c.prioridad(), c.creadaEnMs()));
+                }
+            } else {
+                asignadasDb.put(c.idConversacion(), c.idAgente());
+                cargas.merge(c.idAgente(), 1, Integer::sum);
+            }
+        }
+        for (Long id : new ArrayList<>(enCola.keySet())) {
+            if (!pendientes.contains(id)) {
+                quitar(id);
+            }
+        }
+        asignadas.keySet().retainAll(asignadasDb.keySet());
+        asignadas.putAll(asignadasDb);
+        for (Map.Entry<Integer, Integer> e : cargas.entrySet()) {
+            agente(e.getKey());
+        }
+        for (Agente a : agentes.values()) {
+            a.carga.set(cargas.getOrDefault(a.id, 0));
+        }
+        ultimaReconciliacionMs = System.currentTimeMillis();
+        despachar();
+    }
+
+    private void agregar(Pendiente p) {
+        enCola.put(p.idConversacion(), p);
+        cola.add(p);
+    }
+
+    private void quitar(long idConversacion) {
+        Pendiente p = enCola.remove(idConversacion);
+        if (p != null) {
+            cola.remove(p);
+        }
+    }
+
+    private Agente agente(int id) {
+        return agentes.computeIfAbsent(id, Agente::new);
+    }
+
+    private static void seguro(String tarea, TareaSql accion) {
+        try {
+            accion.run();
+        } catch (Exception e) {
+            System.err.println("Bandeja de soporte (" + tarea + "): " + e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface TareaSql {
+        void run() throws SQLException;
+    }
+
+    // ===============================
+    // MÉTRICAS
+    // ===============================
+    public Map<String, Object> metricas() {
+        long ahora = System.currentTimeMillis();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("en_cola", enCola.size());
+        Map<Integer, Integer> porPrioridad = new TreeMap<>();
+        long masAntigua = 0;
+        for (Pendiente p : enCola.values()) {
+            porPrioridad.merge(p.prioridad(), 1, Integer::sum);
+            masAntigua = Math.max(masAntigua, ahora - p.creadaEnMs());
+        }
+        m.put("en_cola_por_prioridad", porPrioridad);
+        m.put("espera_max_ms", masAntigua);
+        m.put("asignadas", asignadas.size());
+        m.put("repartidas", repartidas.sum());
+        m.put("devueltas", devueltas.sum());
+        m.put("espera_media_ms", repartidas.sum() == 0 ? 0 : esperaTotalMs.sum() / repartidas.sum());
+        List<Map<String, Object>> lista = new ArrayList<>();
+        for (Agente a : agentes.values()) {
+            Map<String, Object> am = new LinkedHashMap<>();
+            am.put("id_agente", a.id);
+            am.put("carga", a.carga.get());
+            am.put("conectado", a.esperando() || ahora - a.vistoEnMs < AGENTE_INACTIVO_MS);
+            lista.add(am);
+        }
+        m.put("agentes", lista);
+        m.put("max_por_agente", MAX_POR_AGENTE);
+        m.put("ultima_reconciliacion_hace_ms", ultimaReconciliacionMs == 0 ? null : ahora - ultimaReconciliacionMs);
+        return m;
+    }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.mycompany.delivery.api.services;
 
 import com.mycompany.delivery.api.config.UbicacionUpdateRequest;
+import com.mycompany.delivery.api.config.UnitOfWork;
+import com.mycompany.delivery.api.model.LoteTracking;
 import com.mycompany.delivery.api.model.TrackingEvento;
 import com.mycompany.delivery.api.model.Ubicacion;
 import com.mycompany.delivery.api.repository.UbicacionRepository;
 import com.mycompany.delivery.api.util.ApiException;
+import com.mycompany.delivery.api.util.LoteTrackingReader;
 
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,6 +19,13 @@ import static com.mycompany.delivery.api.util.UbicacionValidator.*;
 
 public class UbicacionService {
 
+    /** Maximo de puntos por lote en {@code POST /tracking/batch}. */
+    public static final int MAX_PUNTOS_LOTE = (int) getEnvLong("TRACKING_BATCH_MAX_POINTS", 2000);
+    /** Puntos mas antiguos que esto se descartan (horas). */
+    private static final long MAX_EDAD_MS = getEnvLong("TRACKING_BATCH_MAX_AGE_HOURS", 24) * 3_600_000L;
+    /** Desfase de reloj tolerado en el movil antes de recortar al instante actual. */
+    private static final long DESFASE_MAX_MS = 120_000L;
+
     private final UbicacionRepository repo;
 
     public UbicacionService() {
@@ -75,11 +86,75 @@ public class UbicacionService {
             }
             // Adicionalmente, se registra el evento para el historial de ruta del pedido.
             repo.registrarEventoTracking(idRepartidor, latitud, longitud);
+            ActividadUsuarios.getInstance().registrarUbicacion(idRepartidor);
         } catch (SQLException e) {
             throw new ApiException(500, "Error actualizando ubicación del repartidor", e);
         }
     }
 
+    // ===============================
+    // LOTE DE UBICACIONES ACUMULADAS SIN CONEXIÓN
+    // ===============================
+    /**
+     * Registra los puntos que el repartidor guardo sin cobertura. Los puntos
+     * invalidos (coordenadas fuera de rango o en cero, instante ilegible o
+     * demasiado antiguo) se descartan sin rechazar el lote; los que llegan con
+     * el reloj adelantado se recortan a ahora y los que no traen instante se
+     * toman como recibidos ahora. Todo el lote va a {@code tracking_ruta} con
+     * una sola sentencia y la ubicacion en vivo pasa al punto mas reciente,
+     * ambas en la misma transaccion.
+     */
+    public Map<String, Object> registrarLoteTracking(LoteTracking lote) {
+        if (lote == null) {
+            throw new ApiException(400, "El cuerpo de la solicitud es obligatorio");
+        }
+        Integer idRepartidor = lote.getIdRepartidor();
+        if (idRepartidor == null || idRepartidor <= 0) {
+            throw new ApiException(400, "El identificador del repartidor es inválido");
+        }
+
+        long ahora = System.currentTimeMillis();
+        LoteTracking validos = new LoteTracking();
+        for (int i = 0; i < lote.tamano(); i++) {
+            double latitud = lote.latitud(i);
+            double longitud = lote.longitud(i);
+            long instante = lote.instante(i);
+            if (instante == LoteTrackingReader.SIN_INSTANTE || instante > ahora + DESFASE_MAX_MS) {
+                instante = ahora;
+            }
+            if (latitud == 0.0 || longitud == 0.0 || !hasValidCoordinates(latitud, longitud)
+                    || instante < ahora - MAX_EDAD_MS) {
+                continue;
+            }
+            validos.agregar(latitud, longitud, instante);
+        }
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("recibidos", lote.tamano());
+        resumen.put("aceptados", validos.tamano());
+        resumen.put("descartados", lote.tamano() - validos.tamano());
+        int ultimo = validos.masReciente();
+        if (ultimo < 0) {
+            resumen.put("registrados", 0);
+            resumen.put("ubicacion_actualizada", false);
+            return resumen;
+        }
+
+        try {
+            UnitOfWork.transaccion(() -> {
+                resumen.put("registrados", repo.registrarRutaLote(idRepartidor,
+                        validos.latitudes(), validos.longitudes(), validos.instantes()));
+                resumen.put("ubicacion_actualizada", repo.moverUbicacionLiveSiMasReciente(idRepartidor,
+                        validos.latitud(ultimo), validos.longitud(ultimo), validos.instante(ultimo)));
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new ApiException(500, "Error registrando el lote de ubicaciones", e);
+        }
+        ActividadUsuarios.getInstance().registrarUbicaciones(idRepartidor, validos.instantes());
+        return resumen;
+    }
+
     // ===============================
     // OBTENER UBICACIONES POR USUARIO
     // ===============================
@@ -127,4 +202,16 @@ public class UbicacionService {
             throw new ApiException(500, "Error al obtener ubicaciones de repartidores", e);
         }
     }
+
+    private static long getEnvLong(String key, long fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
 }
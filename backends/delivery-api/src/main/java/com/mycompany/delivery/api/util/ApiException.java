@@ -1,5 +1,7 @@
 package com.mycompany.delivery.api.util;
 
+import java.time.Duration;
+
 /**
  * ✅ Excepción personalizada para manejar errores controlados dentro de la API.
  */
@@ -7,25 +9,40 @@ public class ApiException extends RuntimeException {
 
     private final int status;
     private final transient Object details;
+    private final Duration retryAfter;
 
     public ApiException(int status, String message) {
         super(message);
         this.status = status;
         this.details = null;
+        this.retryAfter = null;
     }
 
     public ApiException(int status, String message, Throwable cause) {
         super(message, cause);
         this.status = status;
         this.details = null;
+        this.retryAfter = null;
     }
 
     public ApiException(int status, String message, Object details) {
         super(message);
         this.status = status;
         this.details = details;
+        this.retryAfter = null;
+    }
+
+    /**
+     * Para rechazos temporales (429/503): indica al cliente cuándo reintentar.
+     */
+    public ApiException(int status, String message, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.details = null;
+        this.retryAfter = retryAfter;
     }
 
     public int getStatus() { return status; }
     public Object getDetails() { return details; }
+    public Duration getRetryAfter() { return retryAfter; }
 }
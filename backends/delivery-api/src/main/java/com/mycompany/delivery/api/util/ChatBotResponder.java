@@ -2,9 +2,9 @@ package com.mycompany.delivery.api.util;
 
 import java.time.LocalTime;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
+import com.mycompany.delivery.api.model.ChatMensaje;
 import com.mycompany.delivery.api.model.Pedido;
 import com.mycompany.delivery.api.repository.PedidoRepository;
 import com.mycompany.delivery.api.services.GeminiService;
@@ -29,7 +29,7 @@ public final class ChatBotResponder {
      * @param idUsuario  El ID del usuario que envía el mensaje.
      * @return Una respuesta generada por IA o una respuesta de fallback.
      */
-    public String generateReply(String rawMessage, List<Map<String, Object>> history, int idUsuario) {
+    public String generateReply(String rawMessage, List<ChatMensaje> history, int idUsuario) {
         String message = rawMessage == null ? "" : rawMessage.trim().toLowerCase();
 
         if (message.isBlank()) {
@@ -74,15 +74,15 @@ public final class ChatBotResponder {
                 || message.contains("estado de mi") || message.contains("cuando llega");
     }
 
-    private String buildPromptForGemini(String userMessage, List<Map<String, Object>> history,
+    private String buildPromptForGemini(String userMessage, List<ChatMensaje> history,
             Optional<Pedido> pedidoOpt) {
         StringBuilder prompt = new StringBuilder();
         prompt.append(
                 "Eres un asistente virtual de un servicio de delivery llamado 'Unite Speed Delivery'. Tu nombre es CIA Bot. Responde de forma breve y amigable.\n");
         prompt.append("Historial de la conversación:\n");
-        for (Map<String, Object> msg : history) {
-            String role = (boolean) msg.getOrDefault("es_bot", false) ? "model" : "user";
-            prompt.append(role).append(": ").append(msg.get("mensaje")).append("\n");
+        for (ChatMensaje msg : history) {
+            String role = msg.esBot() ? "model" : "user";
+            prompt.append(role).append(": ").append(msg.mensaje()).append("\n");
         }
 
         prompt.append("Pregunta actual del usuario: '").append(userMessage).append("'\n");
@@ -0,0 +1,318 @@
+package com.mycompany.delivery.api.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pedidos en columnas de primitivos para la analitica de ventas: una fila por
+ * pedido con su instante de creacion, total en centavos, estado, negocio y
+ * repartidor. Las consultas recorren solo las columnas que usan, sin objetos
+ * por fila, y saltan los bloques de {@value #BLOQUE} filas cuyo rango de
+ * fechas (min/max por bloque) no toca el intervalo pedido.
+ *
+ * <p>Un solo hilo escribe ({@code agregar}, {@code actualizar}); las lecturas
+ * pueden ser concurrentes. {@code tamano} es volatil y se publica despues de
+ * escribir la fila, asi un lector nunca ve filas a medio escribir. Los cambios
+ * en sitio (estado, total, repartidor) se ven en la siguiente consulta.
+ *
+ * <p>Los instantes son segundos desde epoch tomando el {@code TIMESTAMP} sin
+ * zona como si fuera UTC: agrupar por horas o dias con division entera da las
+ * horas y dias locales de la base. El negocio y el repartidor valen 0 si no hay.
+ */
+public final class ColumnasPedidos {
+
+    public static final int BLOQUE = 4096;
+
+    // Codigos de estado compartidos por todas las instancias (el indice es el codigo).
+    private static final List<String> ESTADOS = new CopyOnWriteArrayList<>();
+
+    private int[] ids;
+    private long[] instantes;
+    private long[] centavos;
+    private byte[] estados;
+    private int[] negocios;
+    private int[] repartidores;
+    private long[] minimoBloque;
+    private long[] maximoBloque;
+    private volatile int tamano;
+    private int maxId;
+    private int maxNegocio;
+    private int maxRepartidor;
+
+    public ColumnasPedidos(int capacidad) {
+        int c = Math.max(BLOQUE, capacidad);
+        ids = new int[c];
+        instantes = new long[c];
+        centavos = new long[c];
+        estados = new byte[c];
+        negocios = new int[c];
+        repartidores = new int[c];
+        minimoBloque = new long[bloques(c)];
+        maximoBloque = new long[bloques(c)];
+    }
+
+    /**
+     * Sumas por grupo de una consulta: pedidos y ventas en centavos.
+     */
+    public record Agregado(long[] pedidos, long[] centavos, int filasLeidas) {
+    }
+
+    /**
+     * Filtro comun: intervalo {@code [desde, hasta)} en segundos, estados
+     * aceptados por codigo, y negocio o repartidor (0 = cualquiera).
+     */
+    public record Filtro(long desde, long hasta, boolean[] estados, int negocio, int repartidor) {
+    }
+
+    // ===============================
+    // ESTADOS
+    // ===============================
+
+    public static synchronized byte codigoEstado(String estado) {
+        String valor = estado == null ? "" : estado.trim().toLowerCase();
+        int codigo = ESTADOS.indexOf(valor);
+        if (codigo < 0) {
+            if (ESTADOS.size() >= 255) {
+                throw new IllegalStateException("Demasiados estados de pedido distintos");
+            }
+            ESTADOS.add(valor);
+            codigo = ESTADOS.size() - 1;
+        }
+        return (byte) codigo;
+    }
+
+    /**
+     * Mascara de estados aceptados: si {@code estado} es nulo, todos salvo los
+     * de {@code excluidos}; si no, solo ese.
+     */
+    public static boolean[] estadosAceptados(String estado, Set<String> excluidos) {
+        boolean[] mascara = new boolean[256];
+        if (estado != null) {
+            int codigo = ESTADOS.indexOf(estado.trim().toLowerCase());
+            if (codigo >= 0) {
+                mascara[codigo] = true;
+            }
+            return mascara;
+        }
+        Arrays.fill(mascara, true);
+        for (int i = 0; i < ESTADOS.size(); i++) {
+            mascara[i] = !excluidos.contains(ESTADOS.get(i));
+        }
+        return mascara;
+    }
+
+    // ===============================
+    // ESCRITURA (un solo hilo)
+    // ===============================
+
+    public void agregar(int id, long instante, long total, byte estado, int negocio, int repartidor) {
+        int n = tamano;
+        if (n == ids.length) {
+            crecer(n + (n >> 1));
+        }
+        ids[n] = id;
+        instantes[n] = instante;
+        centavos[n] = total;
+        estados[n] = estado;
+        negocios[n] = negocio;
+        repartidores[n] = repartidor;
+        int b = n / BLOQUE;
+        if (n % BLOQUE == 0) {
+            minimoBloque[b] = instante;
+            maximoBloque[b] = instante;
+        } else {
+            minimoBloque[b] = Math.min(minimoBloque[b], instante);
+            maximoBloque[b] = Math.max(maximoBloque[b], instante);
+        }
+        maxId = Math.max(maxId, id);
+        maxNegocio = Math.max(maxNegocio, negocio);
+        maxRepartidor = Math.max(maxRepartidor, repartidor);
+        tamano = n + 1;
+    }
+
+    /**
+     * Copia todas las filas de {@code otras} al final (la carga en paralelo
+     * arma un tramo por hilo y luego los une en orden).
+     */
+    public void agregarTodo(ColumnasPedidos otras) {
+        int m = otras.tamano;
+        for (int i = 0; i < m; i++) {
+            agregarFila(otras, i);
+        }
+    }
+
+    public void agregarFila(ColumnasPedidos otras, int i) {
+        agregar(otras.ids[i], otras.instantes[i], otras.centavos[i], otras.estados[i],
+                otras.negocios[i], otras.repartidores[i]);
+    }
+
+    public void actualizar(int posicion, byte estado, long total, int repartidor) {
+        estados[posicion] = estado;
+        centavos[posicion] = total;
+        repartidores[posicion] = repartidor;
+        maxRepartidor = Math.max(maxRepartidor, repartidor);
+    }
+
+    private void crecer(int capacidad) {
+        ids = Arrays.copyOf(ids, capacidad);
+        instantes = Arrays.copyOf(instantes, capacidad);
+        centavos = Arrays.copyOf(centavos, capacidad);
+        estados = Arrays.copyOf(estados, capacidad);
+        negocios = Arrays.copyOf(negocios, capacidad);
+        repartidores = Arrays.copyOf(repartidores, capacidad);
+        minimoBloque = Arrays.copyOf(minimoBloque, bloques(capacidad));
+        maximoBloque = Arrays.copyOf(maximoBloque, bloques(capacidad));
+    }
+
+    // ===============================
+    // LECTURA
+    // ===============================
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public int maxId() {
+        return maxId;
+    }
+
+    public long bytes() {
+        long filas = ids.length;
+        return filas * (4 + 8 + 8 + 1 + 4 + 4) + minimoBloque.length * 16L;
+    }
+
+    /**
+     * Posiciones de las filas cuyo estado no esta en {@code cerrados}, desde la
+     * mas reciente y como mucho {@code limite}.
+     */
+    public int[] posicionesAbiertas(boolean[] cerrados, int limite) {
+        int n = tamano;
+        byte[] est = estados;
+        int[] out = new int[Math.min(limite, n)];
+        int k = 0;
+        for (int i = n - 1; i >= 0 && k < out.length; i--) {
+            if (!cerrados[est[i] & 0xff]) {
+                out[k++] = i;
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    public int id(int posicion) {
+        return ids[posicion];
+    }
+
+    /**
+     * Ids con valor mayor que {@code minimo} entre las ultimas {@code ventana}
+     * filas: los pedidos nuevos llegan al final, asi se comprueba cuales de los
+     * ids recientes ya estan cargados.
+     */
+    public Set<Integer> idsRecientes(int minimo, int ventana) {
+        int n = tamano;
+        Set<Integer> out = new HashSet<>();
+        for (int i = Math.max(0, n - ventana); i < n; i++) {
+            if (ids[i] > minimo) {
+                out.add(ids[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Pedidos y ventas por intervalo de {@code paso} segundos desde
+     * {@code filtro.desde()}.
+     */
+    public Agregado serie(Filtro filtro, long paso) {
+        int grupos = (int) ((filtro.hasta() - filtro.desde() + paso - 1) / paso);
+        long[] pedidos = new long[grupos];
+        long[] suma = new long[grupos];
+        int leidas = recorrer(filtro, paso, null, pedidos, suma);
+        return new Agregado(pedidos, suma, leidas);
+    }
+
+    /**
+     * Pedidos y ventas por negocio o por repartidor (indice = id; el 0 junta
+     * los pedidos sin negocio o sin repartidor).
+     */
+    public Agregado porClave(Filtro filtro, boolean porNegocio) {
+        int grupos = (porNegocio ? maxNegocio : maxRepartidor) + 1;
+        long[] pedidos = new long[grupos];
+        long[] suma = new long[grupos];
+        int leidas = recorrer(filtro, 0L, porNegocio ? negocios : repartidores, pedidos, suma);
+        return new Agregado(pedidos, suma, leidas);
+    }
+
+    // Bucle comun sobre arreglos locales. Salta los bloques fuera del
+    // intervalo; dentro, los filtros se combinan en una mascara 0/1 que
+    // multiplica la fila en lugar de saltarla, para que un estado al azar no
+    // cueste un salto mal predicho por fila. El grupo es el intervalo de
+    // {@code paso} segundos o, si hay {@code claves}, el id de esa columna.
+    private int recorrer(Filtro f, long paso, int[] claves, long[] pedidos, long[] suma) {
+        int n = tamano;
+        long[] inst = instantes;
+        long[] cent = centavos;
+        byte[] est = estados;
+        int[] neg = negocios;
+        int[] rep = repartidores;
+        long[] minimos = minimoBloque;
+        long[] maximos = maximoBloque;
+        int[] aceptados = new int[256];
+        for (int e = 0; e < 256; e++) {
+            aceptados[e] = f.estados()[e] ? 1 : 0;
+        }
+        long desde = f.desde();
+        long hasta = f.hasta();
+        int negocio = f.negocio();
+        int repartidor = f.repartidor();
+        int grupos = pedidos.length;
+        int leidas = 0;
+        for (int b = 0, bloques = bloques(n); b < bloques; b++) {
+            if (maximos[b] < desde || minimos[b] >= hasta) {
+                continue;
+            }
+            // Solo los bloques del borde del intervalo comparan el instante.
+            boolean completo = minimos[b] >= desde && maximos[b] < hasta;
+            int fin = Math.min(n, (b + 1) * BLOQUE);
+            leidas += fin - b * BLOQUE;
+            // Las filas llegan casi en orden de fecha: la division que da el
+            // intervalo solo se hace cuando el instante sale del actual.
+            long inicioGrupo = 0;
+            long finGrupo = 0;
+            int g = 0;
+            for (int i = b * BLOQUE; i < fin; i++) {
+                long t = inst[i];
+                int m = aceptados[est[i] & 0xff];
+                if (negocio != 0) {
+                    m &= neg[i] == negocio ? 1 : 0;
+                }
+                if (repartidor != 0) {
+                    m &= rep[i] == repartidor ? 1 : 0;
+                }
+                if (!completo && (t < desde || t >= hasta)) {
+                    continue;
+                }
+                if (claves != null) {
+                    g = claves[i];
+                    if (g >= grupos) {
+                        // Clave nueva escrita despues de dimensionar los grupos.
+                        continue;
+                    }
+                } else if (t < inicioGrupo || t >= finGrupo) {
+                    g = (int) ((t - desde) / paso);
+                    inicioGrupo = desde + g * paso;
+                    finGrupo = inicioGrupo + paso;
+                }
+                pedidos[g] += m;
+                suma[g] += cent[i] & -(long) m;
+            }
+        }
+        return leidas;
+    }
+
+    private static int bloques(int filas) {
+        return (filas + BLOQUE - 1) / BLOQUE;
+    }
+}
@@ -0,0 +1,74 @@
+package com.mycompany.delivery.api.util;
+
+import com.mycompany.delivery.api.util.HttpCompression.Codificacion;
+import io.javalin.http.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Cuerpo de respuesta inmutable guardado en crudo y ya comprimido con cada
+ * codificacion disponible. Se comprime una sola vez, al crearlo, para que las
+ * lecturas repetidas solo copien bytes al socket. Por debajo del umbral de
+ * compresion solo se guarda el original.
+ */
+public final class CuerpoPrecomprimido {
+
+    private final byte[] original;
+    private final Map<Codificacion, byte[]> comprimidos = new EnumMap<>(Codificacion.class);
+
+    private CuerpoPrecomprimido(byte[] original, Context ctx) {
+        this.original = original;
+        if (original.length >= HttpCompression.UMBRAL) {
+            for (Codificacion c : Codificacion.values()) {
+                if (c == Codificacion.BR && !HttpCompression.brotliDisponible()) {
+                    continue;
+                }
+                byte[] z = HttpCompression.comprimir(original, c, ctx);
+                // Si no ahorra nada se sirve el original.
+                if (z.length < original.length) {
+                    comprimidos.put(c, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ctx peticion a cuya ruta se anota la CPU de la compresion
+     *            (puede ser {@code null}).
+     */
+    public static CuerpoPrecomprimido de(byte[] original, Context ctx) {
+        return new CuerpoPrecomprimido(original, ctx);
+    }
+
+    public static CuerpoPrecomprimido de(String json, Context ctx) {
+        return new CuerpoPrecomprimido(json.getBytes(StandardCharsets.UTF_8), ctx);
+    }
+
+    public byte[] original() {
+        return original;
+    }
+
+    public int tamano() {
+        return original.length;
+    }
+
+    /**
+     * Bytes en la codificacion pedida, o {@code null} si no se guardo.
+     */
+    public byte[] bytes(Codificacion c) {
+        return comprimidos.get(c);
+    }
+
+    /**
+     * Memoria ocupada (original mas las versiones comprimidas).
+     */
+    public long memoria() {
+        long total = original.length;
+        for (byte[] z : comprimidos.values()) {
+            total += z.length;
+        }
+        return total;
+    }
+}
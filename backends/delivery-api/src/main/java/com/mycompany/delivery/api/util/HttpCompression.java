@@ -0,0 +1,389 @@
+package com.mycompany.delivery.api.util;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.Brotli4jCompressor;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Compressor;
+import io.javalin.compression.Gzip;
+import io.javalin.compression.GzipCompressor;
+import io.javalin.http.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresion de las respuestas JSON con Brotli o gzip segun el
+ * {@code Accept-Encoding} del cliente. Por debajo de
+ * {@code COMPRESSION_MIN_BYTES} (1024 por defecto) se envia sin comprimir:
+ * la cabecera gzip y el coste de CPU no compensan.
+ *
+ * <p>Las respuestas que salen por {@code handleResponse} se comprimen aqui
+ * para poder medir por ruta el tiempo de CPU frente a los bytes ahorrados;
+ * el resto (archivos estaticos, {@code ctx.json}) las comprime Javalin con la
+ * misma {@link #estrategia()}. Si ya hay {@code Content-Encoding}, Javalin no
+ * vuelve a comprimir.
+ */
+public final class HttpCompression {
+
+    /** Codificaciones soportadas, en orden de preferencia a igual {@code q}. */
+    public enum Codificacion {
+        BR("br"), GZIP("gzip");
+
+        private final String nombre;
+
+        Codificacion(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String nombre() {
+            return nombre;
+        }
+    }
+
+    static final int UMBRAL = Math.max(0, getEnvInt("COMPRESSION_MIN_BYTES", 1024));
+    private static final int NIVEL_GZIP = getEnvInt("COMPRESSION_GZIP_LEVEL", 6);
+    private static final int NIVEL_BROTLI = getEnvInt("COMPRESSION_BROTLI_LEVEL", 4);
+    // Los cuerpos precomprimidos se comprimen una sola vez: se puede pagar mas nivel.
+    static final int NIVEL_GZIP_PRECOMPRIMIDO = 9;
+    static final int NIVEL_BROTLI_PRECOMPRIMIDO = 6;
+
+    private static final boolean BROTLI_DISPONIBLE = cargarBrotli();
+    private static final Map<String, Ruta> RUTAS = new ConcurrentHashMap<>();
+
+    private HttpCompression() {
+    }
+
+    /**
+     * Estrategia de Javalin para lo que no pasa por {@link #abrir(Context)}.
+     */
+    public static CompressionStrategy estrategia() {
+        CompressionStrategy estrategia = new CompressionStrategy(
+                BROTLI_DISPONIBLE ? new Brotli(NIVEL_BROTLI) : null, new Gzip(NIVEL_GZIP));
+        estrategia.setDefaultMinSizeForCompression(UMBRAL);
+        return estrategia;
+    }
+
+    public static boolean brotliDisponible() {
+        return BROTLI_DISPONIBLE;
+    }
+
+    /**
+     * Codificacion preferida por el cliente, o {@code null} si no acepta
+     * ninguna de las nuestras. Respeta los {@code q}; {@code q=0} la excluye.
+     */
+    public static Codificacion negociar(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        Codificacion mejor = null;
+        double mejorQ = 0;
+        for (String parte : acceptEncoding.split(",")) {
+            String[] tokens = parte.split(";");
+            String nombre = tokens[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            for (Codificacion c : Codificacion.values()) {
+                boolean coincide = nombre.equals(c.nombre()) || nombre.equals("*");
+                if (!coincide || (c == Codificacion.BR && !BROTLI_DISPONIBLE)) {
+                    continue;
+                }
+                if (q > mejorQ || (q == mejorQ && q > 0 && mejor != null && c.ordinal() < mejor.ordinal())) {
+                    mejor = c;
+                    mejorQ = q;
+                }
+            }
+        }
+        return mejor;
+    }
+
+    /**
+     * Flujo de salida para el cuerpo de la respuesta: acumula hasta
+     * {@link #UMBRAL} bytes y entonces decide si comprime. Hay que cerrarlo; no
+     * cierra el stream de la peticion.
+     */
+    public static OutputStream abrir(Context ctx) throws IOException {
+        ctx.header("Vary", "Accept-Encoding");
+        return new Salida(ctx, negociar(ctx.header("Accept-Encoding")), ruta(ctx));
+    }
+
+    /**
+     * Envia un cuerpo ya precomprimido con la codificacion que acepte el
+     * cliente; no se comprime nada en la peticion.
+     */
+    public static void enviar(Context ctx, CuerpoPrecomprimido cuerpo) {
+        ctx.header("Vary", "Accept-Encoding");
+        Ruta ruta = ruta(ctx);
+        Codificacion c = negociar(ctx.header("Accept-Encoding"));
+        byte[] bytes = c != null ? cuerpo.bytes(c) : null;
+        ruta.respuestas.increment();
+        ruta.desdeCache.increment();
+        ruta.bytesOriginales.add(cuerpo.tamano());
+        if (bytes == null) {
+            ruta.bytesEnviados.add(cuerpo.tamano());
+            ctx.result(cuerpo.original());
+            return;
+        }
+        ruta.comprimidas.increment();
+        ruta.bytesEnviados.add(bytes.length);
+        ctx.header("Content-Encoding", c.nombre());
+        ctx.result(bytes);
+    }
+
+    /**
+     * Comprime {@code datos} al nivel de los cuerpos precomprimidos y anota el
+     * tiempo de CPU en la ruta que lo pidio.
+     */
+    static byte[] comprimir(byte[] datos, Codificacion c, Context ctx) {
+        long inicio = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+        try (OutputStream z = compresor(c, true).compress(out)) {
+            z.write(datos);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo comprimir la respuesta", e);
+        }
+        if (ctx != null) {
+            ruta(ctx).nanos.add(System.nanoTime() - inicio);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Por ruta: respuestas, cuantas se comprimieron, cuantas salieron de un
+     * cuerpo precomprimido, bytes antes y despues y CPU gastada en comprimir.
+     */
+    public static Map<String, Object> metricas() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("brotli", BROTLI_DISPONIBLE);
+        out.put("umbral_bytes", UMBRAL);
+        Map<String, Object> rutas = new TreeMap<>();
+        RUTAS.forEach((nombre, r) -> rutas.put(nombre, r.aMapa()));
+        out.put("rutas", rutas);
+        return out;
+    }
+
+    private static Compressor compresor(Codificacion c, boolean precomprimido) {
+        return switch (c) {
+            case BR -> new Brotli4jCompressor(precomprimido ? NIVEL_BROTLI_PRECOMPRIMIDO : NIVEL_BROTLI);
+            case GZIP -> new GzipCompressor(precomprimido ? NIVEL_GZIP_PRECOMPRIMIDO : NIVEL_GZIP);
+        };
+    }
+
+    // Por patron de ruta, no por path: los ids no multiplican las entradas.
+    private static Ruta ruta(Context ctx) {
+        String nombre;
+        try {
+            nombre = ctx.endpointHandlerPath();
+        } catch (IllegalStateException e) {
+            nombre = null; // Respuesta enviada desde un before (p. ej. un rechazo).
+        }
+        if (nombre == null || nombre.isEmpty()) {
+            nombre = "(sin ruta)";
+        }
+        return RUTAS.computeIfAbsent(ctx.method() + " " + nombre, n -> new Ruta());
+    }
+
+    private static boolean cargarBrotli() {
+        try {
+            boolean disponible = Brotli4jLoader.isAvailable();
+            if (!disponible) {
+                System.err.println("⚠️ Brotli no disponible, solo gzip: " + Brotli4jLoader.getUnavailabilityCause());
+            }
+            return disponible;
+        } catch (LinkageError e) {
+            System.err.println("⚠️ Brotli no disponible, solo gzip: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static final class Ruta {
+        private final LongAdder respuestas = new LongAdder();
+        private final LongAdder comprimidas = new LongAdder();
+        private final LongAdder desdeCache = new LongAdder();
+        private final LongAdder bytesOriginales = new LongAdder();
+        private final LongAdder bytesEnviados = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        Map<String, Object> aMapa() {
+            long originales = bytesOriginales.sum();
+            long enviados = bytesEnviados.sum();
+            double cpuMs = nanos.sum() / 1_000_000.0;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("respuestas", respuestas.sum());
+            m.put("comprimidas", comprimidas.sum());
+            m.put("desde_cache", desdeCache.sum());
+            m.put("bytes_originales", originales);
+            m.put("bytes_enviados", enviados);
+            m.put("bytes_ahorrados", originales - enviados);
+            m.put("cpu_ms", Math.round(cpuMs * 100) / 100.0);
+            m.put("bytes_ahorrados_por_ms_cpu", cpuMs > 0 ? Math.round((originales - enviados) / cpuMs) : null);
+            return m;
+        }
+    }
+
+    /**
+     * Decide en cuanto se supera el umbral (o al cerrar). El tiempo de
+     * compresion excluye lo que tarda el socket: se mide aparte y se resta.
+     */
+    private static final class Salida extends OutputStream {
+        private final Context ctx;
+        private final Codificacion codificacion;
+        private final Ruta ruta;
+        private final byte[] inicial;
+        private int pendientes;
+        private OutputStream destino;
+        private Socket socket;
+        private long nanosCompresor;
+        private long original;
+        private boolean cerrada;
+
+        Salida(Context ctx, Codificacion codificacion, Ruta ruta) {
+            this.ctx = ctx;
+            this.codificacion = codificacion;
+            this.ruta = ruta;
+            this.inicial = codificacion != null ? new byte[Math.max(1, UMBRAL)] : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            original += len;
+            if (destino == null) {
+                if (inicial != null && pendientes + len < inicial.length) {
+                    System.arraycopy(b, off, inicial, pendientes, len);
+                    pendientes += len;
+                    return;
+                }
+                decidir(true);
+            }
+            escribir(b, off, len);
+        }
+
+        private void decidir(boolean comprimir) throws IOException {
+            socket = new Socket(ctx.outputStream());
+            if (comprimir && codificacion != null) {
+                ctx.header("Content-Encoding", codificacion.nombre());
+                long inicio = System.nanoTime();
+                destino = compresor(codificacion, false).compress(socket);
+                nanosCompresor += System.nanoTime() - inicio;
+            } else {
+                destino = socket;
+            }
+            if (pendientes > 0) {
+                escribir(inicial, 0, pendientes);
+                pendientes = 0;
+            }
+        }
+
+        private void escribir(byte[] b, int off, int len) throws IOException {
+            if (destino == socket) {
+                socket.write(b, off, len);
+                return;
+            }
+            long inicio = System.nanoTime();
+            destino.write(b, off, len);
+            nanosCompresor += System.nanoTime() - inicio;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (destino != null) {
+                destino.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            if (destino == null) {
+                decidir(false);
+            }
+            boolean comprimida = destino != socket;
+            if (comprimida) {
+                long inicio = System.nanoTime();
+                destino.close(); // Termina el stream comprimido; Socket no cierra la peticion.
+                nanosCompresor += System.nanoTime() - inicio;
+            } else {
+                socket.flush();
+            }
+            ruta.respuestas.increment();
+            ruta.bytesOriginales.add(original);
+            ruta.bytesEnviados.add(socket.bytes);
+            if (comprimida) {
+                ruta.comprimidas.increment();
+                ruta.nanos.add(Math.max(0, nanosCompresor - socket.nanos));
+            }
+        }
+    }
+
+    // Cuenta bytes y tiempo de escritura en el socket; close() solo vacia.
+    private static final class Socket extends OutputStream {
+        private final OutputStream destino;
+        private long bytes;
+        private long nanos;
+
+        Socket(OutputStream destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long inicio = System.nanoTime();
+            destino.write(b);
+            nanos += System.nanoTime() - inicio;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long inicio = System.nanoTime();
+            destino.write(b, off, len);
+            nanos += System.nanoTime() - inicio;
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            destino.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
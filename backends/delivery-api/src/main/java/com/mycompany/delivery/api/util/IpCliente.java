@@ -0,0 +1,124 @@
+package com.mycompany.delivery.api.util;
+
+import io.javalin.http.Context;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IP real del cliente detras del balanceador. {@code X-Forwarded-For} solo se
+ * tiene en cuenta si la conexion llega de un proxy de confianza
+ * ({@code TRUSTED_PROXIES}: IPs o rangos CIDR separados por comas); en ese
+ * caso se recorre de derecha a izquierda saltando los proxies de confianza y
+ * el primer salto que no lo es se toma como el cliente. Sin la variable se
+ * usa la direccion del socket, como antes: la cabecera la puede escribir
+ * cualquiera.
+ */
+public final class IpCliente {
+
+    private static final List<Rango> CONFIABLES = parsear(System.getenv("TRUSTED_PROXIES"));
+
+    private IpCliente() {
+    }
+
+    public static String de(Context ctx) {
+        String remota = ctx.ip();
+        if (CONFIABLES.isEmpty() || !confiable(remota)) {
+            return remota;
+        }
+        String cabecera = ctx.header("X-Forwarded-For");
+        if (cabecera == null || cabecera.isBlank()) {
+            return remota;
+        }
+        String[] saltos = cabecera.split(",");
+        String cliente = remota;
+        for (int i = saltos.length - 1; i >= 0; i--) {
+            String salto = saltos[i].trim();
+            if (salto.isEmpty()) {
+                continue;
+            }
+            cliente = salto;
+            if (!confiable(salto)) {
+                break;
+            }
+        }
+        return cliente;
+    }
+
+    private static boolean confiable(String ip) {
+        byte[] bytes = literal(ip);
+        if (bytes == null) {
+            return false;
+        }
+        for (Rango r : CONFIABLES) {
+            if (r.contiene(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Solo literales IPv4/IPv6: nunca se resuelve un nombre por DNS.
+    private static byte[] literal(String ip) {
+        if (ip == null || ip.isBlank() || !ip.matches("[0-9A-Fa-f:.]+")) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static List<Rango> parsear(String valor) {
+        List<Rango> rangos = new ArrayList<>();
+        if (valor == null || valor.isBlank()) {
+            return rangos;
+        }
+        for (String parte : valor.split(",")) {
+            String texto = parte.trim();
+            if (texto.isEmpty()) {
+                continue;
+            }
+            int barra = texto.indexOf('/');
+            byte[] red = literal(barra < 0 ? texto : texto.substring(0, barra));
+            if (red == null) {
+                System.err.println("TRUSTED_PROXIES: se ignora '" + texto + "'");
+                continue;
+            }
+            int bits = red.length * 8;
+            if (barra >= 0) {
+                try {
+                    bits = Math.max(0, Math.min(bits, Integer.parseInt(texto.substring(barra + 1))));
+                } catch (NumberFormatException e) {
+                    System.err.println("TRUSTED_PROXIES: se ignora '" + texto + "'");
+                    continue;
+                }
+            }
+            rangos.add(new Rango(red, bits));
+        }
+        return List.copyOf(rangos);
+    }
+
+    private record Rango(byte[] red, int bits) {
+        boolean contiene(byte[] ip) {
+            if (ip.length != red.length) {
+                return false;
+            }
+            int completos = bits / 8;
+            for (int i = 0; i < completos; i++) {
+                if (ip[i] != red[i]) {
+                    return false;
+                }
+            }
+            int resto = bits % 8;
+            if (resto == 0) {
+                return true;
+            }
+            int mascara = (0xFF << (8 - resto)) & 0xFF;
+            return (ip[completos] & mascara) == (red[completos] & mascara);
+        }
+    }
+}
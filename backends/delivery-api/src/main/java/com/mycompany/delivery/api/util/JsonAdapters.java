@@ -0,0 +1,417 @@
+package com.mycompany.delivery.api.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.mycompany.delivery.api.model.ChatConversacion;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.PedidoVista;
+import com.mycompany.delivery.api.model.SoporteConversacion;
+import com.mycompany.delivery.api.model.SoporteMensaje;
+import com.mycompany.delivery.api.model.TrackingEvento;
+import com.mycompany.delivery.api.model.Ubicacion;
+import com.mycompany.delivery.api.model.UsuarioVista;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TypeAdapters escritos a mano para los DTO de las respuestas con listas
+ * largas (chat, soporte, detalle de pedido, tracking). Escriben campo a campo
+ * sin reflexion ni mapas intermedios y con las mismas claves que antes se
+ * ponian en los {@code HashMap}, asi que el JSON que recibe la app no cambia.
+ *
+ * <p>Las fechas {@link Timestamp} se delegan al adaptador de Gson para
+ * conservar su formato; los nulos se omiten como con la configuracion por
+ * defecto. La lectura (que la API no usa en caliente) pasa por un
+ * {@link JsonObject} con las mismas claves, asi que lo escrito se puede volver
+ * a leer; {@link Ubicacion} se sigue leyendo por reflexion.
+ */
+public final class JsonAdapters implements TypeAdapterFactory {
+
+    private JsonAdapters() {
+    }
+
+    /**
+     * Gson con la configuracion de siempre mas estos adaptadores.
+     */
+    public static Gson crearGson() {
+        return new GsonBuilder().registerTypeAdapterFactory(new JsonAdapters()).create();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        TypeAdapter<?> adapter;
+        if (raw == ChatMensaje.class) {
+            adapter = new ChatMensajeAdapter(gson.getAdapter(Timestamp.class));
+        } else if (raw == ChatConversacion.class) {
+            adapter = new ChatConversacionAdapter(gson.getAdapter(Timestamp.class));
+        } else if (raw == SoporteMensaje.class) {
+            adapter = new SoporteMensajeAdapter();
+        } else if (raw == SoporteConversacion.class) {
+            adapter = new SoporteConversacionAdapter();
+        } else if (raw == PedidoVista.class) {
+            adapter = new PedidoVistaAdapter(gson.getAdapter(Timestamp.class));
+        } else if (raw == UsuarioVista.class) {
+            adapter = new UsuarioVistaAdapter();
+        } else if (raw == TrackingEvento.class) {
+            adapter = new TrackingEventoAdapter();
+        } else if (raw == Ubicacion.class) {
+            adapter = new UbicacionAdapter(gson.getDelegateAdapter(this, TypeToken.get(Ubicacion.class)),
+                    gson.getAdapter(Timestamp.class));
+        } else {
+            return null;
+        }
+        return (TypeAdapter<T>) adapter.nullSafe();
+    }
+
+    private static String iso(Timestamp t) {
+        return t != null ? t.toInstant().toString() : null;
+    }
+
+    private static void fecha(JsonWriter out, String nombre, Timestamp valor, TypeAdapter<Timestamp> fechas)
+            throws IOException {
+        out.name(nombre);
+        if (valor == null) {
+            out.nullValue();
+        } else {
+            fechas.write(out, valor);
+        }
+    }
+
+    // ===============================
+    // LECTURA
+    // ===============================
+    private static JsonObject objeto(JsonReader in) {
+        return JsonParser.parseReader(in).getAsJsonObject();
+    }
+
+    // Ausente y null se tratan igual, como al escribir.
+    private static JsonElement campo(JsonObject o, String nombre) {
+        JsonElement e = o.get(nombre);
+        return e == null || e.isJsonNull() ? null : e;
+    }
+
+    private static long largo(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsLong() : 0L;
+    }
+
+    private static Long largoONulo(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsLong() : null;
+    }
+
+    private static int entero(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsInt() : 0;
+    }
+
+    private static Integer enteroONulo(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsInt() : null;
+    }
+
+    private static double real(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsDouble() : 0.0;
+    }
+
+    private static boolean logico(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null && e.getAsBoolean();
+    }
+
+    private static Boolean logicoONulo(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsBoolean() : null;
+    }
+
+    private static String texto(JsonObject o, String nombre) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? e.getAsString() : null;
+    }
+
+    private static Timestamp fecha(JsonObject o, String nombre, TypeAdapter<Timestamp> fechas) {
+        JsonElement e = campo(o, nombre);
+        return e != null ? fechas.fromJsonTree(e) : null;
+    }
+
+    private static Timestamp desdeIso(JsonObject o, String nombre) {
+        String valor = texto(o, nombre);
+        return valor != null ? Timestamp.from(Instant.parse(valor)) : null;
+    }
+
+    private static final class ChatMensajeAdapter extends TypeAdapter<ChatMensaje> {
+        private final TypeAdapter<Timestamp> fechas;
+
+        ChatMensajeAdapter(TypeAdapter<Timestamp> fechas) {
+            this.fechas = fechas;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChatMensaje m) throws IOException {
+            out.beginObject();
+            out.name("id_mensaje").value(m.idMensaje());
+            out.name("id_conversacion").value(m.idConversacion());
+            out.name("id_remitente").value(m.idRemitente());
+            out.name("id_destinatario").value(m.idDestinatario());
+            out.name("mensaje").value(m.mensaje());
+            fecha(out, "created_at", m.createdAt(), fechas);
+            out.name("remitente_nombre").value(m.remitenteNombre());
+            out.name("es_bot").value(m.esBot());
+            out.endObject();
+        }
+
+        @Override
+        public ChatMensaje read(JsonReader in) {
+            JsonObject o = objeto(in);
+            return new ChatMensaje(largo(o, "id_mensaje"), largo(o, "id_conversacion"),
+                    entero(o, "id_remitente"), enteroONulo(o, "id_destinatario"), texto(o, "mensaje"),
+                    fecha(o, "created_at", fechas), texto(o, "remitente_nombre"), logico(o, "es_bot"));
+        }
+    }
+
+    private static final class ChatConversacionAdapter extends TypeAdapter<ChatConversacion> {
+        private final TypeAdapter<Timestamp> fechas;
+
+        ChatConversacionAdapter(TypeAdapter<Timestamp> fechas) {
+            this.fechas = fechas;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChatConversacion c) throws IOException {
+            out.beginObject();
+            out.name("id_conversacion").value(c.idConversacion());
+            out.name("id_pedido").value(c.idPedido());
+            out.name("id_cliente").value(c.idCliente());
+            out.name("id_delivery").value(c.idDelivery());
+            out.name("id_admin_soporte").value(c.idAdminSoporte());
+            out.name("es_chatbot").value(c.esChatbot());
+            fecha(out, "created_at", c.createdAt(), fechas);
+            out.name("activa").value(c.activa());
+            out.endObject();
+        }
+
+        @Override
+        public ChatConversacion read(JsonReader in) {
+            JsonObject o = objeto(in);
+            return new ChatConversacion(largo(o, "id_conversacion"), enteroONulo(o, "id_pedido"),
+                    enteroONulo(o, "id_cliente"), enteroONulo(o, "id_delivery"),
+                    enteroONulo(o, "id_admin_soporte"), logico(o, "es_chatbot"),
+                    fecha(o, "created_at", fechas), logicoONulo(o, "activa"));
+        }
+    }
+
+    private static final class SoporteMensajeAdapter extends TypeAdapter<SoporteMensaje> {
+        @Override
+        public void write(JsonWriter out, SoporteMensaje m) throws IOException {
+            out.beginObject();
+            out.name("id").value(m.id());
+            out.name("id_conversacion").value(m.idConversacion());
+            out.name("id_remitente").value(m.idRemitente());
+            out.name("es_agente").value(m.esAgente());
+            out.name("tipo").value(m.tipo());
+            out.name("mensaje").value(m.mensaje());
+            out.name("created_at").value(iso(m.createdAt()));
+            out.endObject();
+        }
+
+        @Override
+        public SoporteMensaje read(JsonReader in) {
+            JsonObject o = objeto(in);
+            return new SoporteMensaje(largo(o, "id"), largo(o, "id_conversacion"), largoONulo(o, "id_remitente"),
+                    logico(o, "es_agente"), texto(o, "tipo"), texto(o, "mensaje"), desdeIso(o, "created_at"));
+        }
+    }
+
+    private static final class SoporteConversacionAdapter extends TypeAdapter<SoporteConversacion> {
+        @Override
+        public void write(JsonWriter out, SoporteConversacion c) throws IOException {
+            out.beginObject();
+            out.name("id_conversacion").value(c.idConversacion());
+            out.name("estado").value(c.estado());
+            out.name("id_agente_soporte").value(c.idAgenteSoporte());
+            out.name("canal").value(c.canal());
+            out.name("prioridad").value(c.prioridad());
+            out.name("permite_ia").value(c.permiteIa());
+            out.name("created_at").value(iso(c.createdAt()));
+            out.name("updated_at").value(iso(c.updatedAt()));
+            out.endObject();
+        }
+
+        @Override
+        public SoporteConversacion read(JsonReader in) {
+            JsonObject o = objeto(in);
+            return new SoporteConversacion(largo(o, "id_conversacion"), texto(o, "estado"),
+                    largoONulo(o, "id_agente_soporte"), texto(o, "canal"), entero(o, "prioridad"),
+                    logico(o, "permite_ia"), desdeIso(o, "created_at"), desdeIso(o, "updated_at"));
+        }
+    }
+
+    private static final class PedidoVistaAdapter extends TypeAdapter<PedidoVista> {
+        private final TypeAdapter<Timestamp> fechas;
+
+        PedidoVistaAdapter(TypeAdapter<Timestamp> fechas) {
+            this.fechas = fechas;
+        }
+
+        @Override
+        public void write(JsonWriter out, PedidoVista v) throws IOException {
+            out.beginObject();
+            out.name("pedido");
+            PedidoVista.Cabecera p = v.pedido();
+            out.beginObject();
+            out.name("id_pedido").value(p.idPedido());
+            out.name("id_cliente").value(p.idCliente());
+            out.name("id_delivery").value(p.idDelivery());
+            out.name("id_ubicacion").value(p.idUbicacion());
+            fecha(out, "created_at", p.createdAt(), fechas);
+            fecha(out, "updated_at", p.updatedAt(), fechas);
+            out.name("estado").value(p.estado());
+            out.name("total").value(p.total());
+            out.name("direccion_entrega").value(p.direccionEntrega());
+            out.name("metodo_pago").value(p.metodoPago());
+            out.name("notas").value(p.notas());
+            out.name("coordenadas_entrega").value(p.coordenadasEntrega());
+            out.endObject();
+
+            out.name("detalles");
+            out.beginArray();
+            List<PedidoVista.Linea> lineas = v.detalles();
+            for (PedidoVista.Linea d : lineas) {
+                out.beginObject();
+                out.name("id_detalle").value(d.idDetalle());
+                out.name("id_producto").value(d.idProducto());
+                out.name("cantidad").value(d.cantidad());
+                out.name("precio_unitario").value(d.precioUnitario());
+                out.name("subtotal").value(d.subtotal());
+                out.name("nombre_producto").value(d.nombreProducto());
+                out.name("imagen_url").value(d.imagenUrl());
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public PedidoVista read(JsonReader in) {
+            JsonObject o = objeto(in);
+            JsonObject p = o.getAsJsonObject("pedido");
+            PedidoVista.Cabecera cabecera = new PedidoVista.Cabecera(entero(p, "id_pedido"),
+                    entero(p, "id_cliente"), enteroONulo(p, "id_delivery"), enteroONulo(p, "id_ubicacion"),
+                    fecha(p, "created_at", fechas), fecha(p, "updated_at", fechas), texto(p, "estado"),
+                    real(p, "total"), texto(p, "direccion_entrega"), texto(p, "metodo_pago"), texto(p, "notas"),
+                    texto(p, "coordenadas_entrega"));
+            List<PedidoVista.Linea> lineas = new ArrayList<>();
+            for (JsonElement e : o.getAsJsonArray("detalles")) {
+                JsonObject d = e.getAsJsonObject();
+                lineas.add(new PedidoVista.Linea(entero(d, "id_detalle"), entero(d, "id_producto"),
+                        entero(d, "cantidad"), real(d, "precio_unitario"), real(d, "subtotal"),
+                        texto(d, "nombre_producto"), texto(d, "imagen_url")));
+            }
+            return new PedidoVista(cabecera, lineas);
+        }
+    }
+
+    private static final class UsuarioVistaAdapter extends TypeAdapter<UsuarioVista> {
+        @Override
+        public void write(JsonWriter out, UsuarioVista u) throws IOException {
+            out.beginObject();
+            out.name("idUsuario").value(u.idUsuario());
+            out.name("nombre").value(u.nombre());
+            out.name("correo").value(u.correo());
+            out.name("telefono").value(u.telefono());
+            out.name("rol").value(u.rol());
+            out.name("activo").value(u.activo());
+            out.name("token").value(u.token());
+            out.endObject();
+        }
+
+        @Override
+        public UsuarioVista read(JsonReader in) {
+            JsonObject o = objeto(in);
+            return new UsuarioVista(entero(o, "idUsuario"), texto(o, "nombre"), texto(o, "correo"),
+                    texto(o, "telefono"), texto(o, "rol"), logico(o, "activo"), texto(o, "token"));
+        }
+    }
+
+    // Misma forma que el antiguo TrackingEvento.toMap(): sin descripcion vacia.
+    private static final class TrackingEventoAdapter extends TypeAdapter<TrackingEvento> {
+        @Override
+        public void write(JsonWriter out, TrackingEvento e) throws IOException {
+            out.beginObject();
+            out.name("id_pedido").value(e.getIdPedido());
+            out.name("orden").value(e.getOrden());
+            out.name("latitud").value(e.getLatitud());
+            out.name("longitud").value(e.getLongitud());
+            if (e.getDescripcion() != null && !e.getDescripcion().isBlank()) {
+                out.name("descripcion").value(e.getDescripcion());
+            }
+            if (e.getFechaEvento() != null) {
+                out.name("fecha_evento").value(e.getFechaEvento().toString());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public TrackingEvento read(JsonReader in) {
+            JsonObject o = objeto(in);
+            TrackingEvento e = new TrackingEvento();
+            e.setIdPedido(entero(o, "id_pedido"));
+            e.setOrden(entero(o, "orden"));
+            e.setLatitud(real(o, "latitud"));
+            e.setLongitud(real(o, "longitud"));
+            e.setDescripcion(texto(o, "descripcion"));
+            String fechaEvento = texto(o, "fecha_evento");
+            if (fechaEvento != null) {
+                e.setFechaEvento(OffsetDateTime.parse(fechaEvento));
+            }
+            return e;
+        }
+    }
+
+    // Mismas claves y orden que la serializacion por reflexion; la lectura se delega.
+    private static final class UbicacionAdapter extends TypeAdapter<Ubicacion> {
+        private final TypeAdapter<Ubicacion> lector;
+        private final TypeAdapter<Timestamp> fechas;
+
+        UbicacionAdapter(TypeAdapter<Ubicacion> lector, TypeAdapter<Timestamp> fechas) {
+            this.lector = lector;
+            this.fechas = fechas;
+        }
+
+        @Override
+        public void write(JsonWriter out, Ubicacion u) throws IOException {
+            out.beginObject();
+            out.name("idUbicacion").value(u.getIdUbicacion());
+            out.name("idUsuario").value(u.getIdUsuario());
+            out.name("latitud").value(u.getLatitud());
+            out.name("longitud").value(u.getLongitud());
+            out.name("descripcion").value(u.getDescripcion());
+            out.name("direccion").value(u.getDireccion());
+            out.name("activa").value(u.isActiva());
+            out.name("estado").value(u.getEstado());
+            fecha(out, "fechaRegistro", u.getFechaRegistro(), fechas);
+            out.endObject();
+        }
+
+        @Override
+        public Ubicacion read(JsonReader in) throws IOException {
+            return lector.read(in);
+        }
+    }
+}
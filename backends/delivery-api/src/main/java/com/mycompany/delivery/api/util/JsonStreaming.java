@@ -0,0 +1,224 @@
+package com.mycompany.delivery.api.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Serializa respuestas JSON directamente sobre el {@link OutputStream} de la
+ * peticion: Gson escribe en un {@link JsonWriter} que codifica a UTF-8 sobre un
+ * buffer de bytes reutilizable y lo vuelca al socket cada vez que se llena. No
+ * se construye el {@code String} completo ni su copia en bytes.
+ *
+ * <p>Los buffers ({@code JSON_BUFFER_KB}, 16 por defecto) salen de un pool
+ * acotado a {@code JSON_BUFFER_POOL} (64) entradas; si esta vacio se crea uno
+ * temporal y, al devolverlo con el pool lleno, se descarta.
+ */
+public final class JsonStreaming {
+
+    private static final int TAMANO_BUFFER = Math.max(1, getEnvInt("JSON_BUFFER_KB", 16)) * 1024;
+    private static final ArrayBlockingQueue<byte[]> POOL =
+            new ArrayBlockingQueue<>(Math.max(1, getEnvInt("JSON_BUFFER_POOL", 64)));
+
+    private JsonStreaming() {
+    }
+
+    /**
+     * Escribe {@code obj} como JSON en {@code destino}. No cierra el destino.
+     */
+    public static void escribir(Gson gson, Object obj, Type tipo, OutputStream destino) throws IOException {
+        try (Utf8Writer writer = new Utf8Writer(destino)) {
+            JsonWriter json = gson.newJsonWriter(writer);
+            gson.toJson(obj, tipo, json);
+            json.flush();
+        }
+    }
+
+    /**
+     * Escribe los elementos del stream como un array JSON, uno a uno.
+     */
+    public static void escribirArray(Gson gson, Stream<?> elementos, OutputStream destino) throws IOException {
+        try (Utf8Writer writer = new Utf8Writer(destino)) {
+            JsonWriter json = gson.newJsonWriter(writer);
+            json.beginArray();
+            Iterator<?> it = elementos.iterator();
+            while (it.hasNext()) {
+                Object e = it.next();
+                gson.toJson(e, e != null ? e.getClass() : Object.class, json);
+            }
+            json.endArray();
+            json.flush();
+        }
+    }
+
+    /**
+     * JSON en un array de bytes de tamano exacto, para guardarlo (p. ej. en
+     * la cache de respuestas).
+     */
+    public static byte[] aBytes(Gson gson, Object obj, Type tipo) throws IOException {
+        Acumulador bytes = new Acumulador();
+        escribir(gson, obj, tipo, bytes);
+        return Arrays.copyOf(bytes.datos, bytes.tamano);
+    }
+
+    /**
+     * JSON como {@link InputStream} para quien lo necesite asi (p. ej.
+     * {@code ctx.jsonStream}). Evita el {@code String} intermedio, pero no la copia.
+     */
+    public static InputStream comoStream(Gson gson, Object obj, Type tipo) throws IOException {
+        Acumulador bytes = new Acumulador();
+        escribir(gson, obj, tipo, bytes);
+        return new ByteArrayInputStream(bytes.datos, 0, bytes.tamano);
+    }
+
+    private static int getEnvInt(String key, int fallback) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Writer que codifica a UTF-8 sobre un buffer del pool. {@code close()}
+     * vuelca lo pendiente y devuelve el buffer, sin cerrar el destino.
+     */
+    private static final class Utf8Writer extends Writer {
+
+        private final OutputStream destino;
+        private byte[] buffer;
+        private int pos;
+        private char surrogateAlto;
+
+        Utf8Writer(OutputStream destino) {
+            this.destino = destino;
+            byte[] reutilizado = POOL.poll();
+            this.buffer = reutilizado != null ? reutilizado : new byte[TAMANO_BUFFER];
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            codificar((char) c);
+        }
+
+        @Override
+        public void write(String s, int off, int len) throws IOException {
+            for (int i = off, fin = off + len; i < fin; i++) {
+                codificar(s.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for (int i = off, fin = off + len; i < fin; i++) {
+                codificar(cbuf[i]);
+            }
+        }
+
+        private void codificar(char c) throws IOException {
+            // Cada caracter ocupa como mucho 4 bytes: asi nunca se parte una secuencia.
+            if (pos > buffer.length - 4) {
+                volcar();
+            }
+            if (surrogateAlto != 0) {
+                char alto = surrogateAlto;
+                surrogateAlto = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int cp = Character.toCodePoint(alto, c);
+                    buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+                    return;
+                }
+                buffer[pos++] = '?'; // Surrogate suelto, igual que el codificador del JDK.
+                if (pos > buffer.length - 4) {
+                    volcar();
+                }
+            }
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                surrogateAlto = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        private void volcar() throws IOException {
+            if (pos > 0) {
+                destino.write(buffer, 0, pos);
+                pos = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            volcar();
+            destino.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                if (surrogateAlto != 0) {
+                    surrogateAlto = 0;
+                    codificar('?');
+                }
+                volcar();
+            } finally {
+                POOL.offer(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    // ByteArrayOutputStream sin sincronizacion ni copia final.
+    private static final class Acumulador extends OutputStream {
+        private byte[] datos = new byte[1024];
+        private int tamano;
+
+        @Override
+        public void write(int b) {
+            asegurar(1);
+            datos[tamano++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            asegurar(len);
+            System.arraycopy(b, off, datos, tamano, len);
+            tamano += len;
+        }
+
+        private void asegurar(int extra) {
+            if (tamano + extra > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tamano + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mycompany.delivery.api.util;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mycompany.delivery.api.model.LoteTracking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Lee el cuerpo de {@code POST /tracking/batch} con un {@link JsonReader} sobre
+ * el stream de la peticion, punto a punto, sin cargar el cuerpo entero ni
+ * crear un objeto por punto:
+ *
+ * <pre>{@code
+ * {"idRepartidor": 7,
+ *  "puntos": [{"latitud": -0.18, "longitud": -78.46, "timestamp": 1760865600000}, ...]}
+ * }</pre>
+ *
+ * {@code timestamp} admite epoch en milisegundos o ISO-8601 con zona; si falta
+ * se guarda {@link #SIN_INSTANTE}. Un punto con campos ilegibles se conserva
+ * con {@code NaN} o {@link #INSTANTE_INVALIDO} para que el servicio lo
+ * descarte sin rechazar el lote completo.
+ */
+public final class LoteTrackingReader {
+
+    public static final long SIN_INSTANTE = -1;
+    public static final long INSTANTE_INVALIDO = Long.MIN_VALUE;
+
+    private LoteTrackingReader() {
+    }
+
+    /**
+     * @param maxPuntos a partir de este numero se corta la lectura con un 413.
+     */
+    public static LoteTracking leer(InputStream cuerpo, int maxPuntos) {
+        LoteTracking lote = new LoteTracking();
+        try (JsonReader in = new JsonReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "idRepartidor", "id_repartidor" -> lote.setIdRepartidor(entero(in));
+                    case "puntos" -> leerPuntos(in, lote, maxPuntos);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            throw new ApiException(400, "El lote de ubicaciones no es un JSON valido", e);
+        }
+        return lote;
+    }
+
+    private static void leerPuntos(JsonReader in, LoteTracking lote, int maxPuntos) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            if (lote.tamano() >= maxPuntos) {
+                throw new ApiException(413, "El lote supera el maximo de " + maxPuntos + " puntos");
+            }
+            double latitud = Double.NaN;
+            double longitud = Double.NaN;
+            long instante = SIN_INSTANTE;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "latitud", "lat" -> latitud = decimal(in);
+                    case "longitud", "lng" -> longitud = decimal(in);
+                    case "timestamp", "registrado_en", "registradoEn" -> instante = instante(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            lote.agregar(latitud, longitud, instante);
+        }
+        in.endArray();
+    }
+
+    private static Integer entero(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static double decimal(JsonReader in) throws IOException {
+        JsonToken t = in.peek();
+        if (t == JsonToken.NUMBER) {
+            return in.nextDouble();
+        }
+        if (t == JsonToken.STRING) {
+            // nextDouble no consume un texto que no es numero: se lee antes.
+            try {
+                return Double.parseDouble(in.nextString().trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        in.skipValue();
+        return Double.NaN;
+    }
+
+    private static long instante(JsonReader in) throws IOException {
+        JsonToken t = in.peek();
+        if (t == JsonToken.NUMBER) {
+            return (long) in.nextDouble();
+        }
+        if (t == JsonToken.STRING) {
+            try {
+                return OffsetDateTime.parse(in.nextString()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return INSTANTE_INVALIDO;
+            }
+        }
+        if (t == JsonToken.NULL) {
+            in.nextNull();
+            return SIN_INSTANTE;
+        }
+        in.skipValue();
+        return INSTANTE_INVALIDO;
+    }
+}
@@ -0,0 +1,213 @@
+package com.mycompany.delivery.api.util;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lee en streaming el archivo de una importacion masiva de productos y entrega
+ * cada fila como un mapa columna -> texto, sin cargar el cuerpo entero:
+ *
+ * <ul>
+ * <li>CSV con cabecera (separador {@code ,} o {@code ;}, el que use la
+ * cabecera; comillas dobles segun RFC 4180, incluidos saltos de linea).</li>
+ * <li>JSON: un arreglo de objetos, o un objeto con el arreglo en
+ * {@code "productos"}.</li>
+ * </ul>
+ *
+ * Los nombres de columna se normalizan a snake_case en minusculas
+ * ({@code imagenUrl} -> {@code imagen_url}). Las filas se numeran desde 1 sin
+ * contar la cabecera.
+ */
+public final class ProductoImportReader {
+
+    @FunctionalInterface
+    public interface Fila {
+        void aceptar(int numero, Map<String, String> campos);
+    }
+
+    private ProductoImportReader() {
+    }
+
+    /**
+     * @param json {@code true} para JSON; si no, CSV.
+     */
+    public static void leer(InputStream cuerpo, boolean json, Fila destino) {
+        Reader in = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8), 16 * 1024);
+        try {
+            if (json) {
+                leerJson(in, destino);
+            } else {
+                leerCsv(in, destino);
+            }
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            throw new ApiException(400, "El archivo de productos no se pudo leer: " + e.getMessage(), e);
+        }
+    }
+
+    // ===============================
+    // JSON
+    // ===============================
+    private static void leerJson(Reader reader, Fila destino) throws IOException {
+        try (JsonReader in = new JsonReader(reader)) {
+            if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if ("productos".equals(in.nextName())) {
+                        leerArreglo(in, destino);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else {
+                leerArreglo(in, destino);
+            }
+        }
+    }
+
+    private static void leerArreglo(JsonReader in, Fila destino) throws IOException {
+        int numero = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            Map<String, String> campos = new HashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String columna = normalizar(in.nextName());
+                switch (in.peek()) {
+                    case NULL -> in.nextNull();
+                    case BOOLEAN -> campos.put(columna, Boolean.toString(in.nextBoolean()));
+                    case NUMBER, STRING -> campos.put(columna, in.nextString());
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            destino.aceptar(++numero, campos);
+        }
+        in.endArray();
+    }
+
+    // ===============================
+    // CSV
+    // ===============================
+    private static void leerCsv(Reader in, Fila destino) throws IOException {
+        LectorCsv csv = new LectorCsv(in);
+        List<String> cabecera = csv.siguiente();
+        if (cabecera == null) {
+            return;
+        }
+        List<String> columnas = new ArrayList<>(cabecera.size());
+        for (String c : cabecera) {
+            columnas.add(normalizar(c));
+        }
+        int numero = 0;
+        List<String> valores;
+        while ((valores = csv.siguiente()) != null) {
+            if (valores.size() == 1 && valores.get(0).isBlank()) {
+                continue; // Linea vacia.
+            }
+            Map<String, String> campos = new HashMap<>();
+            for (int i = 0; i < columnas.size() && i < valores.size(); i++) {
+                campos.put(columnas.get(i), valores.get(i));
+            }
+            destino.aceptar(++numero, campos);
+        }
+    }
+
+    /**
+     * Lector de registros CSV caracter a caracter. El separador se fija con la
+     * primera linea (cabecera).
+     */
+    private static final class LectorCsv {
+        private final Reader in;
+        private char separador;
+        private boolean fin;
+
+        LectorCsv(Reader in) {
+            this.in = in;
+        }
+
+        List<String> siguiente() throws IOException {
+            if (fin) {
+                return null;
+            }
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            boolean leido = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                leido = true;
+                char ch = (char) c;
+                if (entreComillas) {
+                    if (ch == '"') {
+                        in.mark(1);
+                        int sig = in.read();
+                        if (sig == '"') {
+                            campo.append('"');
+                        } else {
+                            entreComillas = false;
+                            if (sig != -1) {
+                                in.reset();
+                            }
+                        }
+                    } else {
+                        campo.append(ch);
+                    }
+                    continue;
+                }
+                if (ch == '\uFEFF' && campos.isEmpty() && campo.length() == 0) {
+                    continue; // BOM de Excel.
+                }
+                if (separador == 0 && (ch == ',' || ch == ';')) {
+                    separador = ch;
+                }
+                if (ch == '"' && campo.length() == 0) {
+                    entreComillas = true;
+                } else if (ch == separador) {
+                    campos.add(campo.toString().trim());
+                    campo.setLength(0);
+                } else if (ch == '\n') {
+                    campos.add(campo.toString().trim());
+                    return campos;
+                } else if (ch != '\r') {
+                    campo.append(ch);
+                }
+            }
+            fin = true;
+            if (!leido) {
+                return null;
+            }
+            if (entreComillas) {
+                throw new IllegalStateException("comillas sin cerrar al final del archivo");
+            }
+            campos.add(campo.toString().trim());
+            return campos;
+        }
+    }
+
+    private static String normalizar(String columna) {
+        StringBuilder sb = new StringBuilder(columna.length() + 4);
+        char previo = 0;
+        for (char ch : columna.trim().toCharArray()) {
+            if (Character.isUpperCase(ch) && Character.isLowerCase(previo)) {
+                sb.append('_');
+            }
+            previo = ch;
+            sb.append(ch == ' ' || ch == '-' ? '_' : ch);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
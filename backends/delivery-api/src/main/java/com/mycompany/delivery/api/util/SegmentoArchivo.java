@@ -0,0 +1,397 @@
+package com.mycompany.delivery.api.util;
+
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.PedidoArchivado;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Formato de los segmentos del archivo frio de pedidos. Un segmento es un
+ * fichero con un bloque comprimido (zlib) por pedido y, al final, su indice:
+ *
+ * <pre>
+ * "DLVSEG01" | bloque 1 | bloque 2 | ... |
+ * indice: (id_pedido int, desplazamiento long, longitud int, crc32 int) x N |
+ * desplazamiento del indice long | N int | "DLVIDX01"
+ * </pre>
+ *
+ * Cada bloque se comprime por separado, asi que leer un pedido es una lectura
+ * posicional de {@code longitud} bytes, sin recorrer el resto. Dentro del
+ * bloque la ruta va en coordenadas enteras (1e-7 grados, ~1 cm) e instantes en
+ * microsegundos, ambos como diferencias con el punto anterior en varint; los
+ * mensajes, con su id y fecha tambien en diferencias.
+ */
+public final class SegmentoArchivo {
+
+    private static final byte[] MAGIA = "DLVSEG01".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAGIA_INDICE = "DLVIDX01".getBytes(StandardCharsets.US_ASCII);
+    private static final int ENTRADA_BYTES = 4 + 8 + 4 + 4;
+    private static final int COLA_BYTES = 8 + 4 + MAGIA_INDICE.length;
+    private static final byte VERSION_BLOQUE = 1;
+    private static final double ESCALA = 1e7;
+
+    /**
+     * Posicion de un pedido dentro de un segmento.
+     */
+    public record Entrada(int idPedido, long desplazamiento, int longitud, int crc32) {
+    }
+
+    private SegmentoArchivo() {
+    }
+
+    // ===============================
+    // ESCRITURA
+    // ===============================
+
+    /**
+     * Escribe un segmento en {@code <destino>.tmp} y solo al cerrarlo (indice
+     * escrito y sincronizado a disco) lo renombra a su nombre final: un
+     * segmento visible siempre esta completo.
+     */
+    public static final class Escritor implements AutoCloseable {
+        private final Path destino;
+        private final Path temporal;
+        private final FileChannel canal;
+        private final List<Entrada> entradas = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private long posicion;
+        private boolean cerrado;
+
+        public Escritor(Path destino) throws IOException {
+            Files.createDirectories(destino.toAbsolutePath().getParent());
+            this.destino = destino;
+            this.temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+            this.canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            escribir(ByteBuffer.wrap(MAGIA));
+        }
+
+        public Entrada agregar(PedidoArchivado pedido) throws IOException {
+            byte[] bloque = comprimir(codificar(pedido));
+            CRC32 crc = new CRC32();
+            crc.update(bloque);
+            Entrada entrada = new Entrada(pedido.idPedido(), posicion, bloque.length, (int) crc.getValue());
+            escribir(ByteBuffer.wrap(bloque));
+            entradas.add(entrada);
+            return entrada;
+        }
+
+        public List<Entrada> entradas() {
+            return List.copyOf(entradas);
+        }
+
+        /**
+         * Escribe el indice, sincroniza y publica el segmento.
+         */
+        public Path cerrar() throws IOException {
+            ByteBuffer indice = ByteBuffer.allocate(entradas.size() * ENTRADA_BYTES + COLA_BYTES);
+            long inicioIndice = posicion;
+            for (Entrada e : entradas) {
+                indice.putInt(e.idPedido()).putLong(e.desplazamiento()).putInt(e.longitud()).putInt(e.crc32());
+            }
+            indice.putLong(inicioIndice).putInt(entradas.size()).put(MAGIA_INDICE).flip();
+            escribir(indice);
+            canal.force(true);
+            canal.close();
+            deflater.end();
+            cerrado = true;
+            return Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Sin {@link #cerrar()} previo, descarta el temporal.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!cerrado) {
+                canal.close();
+                deflater.end();
+                Files.deleteIfExists(temporal);
+            }
+        }
+
+        private void escribir(ByteBuffer datos) throws IOException {
+            while (datos.hasRemaining()) {
+                posicion += canal.write(datos);
+            }
+        }
+
+        private byte[] comprimir(byte[] datos) {
+            deflater.reset();
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // ===============================
+    // LECTURA
+    // ===============================
+
+    /**
+     * Lee y descomprime el bloque de un pedido.
+     *
+     * @throws IOException si el fichero no existe o el bloque no coincide con
+     *                     su CRC.
+     */
+    public static PedidoArchivado leer(Path segmento, long desplazamiento, int longitud, int crc32)
+            throws IOException {
+        ByteBuffer bloque = ByteBuffer.allocate(longitud);
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            while (bloque.hasRemaining()) {
+                if (canal.read(bloque, desplazamiento + bloque.position()) < 0) {
+                    throw new IOException("Bloque truncado en " + segmento.getFileName());
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bloque.array());
+        if ((int) crc.getValue() != crc32) {
+            throw new IOException("CRC distinto en " + segmento.getFileName() + " @" + desplazamiento);
+        }
+        return decodificar(descomprimir(bloque.array()));
+    }
+
+    /**
+     * Indice de un segmento leido desde su cola, sin recorrer los bloques.
+     */
+    public static List<Entrada> indice(Path segmento) throws IOException {
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < MAGIA.length + COLA_BYTES) {
+                throw new IOException("Segmento demasiado corto: " + segmento.getFileName());
+            }
+            ByteBuffer cola = leerCompleto(canal, tamano - COLA_BYTES, COLA_BYTES);
+            long inicioIndice = cola.getLong();
+            int n = cola.getInt();
+            byte[] magia = new byte[MAGIA_INDICE.length];
+            cola.get(magia);
+            if (!Arrays.equals(magia, MAGIA_INDICE) || inicioIndice + (long) n * ENTRADA_BYTES != tamano - COLA_BYTES) {
+                throw new IOException("Indice invalido en " + segmento.getFileName());
+            }
+            ByteBuffer datos = leerCompleto(canal, inicioIndice, n * ENTRADA_BYTES);
+            List<Entrada> entradas = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                entradas.add(new Entrada(datos.getInt(), datos.getLong(), datos.getInt(), datos.getInt()));
+            }
+            return entradas;
+        }
+    }
+
+    private static ByteBuffer leerCompleto(FileChannel canal, long posicion, int longitud) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(longitud);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new IOException("Fin de fichero inesperado");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static byte[] descomprimir(byte[] bloque) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bloque);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bloque.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Bloque comprimido incompleto");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque comprimido invalido", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ===============================
+    // CODIFICACION DEL BLOQUE
+    // ===============================
+    static byte[] codificar(PedidoArchivado p) {
+        Salida out = new Salida();
+        out.write(VERSION_BLOQUE);
+        out.varint(p.idPedido());
+        out.varlong(p.idConversacion() == null ? 0 : p.idConversacion() + 1);
+
+        out.varint(p.puntos());
+        long lat = 0;
+        long lng = 0;
+        long t = 0;
+        for (int i = 0; i < p.puntos(); i++) {
+            long la = Math.round(p.latitudes()[i] * ESCALA);
+            long lo = Math.round(p.longitudes()[i] * ESCALA);
+            out.zigzag(la - lat);
+            out.zigzag(lo - lng);
+            out.zigzag(p.instantes()[i] - t);
+            lat = la;
+            lng = lo;
+            t = p.instantes()[i];
+        }
+
+        out.varint(p.mensajes().size());
+        long id = 0;
+        t = 0;
+        for (ChatMensaje m : p.mensajes()) {
+            long creado = m.createdAt() != null ? micros(m.createdAt()) : 0L;
+            out.zigzag(m.idMensaje() - id);
+            out.zigzag(m.idRemitente());
+            out.varlong(m.idDestinatario() == null ? 0 : m.idDestinatario() + 1L);
+            out.zigzag(creado - t);
+            out.write(m.esBot() ? 1 : 0);
+            out.texto(m.remitenteNombre());
+            out.texto(m.mensaje());
+            id = m.idMensaje();
+            t = creado;
+        }
+        return out.toByteArray();
+    }
+
+    static PedidoArchivado decodificar(byte[] datos) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(datos);
+        try {
+            if (in.get() != VERSION_BLOQUE) {
+                throw new IOException("Version de bloque desconocida");
+            }
+            int idPedido = (int) varlong(in);
+            long conv = varlong(in);
+            Long idConversacion = conv == 0 ? null : conv - 1;
+
+            int n = (int) varlong(in);
+            double[] latitudes = new double[n];
+            double[] longitudes = new double[n];
+            long[] instantes = new long[n];
+            long lat = 0;
+            long lng = 0;
+            long t = 0;
+            for (int i = 0; i < n; i++) {
+                lat += zigzag(in);
+                lng += zigzag(in);
+                t += zigzag(in);
+                latitudes[i] = lat / ESCALA;
+                longitudes[i] = lng / ESCALA;
+                instantes[i] = t;
+            }
+
+            int m = (int) varlong(in);
+            List<ChatMensaje> mensajes = new ArrayList<>(m);
+            long id = 0;
+            t = 0;
+            for (int i = 0; i < m; i++) {
+                id += zigzag(in);
+                int remitente = (int) zigzag(in);
+                long destinatario = varlong(in);
+                t += zigzag(in);
+                boolean esBot = in.get() == 1;
+                String nombre = texto(in);
+                String mensaje = texto(in);
+                mensajes.add(new ChatMensaje(id, idConversacion == null ? 0 : idConversacion, remitente,
+                        destinatario == 0 ? null : (int) (destinatario - 1), mensaje, timestamp(t), nombre, esBot));
+            }
+            return new PedidoArchivado(idPedido, idConversacion, latitudes, longitudes, instantes, mensajes);
+        } catch (RuntimeException e) {
+            throw new IOException("Bloque de archivo corrupto", e);
+        }
+    }
+
+    /**
+     * Microsegundos epoch de un {@code TIMESTAMP}, sin perder la fraccion.
+     */
+    public static long micros(Timestamp ts) {
+        return Math.floorDiv(ts.getTime(), 1000L) * 1_000_000L + ts.getNanos() / 1000;
+    }
+
+    public static Timestamp timestamp(long micros) {
+        Timestamp ts = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+        ts.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+        return ts;
+    }
+
+    private static long varlong(ByteBuffer in) {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = in.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IllegalStateException("varint demasiado largo");
+    }
+
+    private static long zigzag(ByteBuffer in) {
+        long v = varlong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String texto(ByteBuffer in) {
+        int longitud = (int) varlong(in);
+        if (longitud == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffer de salida con escritura de varints (LEB128) y texto UTF-8 con
+     * longitud; 0 como longitud representa {@code null}.
+     */
+    private static final class Salida extends ByteArrayOutputStream {
+        Salida() {
+            super(256);
+        }
+
+        void varint(int v) {
+            varlong(v & 0xFFFFFFFFL);
+        }
+
+        void varlong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void zigzag(long v) {
+            varlong((v << 1) ^ (v >> 63));
+        }
+
+        void texto(String s) {
+            if (s == null) {
+                write(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varlong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mycompany.delivery.api.util;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Generador de identificadores estilo Snowflake (tiempo | nodo | secuencia),
+ * sin bloqueos: el ultimo (milisegundo, secuencia) emitido vive en un
+ * {@link AtomicLong} y se avanza con CAS.
+ *
+ * <p>El identificador ocupa 53 bits (39 de tiempo en ms desde 2025-01-01,
+ * 8 de nodo y 6 de secuencia) para que siga siendo exacto como numero en
+ * JavaScript/Flutter web. Eso da unos 17 anos de rango, 256 nodos y 64 ids por
+ * milisegundo y nodo; las rafagas mayores toman prestados milisegundos.
+ *
+ * <p>Cada replica debe tener su propio {@code ID_NODE} (0-255): dos nodos con
+ * el mismo valor pueden emitir el mismo id. Sin la variable se deriva del
+ * hostname, que solo vale para una instancia.
+ *
+ * <p>Si se agota la secuencia de un milisegundo, el generador sigue contando
+ * desde el ultimo valor emitido (toma prestado tiempo del futuro) en lugar de
+ * repetir ids o bloquear. Si el reloj retrocede respecto a la ultima lectura,
+ * espera a que se recupere cuando el salto es de como mucho
+ * {@value #MAX_RETROCESO_MS} ms y lanza {@link IllegalStateException} si es
+ * mayor. El ultimo valor emitido se pierde al reiniciar, por eso quien
+ * persiste los ids llama a {@link #avanzarHasta} con el mayor id guardado
+ * antes de emitir el primero.
+ */
+public final class SnowflakeIdGenerator {
+
+    private static final long EPOCH_MS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int BITS_TIEMPO = 39;
+    private static final int BITS_NODO = 8;
+    private static final int BITS_SECUENCIA = 6;
+    private static final long MAX_TIEMPO = (1L << BITS_TIEMPO) - 1;
+    private static final long MAX_NODO = (1L << BITS_NODO) - 1;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final long AVISO_DESFASE_MS = 1_000L;
+    static final long MAX_RETROCESO_MS = 50L;
+
+    private static final long NODO = resolverNodo();
+    private static final AtomicLong ULTIMO_AVISO = new AtomicLong();
+    private static final SnowflakeIdGenerator GLOBAL = new SnowflakeIdGenerator(System::currentTimeMillis, NODO);
+
+    private final LongSupplier reloj;
+    private final long nodo;
+    // (milisegundo << BITS_SECUENCIA) | secuencia del ultimo id emitido.
+    private final AtomicLong ultimo = new AtomicLong();
+    // Mayor lectura del reloj vista; una lectura menor es un retroceso.
+    private final AtomicLong relojVisto = new AtomicLong();
+
+    // Las pruebas inyectan el reloj; la aplicacion usa GLOBAL.
+    SnowflakeIdGenerator(LongSupplier reloj, long nodo) {
+        this.reloj = reloj;
+        this.nodo = nodo;
+    }
+
+    public static long nextId() {
+        return GLOBAL.generar();
+    }
+
+    long generar() {
+        while (true) {
+            long ahora = leerReloj();
+            long previo = ultimo.get();
+            long tiempoPrevio = previo >>> BITS_SECUENCIA;
+            // Mismo milisegundo, reloj atrasado o secuencia agotada: previo + 1
+            // (el acarreo de la secuencia avanza el milisegundo logico).
+            long siguiente = ahora > tiempoPrevio ? ahora << BITS_SECUENCIA : previo + 1;
+            if (ultimo.compareAndSet(previo, siguiente)) {
+                long tiempo = siguiente >>> BITS_SECUENCIA;
+                if (tiempo > MAX_TIEMPO) {
+                    throw new IllegalStateException("El generador de ids agoto su rango de tiempo");
+                }
+                if (tiempo - ahora > AVISO_DESFASE_MS) {
+                    avisarDesfase(tiempo - ahora);
+                }
+                return (tiempo << (BITS_NODO + BITS_SECUENCIA))
+                        | (nodo << BITS_SECUENCIA)
+                        | (siguiente & MASCARA_SECUENCIA);
+            }
+        }
+    }
+
+    // Milisegundos desde EPOCH_MS, nunca por debajo de una lectura anterior.
+    private long leerReloj() {
+        long ahora = reloj.getAsLong() - EPOCH_MS;
+        long visto = relojVisto.get();
+        if (ahora >= visto) {
+            if (ahora > visto) {
+                relojVisto.compareAndSet(visto, ahora); // Si falla, otro hilo ya lo avanzo.
+            }
+            return ahora;
+        }
+        if (visto - ahora > MAX_RETROCESO_MS) {
+            throw new IllegalStateException("El reloj retrocedio " + (visto - ahora)
+                    + " ms; no se emiten ids hasta que se recupere");
+        }
+        while (ahora < visto) {
+            LockSupport.parkNanos(100_000L);
+            ahora = reloj.getAsLong() - EPOCH_MS;
+        }
+        return ahora;
+    }
+
+    /**
+     * Garantiza que los siguientes ids sean mayores que {@code idExistente}
+     * (p. ej. el maximo ya guardado), aunque el reloj vaya por detras tras un
+     * reinicio: el generador sigue desde el milisegundo siguiente al suyo.
+     */
+    public static void avanzarHasta(long idExistente) {
+        GLOBAL.avanzar(idExistente);
+    }
+
+    void avanzar(long idExistente) {
+        if (idExistente <= 0) {
+            return;
+        }
+        long minimo = ((idExistente >>> (BITS_NODO + BITS_SECUENCIA)) << BITS_SECUENCIA) | MASCARA_SECUENCIA;
+        ultimo.accumulateAndGet(minimo, Math::max);
+    }
+
+    /**
+     * Nodo de este proceso (para diagnosticos).
+     */
+    public static long nodo() {
+        return NODO;
+    }
+
+    // Como mucho un aviso cada 10 s para no inundar el log.
+    private static void avisarDesfase(long desfaseMs) {
+        long ahora = System.currentTimeMillis();
+        long ultimo = ULTIMO_AVISO.get();
+        if (ahora - ultimo >= 10_000L && ULTIMO_AVISO.compareAndSet(ultimo, ahora)) {
+            System.err.println("SnowflakeIdGenerator: reloj " + desfaseMs
+                    + " ms por detras del ultimo id emitido (reloj atrasado o mas de "
+                    + (MASCARA_SECUENCIA + 1) + " ids/ms)");
+        }
+    }
+
+    /**
+     * Nodo desde {@code ID_NODE}; si no esta definido se deriva del hostname,
+     * lo que no evita colisiones entre replicas.
+     */
+    private static long resolverNodo() {
+        String valor = System.getenv("ID_NODE");
+        if (valor != null && !valor.isBlank()) {
+            try {
+                long nodo = Long.parseLong(valor.trim());
+                if (nodo >= 0 && nodo <= MAX_NODO) {
+                    return nodo;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            System.err.println("ID_NODE invalido (0-" + MAX_NODO + "): " + valor + ", se usara el hostname");
+        }
+        System.err.println("ID_NODE no definido: se deriva del hostname. Con mas de una instancia"
+                + " cada una necesita su propio ID_NODE (0-" + MAX_NODO + ") o los ids pueden repetirse.");
+        try {
+            return InetAddress.getLocalHost().getHostName().hashCode() & MAX_NODO;
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.mycompany.delivery.api.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen Space-Saving (Metwally et al.) con pesos: sigue como mucho
+ * {@code capacidad} elementos con su cuenta y el error con que entraron. Cuando
+ * llega un elemento no seguido y no hay sitio, reemplaza al de menor cuenta y
+ * hereda esa cuenta como error.
+ *
+ * <p>Garantias, con N = suma de pesos y m = capacidad:
+ * <ul>
+ * <li>la cuenta de un elemento seguido nunca es menor que la real y la excede
+ * como mucho en su {@code error}, que es a lo sumo N/m;</li>
+ * <li>un elemento no seguido tiene cuenta real no mayor que {@link #minimo()};</li>
+ * <li>todo elemento con cuenta real mayor que N/m esta seguido.</li>
+ * </ul>
+ *
+ * Los contadores viven en un monticulo minimo indexado (arreglos paralelos mas
+ * un mapa elemento a posicion): actualizar cuesta O(log m). No es seguro para
+ * hilos; quien lo usa sincroniza.
+ */
+public final class SpaceSaving {
+
+    private final int capacidad;
+    private final int[] elementos;
+    private final long[] cuentas;
+    private final long[] errores;
+    private final Map<Integer, Integer> posiciones;
+    private int tamano;
+    private long total;
+    // Cota de la cuenta real de los elementos no seguidos cuando el resumen
+    // viene de una fusion o de cuentas exactas recortadas y no esta lleno.
+    private long piso;
+
+    /**
+     * Elemento con su cuenta estimada y el maximo en que puede exceder a la real.
+     */
+    public record Conteo(int elemento, long cuenta, long error) {
+
+        public long garantizado() {
+            return cuenta - error;
+        }
+    }
+
+    public SpaceSaving(int capacidad) {
+        if (capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.capacidad = capacidad;
+        this.elementos = new int[capacidad];
+        this.cuentas = new long[capacidad];
+        this.errores = new long[capacidad];
+        this.posiciones = new HashMap<>(capacidad * 2);
+    }
+
+    /**
+     * Resumen con cuentas exactas (error 0) de los {@code capacidad} elementos
+     * con mas peso de {@code exactos}; los que quedan fuera tienen cuenta real
+     * no mayor que la del menor seguido, asi que las garantias se mantienen.
+     */
+    public static SpaceSaving desdeExactos(int capacidad, Map<Integer, Long> exactos) {
+        SpaceSaving s = new SpaceSaving(capacidad);
+        exactos.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .limit(capacidad)
+                .forEach(e -> s.insertar(e.getKey(), e.getValue(), 0L));
+        s.total = exactos.values().stream().mapToLong(Long::longValue).sum();
+        s.piso = exactos.size() > capacidad ? s.cuentas[0] : 0L;
+        return s;
+    }
+
+    /**
+     * Une varios resumenes (por ejemplo, uno por dia) en uno de
+     * {@code capacidad} contadores. Donde un elemento no esta seguido, su
+     * cuenta pudo llegar hasta el {@link #minimo()} de ese resumen: se suma
+     * ese minimo a su cuenta y a su error, como en los resumenes fusionables
+     * de Agarwal et al.
+     */
+    public static SpaceSaving fusionar(List<SpaceSaving> resumenes, int capacidad) {
+        // Por elemento: suma de (cuenta - minimo) y (error - minimo) de los
+        // resumenes que lo siguen; al final se suma el total de minimos.
+        Map<Integer, long[]> union = new HashMap<>();
+        long minimos = 0;
+        long total = 0;
+        for (SpaceSaving r : resumenes) {
+            long min = r.minimo();
+            minimos += min;
+            total += r.total;
+            for (int i = 0; i < r.tamano; i++) {
+                long[] v = union.computeIfAbsent(r.elementos[i], k -> new long[2]);
+                v[0] += r.cuentas[i] - min;
+                v[1] += r.errores[i] - min;
+            }
+        }
+        List<Map.Entry<Integer, long[]>> orden = new ArrayList<>(union.entrySet());
+        orden.sort(Comparator.comparingLong((Map.Entry<Integer, long[]> e) -> e.getValue()[0]).reversed());
+        SpaceSaving s = new SpaceSaving(capacidad);
+        for (Map.Entry<Integer, long[]> e : orden.subList(0, Math.min(capacidad, orden.size()))) {
+            s.insertar(e.getKey(), e.getValue()[0] + minimos, e.getValue()[1] + minimos);
+        }
+        // Un elemento que no sigue ninguno pudo sumar hasta todos los minimos.
+        s.piso = minimos;
+        s.total = total;
+        return s;
+    }
+
+    public void agregar(int elemento, long peso) {
+        if (peso <= 0) {
+            return;
+        }
+        total += peso;
+        Integer p = posiciones.get(elemento);
+        if (p != null) {
+            cuentas[p] += peso;
+            bajar(p);
+        } else if (tamano < capacidad) {
+            insertar(elemento, piso + peso, piso);
+        } else {
+            // Reemplaza al de menor cuenta (la raiz) y hereda su cuenta como error.
+            long minimo = Math.max(piso, cuentas[0]);
+            posiciones.remove(elementos[0]);
+            elementos[0] = elemento;
+            cuentas[0] = minimo + peso;
+            errores[0] = minimo;
+            posiciones.put(elemento, 0);
+            bajar(0);
+        }
+    }
+
+    /**
+     * Los {@code k} elementos de mayor cuenta, de mayor a menor.
+     */
+    public List<Conteo> top(int k) {
+        List<Conteo> todos = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            todos.add(new Conteo(elementos[i], cuentas[i], errores[i]));
+        }
+        todos.sort(Comparator.comparingLong(Conteo::cuenta).reversed()
+                .thenComparingInt(Conteo::elemento));
+        return todos.subList(0, Math.min(Math.max(0, k), todos.size()));
+    }
+
+    /**
+     * Cota superior de la cuenta real de cualquier elemento no seguido: la
+     * menor cuenta si el resumen esta lleno.
+     */
+    public long minimo() {
+        return tamano < capacidad ? piso : Math.max(piso, cuentas[0]);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public int capacidad() {
+        return capacidad;
+    }
+
+    // ===============================
+    // MONTICULO MINIMO INDEXADO
+    // ===============================
+
+    private void insertar(int elemento, long cuenta, long error) {
+        int i = tamano++;
+        elementos[i] = elemento;
+        cuentas[i] = cuenta;
+        errores[i] = error;
+        posiciones.put(elemento, i);
+        subir(i);
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (cuentas[padre] <= cuentas[i]) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            int izq = 2 * i + 1;
+            int der = izq + 1;
+            if (izq < tamano && cuentas[izq] < cuentas[menor]) {
+                menor = izq;
+            }
+            if (der < tamano && cuentas[der] < cuentas[menor]) {
+                menor = der;
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        int e = elementos[a];
+        long c = cuentas[a];
+        long r = errores[a];
+        elementos[a] = elementos[b];
+        cuentas[a] = cuentas[b];
+        errores[a] = errores[b];
+        elementos[b] = e;
+        cuentas[b] = c;
+        errores[b] = r;
+        posiciones.put(elementos[a], a);
+        posiciones.put(elementos[b], b);
+    }
+}
@@ -0,0 +1,12 @@
+-- Version de los recursos que se sirven con ETag (ver ResourceVersions). Las
+-- escrituras la incrementan en su misma transaccion, asi que todas las
+-- instancias calculan el mismo ETag para los mismos datos.
+CREATE TABLE IF NOT EXISTS versiones_recurso (
+    recurso VARCHAR(40) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 1,
+    actualizado_en TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+INSERT INTO versiones_recurso (recurso)
+VALUES ('productos'), ('categorias'), ('recomendaciones')
+ON CONFLICT (recurso) DO NOTHING;
@@ -0,0 +1,29 @@
+-- Esquema del chat (antes se creaba en el constructor de ChatRepository).
+CREATE TABLE IF NOT EXISTS chat_conversaciones (
+    id_conversacion BIGINT PRIMARY KEY,
+    id_pedido INT REFERENCES pedidos(id_pedido) ON DELETE SET NULL,
+    id_cliente INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
+    id_delivery INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
+    id_admin_soporte INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
+    canal VARCHAR(50),
+    es_chatbot BOOLEAN NOT NULL DEFAULT FALSE,
+    activa BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE TABLE IF NOT EXISTS chat_mensajes (
+    id_mensaje SERIAL PRIMARY KEY,
+    id_conversacion BIGINT NOT NULL REFERENCES chat_conversaciones(id_conversacion) ON DELETE CASCADE,
+    id_remitente INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
+    id_destinatario INT REFERENCES usuarios(id_usuario) ON DELETE SET NULL,
+    tipo VARCHAR(20) NOT NULL DEFAULT 'texto',
+    mensaje TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_chatconv_cliente ON chat_conversaciones(id_cliente);
+CREATE INDEX IF NOT EXISTS idx_chatconv_delivery ON chat_conversaciones(id_delivery);
+CREATE INDEX IF NOT EXISTS idx_chatconv_pedido ON chat_conversaciones(id_pedido);
+CREATE INDEX IF NOT EXISTS idx_chatmsg_conv ON chat_mensajes(id_conversacion, created_at);
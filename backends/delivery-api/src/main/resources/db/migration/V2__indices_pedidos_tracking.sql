@@ -0,0 +1,8 @@
+-- Historial del cliente: WHERE id_cliente = ? ORDER BY created_at DESC
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_pedidos_cliente_fecha ON pedidos(id_cliente, created_at);
+
+-- Pedidos asignados a un repartidor, filtrados por estado.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_pedidos_delivery_estado ON pedidos(id_delivery, estado);
+
+-- Ruta de un pedido: WHERE id_pedido = ? ORDER BY registrado_en
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tracking_pedido_fecha ON tracking_ruta(id_pedido, registrado_en);
@@ -0,0 +1,5 @@
+-- Conversacion activa / historial del usuario: WHERE id_usuario = ? ORDER BY updated_at DESC
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_soporteconv_usuario ON soporte_conversaciones(id_usuario, updated_at);
+
+-- Mensajes de un ticket: WHERE id_soporte_conv = ? ORDER BY created_at
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_soportemsg_conv ON soporte_mensajes(id_soporte_conv, created_at);
@@ -0,0 +1,3 @@
+-- Reconciliacion de la bandeja de soporte: conversaciones no cerradas.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_soporteconv_abiertas ON soporte_conversaciones(created_at)
+    WHERE estado <> 'cerrada';
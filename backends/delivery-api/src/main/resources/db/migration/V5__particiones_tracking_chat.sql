@@ -0,0 +1,89 @@
+-- Particionado mensual por rango de tracking_ruta (registrado_en) y
+-- chat_mensajes (created_at). La tabla existente se renombra a <tabla>_historico
+-- y se adjunta tal cual como la particion que cubre todo lo anterior al mes
+-- siguiente, sin copiar filas. Las particiones mensuales futuras y la
+-- retencion las gestiona PartitionManager en la aplicacion.
+--
+-- La llave primaria pasa a (id, columna de fecha) porque en una tabla
+-- particionada debe incluir la llave de particion; los ids siguen saliendo de
+-- la misma secuencia. Adjuntar valida la particion historica con un recorrido
+-- completo.
+
+DO $$
+DECLARE
+    corte DATE := (date_trunc('month', now()) + INTERVAL '1 month')::date;
+    t RECORD;
+    historico TEXT;
+    esquema TEXT;
+    secuencia TEXT;
+    r RECORD;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES ('tracking_ruta', 'registrado_en', 'id_tracking'),
+                                   ('chat_mensajes', 'created_at', 'id_mensaje')) AS v(tabla, columna, id)
+    LOOP
+        IF to_regclass(t.tabla) IS NULL
+                OR EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(t.tabla)) THEN
+            CONTINUE;
+        END IF;
+        historico := t.tabla || '_historico';
+        SELECT n.nspname INTO esquema
+        FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+        WHERE c.oid = to_regclass(t.tabla);
+
+        EXECUTE format('UPDATE %I SET %I = now() WHERE %I IS NULL', t.tabla, t.columna, t.columna);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I SET NOT NULL', t.tabla, t.columna);
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', t.tabla, historico);
+
+        -- La llave primaria antigua (solo id) no puede convivir con la de la
+        -- padre; al adjuntar se construye la nueva sobre (id, fecha).
+        FOR r IN SELECT conname FROM pg_constraint
+                 WHERE conrelid = format('%I.%I', esquema, historico)::regclass AND contype = 'p'
+        LOOP
+            EXECUTE format('ALTER TABLE %I.%I DROP CONSTRAINT %I', esquema, historico, r.conname);
+        END LOOP;
+
+        EXECUTE format('CREATE TABLE %I.%I (LIKE %I.%I INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING STORAGE)'
+                       ' PARTITION BY RANGE (%I)', esquema, t.tabla, esquema, historico, t.columna);
+        EXECUTE format('ALTER TABLE %I.%I ADD PRIMARY KEY (%I, %I)', esquema, t.tabla, t.id, t.columna);
+
+        secuencia := pg_get_serial_sequence(format('%I.%I', esquema, historico), t.id);
+        IF secuencia IS NOT NULL THEN
+            EXECUTE format('ALTER SEQUENCE %s OWNED BY %I.%I.%I', secuencia, esquema, t.tabla, t.id);
+        END IF;
+
+        -- Llaves foraneas y los indices no unicos de la tabla original, ahora en
+        -- la padre. Al adjuntar, PostgreSQL reutiliza los equivalentes de la
+        -- particion historica en lugar de volver a construirlos.
+        FOR r IN SELECT conname, pg_get_constraintdef(oid) AS def
+                 FROM pg_constraint
+                 WHERE conrelid = format('%I.%I', esquema, historico)::regclass AND contype = 'f'
+        LOOP
+            EXECUTE format('ALTER TABLE %I.%I ADD CONSTRAINT %I %s', esquema, t.tabla, r.conname, r.def);
+        END LOOP;
+        FOR r IN SELECT c.relname AS nombre, pg_get_indexdef(i.indexrelid) AS def
+                 FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                 WHERE i.indrelid = format('%I.%I', esquema, historico)::regclass AND NOT i.indisunique
+        LOOP
+            EXECUTE replace(replace(r.def,
+                    'INDEX ' || quote_ident(r.nombre) || ' ON ',
+                    'INDEX ' || quote_ident(r.nombre || '_part') || ' ON ONLY '),
+                    ' ON ONLY ' || quote_ident(esquema) || '.' || quote_ident(historico) || ' ',
+                    ' ON ONLY ' || quote_ident(esquema) || '.' || quote_ident(t.tabla) || ' ');
+        END LOOP;
+
+        EXECUTE format('ALTER TABLE %I.%I ATTACH PARTITION %I.%I FOR VALUES FROM (MINVALUE) TO (%L)',
+                       esquema, t.tabla, esquema, historico, corte);
+        FOR r IN SELECT c.relname AS nombre, p.relname AS padre
+                 FROM pg_index i
+                 JOIN pg_class c ON c.oid = i.indexrelid
+                 JOIN pg_class p ON p.relname = c.relname || '_part' AND p.relnamespace = c.relnamespace
+                 WHERE i.indrelid = format('%I.%I', esquema, historico)::regclass AND NOT i.indisunique
+        LOOP
+            EXECUTE format('ALTER INDEX %I.%I ATTACH PARTITION %I.%I', esquema, r.padre, esquema, r.nombre);
+        END LOOP;
+
+        -- Red de seguridad para fechas fuera de las particiones creadas; en
+        -- operacion normal queda vacia.
+        EXECUTE format('CREATE TABLE %I.%I PARTITION OF %I.%I DEFAULT', esquema, t.tabla || '_default', esquema, t.tabla);
+    END LOOP;
+END $$;
@@ -0,0 +1,20 @@
+-- Indice del archivo frio: donde quedo la ruta y el chat de cada pedido
+-- archivado (segmento, desplazamiento y longitud del bloque comprimido).
+CREATE TABLE IF NOT EXISTS pedidos_archivados (
+    id_pedido INT PRIMARY KEY REFERENCES pedidos(id_pedido) ON DELETE CASCADE,
+    id_conversacion BIGINT,
+    segmento VARCHAR(200) NOT NULL,
+    desplazamiento BIGINT NOT NULL,
+    longitud INT NOT NULL,
+    crc32 BIGINT NOT NULL,
+    puntos INT NOT NULL,
+    mensajes INT NOT NULL,
+    archivado_en TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+-- Respaldo de listarMensajes: WHERE id_conversacion = ?
+CREATE INDEX IF NOT EXISTS idx_pedarch_conversacion ON pedidos_archivados(id_conversacion);
+
+-- Candidatos del archivador: pedidos cerrados por antiguedad.
+CREATE INDEX IF NOT EXISTS idx_pedidos_cerrados ON pedidos(updated_at)
+    WHERE estado IN ('entregado', 'cancelado');
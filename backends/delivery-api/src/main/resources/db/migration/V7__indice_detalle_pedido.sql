@@ -0,0 +1,5 @@
+-- Detalle de un pedido: WHERE id_pedido = ? (y por rangos de id en la carga
+-- de la analitica de ventas, que deduce el negocio de sus productos).
+-- detalle_pedidos recibe escrituras con cada pedido: el indice se construye sin
+-- bloquearlas, fuera de transaccion y sin statement_timeout (ver SchemaMigrator).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_detalle_pedido ON detalle_pedidos(id_pedido);
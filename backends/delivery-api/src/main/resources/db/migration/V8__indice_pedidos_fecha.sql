@@ -0,0 +1,5 @@
+-- Ventanas por fecha de creacion (reconciliacion de los mas vendidos por dia y
+-- sus pedidos recientes): WHERE created_at >= ?
+-- pedidos recibe escrituras continuas: el indice se construye sin bloquearlas,
+-- fuera de transaccion y sin statement_timeout (ver SchemaMigrator).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_pedidos_fecha ON pedidos(created_at);
@@ -0,0 +1,18 @@
+-- Sketches HyperLogLog de usuarios activos por hora y por dia (ver
+-- ActividadUsuarios). Cada nodo guarda los suyos; el total de un intervalo es
+-- la union de los sketches de todos los nodos.
+CREATE TABLE IF NOT EXISTS metricas_hll (
+    metrica VARCHAR(40) NOT NULL,
+    id_negocio INT NOT NULL DEFAULT 0,
+    granularidad VARCHAR(4) NOT NULL,
+    inicio TIMESTAMP NOT NULL,
+    nodo VARCHAR(100) NOT NULL,
+    precision SMALLINT NOT NULL,
+    registros BYTEA NOT NULL,
+    actualizado_en TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (metrica, id_negocio, granularidad, inicio, nodo)
+);
+
+-- Lectura incremental de lo que escribieron los otros nodos:
+-- WHERE actualizado_en >= ?
+CREATE INDEX IF NOT EXISTS idx_metricas_hll_actualizado ON metricas_hll(actualizado_en);
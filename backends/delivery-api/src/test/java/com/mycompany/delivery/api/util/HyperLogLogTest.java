@@ -0,0 +1,151 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    // La que usa ActividadUsuarios por defecto (HLL_PRECISION).
+    private static final int PRECISION = 14;
+
+    @Test
+    void errorDentroDeLaCotaDeLaPrecision() {
+        double sigma = HyperLogLog.errorEstandar(PRECISION);
+        assertEquals(0.0081, sigma, 0.0001);
+
+        // Cada estimacion dentro de 3 sigma, en rango bajo (conteo lineal) y alto.
+        for (int n : new int[] { 100, 1_000, 10_000, 100_000, 1_000_000 }) {
+            HyperLogLog h = new HyperLogLog(PRECISION);
+            for (int i = 1; i <= n; i++) {
+                h.agregar(i);
+            }
+            double relativo = Math.abs(h.estimar() - n) / (double) n;
+            assertTrue(relativo <= 3 * sigma, "n=" + n + " estimado=" + h.estimar());
+        }
+
+        // Sobre conjuntos disjuntos, el error cuadratico medio ronda sigma.
+        double cuadrados = 0;
+        int conjuntos = 40;
+        int n = 50_000;
+        for (int c = 0; c < conjuntos; c++) {
+            HyperLogLog h = new HyperLogLog(PRECISION);
+            for (int i = 0; i < n; i++) {
+                h.agregar((long) c * n + i);
+            }
+            double relativo = (h.estimar() - n) / (double) n;
+            cuadrados += relativo * relativo;
+        }
+        double rms = Math.sqrt(cuadrados / conjuntos);
+        assertTrue(rms <= 1.5 * sigma, "error cuadratico medio " + rms + " frente a " + sigma);
+    }
+
+    @Test
+    void repetirUnElementoNoCambiaNada() {
+        HyperLogLog h = new HyperLogLog(PRECISION);
+        assertTrue(h.vacio());
+        assertTrue(h.agregar(42));
+        assertFalse(h.agregar(42));
+        assertEquals(1, h.estimar());
+    }
+
+    @Test
+    void unirEsIdempotenteYEsLaUnionDeConjuntos() {
+        // Un sketch disperso y uno denso que se solapan en [5000, 8000).
+        HyperLogLog disperso = sketch(5_000, 8_000);
+        HyperLogLog denso = sketch(0, 8_000);
+        HyperLogLog directo = sketch(0, 8_000);
+
+        HyperLogLog union = disperso.copia();
+        union.unir(denso);
+        long estimado = union.estimar();
+        byte[] bytes = union.serializar();
+        assertEquals(directo.estimar(), estimado);
+
+        union.unir(denso);
+        union.unir(disperso);
+        union.unir(union.copia());
+        assertEquals(estimado, union.estimar());
+        assertArrayEquals(bytes, union.serializar());
+
+        // En el otro orden y releyendo de la base se llega al mismo sketch.
+        HyperLogLog inversa = denso.copia();
+        inversa.unir(disperso);
+        inversa.unir(HyperLogLog.deserializar(disperso.serializar()));
+        assertArrayEquals(bytes, inversa.serializar());
+
+        // Dos dispersos siguen dispersos y dan lo mismo que el conjunto union.
+        HyperLogLog a = sketch(0, 300);
+        a.unir(sketch(200, 500));
+        a.unir(sketch(200, 500));
+        assertArrayEquals(sketch(0, 500).serializar(), a.serializar());
+
+        assertThrows(IllegalArgumentException.class, () -> a.unir(new HyperLogLog(PRECISION - 1)));
+    }
+
+    @Test
+    void serializarYDeserializarConservanElSketch() {
+        for (int n : new int[] { 0, 1, 300, 50_000 }) {
+            HyperLogLog h = sketch(0, n);
+            byte[] bytes = h.serializar();
+            HyperLogLog leido = HyperLogLog.deserializar(bytes);
+            assertEquals(PRECISION, leido.precision());
+            assertEquals(h.estimar(), leido.estimar(), "n=" + n);
+            assertArrayEquals(bytes, leido.serializar(), "n=" + n);
+            // Sigue sumando sobre lo leido sin contar dos veces lo que ya estaba.
+            assertFalse(n > 0 && leido.agregar(n - 1));
+        }
+        // El disperso ocupa unos bytes; el denso, 6 bits por registro.
+        assertTrue(sketch(0, 10).serializar().length < 40);
+        assertEquals(3 + (1 << PRECISION) / 4 * 3, sketch(0, 50_000).serializar().length);
+    }
+
+    @Test
+    void rechazaDatosCorruptos() {
+        byte[] disperso = sketch(0, 300).serializar();
+        byte[] denso = sketch(0, 50_000).serializar();
+
+        corrupto(null);
+        corrupto(new byte[0]);
+        corrupto(new byte[] { 1, PRECISION });
+        corrupto(con(disperso, 0, (byte) 9)); // version
+        corrupto(con(disperso, 1, (byte) 3)); // precision fuera de rango
+        corrupto(con(disperso, 1, (byte) 40));
+        corrupto(con(disperso, 2, (byte) 7)); // forma desconocida
+        corrupto(Arrays.copyOf(disperso, disperso.length - 1));
+        corrupto(Arrays.copyOf(disperso, disperso.length + 2));
+        corrupto(Arrays.copyOf(denso, denso.length - 3));
+        corrupto(Arrays.copyOf(denso, denso.length + 1));
+        // Registro denso con rango 63, mayor que el maximo posible (51).
+        corrupto(con(denso, 3, (byte) 0xfc));
+        // Disperso: rango 0, indice fuera de rango y varint sin fin.
+        corrupto(new byte[] { 1, PRECISION, 0, 1, 5, 0 });
+        corrupto(new byte[] { 1, PRECISION, 0, 1, (byte) 0x80, (byte) 0x80, 0x01, 1 });
+        corrupto(new byte[] { 1, PRECISION, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1 });
+    }
+
+    private static HyperLogLog sketch(int desde, int hasta) {
+        HyperLogLog h = new HyperLogLog(PRECISION);
+        for (int i = desde; i < hasta; i++) {
+            h.agregar(i);
+        }
+        return h;
+    }
+
+    private static byte[] con(byte[] datos, int posicion, byte valor) {
+        byte[] copia = datos.clone();
+        copia[posicion] = valor;
+        return copia;
+    }
+
+    private static void corrupto(byte[] datos) {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserializar(datos),
+                datos == null ? "null" : Arrays.toString(Arrays.copyOf(datos, Math.min(datos.length, 12))));
+    }
+}
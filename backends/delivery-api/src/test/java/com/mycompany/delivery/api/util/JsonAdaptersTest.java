@@ -0,0 +1,62 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.mycompany.delivery.api.model.ChatConversacion;
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.PedidoVista;
+import com.mycompany.delivery.api.model.SoporteConversacion;
+import com.mycompany.delivery.api.model.SoporteMensaje;
+import com.mycompany.delivery.api.model.TrackingEvento;
+import com.mycompany.delivery.api.model.UsuarioVista;
+
+class JsonAdaptersTest {
+
+    private static final Gson GSON = JsonAdapters.crearGson();
+    // Sin milisegundos: el formato por defecto de Timestamp en Gson los descarta.
+    private static final Timestamp FECHA = Timestamp.from(Instant.parse("2026-03-01T12:30:15Z"));
+
+    @Test
+    void losRecordsSeLeenComoSeEscribieron() {
+        ida(new ChatMensaje(1L << 20, 42L << 14, 10, null, "Hola", FECHA, "Ana", true), ChatMensaje.class);
+        ida(new ChatConversacion(99L, 5, 10, null, 12, false, FECHA, null), ChatConversacion.class);
+        ida(new SoporteMensaje(7L, 3L, null, true, "texto", "En camino", FECHA), SoporteMensaje.class);
+        ida(new SoporteConversacion(3L, "abierta", 12L, "app", 2, true, FECHA, null), SoporteConversacion.class);
+        ida(new UsuarioVista(11, "Negocio", "n@x.com", null, "negocio", true, null), UsuarioVista.class);
+        ida(new PedidoVista(
+                new PedidoVista.Cabecera(8, 1, null, 4, FECHA, FECHA, "pendiente", 12.5, "Av. Amazonas",
+                        "efectivo", null, "-0.18,-78.48"),
+                List.of(new PedidoVista.Linea(1, 20, 2, 6.25, 12.5, "Pizza", null))), PedidoVista.class);
+    }
+
+    @Test
+    void trackingEventoConservaLaFechaYOmiteLaDescripcionVacia() {
+        TrackingEvento e = new TrackingEvento();
+        e.setIdPedido(8);
+        e.setOrden(3);
+        e.setLatitud(-0.18);
+        e.setLongitud(-78.48);
+        e.setDescripcion(" ");
+        e.setFechaEvento(OffsetDateTime.parse("2026-03-01T12:30:15-05:00"));
+
+        TrackingEvento leido = GSON.fromJson(GSON.toJson(e), TrackingEvento.class);
+        assertEquals(8, leido.getIdPedido());
+        assertEquals(3, leido.getOrden());
+        assertEquals(-78.48, leido.getLongitud());
+        assertNull(leido.getDescripcion());
+        assertEquals(e.getFechaEvento(), leido.getFechaEvento());
+    }
+
+    private static <T> void ida(T valor, Class<T> tipo) {
+        assertEquals(valor, GSON.fromJson(GSON.toJson(valor), tipo));
+    }
+}
@@ -0,0 +1,82 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.delivery.api.model.LoteTracking;
+
+class LoteTrackingReaderTest {
+
+    @Test
+    void leeLoteValidoConAmbosFormatosDeInstante() {
+        LoteTracking lote = leer("""
+                {"idRepartidor": 7, "extra": {"a": [1, 2]},
+                 "puntos": [
+                   {"latitud": -0.18, "longitud": -78.46, "timestamp": 1760865600000},
+                   {"lat": "-0.19", "lng": -78.47, "registrado_en": "2025-10-19T09:20:00Z"},
+                   {"latitud": -0.2, "longitud": -78.48}
+                 ]}
+                """, 10);
+        assertEquals(7, lote.getIdRepartidor());
+        assertEquals(3, lote.tamano());
+        assertEquals(-0.18, lote.latitud(0));
+        assertEquals(1760865600000L, lote.instante(0));
+        assertEquals(-0.19, lote.latitud(1));
+        assertEquals(1760865600000L, lote.instante(1));
+        assertEquals(LoteTrackingReader.SIN_INSTANTE, lote.instante(2));
+    }
+
+    @Test
+    void puntoIlegibleSeConservaMarcadoSinRechazarElLote() {
+        LoteTracking lote = leer("""
+                {"idRepartidor": null, "puntos": [
+                  {"latitud": "norte", "longitud": true, "timestamp": "ayer"},
+                  {"latitud": 1, "longitud": 2, "timestamp": {"ms": 5}}
+                ]}
+                """, 10);
+        assertNull(lote.getIdRepartidor());
+        assertEquals(2, lote.tamano());
+        assertTrue(Double.isNaN(lote.latitud(0)));
+        assertTrue(Double.isNaN(lote.longitud(0)));
+        assertEquals(LoteTrackingReader.INSTANTE_INVALIDO, lote.instante(0));
+        assertEquals(LoteTrackingReader.INSTANTE_INVALIDO, lote.instante(1));
+    }
+
+    @Test
+    void jsonMalFormadoEsUn400() {
+        for (String cuerpo : new String[] {
+                "",
+                "[]",
+                "{\"puntos\": {\"latitud\": 1}}",
+                "{\"puntos\": [{\"latitud\": 1, \"longitud\": 2}",
+                "{\"idRepartidor\": \"siete\", \"puntos\": []}",
+                "{\"puntos\": [1, 2]}" }) {
+            ApiException e = assertThrows(ApiException.class, () -> leer(cuerpo, 10), cuerpo);
+            assertEquals(400, e.getStatus(), cuerpo);
+        }
+    }
+
+    @Test
+    void loteDemasiadoGrandeEsUn413() {
+        StringBuilder json = new StringBuilder("{\"idRepartidor\": 7, \"puntos\": [");
+        for (int i = 0; i < 6; i++) {
+            json.append(i > 0 ? "," : "").append("{\"latitud\": 1, \"longitud\": 2}");
+        }
+        json.append("]}");
+
+        assertEquals(5, leer(json.toString().replace(",{\"latitud\": 1, \"longitud\": 2}]", "]"), 5).tamano());
+        ApiException e = assertThrows(ApiException.class, () -> leer(json.toString(), 5));
+        assertEquals(413, e.getStatus());
+    }
+
+    private static LoteTracking leer(String json, int maxPuntos) {
+        return LoteTrackingReader.leer(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), maxPuntos);
+    }
+}
@@ -0,0 +1,145 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mycompany.delivery.api.model.ChatMensaje;
+import com.mycompany.delivery.api.model.PedidoArchivado;
+import com.mycompany.delivery.api.util.SegmentoArchivo.Entrada;
+
+class SegmentoArchivoTest {
+
+    private static final long T0 = 1_760_865_600_000_000L; // 2025-10-19T09:20:00Z en microsegundos
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cadaPedidoSeLeeDesdeSuDesplazamiento() throws IOException {
+        List<PedidoArchivado> pedidos = List.of(pedido(101, 300L, 40, 3), pedido(102, null, 0, 0),
+                pedido(103, 301L, 5, 12));
+        Path segmento = escribir("a.seg", pedidos);
+
+        List<Entrada> indice = SegmentoArchivo.indice(segmento);
+        assertEquals(3, indice.size());
+        assertEquals(8, indice.get(0).desplazamiento(), "el primer bloque va tras la cabecera");
+        for (int i = 1; i < indice.size(); i++) {
+            Entrada previa = indice.get(i - 1);
+            assertEquals(previa.desplazamiento() + previa.longitud(), indice.get(i).desplazamiento());
+        }
+
+        // En orden inverso: cada lectura es posicional e independiente.
+        for (int i = indice.size() - 1; i >= 0; i--) {
+            Entrada e = indice.get(i);
+            PedidoArchivado esperado = pedidos.get(i);
+            PedidoArchivado leido = SegmentoArchivo.leer(segmento, e.desplazamiento(), e.longitud(), e.crc32());
+            assertEquals(esperado.idPedido(), e.idPedido());
+            assertEquals(esperado.idPedido(), leido.idPedido());
+            assertEquals(esperado.idConversacion(), leido.idConversacion());
+            assertArrayEquals(esperado.latitudes(), leido.latitudes(), 1e-7);
+            assertArrayEquals(esperado.longitudes(), leido.longitudes(), 1e-7);
+            assertArrayEquals(esperado.instantes(), leido.instantes());
+            assertEquals(esperado.mensajes(), leido.mensajes());
+        }
+    }
+
+    @Test
+    void elSegmentoSoloApareceAlCerrar() throws IOException {
+        Path destino = dir.resolve("b.seg");
+        try (SegmentoArchivo.Escritor escritor = new SegmentoArchivo.Escritor(destino)) {
+            escritor.agregar(pedido(1, 9L, 3, 1));
+            assertFalse(Files.exists(destino));
+        }
+        assertFalse(Files.exists(destino), "sin cerrar() no se publica");
+        assertFalse(Files.exists(dir.resolve("b.seg.tmp")));
+    }
+
+    @Test
+    void rechazaUnSegmentoTruncado() throws IOException {
+        Path segmento = escribir("c.seg", List.of(pedido(201, 400L, 30, 4), pedido(202, 401L, 30, 4)));
+        Entrada ultima = SegmentoArchivo.indice(segmento).get(1);
+
+        // Cortado a mitad del ultimo bloque: se pierde tambien el indice de la cola.
+        try (RandomAccessFile f = new RandomAccessFile(segmento.toFile(), "rw")) {
+            f.setLength(ultima.desplazamiento() + ultima.longitud() / 2);
+        }
+        assertThrows(IOException.class, () -> SegmentoArchivo.indice(segmento));
+        IOException e = assertThrows(IOException.class,
+                () -> SegmentoArchivo.leer(segmento, ultima.desplazamiento(), ultima.longitud(), ultima.crc32()));
+        assertTrue(e.getMessage().contains("truncado"), e.getMessage());
+
+        try (RandomAccessFile f = new RandomAccessFile(segmento.toFile(), "rw")) {
+            f.setLength(10);
+        }
+        assertThrows(IOException.class, () -> SegmentoArchivo.indice(segmento));
+    }
+
+    @Test
+    void rechazaUnBloqueCorrupto() throws IOException {
+        Path segmento = escribir("d.seg", List.of(pedido(301, 500L, 20, 2)));
+        Entrada e = SegmentoArchivo.indice(segmento).get(0);
+        try (RandomAccessFile f = new RandomAccessFile(segmento.toFile(), "rw")) {
+            long medio = e.desplazamiento() + e.longitud() / 2;
+            f.seek(medio);
+            int b = f.read();
+            f.seek(medio);
+            f.write(b ^ 0xFF);
+        }
+        assertThrows(IOException.class,
+                () -> SegmentoArchivo.leer(segmento, e.desplazamiento(), e.longitud(), e.crc32()));
+    }
+
+    @Test
+    void conversacionNulaYTextosNulos() throws IOException {
+        ChatMensaje sinTexto = new ChatMensaje(77L, 0L, 5, null, null, SegmentoArchivo.timestamp(T0), null, false);
+        PedidoArchivado p = new PedidoArchivado(9, null, new double[0], new double[0], new long[0],
+                List.of(sinTexto));
+        Path segmento = escribir("e.seg", List.of(p));
+        Entrada e = SegmentoArchivo.indice(segmento).get(0);
+        PedidoArchivado leido = SegmentoArchivo.leer(segmento, e.desplazamiento(), e.longitud(), e.crc32());
+        assertNull(leido.idConversacion());
+        assertEquals(List.of(sinTexto), leido.mensajes());
+    }
+
+    private Path escribir(String nombre, List<PedidoArchivado> pedidos) throws IOException {
+        try (SegmentoArchivo.Escritor escritor = new SegmentoArchivo.Escritor(dir.resolve(nombre))) {
+            for (PedidoArchivado p : pedidos) {
+                escritor.agregar(p);
+            }
+            return escritor.cerrar();
+        }
+    }
+
+    private static PedidoArchivado pedido(int id, Long conversacion, int puntos, int mensajes) {
+        double[] lat = new double[puntos];
+        double[] lng = new double[puntos];
+        long[] t = new long[puntos];
+        for (int i = 0; i < puntos; i++) {
+            lat[i] = -0.18 - i * 0.000137;
+            lng[i] = -78.46 + i * 0.000211;
+            t[i] = T0 + i * 4_000_123L;
+        }
+        List<ChatMensaje> lista = new ArrayList<>();
+        for (int i = 0; i < mensajes; i++) {
+            Timestamp creado = SegmentoArchivo.timestamp(T0 + i * 61_000_007L);
+            lista.add(new ChatMensaje((id * 1000L + i) << 14, conversacion == null ? 0 : conversacion, 10 + i % 2,
+                    i % 3 == 0 ? null : 11, "Mensaje ñ " + i, creado, "Usuario " + i, i % 4 == 0));
+        }
+        return new PedidoArchivado(id, conversacion, lat, lng, t, lista);
+    }
+}
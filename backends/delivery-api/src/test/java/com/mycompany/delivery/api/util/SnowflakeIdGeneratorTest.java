@@ -0,0 +1,124 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long MAX_SEGURO_JS = (1L << 53) - 1;
+    private static final long T0 = Instant.parse("2026-03-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    void idsUnicosBajoConcurrencia() throws Exception {
+        int hilos = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int porHilo = 4_000_000 / hilos;
+        long[][] generados = new long[hilos][porHilo];
+        CountDownLatch salida = new CountDownLatch(1);
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            long[] destino = generados[h];
+            trabajadores[h] = new Thread(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < destino.length; i++) {
+                    destino[i] = SnowflakeIdGenerator.nextId();
+                }
+            });
+            trabajadores[h].start();
+        }
+        salida.countDown();
+        for (Thread t : trabajadores) {
+            t.join(TimeUnit.MINUTES.toMillis(2));
+        }
+
+        long[] todos = new long[hilos * porHilo];
+        for (int h = 0; h < hilos; h++) {
+            long[] propios = generados[h];
+            for (int i = 1; i < propios.length; i++) {
+                assertTrue(propios[i] > propios[i - 1], "ids no crecientes dentro de un hilo");
+            }
+            System.arraycopy(propios, 0, todos, h * porHilo, porHilo);
+        }
+        Arrays.sort(todos);
+        for (int i = 1; i < todos.length; i++) {
+            assertTrue(todos[i] != todos[i - 1], "id repetido: " + todos[i]);
+        }
+        assertTrue(todos[0] > 0);
+        assertTrue(todos[todos.length - 1] <= MAX_SEGURO_JS, "id fuera del rango exacto de JavaScript");
+    }
+
+    @Test
+    void avanzarHastaDejaLosSiguientesPorEncima() {
+        long actual = SnowflakeIdGenerator.nextId();
+        // Un id guardado por el mismo nodo 5 s "en el futuro", como tras un
+        // reinicio con el reloj atrasado.
+        long futuro = actual + (5_000L << 14);
+        SnowflakeIdGenerator.avanzarHasta(futuro);
+        long siguiente = SnowflakeIdGenerator.nextId();
+        assertTrue(siguiente > futuro);
+        assertEquals(SnowflakeIdGenerator.nodo(), (siguiente >>> 6) & 0xFF);
+
+        // Un maximo anterior no hace retroceder al generador.
+        SnowflakeIdGenerator.avanzarHasta(actual);
+        assertTrue(SnowflakeIdGenerator.nextId() > siguiente);
+    }
+
+    @Test
+    void relojAtrasadoPocoEsperaASuRecuperacion() {
+        RelojFalso reloj = new RelojFalso(T0, T0 - 10, T0 - 10, T0 - 4, T0 + 1);
+        SnowflakeIdGenerator generador = new SnowflakeIdGenerator(reloj, 7);
+        long primero = generador.generar();
+        long segundo = generador.generar();
+
+        // No toma prestado el milisegundo siguiente: espera a que el reloj llegue.
+        assertEquals(5, reloj.lecturas);
+        assertEquals(1, milisegundo(segundo) - milisegundo(primero));
+        assertEquals(0, segundo & 0x3F);
+        assertEquals(7, (segundo >>> 6) & 0xFF);
+    }
+
+    @Test
+    void relojAtrasadoMuchoLanzaHastaQueSeRecupera() {
+        long atras = T0 - SnowflakeIdGenerator.MAX_RETROCESO_MS - 1;
+        RelojFalso reloj = new RelojFalso(T0, atras, atras, T0 + 1);
+        SnowflakeIdGenerator generador = new SnowflakeIdGenerator(reloj, 7);
+        long primero = generador.generar();
+
+        assertThrows(IllegalStateException.class, generador::generar);
+        assertThrows(IllegalStateException.class, generador::generar);
+        long tras = generador.generar();
+        assertEquals(1, milisegundo(tras) - milisegundo(primero));
+    }
+
+    private static long milisegundo(long id) {
+        return id >>> 14;
+    }
+
+    // Devuelve las lecturas en orden y repite la ultima.
+    private static final class RelojFalso implements LongSupplier {
+        private final long[] valores;
+        int lecturas;
+
+        RelojFalso(long... valores) {
+            this.valores = valores;
+        }
+
+        @Override
+        public long getAsLong() {
+            return valores[Math.min(lecturas++, valores.length - 1)];
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.mycompany.delivery.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.delivery.api.util.SpaceSaving.Conteo;
+
+class SpaceSavingTest {
+
+    private static final int CAPACIDAD = 20;
+
+    @Test
+    void flujoSesgadoDaElTopKGarantizado() {
+        // Con m contadores el top-k queda certificado cuando la cuenta k-esima
+        // supera en mas de N/m a la siguiente; con este sesgo basta m = 50.
+        Map<Integer, Long> reales = new HashMap<>();
+        SpaceSaving s = new SpaceSaving(50);
+        for (int[] venta : flujoZipf(50_000, 500, 1)) {
+            s.agregar(venta[0], venta[1]);
+            reales.merge(venta[0], (long) venta[1], Long::sum);
+        }
+
+        int k = 5;
+        List<Conteo> top = s.top(k + 1);
+        Set<Integer> estimados = new HashSet<>();
+        for (Conteo c : top.subList(0, k)) {
+            estimados.add(c.elemento());
+        }
+        assertEquals(topReal(reales, k), estimados);
+        // Certificado: el minimo garantizado de cada uno supera cualquier otra cuenta.
+        assertTrue(top.get(k - 1).garantizado() >= top.get(k).cuenta(),
+                "el top-" + k + " no quedo garantizado: " + top);
+        assertTrue(top.get(k - 1).garantizado() >= s.minimo());
+    }
+
+    @Test
+    void respetaLasCotasDeError() {
+        Map<Integer, Long> reales = new HashMap<>();
+        SpaceSaving s = new SpaceSaving(CAPACIDAD);
+        for (int[] venta : flujoZipf(20_000, 2_000, 2)) {
+            s.agregar(venta[0], venta[1]);
+            reales.merge(venta[0], (long) venta[1], Long::sum);
+        }
+        comprobarCotas(s, reales);
+    }
+
+    @Test
+    void laFusionConservaLasCotas() {
+        Map<Integer, Long> reales = new HashMap<>();
+        List<SpaceSaving> dias = new ArrayList<>();
+        for (int dia = 0; dia < 4; dia++) {
+            SpaceSaving s = new SpaceSaving(CAPACIDAD);
+            for (int[] venta : flujoZipf(8_000, 1_000, 10 + dia)) {
+                s.agregar(venta[0], venta[1]);
+                reales.merge(venta[0], (long) venta[1], Long::sum);
+            }
+            dias.add(s);
+        }
+        // Uno de los dias llega con cuentas exactas, como al cargar desde la base.
+        Map<Integer, Long> exactos = new HashMap<>();
+        for (int[] venta : flujoZipf(8_000, 1_000, 20)) {
+            exactos.merge(venta[0], (long) venta[1], Long::sum);
+            reales.merge(venta[0], (long) venta[1], Long::sum);
+        }
+        dias.add(SpaceSaving.desdeExactos(CAPACIDAD, exactos));
+
+        SpaceSaving fusion = SpaceSaving.fusionar(dias, CAPACIDAD);
+        comprobarCotas(fusion, reales);
+
+        // Tras fusionar se sigue agregando sin romper las garantias.
+        for (int[] venta : flujoZipf(5_000, 1_000, 30)) {
+            fusion.agregar(venta[0], venta[1]);
+            reales.merge(venta[0], (long) venta[1], Long::sum);
+        }
+        comprobarCotas(fusion, reales);
+    }
+
+    @Test
+    void ignoraPesosNoPositivosYRechazaCapacidadInvalida() {
+        SpaceSaving s = new SpaceSaving(2);
+        s.agregar(1, 0);
+        s.agregar(1, -3);
+        assertEquals(0, s.tamano());
+        assertEquals(0, s.total());
+
+        s.agregar(1, 4);
+        s.agregar(2, 1);
+        s.agregar(3, 2); // reemplaza al 2 y hereda su cuenta como error
+        assertEquals(List.of(new Conteo(1, 4, 0), new Conteo(3, 3, 1)), s.top(5));
+        assertEquals(3, s.minimo());
+        assertEquals(7, s.total());
+
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving(0));
+    }
+
+    private static void comprobarCotas(SpaceSaving s, Map<Integer, Long> reales) {
+        long n = reales.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(n, s.total());
+        long cota = n / s.capacidad();
+        Set<Integer> seguidos = new HashSet<>();
+        for (Conteo c : s.top(s.capacidad())) {
+            seguidos.add(c.elemento());
+            long real = reales.getOrDefault(c.elemento(), 0L);
+            assertTrue(c.cuenta() >= real, "subestima " + c + " real=" + real);
+            assertTrue(c.cuenta() - c.error() <= real, "error insuficiente " + c + " real=" + real);
+            assertTrue(c.error() <= cota, "error " + c.error() + " mayor que N/m=" + cota);
+        }
+        for (Map.Entry<Integer, Long> e : reales.entrySet()) {
+            if (!seguidos.contains(e.getKey())) {
+                assertTrue(e.getValue() <= s.minimo(), "no seguido " + e + " supera el minimo " + s.minimo());
+                assertTrue(e.getValue() <= cota, "elemento frecuente sin seguir: " + e);
+            }
+        }
+    }
+
+    private static Set<Integer> topReal(Map<Integer, Long> reales, int k) {
+        Set<Integer> top = new HashSet<>();
+        reales.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .limit(k)
+                .forEach(e -> top.add(e.getKey()));
+        return top;
+    }
+
+    /**
+     * Ventas (producto, cantidad) con productos repartidos segun Zipf (s = 1.2)
+     * y cantidades de 1 a 3; la semilla fija hace el flujo reproducible.
+     */
+    private static List<int[]> flujoZipf(int ventas, int productos, long semilla) {
+        double[] acumulada = new double[productos];
+        double suma = 0;
+        for (int i = 0; i < productos; i++) {
+            suma += 1.0 / Math.pow(i + 1, 1.2);
+            acumulada[i] = suma;
+        }
+        Random r = new Random(semilla);
+        List<int[]> flujo = new ArrayList<>(ventas);
+        for (int v = 0; v < ventas; v++) {
+            double u = r.nextDouble() * suma;
+            int i = 0;
+            while (acumulada[i] < u) {
+                i++;
+            }
+            // Ids dispersos para que el orden de llegada no coincida con el de frecuencia.
+            flujo.add(new int[] {(i * 7919) % 100_003, 1 + r.nextInt(3)});
+        }
+        return flujo;
+    }
+}
@@ -0,0 +1,88 @@
+#!/usr/bin/env bash
+# Arnes de carga local para el control de admision (AdmissionController).
+# Satura rutas de prioridad baja (/admin/stats, /geocodificar) y normal
+# (/productos) mientras unos pocos clientes envian pings de repartidor, y
+# resume codigos de estado y latencias por grupo. Con el control activo la
+# prioridad baja recibe 503 + Retry-After y la critica mantiene su latencia.
+#
+# Uso: tools/load_harness.sh   (con la API ya arrancada)
+#   BASE_URL          por defecto http://localhost:7070
+#   DURACION          segundos de carga (20)
+#   CLIENTES_BAJA     clientes concurrentes contra rutas bajas (64)
+#   CLIENTES_NORMAL   clientes contra /productos (8)
+#   CLIENTES_CRITICA  clientes enviando pings de repartidor (4)
+set -euo pipefail
+
+BASE_URL="${BASE_URL:-http://localhost:7070}"
+DURACION="${DURACION:-20}"
+CLIENTES_BAJA="${CLIENTES_BAJA:-64}"
+CLIENTES_NORMAL="${CLIENTES_NORMAL:-8}"
+CLIENTES_CRITICA="${CLIENTES_CRITICA:-4}"
+
+if ! curl -fs "$BASE_URL/health" >/dev/null 2>&1; then
+  echo "La API no responde en $BASE_URL/health" >&2
+  exit 1
+fi
+
+WORK="$(mktemp -d)"
+FIN=$(( $(date +%s) + DURACION ))
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null || true' EXIT
+
+# Cada cliente escribe "codigo segundos" por peticion en su propio fichero.
+cliente() {
+  local grupo="$1" n="$2" metodo="$3" ruta="$4" cuerpo="$5"
+  local out="$WORK/$grupo.$n"
+  while (( $(date +%s) < FIN )); do
+    curl -s -m 30 -o /dev/null -w '%{http_code} %{time_total}\n' -X "$metodo" \
+      -H 'Content-Type: application/json' ${cuerpo:+-d "$cuerpo"} "$BASE_URL$ruta" >>"$out" \
+      || echo "000 30" >>"$out"
+  done
+}
+
+for i in $(seq 1 "$CLIENTES_BAJA"); do
+  if (( i % 2 )); then
+    cliente baja "$i" GET /admin/stats "" &
+  else
+    cliente baja "$i" POST /geocodificar '{"direccion":"Av. Amazonas y Naciones Unidas, Quito"}' &
+  fi
+  PIDS+=($!)
+done
+for i in $(seq 1 "$CLIENTES_NORMAL"); do
+  cliente normal "$i" GET /productos "" &
+  PIDS+=($!)
+done
+for i in $(seq 1 "$CLIENTES_CRITICA"); do
+  cliente critica "$i" PUT "/ubicaciones/repartidor/$i" '{"latitud":-0.1807,"longitud":-78.4678}' &
+  PIDS+=($!)
+done
+
+echo "Carga durante ${DURACION}s: baja=$CLIENTES_BAJA normal=$CLIENTES_NORMAL critica=$CLIENTES_CRITICA"
+wait "${PIDS[@]}" 2>/dev/null || true
+PIDS=()
+
+resumen() {
+  local grupo="$1"
+  if ! ls "$WORK/$grupo".* >/dev/null 2>&1; then
+    return
+  fi
+  cat "$WORK/$grupo".* | sort -k2 -n | awk -v g="$grupo" '
+    { n++; t[n] = $2; c[$1]++ }
+    END {
+      if (n == 0) { exit }
+      codigos = ""
+      for (k in c) { codigos = codigos " " k "=" c[k] }
+      printf "%-8s n=%-6d p50=%6.0fms p95=%6.0fms p99=%6.0fms  codigos:%s\n", g, n,
+        t[int(n * 0.50) + (n * 0.50 > int(n * 0.50))] * 1000,
+        t[int(n * 0.95) + (n * 0.95 > int(n * 0.95))] * 1000,
+        t[int(n * 0.99) + (n * 0.99 > int(n * 0.99))] * 1000, codigos
+    }'
+}
+
+resumen critica
+resumen normal
+resumen baja
+echo
+curl -s "$BASE_URL/admin/admision"
+echo
+rm -rf "$WORK"
@@ -0,0 +1,80 @@
+#!/usr/bin/env bash
+# Prueba de humo del ejecutable nativo (mvn -Pnative package).
+# Arranca target/delivery-api contra un PostgreSQL local, espera a /ready y
+# recorre las rutas principales. Sirve sobre todo para detectar clases a las
+# que les falta configuracion de reflexion (Gson devuelve 500 o JSON vacio).
+#
+# Uso: tools/native_smoke.sh [binario]
+#   DB_URL, DB_USER, DB_PASSWORD  base de datos local (por defecto localhost/delivery)
+#   BASE_URL                      por defecto http://localhost:7070
+set -euo pipefail
+
+DIR="$(cd "$(dirname "$0")/.." && pwd)"
+BIN="${1:-$DIR/target/delivery-api}"
+BASE_URL="${BASE_URL:-http://localhost:7070}"
+export DB_URL="${DB_URL:-jdbc:postgresql://localhost:5432/delivery}"
+export DB_USER="${DB_USER:-postgres}"
+export DB_PASSWORD="${DB_PASSWORD:-postgres}"
+
+if [[ ! -x "$BIN" ]]; then
+  echo "No existe el ejecutable $BIN (mvn -Pnative package)" >&2
+  exit 1
+fi
+
+# dotenv exige un .env en el directorio de trabajo.
+WORK="$(mktemp -d)"
+touch "$WORK/.env"
+LOG="$WORK/api.log"
+
+START_MS=$(date +%s%3N)
+(cd "$WORK" && exec "$BIN") >"$LOG" 2>&1 &
+PID=$!
+trap 'kill $PID 2>/dev/null || true; wait $PID 2>/dev/null || true' EXIT
+
+for _ in $(seq 1 100); do
+  if curl -fs "$BASE_URL/ready" >/dev/null 2>&1; then
+    break
+  fi
+  if ! kill -0 $PID 2>/dev/null; then
+    echo "El proceso termino antes de estar listo:" >&2
+    cat "$LOG" >&2
+    exit 1
+  fi
+  sleep 0.1
+done
+READY_MS=$(( $(date +%s%3N) - START_MS ))
+RSS_KB=$(awk '/VmRSS/ {print $2}' "/proc/$PID/status" 2>/dev/null || echo "?")
+echo "Listo en ${READY_MS} ms, RSS ${RSS_KB} kB"
+
+FALLOS=0
+check() {
+  local metodo="$1" ruta="$2" esperado="$3" cuerpo="${4:-}"
+  local status
+  if [[ -n "$cuerpo" ]]; then
+    status=$(curl -s -o "$WORK/resp.json" -w '%{http_code}' -X "$metodo" \
+      -H 'Content-Type: application/json' -d "$cuerpo" "$BASE_URL$ruta")
+  else
+    status=$(curl -s -o "$WORK/resp.json" -w '%{http_code}' -X "$metodo" "$BASE_URL$ruta")
+  fi
+  if [[ " $esperado " == *" $status "* ]] && grep -q '"status"' "$WORK/resp.json"; then
+    echo "OK   $metodo $ruta -> $status"
+  else
+    echo "FAIL $metodo $ruta -> $status (esperado: $esperado)"
+    head -c 300 "$WORK/resp.json"; echo
+    FALLOS=$((FALLOS + 1))
+  fi
+}
+
+check GET  /health                     "200"
+check GET  /ready                      "200"
+check GET  /productos                  "200"
+check GET  /recomendaciones            "200"
+check GET  /recomendaciones/destacadas "200"
+check POST /auth/login                 "401" '{"correo":"smoke@test.local","contrasena":"x"}'
+check POST /auth/login                 "400" '{"correo":"","contrasena":""}'
+
+if (( FALLOS > 0 )); then
+  echo "$FALLOS comprobaciones fallaron; log en $LOG" >&2
+  exit 1
+fi
+echo "Prueba de humo superada"